@@ -0,0 +1,193 @@
+package com.example.shoppingcart.admission;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Admission control for cart mutations (non-GET requests under /api/carts).
+ * Requests are shed with 429 and Retry-After when the in-flight count or the number of threads waiting
+ * for a primary pool connection crosses its threshold, or when the caller's token bucket for the cart is empty.
+ * Buckets are keyed by client and cart id. The client is the authenticated principal if there is one, else the
+ * remote address (behind a proxy, as resolved by server.forward-headers-strategy); nothing the caller can pick
+ * freely. At most max-buckets are kept: full buckets are dropped first, then the least recently used.
+ */
+public class CartAdmissionInterceptor implements HandlerInterceptor {
+
+    private static final String ADMITTED_ATTRIBUTE = CartAdmissionInterceptor.class.getName() + ".admitted";
+    private static final long OVERLOAD_RETRY_AFTER_SECONDS = 1;
+
+    private final int bucketCapacity;
+    private final double refillPerSecond;
+    private final int maxBuckets;
+    private final int maxInFlight;
+    private final int maxPendingConnections;
+    private final Supplier<HikariDataSource> primaryPool;
+
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicBoolean purging = new AtomicBoolean();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rateLimited;
+    private final Counter shedInFlight;
+    private final Counter shedPoolSaturated;
+
+    public CartAdmissionInterceptor(int bucketCapacity, double refillPerSecond, int maxBuckets,
+                                    int maxInFlight, int maxPendingConnections,
+                                    Supplier<HikariDataSource> primaryPool, MeterRegistry meterRegistry) {
+        this.bucketCapacity = bucketCapacity;
+        this.refillPerSecond = refillPerSecond;
+        this.maxBuckets = maxBuckets;
+        this.maxInFlight = maxInFlight;
+        this.maxPendingConnections = maxPendingConnections;
+        this.primaryPool = primaryPool;
+        this.rateLimited = shedCounter(meterRegistry, "rate_limited");
+        this.shedInFlight = shedCounter(meterRegistry, "in_flight");
+        this.shedPoolSaturated = shedCounter(meterRegistry, "pool_saturated");
+        Gauge.builder("app.admission.in_flight", inFlight, AtomicInteger::get)
+                .description("Cart mutation requests currently being processed")
+                .register(meterRegistry);
+    }
+
+    private static Counter shedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("app.admission.shed")
+                .description("Cart mutation requests rejected with 429")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (!isMutation(request)) {
+            return true;
+        }
+        // The slot is taken before any check, so concurrent requests cannot all see room for themselves;
+        // every way out other than admission gives it back
+        boolean admitted = false;
+        try {
+            if (inFlight.incrementAndGet() > maxInFlight) {
+                shedInFlight.increment();
+                return reject(response, OVERLOAD_RETRY_AFTER_SECONDS, "Server is busy, retry later");
+            }
+            if (pendingConnections() > maxPendingConnections) {
+                shedPoolSaturated.increment();
+                return reject(response, OVERLOAD_RETRY_AFTER_SECONDS, "Server is busy, retry later");
+            }
+            long waitNanos = bucketFor(request).tryConsume(System.nanoTime());
+            if (waitNanos > 0) {
+                rateLimited.increment();
+                return reject(response, Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999)),
+                        "Too many cart updates, retry later");
+            }
+            request.setAttribute(ADMITTED_ATTRIBUTE, Boolean.TRUE);
+            admitted = true;
+            return true;
+        } finally {
+            if (!admitted) {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(ADMITTED_ATTRIBUTE) != null) {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Cart mutations currently being processed.
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    private static boolean isMutation(HttpServletRequest request) {
+        String method = request.getMethod();
+        return !HttpMethod.GET.matches(method) && !HttpMethod.HEAD.matches(method) && !HttpMethod.OPTIONS.matches(method);
+    }
+
+    private int pendingConnections() {
+        HikariDataSource pool = primaryPool.get();
+        HikariPoolMXBean poolBean = pool == null ? null : pool.getHikariPoolMXBean();
+        return poolBean == null ? 0 : poolBean.getThreadsAwaitingConnection();
+    }
+
+    private TokenBucket bucketFor(HttpServletRequest request) {
+        String key = clientId(request) + "|" + cartId(request);
+        TokenBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            evictIfFull();
+            bucket = buckets.computeIfAbsent(key, k -> new TokenBucket(bucketCapacity, refillPerSecond, System.nanoTime()));
+        }
+        return bucket;
+    }
+
+    /**
+     * Buckets kept, for tests.
+     */
+    int bucketCount() {
+        return buckets.size();
+    }
+
+    // Full buckets carry no state, so dropping them does not affect decisions. When clients create buckets faster
+    // than they refill, the least recently used go too, down to three quarters of maxBuckets so this runs rarely
+    private void evictIfFull() {
+        if (buckets.size() >= maxBuckets && purging.compareAndSet(false, true)) {
+            try {
+                long now = System.nanoTime();
+                buckets.values().removeIf(bucket -> bucket.isFull(now));
+                int excess = buckets.size() - maxBuckets * 3 / 4;
+                if (excess > 0) {
+                    buckets.entrySet().stream()
+                            .sorted(Comparator.comparingLong(entry -> entry.getValue().lastUsedNanos()))
+                            .limit(excess)
+                            .map(Map.Entry::getKey)
+                            .toList()
+                            .forEach(buckets::remove);
+                }
+            } finally {
+                purging.set(false);
+            }
+        }
+    }
+
+    private static String clientId(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        return principal != null ? "user:" + principal.getName() : "address:" + request.getRemoteAddr();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String cartId(HttpServletRequest request) {
+        Map<String, String> variables =
+                (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        return variables == null ? "-" : variables.getOrDefault("cartId", "-");
+    }
+
+    private static boolean reject(HttpServletResponse response, long retryAfterSeconds, String message) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType("text/plain");
+        response.getWriter().write(message);
+        return false;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.shoppingcart.admission;
+
+import com.example.shoppingcart.datasource.DataSourceRouting;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Bulkhead for report traffic: reports run on their own bounded thread pool and read through the
+ * reporting connection pool, so they cannot take request threads or connections from cart mutations.
+ * Work beyond max-concurrency waits in a bounded queue; beyond that it is rejected, and reports
+ * that do not finish within the timeout fail with a TimeoutException and are cancelled: a queued report
+ * never starts, and a running one is interrupted, so that it gives up its thread and reporting connection.
+ */
+@Component
+public class ReportBulkhead implements DisposableBean {
+
+    private final ThreadPoolTaskExecutor executor;
+    private final Duration timeout;
+
+    @Autowired
+    public ReportBulkhead(@Value("${app.bulkhead.report.max-concurrency:2}") int maxConcurrency,
+                          @Value("${app.bulkhead.report.queue-capacity:20}") int queueCapacity,
+                          @Value("${app.bulkhead.report.timeout:30s}") Duration timeout) {
+        this.executor = new ThreadPoolTaskExecutor();
+        this.executor.setCorePoolSize(maxConcurrency);
+        this.executor.setMaxPoolSize(maxConcurrency);
+        this.executor.setQueueCapacity(queueCapacity);
+        this.executor.setThreadNamePrefix("report-");
+        this.executor.initialize();
+        this.timeout = timeout;
+    }
+
+    /**
+     * Runs the report on the bulkhead pool with its reads pinned to the reporting connection pool.
+     * Never throws: rejection and timeout are reported through the returned future.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> report) {
+        return submit(report, timeout);
+    }
+
+    /**
+     * As {@link #submit(Supplier)}, with a timeout other than the configured one.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> report, Duration reportTimeout) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                try {
+                    result.complete(DataSourceRouting.onReporting(report));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        // A timeout only completes the returned future; cancelling stops the report itself
+        result.orTimeout(reportTimeout.toMillis(), TimeUnit.MILLISECONDS).whenComplete((value, error) -> {
+            if (error instanceof TimeoutException) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.shoppingcart.admission;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free token bucket. State is an immutable snapshot swapped with compare-and-set,
+ * so concurrent callers never block each other.
+ */
+public class TokenBucket {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private final AtomicReference<State> state;
+
+    public TokenBucket(int capacity, double refillPerSecond, long nowNanos) {
+        this.capacity = capacity;
+        this.tokensPerNano = refillPerSecond / NANOS_PER_SECOND;
+        this.state = new AtomicReference<>(new State(capacity, nowNanos));
+    }
+
+    /**
+     * Takes one token if available.
+     *
+     * @return 0 if a token was taken, otherwise the nanoseconds until the next token becomes available
+     */
+    public long tryConsume(long nowNanos) {
+        while (true) {
+            State current = state.get();
+            double tokens = refilled(current, nowNanos);
+            if (tokens < 1) {
+                return (long) Math.ceil((1 - tokens) / tokensPerNano);
+            }
+            if (state.compareAndSet(current, new State(tokens - 1, Math.max(nowNanos, current.updatedAtNanos)))) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * True if the bucket has refilled completely, i.e. forgetting it would not change any decision.
+     */
+    public boolean isFull(long nowNanos) {
+        return refilled(state.get(), nowNanos) >= capacity;
+    }
+
+    /**
+     * When a token was last taken, or the bucket created.
+     */
+    public long lastUsedNanos() {
+        return state.get().updatedAtNanos;
+    }
+
+    private double refilled(State current, long nowNanos) {
+        long elapsed = Math.max(0, nowNanos - current.updatedAtNanos);
+        return Math.min(capacity, current.tokens + elapsed * tokensPerNano);
+    }
+
+    private record State(double tokens, long updatedAtNanos) {
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.shoppingcart.config;
+
+import com.example.shoppingcart.admission.CartAdmissionInterceptor;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Rate limiting and load shedding for cart mutations; registered with MVC by WebConfig.
+ * Thresholds are configured under app.admission.*.
+ */
+@Configuration
+public class AdmissionControlConfig {
+
+    @Bean
+    public CartAdmissionInterceptor cartAdmissionInterceptor(
+            @Value("${app.admission.rate-limit.capacity:20}") int bucketCapacity,
+            @Value("${app.admission.rate-limit.refill-per-second:5}") double refillPerSecond,
+            @Value("${app.admission.rate-limit.max-buckets:100000}") int maxBuckets,
+            @Value("${app.admission.max-in-flight:200}") int maxInFlight,
+            @Value("${app.admission.max-pending-connections:20}") int maxPendingConnections,
+            @Qualifier("primaryDataSource") ObjectProvider<HikariDataSource> primaryDataSource,
+            MeterRegistry meterRegistry) {
+        return new CartAdmissionInterceptor(bucketCapacity, refillPerSecond, maxBuckets,
+                maxInFlight, maxPendingConnections, primaryDataSource::getIfAvailable, meterRegistry);
+    }
+}
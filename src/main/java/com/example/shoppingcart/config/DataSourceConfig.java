@@ -0,0 +1,99 @@
+package com.example.shoppingcart.config;
+
+import com.example.shoppingcart.datasource.DataSourceRole;
+import com.example.shoppingcart.datasource.ReadWriteRoutingDataSource;
+import com.example.shoppingcart.sharding.ShardDataSources;
+import com.example.shoppingcart.sharding.ShardRoutingDataSource;
+import com.example.shoppingcart.sharding.ShardingProperties;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Primary, replica and reporting connection pools behind a read/write routing data source.
+ * The primary is configured through spring.datasource.*, the others through app.datasource.replica.*
+ * and app.datasource.reporting.* (Hikari property names, e.g. jdbc-url).
+ * These form shard 0; additional shards from app.sharding.* are routed to in front of them.
+ * The stock pool (app.datasource.stock.*) also connects to shard 0's primary but is not routed to: it only
+ * serves InventoryService's leases, which run while the calling cart transaction holds a primary connection.
+ * Every pool publishes Hikari metrics under its pool name.
+ */
+@Configuration
+@EnableConfigurationProperties(ShardingProperties.class)
+public class DataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName(DataSourceRole.PRIMARY.poolName());
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("app.datasource.replica")
+    public HikariDataSource replicaDataSource() {
+        HikariDataSource dataSource = DataSourceBuilder.create().type(HikariDataSource.class).build();
+        dataSource.setPoolName(DataSourceRole.REPLICA.poolName());
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("app.datasource.reporting")
+    public HikariDataSource reportingDataSource() {
+        HikariDataSource dataSource = DataSourceBuilder.create().type(HikariDataSource.class).build();
+        dataSource.setPoolName(DataSourceRole.REPORTING.poolName());
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("app.datasource.stock")
+    public HikariDataSource stockDataSource() {
+        HikariDataSource dataSource = DataSourceBuilder.create().type(HikariDataSource.class).build();
+        dataSource.setPoolName("stock");
+        return dataSource;
+    }
+
+    @Bean
+    public ShardDataSources shardDataSources(ShardingProperties shardingProperties, MeterRegistry meterRegistry) {
+        List<HikariDataSource> additionalShards = new ArrayList<>();
+        for (HikariConfig config : shardingProperties.getAdditionalShards()) {
+            config.setPoolName("shard-" + (additionalShards.size() + 1));
+            config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            additionalShards.add(new HikariDataSource(config));
+        }
+        return new ShardDataSources(additionalShards);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                 @Qualifier("reportingDataSource") DataSource reportingDataSource,
+                                 ShardDataSources shardDataSources,
+                                 MeterRegistry meterRegistry) {
+        ReadWriteRoutingDataSource routingDataSource = new ReadWriteRoutingDataSource(
+                primaryDataSource, replicaDataSource, reportingDataSource, meterRegistry);
+        routingDataSource.afterPropertiesSet();
+        ShardRoutingDataSource shardRoutingDataSource = new ShardRoutingDataSource(
+                routingDataSource, shardDataSources.additionalShards());
+        shardRoutingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+}
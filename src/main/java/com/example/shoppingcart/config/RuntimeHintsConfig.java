@@ -0,0 +1,43 @@
+package com.example.shoppingcart.config;
+
+import com.example.shoppingcart.dto.CartItemRequest;
+import com.example.shoppingcart.dto.CartItemResponse;
+import com.example.shoppingcart.dto.CartRowsJson;
+import com.example.shoppingcart.dto.ProductRequest;
+import com.example.shoppingcart.dto.ReportJobResponse;
+import com.example.shoppingcart.dto.ShoppingCartResponse;
+import com.example.shoppingcart.model.CartState;
+import com.example.shoppingcart.model.Product;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+/**
+ * Reflection hints for the AOT and native image builds.
+ * Entities and repositories are covered by Spring's own AOT processing; the types registered here are
+ * the ones Jackson binds that AOT cannot see from controller signatures alone (for example bodies behind
+ * CompletableFuture or {@code ResponseEntity<Object>}, reports written straight to a file, or event-sourced cart
+ * snapshots), together with the serializers their annotations name. Lombok needs nothing: it only runs at compile time.
+ */
+@Configuration(proxyBeanMethods = false)
+@ImportRuntimeHints(RuntimeHintsConfig.ShoppingCartRuntimeHints.class)
+public class RuntimeHintsConfig {
+
+    static class ShoppingCartRuntimeHints implements RuntimeHintsRegistrar {
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                    ShoppingCartResponse.class,
+                    CartItemResponse.class,
+                    ReportJobResponse.class,
+                    CartItemRequest.class,
+                    ProductRequest.class,
+                    Product.class,
+                    CartRowsJson.class,
+                    CartState.class);
+        }
+    }
+}
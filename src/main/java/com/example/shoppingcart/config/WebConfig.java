@@ -0,0 +1,64 @@
+package com.example.shoppingcart.config;
+
+import com.example.shoppingcart.admission.CartAdmissionInterceptor;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Web MVC configuration.
+ * Applies admission control to cart endpoints, and serves CBOR (application/cbor) and Smile
+ * (application/x-jackson-smile) from converters after the default JSON converter, so clients opt in
+ * with an Accept header while JSON stays the default. MVC's own CBOR and Smile converters are
+ * replaced, since they are built without Boot's Jackson settings.
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final Jackson2ObjectMapperBuilder objectMapperBuilder;
+    private final ObjectProvider<CartAdmissionInterceptor> cartAdmissionInterceptor;
+
+    @Autowired
+    public WebConfig(Jackson2ObjectMapperBuilder objectMapperBuilder,
+                     ObjectProvider<CartAdmissionInterceptor> cartAdmissionInterceptor) {
+        this.objectMapperBuilder = objectMapperBuilder;
+        this.cartAdmissionInterceptor = cartAdmissionInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // Absent in web slice tests that do not import AdmissionControlConfig
+        cartAdmissionInterceptor.ifAvailable(interceptor ->
+                registry.addInterceptor(interceptor).addPathPatterns("/api/carts", "/api/carts/**"));
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Built from Boot's builder so the binary mappers share the JSON mapper's modules and date settings
+        replaceOrAdd(converters, MappingJackson2CborHttpMessageConverter.class, new MappingJackson2CborHttpMessageConverter(
+                objectMapperBuilder.factory(new CBORFactory()).build()));
+        replaceOrAdd(converters, MappingJackson2SmileHttpMessageConverter.class, new MappingJackson2SmileHttpMessageConverter(
+                objectMapperBuilder.factory(new SmileFactory()).build()));
+    }
+
+    // Takes the default converter's place when MVC registered one, as it does with the format on the classpath
+    private static void replaceOrAdd(List<HttpMessageConverter<?>> converters, Class<?> type, HttpMessageConverter<?> converter) {
+        for (int i = 0; i < converters.size(); i++) {
+            if (type.isInstance(converters.get(i))) {
+                converters.set(i, converter);
+                return;
+            }
+        }
+        converters.add(converter);
+    }
+}
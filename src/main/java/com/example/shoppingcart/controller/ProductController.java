@@ -1,13 +1,20 @@
 package com.example.shoppingcart.controller;
 
 
+import com.example.shoppingcart.dto.ProductPriceUpdateRequest;
+import com.example.shoppingcart.dto.ProductPriceUpdateResponse;
 import com.example.shoppingcart.dto.ProductRequest;
+import com.example.shoppingcart.dto.StockRequest;
+import com.example.shoppingcart.dto.StockResponse;
+import com.example.shoppingcart.inventory.InventoryService;
 import com.example.shoppingcart.model.Product;
+import com.example.shoppingcart.service.ProductPriceUpdateService;
 import com.example.shoppingcart.service.ProductService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -15,15 +22,21 @@ import org.springframework.web.bind.annotation.*;
 import java.util.List;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/products")
 @Tag(name = "Products", description = "API for managing products")
 public class ProductController {
 
     private final ProductService productService;
+    private final ProductPriceUpdateService productPriceUpdateService;
+    private final InventoryService inventoryService;
 
     @Autowired
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService, ProductPriceUpdateService productPriceUpdateService,
+                             InventoryService inventoryService) {
         this.productService = productService;
+        this.productPriceUpdateService = productPriceUpdateService;
+        this.inventoryService = inventoryService;
     }
 
     @Operation(summary = "Create a new product")
@@ -54,6 +67,24 @@ public class ProductController {
         return ResponseEntity.ok(updatedProduct);
     }
 
+    @Operation(summary = "Change the prices of all products of a type and/or id range by a percentage or amount")
+    @PostMapping("/price-updates")
+    public ResponseEntity<ProductPriceUpdateResponse> updatePrices(@Valid @RequestBody ProductPriceUpdateRequest request) {
+        return ResponseEntity.ok(productPriceUpdateService.updatePrices(request));
+    }
+
+    @Operation(summary = "Add received units to a product's stock, tracking its stock from the first delivery on")
+    @PostMapping("/{id}/stock")
+    public ResponseEntity<StockResponse> addStock(@PathVariable Long id, @Valid @RequestBody StockRequest request) {
+        return ResponseEntity.ok(inventoryService.addStock(id, request.getQuantity()));
+    }
+
+    @Operation(summary = "Get a product's stock")
+    @GetMapping("/{id}/stock")
+    public ResponseEntity<StockResponse> getStock(@PathVariable Long id) {
+        return ResponseEntity.ok(inventoryService.getStock(id));
+    }
+
     @Operation(summary = "Delete a product by ID")
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteProduct(@PathVariable Long id) {
@@ -0,0 +1,48 @@
+package com.example.shoppingcart.controller;
+
+import com.example.shoppingcart.dto.PromotionRequest;
+import com.example.shoppingcart.model.Promotion;
+import com.example.shoppingcart.service.PromotionService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@Profile("!reactive")
+@RequestMapping("/api/promotions")
+@Tag(name = "Promotions", description = "API for managing the promotions applied to cart prices")
+public class PromotionController {
+
+    private final PromotionService promotionService;
+
+    @Autowired
+    public PromotionController(PromotionService promotionService) {
+        this.promotionService = promotionService;
+    }
+
+    @Operation(summary = "Create a promotion")
+    @PostMapping
+    public ResponseEntity<Promotion> createPromotion(@Valid @RequestBody PromotionRequest request) {
+        return new ResponseEntity<>(promotionService.createPromotion(request), HttpStatus.CREATED);
+    }
+
+    @Operation(summary = "Get all promotions")
+    @GetMapping
+    public ResponseEntity<List<Promotion>> getAllPromotions() {
+        return ResponseEntity.ok(promotionService.getAllPromotions());
+    }
+
+    @Operation(summary = "Delete a promotion by ID")
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deletePromotion(@PathVariable Long id) {
+        promotionService.deletePromotion(id);
+        return ResponseEntity.noContent().build();
+    }
+}
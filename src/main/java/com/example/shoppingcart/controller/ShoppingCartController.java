@@ -1,59 +1,152 @@
 package com.example.shoppingcart.controller;
 
 
+import com.example.shoppingcart.admission.ReportBulkhead;
+import com.example.shoppingcart.dto.CartBatchResponse;
+import com.example.shoppingcart.dto.CartItemPageResponse;
 import com.example.shoppingcart.dto.CartItemRequest;
+import com.example.shoppingcart.dto.ReportJobResponse;
 import com.example.shoppingcart.dto.ShoppingCartResponse;
+import com.example.shoppingcart.idempotency.IdempotencyStore;
 import com.example.shoppingcart.model.ShoppingCart;
+import com.example.shoppingcart.notification.CartChangeBroadcaster;
+import com.example.shoppingcart.pricing.CartPricingEngine;
+import com.example.shoppingcart.service.CheckoutCoalescer;
+import com.example.shoppingcart.service.ReportJob;
+import com.example.shoppingcart.service.ReportJobService;
 import com.example.shoppingcart.service.ShoppingCartService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Size;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.math.BigDecimal;
+import java.net.URI;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/carts")
 @Tag(name = "Shopping Carts", description = "API for managing shopping carts and reports")
 public class ShoppingCartController {
 
+    static final int MAX_BATCH_IDS = 100;
+    static final int MAX_ITEM_PAGE_SIZE = 1000;
+
     private final ShoppingCartService shoppingCartService;
+    private final ReportBulkhead reportBulkhead;
+    private final ReportJobService reportJobService;
+    private final IdempotencyStore idempotencyStore;
+    private final CartChangeBroadcaster cartChangeBroadcaster;
+    private final CartPricingEngine cartPricingEngine;
+    private final CheckoutCoalescer checkoutCoalescer;
 
     @Autowired
-    public ShoppingCartController(ShoppingCartService shoppingCartService) {
+    public ShoppingCartController(ShoppingCartService shoppingCartService, ReportBulkhead reportBulkhead,
+                                  ReportJobService reportJobService, IdempotencyStore idempotencyStore,
+                                  CartChangeBroadcaster cartChangeBroadcaster, CartPricingEngine cartPricingEngine,
+                                  CheckoutCoalescer checkoutCoalescer) {
         this.shoppingCartService = shoppingCartService;
+        this.reportBulkhead = reportBulkhead;
+        this.reportJobService = reportJobService;
+        this.idempotencyStore = idempotencyStore;
+        this.cartChangeBroadcaster = cartChangeBroadcaster;
+        this.cartPricingEngine = cartPricingEngine;
+        this.checkoutCoalescer = checkoutCoalescer;
     }
 
     @Operation(summary = "Create a new shopping cart")
     @PostMapping
-    public ResponseEntity<ShoppingCartResponse> createCart() {
-        ShoppingCart newCart = shoppingCartService.createCart();
-        return new ResponseEntity<>(ShoppingCartResponse.fromEntity(newCart), HttpStatus.CREATED);
+    public ResponseEntity<ShoppingCartResponse> createCart(
+            @Parameter(description = "Creates a large cart: its views leave the lines out, to be read page by page from /{cartId}/items. " +
+                    "Carts also become large once they outgrow app.cart.large-cart-threshold lines.")
+            @RequestParam(defaultValue = "false") boolean large,
+            @Parameter(description = "Retries with the same key return the first response instead of creating another cart.")
+            @RequestHeader(name = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
+        ShoppingCartResponse newCart = idempotencyStore.execute(idempotencyKey, List.of("create", large),
+                () -> ShoppingCartResponse.fromEntity(shoppingCartService.createCart(large)));
+        return new ResponseEntity<>(newCart, HttpStatus.CREATED);
+    }
+
+    @Operation(summary = "Get several shopping carts by ID in one request",
+            description = "Returns the carts found in request order and lists the ids without a cart.")
+    @GetMapping
+    public ResponseEntity<CartBatchResponse> getCartsByIds(
+            @Parameter(description = "Cart ids, comma separated or repeated; at most " + MAX_BATCH_IDS, example = "1,2,3")
+            @RequestParam @Size(min = 1, max = MAX_BATCH_IDS) List<Long> ids) {
+        return ResponseEntity.ok(shoppingCartService.getCartResponses(ids));
     }
 
     @Operation(summary = "Get a shopping cart by ID")
+    @ApiResponse(responseCode = "200", content = @Content(schema = @Schema(implementation = ShoppingCartResponse.class)))
     @GetMapping("/{cartId}")
-    public ResponseEntity<ShoppingCartResponse> getCartById(@PathVariable Long cartId) {
-        ShoppingCart cart = shoppingCartService.getCartById(cartId);
-        return ResponseEntity.ok(ShoppingCartResponse.fromEntity(cart));
+    public ResponseEntity<Object> getCartById(
+            @PathVariable Long cartId,
+            @Parameter(description = "'full' returns items and total; 'summary' returns status, timestamps and the total summed from the line price snapshots, without reading items or products.", example = "full")
+            @RequestParam(defaultValue = "full") String view) {
+        if ("summary".equalsIgnoreCase(view)) {
+            return ResponseEntity.ok(ShoppingCartResponse.fromSummary(
+                    shoppingCartService.getCartSummary(cartId), shoppingCartService.calculateTotalPrice(cartId)));
+        }
+        if (!"full".equalsIgnoreCase(view)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported view: " + view);
+        }
+        return ResponseEntity.ok(shoppingCartService.getCartDocument(cartId));
+    }
+
+    @Operation(summary = "Get one page of the items in a shopping cart",
+            description = "Items in the order they were added, at their price snapshots. The way to read the items of a large cart.")
+    @GetMapping("/{cartId}/items")
+    public ResponseEntity<CartItemPageResponse> getCartItems(
+            @PathVariable Long cartId,
+            @Parameter(description = "Zero-based page number", example = "0")
+            @RequestParam(defaultValue = "0") @Min(0) int page,
+            @Parameter(description = "Items per page; at most " + MAX_ITEM_PAGE_SIZE, example = "100")
+            @RequestParam(defaultValue = "100") @Min(1) @Max(MAX_ITEM_PAGE_SIZE) int size) {
+        return ResponseEntity.ok(shoppingCartService.getCartItems(cartId, page, size));
+    }
+
+    @Operation(summary = "Stream a shopping cart as Server-Sent Events",
+            description = "Sends a 'cart' event with the current cart, then one after every committed change to it. " +
+                    "Idle streams receive heartbeat comments.")
+    @GetMapping(path = "/{cartId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamCartEvents(@PathVariable Long cartId) {
+        return cartChangeBroadcaster.subscribe(cartId, () -> shoppingCartService.getCartResponse(cartId));
     }
 
     @Operation(summary = "Add an item to a shopping cart")
     @PostMapping("/{cartId}/items")
     public ResponseEntity<ShoppingCartResponse> addItemToCart(
             @PathVariable Long cartId,
-            @Valid @RequestBody CartItemRequest request) {
-        ShoppingCart updatedCart = shoppingCartService.addItemToCart(cartId, request);
-        return ResponseEntity.ok(ShoppingCartResponse.fromEntity(updatedCart));
+            @Valid @RequestBody CartItemRequest request,
+            @Parameter(description = "Retries with the same key return the first response instead of adding the item again.")
+            @RequestHeader(name = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
+        return ResponseEntity.ok(idempotencyStore.execute(idempotencyKey, List.of("add", cartId, request),
+                () -> priced(shoppingCartService.addItemToCart(cartId, request))));
     }
 
     @Operation(summary = "Remove an item from a shopping cart")
@@ -62,9 +155,11 @@ public class ShoppingCartController {
             @PathVariable Long cartId,
             @PathVariable Long productId,
             @Parameter(description = "Quantity to remove. If not specified, removes all of this product.", example = "1")
-            @RequestParam(required = false, defaultValue = "2147483647") int quantity) { // Max int to remove all if not specified
-        ShoppingCart updatedCart = shoppingCartService.removeItemFromCart(cartId, productId, quantity);
-        return ResponseEntity.ok(ShoppingCartResponse.fromEntity(updatedCart));
+            @RequestParam(required = false, defaultValue = "2147483647") int quantity, // Max int to remove all if not specified
+            @Parameter(description = "Retries with the same key return the first response instead of removing again.")
+            @RequestHeader(name = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
+        return ResponseEntity.ok(idempotencyStore.execute(idempotencyKey, List.of("remove", cartId, productId, quantity),
+                () -> priced(shoppingCartService.removeItemFromCart(cartId, productId, quantity))));
     }
 
     @Operation(summary = "Calculate total price of a shopping cart")
@@ -74,31 +169,97 @@ public class ShoppingCartController {
         return ResponseEntity.ok(totalPrice);
     }
 
+    @Operation(summary = "Refresh item prices of a shopping cart to the current product prices")
+    @PostMapping("/{cartId}/reprice")
+    public ResponseEntity<ShoppingCartResponse> repriceCart(@PathVariable Long cartId) {
+        ShoppingCart repricedCart = shoppingCartService.repriceCart(cartId);
+        return ResponseEntity.ok(priced(repricedCart));
+    }
+
+    @Operation(summary = "Refresh item prices of all active shopping carts; returns the number of repriced items")
+    @PostMapping("/reprice")
+    public ResponseEntity<Integer> repriceActiveCarts() {
+        return ResponseEntity.ok(shoppingCartService.repriceActiveCarts());
+    }
+
     @Operation(summary = "Checkout a shopping cart")
     @PostMapping("/{cartId}/checkout")
-    public ResponseEntity<ShoppingCartResponse> checkoutCart(@PathVariable Long cartId) {
-        ShoppingCart checkedOutCart = shoppingCartService.checkoutCart(cartId);
-        return ResponseEntity.ok(ShoppingCartResponse.fromEntity(checkedOutCart));
+    public ResponseEntity<ShoppingCartResponse> checkoutCart(
+            @PathVariable Long cartId,
+            @Parameter(description = "Retries with the same key return the checked out cart instead of failing as already checked out.")
+            @RequestHeader(name = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
+        return ResponseEntity.ok(idempotencyStore.execute(idempotencyKey, List.of("checkout", cartId),
+                () -> priced(checkoutCoalescer.checkout(cartId, idempotencyKey))));
     }
 
     @Operation(summary = "Generate a report of abandoned shopping carts for a given date")
     @GetMapping("/report/abandoned")
-    public ResponseEntity<List<ShoppingCartResponse>> getAbandonedCartsReport(
+    public CompletableFuture<ResponseEntity<List<ShoppingCartResponse>>> getAbandonedCartsReport(
             @Parameter(description = "Date for the report (YYYY-MM-DD)", example = "2023-10-26")
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
-        List<ShoppingCart> abandonedCarts = shoppingCartService.getAbandonedCartsForReport(date);
-        List<ShoppingCartResponse> responses = abandonedCarts.stream()
+        return reportResponse(reportBulkhead.submit(() -> shoppingCartService.getAbandonedCartsForReport(date).stream()
                 .map(ShoppingCartResponse::fromEntity)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(responses);
+                .collect(Collectors.toList())));
     }
 
     @Operation(summary = "Print report of abandoned carts to console (demonstration only)")
     @GetMapping("/report/abandoned/print")
-    public ResponseEntity<String> printAbandonedCartsReportToConsole(
+    public CompletableFuture<ResponseEntity<String>> printAbandonedCartsReportToConsole(
             @Parameter(description = "Date for the report (YYYY-MM-DD)", example = "2023-10-26")
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
-        shoppingCartService.printReport(date);
-        return ResponseEntity.ok("Report printed to console for " + date);
+        return reportResponse(reportBulkhead.submit(() -> {
+            shoppingCartService.printReport(date);
+            return "Report printed to console for " + date;
+        }));
+    }
+
+    @Operation(summary = "Start generating an abandoned carts report in the background; poll the returned job for its result")
+    @PostMapping("/report/abandoned/jobs")
+    public ResponseEntity<ReportJobResponse> submitAbandonedCartsReportJob(
+            @Parameter(description = "Date for the report (YYYY-MM-DD)", example = "2023-10-26")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        ReportJob job = reportJobService.submit(date);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/carts/report/abandoned/jobs/" + job.getId()))
+                .body(ReportJobResponse.fromJob(job));
+    }
+
+    @Operation(summary = "Get the status of an abandoned carts report job")
+    @GetMapping("/report/abandoned/jobs/{jobId}")
+    public ResponseEntity<ReportJobResponse> getAbandonedCartsReportJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(ReportJobResponse.fromJob(reportJobService.getJob(jobId)));
+    }
+
+    @Operation(summary = "Download the result of a completed abandoned carts report job")
+    @GetMapping("/report/abandoned/jobs/{jobId}/result")
+    public ResponseEntity<Resource> getAbandonedCartsReportJobResult(@PathVariable String jobId) {
+        ReportJob job = reportJobService.getJob(jobId);
+        if (job.getStatus() != ReportJob.Status.COMPLETED) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Report job " + jobId + " is " + job.getStatus());
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(new FileSystemResource(job.getResultFile()));
+    }
+
+    private ShoppingCartResponse priced(ShoppingCart cart) {
+        if (cart.isLargeCart()) {
+            return shoppingCartService.getCartResponse(cart.getId()); // Without its lines, which were never loaded
+        }
+        return cartPricingEngine.price(ShoppingCartResponse.fromEntity(cart));
+    }
+
+    // Reports run in the bulkhead; a full bulkhead or a timed out report answers 503 instead of waiting
+    private static <T> CompletableFuture<ResponseEntity<T>> reportResponse(CompletableFuture<T> report) {
+        return report.handle((body, error) -> {
+            if (error == null) {
+                return ResponseEntity.ok(body);
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof RejectedExecutionException || cause instanceof TimeoutException) {
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Report capacity exhausted, retry later", cause);
+            }
+            throw cause instanceof RuntimeException runtimeException ? runtimeException : new CompletionException(cause);
+        });
     }
 }
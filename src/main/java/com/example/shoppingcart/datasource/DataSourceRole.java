@@ -0,0 +1,15 @@
+package com.example.shoppingcart.datasource;
+
+/**
+ * Connection pools the routing data source can hand out connections from.
+ */
+public enum DataSourceRole {
+    PRIMARY,
+    REPLICA,
+    // Separate replica pool for reports, so long report queries cannot exhaust the pools serving carts
+    REPORTING;
+
+    public String poolName() {
+        return name().toLowerCase();
+    }
+}
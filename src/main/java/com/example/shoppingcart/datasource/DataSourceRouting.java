@@ -0,0 +1,55 @@
+package com.example.shoppingcart.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Thread-bound overrides for ReadWriteRoutingDataSource.
+ * A pinned pool only applies to read-only transactions, and only if set before the transaction
+ * executes its first statement.
+ */
+public final class DataSourceRouting {
+
+    private static final ThreadLocal<DataSourceRole> PINNED_ROLE = new ThreadLocal<>();
+
+    private DataSourceRouting() {
+    }
+
+    public static DataSourceRole pinnedRole() {
+        return PINNED_ROLE.get();
+    }
+
+    /**
+     * Runs the action with read-only work pinned to the primary, restoring the previous setting afterwards.
+     */
+    public static <T> T onPrimary(Supplier<T> action) {
+        return pinned(DataSourceRole.PRIMARY, action);
+    }
+
+    /**
+     * Runs the action with read-only work on the reporting pool, restoring the previous setting afterwards.
+     */
+    public static <T> T onReporting(Supplier<T> action) {
+        return pinned(DataSourceRole.REPORTING, action);
+    }
+
+    /**
+     * Runs the action with read-only work on the given pool, or unpinned if role is null.
+     */
+    public static <T> T onRole(DataSourceRole role, Supplier<T> action) {
+        return role != null ? pinned(role, action) : action.get();
+    }
+
+    private static <T> T pinned(DataSourceRole role, Supplier<T> action) {
+        DataSourceRole previous = PINNED_ROLE.get();
+        PINNED_ROLE.set(role);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                PINNED_ROLE.remove();
+            } else {
+                PINNED_ROLE.set(previous);
+            }
+        }
+    }
+}
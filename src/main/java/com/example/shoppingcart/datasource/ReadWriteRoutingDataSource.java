@@ -0,0 +1,51 @@
+package com.example.shoppingcart.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Routes connections of read-only transactions to the replica pool (or the pool pinned through
+ * DataSourceRouting) and everything else to the primary.
+ * Must sit behind a LazyConnectionDataSourceProxy: the read-only flag is only bound to the thread
+ * after the transaction manager has asked for a connection.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final Map<DataSourceRole, Counter> routedConnections = new EnumMap<>(DataSourceRole.class);
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, DataSource reporting,
+                                      MeterRegistry meterRegistry) {
+        setTargetDataSources(Map.of(
+                DataSourceRole.PRIMARY, primary,
+                DataSourceRole.REPLICA, replica,
+                DataSourceRole.REPORTING, reporting));
+        setDefaultTargetDataSource(primary);
+        for (DataSourceRole role : DataSourceRole.values()) {
+            routedConnections.put(role, Counter.builder("app.datasource.connections.routed")
+                    .description("Physical connections handed out per pool by the read/write router")
+                    .tag("pool", role.poolName())
+                    .register(meterRegistry));
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        DataSourceRole role = resolveRole();
+        routedConnections.get(role).increment();
+        return role;
+    }
+
+    private static DataSourceRole resolveRole() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return DataSourceRole.PRIMARY;
+        }
+        DataSourceRole pinned = DataSourceRouting.pinnedRole();
+        return pinned != null ? pinned : DataSourceRole.REPLICA;
+    }
+}
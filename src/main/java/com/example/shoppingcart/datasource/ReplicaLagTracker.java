@@ -0,0 +1,65 @@
+package com.example.shoppingcart.datasource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Read-your-writes for carts: remembers when each cart was last written and keeps reads of that cart
+ * on the primary until the configured replica lag has passed.
+ */
+@Component
+public class ReplicaLagTracker {
+
+    private static final int PURGE_THRESHOLD = 10_000;
+
+    private final Map<Long, Long> lastWriteMillis = new ConcurrentHashMap<>();
+    private final long maxLagMillis;
+    private final Clock clock;
+
+    @Autowired
+    public ReplicaLagTracker(@Value("${app.datasource.replica.max-lag:2s}") Duration maxLag) {
+        this(maxLag, Clock.systemUTC());
+    }
+
+    ReplicaLagTracker(Duration maxLag, Clock clock) {
+        this.maxLagMillis = maxLag.toMillis();
+        this.clock = clock;
+    }
+
+    public void recordWrite(Long cartId) {
+        if (cartId == null) {
+            return;
+        }
+        long now = clock.millis();
+        lastWriteMillis.put(cartId, now);
+        if (lastWriteMillis.size() > PURGE_THRESHOLD) {
+            lastWriteMillis.values().removeIf(writtenAt -> now - writtenAt >= maxLagMillis);
+        }
+    }
+
+    public boolean requiresPrimary(Long cartId) {
+        Long writtenAt = lastWriteMillis.get(cartId);
+        if (writtenAt == null) {
+            return false;
+        }
+        if (clock.millis() - writtenAt < maxLagMillis) {
+            return true;
+        }
+        lastWriteMillis.remove(cartId, writtenAt);
+        return false;
+    }
+
+    /**
+     * Runs a read of the given cart, pinned to the primary if the replica may not have caught up yet.
+     */
+    public <T> T read(Long cartId, Supplier<T> action) {
+        return requiresPrimary(cartId) ? DataSourceRouting.onPrimary(action) : action.get();
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.shoppingcart.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+
+/**
+ * Carts requested together: the ones found in request order, and the requested ids without a cart.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CartBatchResponse {
+    private List<ShoppingCartResponse> carts;
+    private List<Long> missingIds;
+}
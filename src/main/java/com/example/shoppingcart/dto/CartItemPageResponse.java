@@ -0,0 +1,25 @@
+package com.example.shoppingcart.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+
+/**
+ * One page of a cart's lines in item id order, at their price snapshots.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CartItemPageResponse {
+    private Long cartId;
+    private int page;
+    private int size;
+    // Lines in the whole cart
+    private long itemCount;
+    private List<CartItemResponse> items;
+}
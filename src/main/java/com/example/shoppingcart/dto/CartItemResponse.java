@@ -2,6 +2,7 @@ package com.example.shoppingcart.dto;
 
 
 import com.example.shoppingcart.model.CartItem;
+import jakarta.persistence.Tuple;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -18,9 +19,13 @@ public class CartItemResponse {
     private Long id;
     private Long productId;
     private String productName;
+    private String productType;
     private BigDecimal productPrice;
     private int quantity;
     private BigDecimal itemTotalPrice;
+    // Taken off itemTotalPrice by a promotion, named by promotion
+    private BigDecimal discount;
+    private String promotion;
 
 
     public static CartItemResponse fromEntity(CartItem cartItem) {
@@ -28,9 +33,26 @@ public class CartItemResponse {
                 .id(cartItem.getId())
                 .productId(cartItem.getProduct().getId())
                 .productName(cartItem.getProduct().getName())
-                .productPrice(cartItem.getProduct().getPrice())
+                .productType(cartItem.getProduct().getType())
+                .productPrice(cartItem.getChargedUnitPrice())
                 .quantity(cartItem.getQuantity())
                 .itemTotalPrice(cartItem.getItemTotalPrice())
+                .discount(BigDecimal.ZERO)
+                .build();
+    }
+
+    public static CartItemResponse fromRow(Tuple row) {
+        BigDecimal price = row.get("productPrice", BigDecimal.class);
+        int quantity = row.get("quantity", Integer.class);
+        return CartItemResponse.builder()
+                .id(row.get("itemId", Long.class))
+                .productId(row.get("productId", Long.class))
+                .productName(row.get("productName", String.class))
+                .productType(row.get("productType", String.class))
+                .productPrice(price)
+                .quantity(quantity)
+                .itemTotalPrice(price.multiply(BigDecimal.valueOf(quantity)))
+                .discount(BigDecimal.ZERO)
                 .build();
     }
 }
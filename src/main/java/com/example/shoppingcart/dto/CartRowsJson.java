@@ -0,0 +1,72 @@
+package com.example.shoppingcart.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import jakarta.persistence.Tuple;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Full cart view written by its serializer straight from the rows of
+ * {@code ShoppingCartRepository.findCartRowsById} to the JsonGenerator, in any format the ObjectMapper
+ * produces. The document is identical to that of {@link ShoppingCartResponse#fromRows} without
+ * promotions, but no ShoppingCartResponse or CartItemResponse is built. Expects at least one row, of a cart
+ * that is not large.
+ */
+@JsonSerialize(using = CartRowsJson.Serializer.class)
+public record CartRowsJson(List<Tuple> rows) {
+
+    // Field order and values follow ShoppingCartResponse and CartItemResponse
+    static class Serializer extends JsonSerializer<CartRowsJson> {
+
+        @Override
+        public void serialize(CartRowsJson cart, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            Tuple header = cart.rows().get(0);
+            gen.writeStartObject();
+            gen.writeNumberField("id", header.get("cartId", Long.class));
+            provider.defaultSerializeField("status", header.get("status"), gen);
+            gen.writeBooleanField("largeCart", false);
+            // Sized like the DTO's item list, so binary formats write the same definite-length array.
+            // An empty cart has one row, without item columns, from the left join.
+            int lines = header.get("itemId") != null ? cart.rows().size() : 0;
+            gen.writeFieldName("items");
+            gen.writeStartArray(cart.rows(), lines);
+            BigDecimal total = BigDecimal.ZERO;
+            for (int i = 0; i < lines; i++) {
+                Tuple row = cart.rows().get(i);
+                Long itemId = row.get("itemId", Long.class);
+                BigDecimal price = row.get("productPrice", BigDecimal.class);
+                int quantity = row.get("quantity", Integer.class);
+                BigDecimal itemTotal = price.multiply(BigDecimal.valueOf(quantity));
+                total = total.add(itemTotal);
+
+                gen.writeStartObject();
+                gen.writeNumberField("id", itemId);
+                gen.writeNumberField("productId", row.get("productId", Long.class));
+                gen.writeStringField("productName", row.get("productName", String.class));
+                gen.writeStringField("productType", row.get("productType", String.class));
+                gen.writeNumberField("productPrice", price);
+                gen.writeNumberField("quantity", quantity);
+                gen.writeNumberField("itemTotalPrice", itemTotal);
+                gen.writeNumberField("discount", BigDecimal.ZERO);
+                gen.writeNullField("promotion");
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+            gen.writeNumberField("itemCount", lines);
+            gen.writeNumberField("subtotalPrice", total);
+            gen.writeNumberField("discountTotal", BigDecimal.ZERO);
+            gen.writeNumberField("totalPrice", total);
+            gen.writeNullField("cartPromotion");
+            // Dates through the mapper, so they follow its date settings like the DTO's do
+            provider.defaultSerializeField("createdAt", header.get("createdAt"), gen);
+            provider.defaultSerializeField("lastModifiedAt", header.get("lastModifiedAt"), gen);
+            provider.defaultSerializeField("checkedOutAt", header.get("checkedOutAt"), gen);
+            gen.writeEndObject();
+        }
+    }
+}
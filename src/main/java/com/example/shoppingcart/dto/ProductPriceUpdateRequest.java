@@ -0,0 +1,48 @@
+package com.example.shoppingcart.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Digits;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Price change applied to every product matching the filters: a percentage or an absolute amount, not both.
+ * At least one of type, minId and maxId must be given; the id bounds are inclusive.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductPriceUpdateRequest {
+
+    private String type;
+
+    private Long minId;
+
+    private Long maxId;
+
+    @DecimalMin(value = "-100", inclusive = false, message = "Percent change must be greater than -100")
+    @Digits(integer = 8, fraction = 2, message = "Percent change must have at most 2 decimal places")
+    private BigDecimal percentChange;
+
+    @Digits(integer = 8, fraction = 2, message = "Amount change must have at most 2 decimal places")
+    private BigDecimal amountChange;
+
+    @JsonIgnore
+    @AssertTrue(message = "Exactly one of percentChange and amountChange must be given")
+    public boolean isSingleChange() {
+        return (percentChange == null) != (amountChange == null);
+    }
+
+    @JsonIgnore
+    @AssertTrue(message = "At least one of type, minId and maxId must be given")
+    public boolean isFiltered() {
+        return type != null || minId != null || maxId != null;
+    }
+}
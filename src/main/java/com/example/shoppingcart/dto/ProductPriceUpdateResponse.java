@@ -0,0 +1,18 @@
+package com.example.shoppingcart.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductPriceUpdateResponse {
+    private int updatedProducts;
+    // Matched products left unchanged because their new price would drop below the minimum price
+    private int skippedProducts;
+    private int chunks;
+}
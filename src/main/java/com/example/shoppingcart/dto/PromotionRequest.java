@@ -0,0 +1,68 @@
+package com.example.shoppingcart.dto;
+
+import com.example.shoppingcart.model.Promotion;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Digits;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * A new promotion. PERCENT_OFF_TYPE needs productType and percentOff, BUY_X_GET_Y needs productType,
+ * buyQuantity and freeQuantity, CART_THRESHOLD needs minimumSubtotal and amountOff.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PromotionRequest {
+
+    @NotBlank(message = "Promotion name cannot be empty")
+    private String name;
+
+    @NotNull(message = "Promotion kind cannot be null")
+    private Promotion.Kind kind;
+
+    private String productType;
+
+    @DecimalMin(value = "0", inclusive = false, message = "Percent off must be greater than 0")
+    @DecimalMax(value = "100", message = "Percent off must be at most 100")
+    @Digits(integer = 3, fraction = 2, message = "Percent off must have at most 2 decimal places")
+    private BigDecimal percentOff;
+
+    @Min(value = 1, message = "Buy quantity must be at least 1")
+    private Integer buyQuantity;
+
+    @Min(value = 1, message = "Free quantity must be at least 1")
+    private Integer freeQuantity;
+
+    @DecimalMin(value = "0", message = "Minimum subtotal cannot be negative")
+    @Digits(integer = 8, fraction = 2, message = "Minimum subtotal must have at most 2 decimal places")
+    private BigDecimal minimumSubtotal;
+
+    @DecimalMin(value = "0.01", message = "Amount off must be greater than 0")
+    @Digits(integer = 8, fraction = 2, message = "Amount off must have at most 2 decimal places")
+    private BigDecimal amountOff;
+
+    @JsonIgnore
+    @AssertTrue(message = "The fields required by the promotion kind must be given")
+    public boolean isComplete() {
+        if (kind == null) {
+            return true; // Reported by @NotNull
+        }
+        return switch (kind) {
+            case PERCENT_OFF_TYPE -> productType != null && percentOff != null;
+            case BUY_X_GET_Y -> productType != null && buyQuantity != null && freeQuantity != null;
+            case CART_THRESHOLD -> minimumSubtotal != null && amountOff != null;
+        };
+    }
+}
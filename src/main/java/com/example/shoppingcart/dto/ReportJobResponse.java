@@ -0,0 +1,36 @@
+package com.example.shoppingcart.dto;
+
+import com.example.shoppingcart.service.ReportJob;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReportJobResponse {
+    private String id;
+    private LocalDate date;
+    private ReportJob.Status status;
+    private LocalDateTime createdAt;
+    private LocalDateTime completedAt;
+    private String error;
+
+
+    public static ReportJobResponse fromJob(ReportJob job) {
+        return ReportJobResponse.builder()
+                .id(job.getId())
+                .date(job.getDate())
+                .status(job.getStatus())
+                .createdAt(job.getCreatedAt())
+                .completedAt(job.getCompletedAt())
+                .error(job.getError())
+                .build();
+    }
+}
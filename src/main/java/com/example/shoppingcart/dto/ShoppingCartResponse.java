@@ -1,7 +1,10 @@
 package com.example.shoppingcart.dto;
 
 
+import com.example.shoppingcart.model.CartItem;
 import com.example.shoppingcart.model.ShoppingCart;
+import com.example.shoppingcart.repository.CartSummary;
+import jakarta.persistence.Tuple;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -9,6 +12,7 @@ import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -20,8 +24,17 @@ import java.util.stream.Collectors;
 public class ShoppingCartResponse {
     private Long id;
     private ShoppingCart.CartStatus status;
+    // A large cart's view leaves items null; its lines are read page by page from /api/carts/{id}/items
+    private Boolean largeCart;
     private List<CartItemResponse> items;
+    // Number of lines, also when items is left null
+    private Integer itemCount;
+    // Sum of the line totals at their price snapshots, before promotions
+    private BigDecimal subtotalPrice;
+    // Line discounts plus the cart promotion's amount off
+    private BigDecimal discountTotal;
     private BigDecimal totalPrice;
+    private String cartPromotion;
     private LocalDateTime createdAt;
     private LocalDateTime lastModifiedAt;
     private LocalDateTime checkedOutAt;
@@ -33,17 +46,94 @@ public class ShoppingCartResponse {
                 .collect(Collectors.toList());
 
         BigDecimal total = cart.getItems().stream()
-                .map(item -> item.getProduct().getPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
+                .map(CartItem::getItemTotalPrice)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
 
         return ShoppingCartResponse.builder()
                 .id(cart.getId())
                 .status(cart.getStatus())
+                .largeCart(cart.isLargeCart())
                 .items(itemResponses)
+                .itemCount(itemResponses.size())
+                .subtotalPrice(total)
+                .discountTotal(BigDecimal.ZERO)
                 .totalPrice(total)
                 .createdAt(cart.getCreatedAt())
                 .lastModifiedAt(cart.getLastModifiedAt())
                 .checkedOutAt(cart.getCheckedOutAt())
                 .build();
     }
+
+    /**
+     * Summary view: cart header and total, items and the other prices are left null.
+     */
+    public static ShoppingCartResponse fromSummary(CartSummary summary, BigDecimal total) {
+        return ShoppingCartResponse.builder()
+                .id(summary.getId())
+                .status(summary.getStatus())
+                .totalPrice(total)
+                .createdAt(summary.getCreatedAt())
+                .lastModifiedAt(summary.getLastModifiedAt())
+                .checkedOutAt(summary.getCheckedOutAt())
+                .build();
+    }
+
+    /**
+     * Builds one full view per cart from the rows of {@code ShoppingCartRepository.findCartRowsByIdIn},
+     * in row order. The rows of a cart must be adjacent.
+     */
+    public static List<ShoppingCartResponse> fromRowsOfCarts(List<Tuple> rows) {
+        List<ShoppingCartResponse> carts = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= rows.size(); i++) {
+            if (i == rows.size() || !rows.get(i).get("cartId").equals(rows.get(start).get("cartId"))) {
+                carts.add(fromRows(rows.subList(start, i)));
+                start = i;
+            }
+        }
+        return carts;
+    }
+
+    /**
+     * Builds the full view from the rows of {@code ShoppingCartRepository.findCartRowsById}.
+     * Expects at least one row; the cart columns are read from the first. The rows of a large cart have no
+     * lines, so its view gets the header only, for ShoppingCartService to add the line count and totals.
+     */
+    public static ShoppingCartResponse fromRows(List<Tuple> rows) {
+        Tuple header = rows.get(0);
+        if (Boolean.TRUE.equals(header.get("largeCart"))) {
+            return ShoppingCartResponse.builder()
+                    .id(header.get("cartId", Long.class))
+                    .status(header.get("status", ShoppingCart.CartStatus.class))
+                    .largeCart(true)
+                    .createdAt(header.get("createdAt", LocalDateTime.class))
+                    .lastModifiedAt(header.get("lastModifiedAt", LocalDateTime.class))
+                    .checkedOutAt(header.get("checkedOutAt", LocalDateTime.class))
+                    .build();
+        }
+        List<CartItemResponse> itemResponses = new ArrayList<>(rows.size());
+        BigDecimal total = BigDecimal.ZERO;
+        for (Tuple row : rows) {
+            if (row.get("itemId") == null) {
+                continue; // Empty cart: the left join yields one row without item columns
+            }
+            CartItemResponse item = CartItemResponse.fromRow(row);
+            itemResponses.add(item);
+            total = total.add(item.getItemTotalPrice());
+        }
+
+        return ShoppingCartResponse.builder()
+                .id(header.get("cartId", Long.class))
+                .status(header.get("status", ShoppingCart.CartStatus.class))
+                .largeCart(false)
+                .items(itemResponses)
+                .itemCount(itemResponses.size())
+                .subtotalPrice(total)
+                .discountTotal(BigDecimal.ZERO)
+                .totalPrice(total)
+                .createdAt(header.get("createdAt", LocalDateTime.class))
+                .lastModifiedAt(header.get("lastModifiedAt", LocalDateTime.class))
+                .checkedOutAt(header.get("checkedOutAt", LocalDateTime.class))
+                .build();
+    }
 }
@@ -0,0 +1,18 @@
+package com.example.shoppingcart.dto;
+
+import jakarta.validation.constraints.Min;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockRequest {
+
+    // Units received; the first delivery starts tracking the product's stock
+    @Min(value = 1, message = "Quantity must be at least 1")
+    private int quantity;
+}
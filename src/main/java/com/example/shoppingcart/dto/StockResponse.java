@@ -0,0 +1,18 @@
+package com.example.shoppingcart.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockResponse {
+    private Long productId;
+    // Units neither sold nor reserved: the shared pool plus this node's lease; other nodes' leases are not counted
+    private long available;
+    private long sold;
+}
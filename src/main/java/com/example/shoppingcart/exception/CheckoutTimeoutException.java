@@ -0,0 +1,12 @@
+package com.example.shoppingcart.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class CheckoutTimeoutException extends RuntimeException {
+
+    public CheckoutTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.shoppingcart.idempotency;
+
+import com.example.shoppingcart.exception.IdempotencyKeyReusedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Recent results of requests carrying an Idempotency-Key header, so a retried request is answered
+ * from memory instead of running the mutation again. A retry that arrives while the first attempt is
+ * still running waits for its result. Failed attempts are not remembered and may be retried.
+ * Entries expire after the TTL, and the oldest are evicted beyond max-entries. Attempts still running are
+ * never expired or evicted, so a retry always finds them; the store exceeds max-entries by at most the
+ * number of requests in progress.
+ */
+@Component
+public class IdempotencyStore {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final LongSupplier nanoClock;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Insertion order; with a single TTL this is also expiry order
+    private final Queue<Entry> order = new ConcurrentLinkedQueue<>();
+
+    @Autowired
+    public IdempotencyStore(@Value("${app.idempotency.ttl:1h}") Duration ttl,
+                            @Value("${app.idempotency.max-entries:10000}") int maxEntries) {
+        this(ttl, maxEntries, System::nanoTime);
+    }
+
+    IdempotencyStore(Duration ttl, int maxEntries, LongSupplier nanoClock) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Runs the action once per key and returns its result to every request with that key.
+     * The fingerprint identifies the request the key was first used with; reusing the key for a
+     * different request fails with IdempotencyKeyReusedException. A null key always runs the action.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Object fingerprint, Supplier<T> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        long now = nanoClock.getAsLong();
+        Entry candidate = new Entry(key, fingerprint, new CompletableFuture<>(), now + ttlNanos);
+        while (true) {
+            Entry existing = entries.putIfAbsent(key, candidate);
+            if (existing == null) {
+                break;
+            }
+            if (existing.isExpired(now)) {
+                entries.remove(key, existing);
+                continue;
+            }
+            if (!existing.fingerprint().equals(fingerprint)) {
+                throw new IdempotencyKeyReusedException("Idempotency key " + key + " was already used for a different request");
+            }
+            return (T) await(existing.result());
+        }
+        order.add(candidate);
+        evict(now);
+        try {
+            T result = action.get();
+            candidate.result().complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            entries.remove(key, candidate);
+            candidate.result().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    // Oldest first, passing over attempts in progress
+    private void evict(long now) {
+        Iterator<Entry> oldest = order.iterator();
+        while (oldest.hasNext()) {
+            Entry entry = oldest.next();
+            if (!entry.result().isDone()) {
+                continue;
+            }
+            if (entries.size() <= maxEntries && !entry.isExpired(now)) {
+                return;
+            }
+            oldest.remove();
+            entries.remove(entry.key(), entry);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    private record Entry(String key, Object fingerprint, CompletableFuture<Object> result, long expiresAtNanos) {
+
+        boolean isExpired(long now) {
+            return result.isDone() && now - expiresAtNanos > 0;
+        }
+    }
+}
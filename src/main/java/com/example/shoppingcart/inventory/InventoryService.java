@@ -0,0 +1,281 @@
+package com.example.shoppingcart.inventory;
+
+import com.example.shoppingcart.dto.StockResponse;
+import com.example.shoppingcart.exception.InsufficientStockException;
+import com.example.shoppingcart.exception.ResourceNotFoundException;
+import com.example.shoppingcart.model.ProductStock;
+import com.example.shoppingcart.repository.ProductRepository;
+import com.example.shoppingcart.repository.ProductStockRepository;
+import com.example.shoppingcart.sharding.ShardRouting;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stock of tracked products. Each node leases units from the shared pool in product_stock (shard 0) into a
+ * StockCounter per product, lease-size units beyond the current need at a time, and reserves from it without
+ * locks; only a reservation that finds the counter empty goes to the table, one lease at a time per product,
+ * with the other reservations of the product waiting for it. Leases run on the stock pool, not in a
+ * transaction of their own on the primary pool: the caller's cart transaction already holds a primary
+ * connection, and needing a second one from the same pool could exhaust it with every holder waiting. Sales
+ * and unreserved leased units go back to the table in one batch per reconciliation. A node that stops without
+ * reconciling loses at most its leased units: they stay out of the pool until stock is added again.
+ * <p>
+ * Reservations are taken in the caller's transaction and handed back if it rolls back; releases and sales
+ * apply once it commits. Products that start being tracked on another node are picked up at the next
+ * reconciliation.
+ */
+@Service
+public class InventoryService implements DisposableBean {
+
+    private final ProductStockRepository productStockRepository;
+    private final ProductRepository productRepository;
+    private final TransactionTemplate stockTransaction;
+    private final JdbcTemplate leaseJdbc;
+    private final int leaseSize;
+    private final boolean reserveOnAdd;
+    private final Duration reservationTtl;
+    private final int stripes = Runtime.getRuntime().availableProcessors();
+    private final Map<Long, StockCounter> counters = new ConcurrentHashMap<>();
+    private final Map<Long, CompletableFuture<Void>> leases = new ConcurrentHashMap<>();
+
+    @Autowired
+    public InventoryService(ProductStockRepository productStockRepository,
+                            ProductRepository productRepository,
+                            PlatformTransactionManager transactionManager,
+                            @Qualifier("stockDataSource") DataSource stockDataSource,
+                            @Value("${app.inventory.lease-size:20}") int leaseSize,
+                            @Value("${app.inventory.reserve-on-add:true}") boolean reserveOnAdd,
+                            @Value("${app.inventory.reservation-ttl:15m}") Duration reservationTtl) {
+        this.productStockRepository = productStockRepository;
+        this.productRepository = productRepository;
+        // Own transaction on shard 0, even when called inside a cart transaction on another shard
+        this.stockTransaction = new TransactionTemplate(transactionManager);
+        this.stockTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.leaseJdbc = new JdbcTemplate(stockDataSource);
+        this.leaseSize = leaseSize;
+        this.reserveOnAdd = reserveOnAdd;
+        this.reservationTtl = reservationTtl;
+        refreshTrackedProducts();
+    }
+
+    /**
+     * Whether adding to a cart reserves stock; otherwise stock is only taken at checkout.
+     */
+    public boolean reservesOnAdd() {
+        return reserveOnAdd;
+    }
+
+    public Duration reservationTtl() {
+        return reservationTtl;
+    }
+
+    /**
+     * Reserves units of the product for the current transaction.
+     *
+     * @return the units reserved: quantity, or 0 if the product's stock is not tracked
+     * @throws InsufficientStockException if fewer units are in stock
+     */
+    public int reserve(Long productId, int quantity) {
+        StockCounter counter = counters.get(productId);
+        if (counter == null || quantity <= 0) {
+            return 0;
+        }
+        int taken = counter.take(quantity);
+        if (taken < quantity) {
+            try {
+                taken += lease(productId, counter, quantity - taken);
+            } catch (RuntimeException e) {
+                counter.put(taken);
+                throw e;
+            }
+        }
+        if (taken < quantity) {
+            counter.put(taken);
+            throw new InsufficientStockException("Insufficient stock for product with ID: " + productId);
+        }
+        afterRollback(() -> counter.put(quantity));
+        return quantity;
+    }
+
+    /**
+     * Returns reserved units to stock once the current transaction commits.
+     */
+    public void release(Long productId, int quantity) {
+        if (quantity > 0) {
+            StockCounter counter = counter(productId);
+            afterCommit(() -> counter.put(quantity));
+        }
+    }
+
+    /**
+     * Counts reserved units as sold once the current transaction commits.
+     */
+    public void sell(Long productId, int quantity) {
+        if (quantity > 0) {
+            StockCounter counter = counter(productId);
+            afterCommit(() -> counter.sold(quantity));
+        }
+    }
+
+    /**
+     * Adds received units to the shared pool, tracking the product's stock from its first delivery on.
+     */
+    public StockResponse addStock(Long productId, int quantity) {
+        ShardRouting.onShard(0, () -> stockTransaction.execute(status -> {
+            productRepository.findByIdAndDeletedFalse(productId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Product not found with ID: " + productId));
+            if (productStockRepository.reconcile(productId, quantity, 0) == 0) {
+                productStockRepository.save(ProductStock.builder().productId(productId).available(quantity).build());
+            }
+            return null;
+        }));
+        counter(productId);
+        return getStock(productId);
+    }
+
+    public StockResponse getStock(Long productId) {
+        ProductStock stock = ShardRouting.onShard(0, () -> stockTransaction.execute(status ->
+                productStockRepository.findById(productId)
+                        .orElseThrow(() -> new ResourceNotFoundException("No stock tracked for product with ID: " + productId))));
+        StockCounter counter = counters.get(productId);
+        return StockResponse.builder()
+                .productId(productId)
+                .available(stock.getAvailable() + (counter != null ? counter.units() : 0))
+                .sold(stock.getSold() + (counter != null ? counter.unreconciledSales() : 0))
+                .build();
+    }
+
+    /**
+     * Writes the sales counted since the last run and returns every unreserved leased unit to the shared
+     * pool, in one transaction on shard 0; then picks up products tracked since. If the transaction fails,
+     * the units and sales are kept for the next run.
+     *
+     * @return the number of products written
+     */
+    public synchronized int reconcile() {
+        Map<Long, long[]> changes = new HashMap<>();
+        counters.forEach((productId, counter) -> {
+            long[] change = {counter.drain(), counter.takeSales()};
+            if (change[0] > 0 || change[1] > 0) {
+                changes.put(productId, change);
+            }
+        });
+        try {
+            ShardRouting.onShard(0, () -> stockTransaction.execute(status -> {
+                changes.forEach((productId, change) ->
+                        productStockRepository.reconcile(productId, (int) change[0], change[1]));
+                return null;
+            }));
+        } catch (RuntimeException e) {
+            changes.forEach((productId, change) -> {
+                counters.get(productId).put((int) change[0]);
+                counters.get(productId).sold((int) change[1]);
+            });
+            throw e;
+        }
+        refreshTrackedProducts();
+        return changes.size();
+    }
+
+    // A burst of reservations that empty the counter together queues on one lease instead of each taking its
+    // own: the first runs it, the others wait for it without holding a lock and then take from the counter
+    // again. A reservation still short after waiting once leases for itself.
+    private int lease(Long productId, StockCounter counter, int needed) {
+        int taken = 0;
+        boolean waited = false;
+        while (true) {
+            taken += counter.take(needed - taken); // Filled by a lease that finished meanwhile
+            int missing = needed - taken;
+            if (missing == 0) {
+                return needed;
+            }
+            CompletableFuture<Void> lease = new CompletableFuture<>();
+            CompletableFuture<Void> running = waited ? null : leases.putIfAbsent(productId, lease);
+            if (running != null) {
+                running.join();
+                waited = true;
+                continue;
+            }
+            try {
+                int leased = takeFromPool(productId, missing + leaseSize);
+                if (leased == 0) {
+                    leased = takeFromPool(productId, missing);
+                }
+                counter.put(leased - missing);
+                return leased >= missing ? needed : taken;
+            } catch (RuntimeException e) {
+                counter.put(taken);
+                throw e;
+            } finally {
+                leases.remove(productId, lease);
+                lease.complete(null);
+            }
+        }
+    }
+
+    // One auto-committed statement on the stock pool
+    private int takeFromPool(Long productId, int quantity) {
+        int updated = leaseJdbc.update("update product_stock set available = available - ? " +
+                "where product_id = ? and available >= ?", quantity, productId, quantity);
+        return updated == 1 ? quantity : 0;
+    }
+
+    private StockCounter counter(Long productId) {
+        return counters.computeIfAbsent(productId, id -> new StockCounter(stripes));
+    }
+
+    private void refreshTrackedProducts() {
+        ShardRouting.onShard(0, () -> stockTransaction.execute(status -> productStockRepository.findAllProductIds()))
+                .forEach(this::counter);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static void afterRollback(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        action.run();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Hands this node's leased units and sales back to the table on shutdown.
+     */
+    @Override
+    public void destroy() {
+        reconcile();
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.shoppingcart.inventory;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Units of one product leased by this node, spread over striped atomic counters so that concurrent
+ * reservations of a hot product update different cache lines instead of contending on one. Each thread starts
+ * at its own stripe and only moves on to the others when that one runs dry. Each stripe also counts the sales
+ * committed since the last reconciliation.
+ */
+final class StockCounter {
+
+    // Longs per stripe: 128 bytes, so two stripes never share a cache line. Units at offset 0, sales at 1.
+    private static final int PAD = 16;
+    private static final int SOLD = 1;
+
+    private final AtomicLongArray stripes;
+    private final int mask;
+
+    StockCounter(int stripeCount) {
+        int count = stripeCount <= 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        this.stripes = new AtomicLongArray(count * PAD);
+        this.mask = count - 1;
+    }
+
+    /**
+     * Takes up to quantity units, fewer if the counter holds fewer.
+     *
+     * @return the units taken
+     */
+    int take(int quantity) {
+        int home = home();
+        int taken = 0;
+        for (int i = 0; i <= mask && taken < quantity; i++) {
+            int index = ((home + i) & mask) * PAD;
+            while (true) {
+                long current = stripes.get(index);
+                if (current == 0) {
+                    break;
+                }
+                long part = Math.min(current, quantity - taken);
+                if (stripes.compareAndSet(index, current, current - part)) {
+                    taken += (int) part;
+                    break;
+                }
+            }
+        }
+        return taken;
+    }
+
+    void put(int quantity) {
+        if (quantity > 0) {
+            stripes.addAndGet(home() * PAD, quantity);
+        }
+    }
+
+    /**
+     * Empties every stripe. Reservations running meanwhile may find the counter empty and lease again.
+     *
+     * @return the units removed
+     */
+    int drain() {
+        long drained = 0;
+        for (int i = 0; i <= mask; i++) {
+            drained += stripes.getAndSet(i * PAD, 0);
+        }
+        return (int) drained;
+    }
+
+    long units() {
+        long units = 0;
+        for (int i = 0; i <= mask; i++) {
+            units += stripes.get(i * PAD);
+        }
+        return units;
+    }
+
+    void sold(int quantity) {
+        stripes.addAndGet(home() * PAD + SOLD, quantity);
+    }
+
+    long unreconciledSales() {
+        long sales = 0;
+        for (int i = 0; i <= mask; i++) {
+            sales += stripes.get(i * PAD + SOLD);
+        }
+        return sales;
+    }
+
+    /**
+     * Resets the sales count.
+     *
+     * @return the sales counted since the previous call
+     */
+    long takeSales() {
+        long sales = 0;
+        for (int i = 0; i <= mask; i++) {
+            sales += stripes.getAndSet(i * PAD + SOLD, 0);
+        }
+        return sales;
+    }
+
+    private int home() {
+        return (int) Thread.currentThread().threadId() & mask;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.shoppingcart.inventory;
+
+import com.example.shoppingcart.model.CartItem;
+import com.example.shoppingcart.repository.CartItemRepository;
+import com.example.shoppingcart.repository.ShoppingCartRepository;
+import com.example.shoppingcart.sharding.ShardRouter;
+import com.example.shoppingcart.sharding.ShardRouting;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Every interval, releases the reservations of cart lines whose reservedUntil has passed, on every shard,
+ * then reconciles InventoryService's counters with the product_stock table. Expired reservations are
+ * released batch-size carts per transaction, each cart locked like a cart mutation locks it, so a line is
+ * never released and changed at the same time.
+ */
+@Component
+public class StockReconciler implements DisposableBean {
+
+    private final InventoryService inventoryService;
+    private final CartItemRepository cartItemRepository;
+    private final ShoppingCartRepository shoppingCartRepository;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final ThreadPoolTaskScheduler scheduler;
+
+    @Autowired
+    public StockReconciler(InventoryService inventoryService,
+                           CartItemRepository cartItemRepository,
+                           ShoppingCartRepository shoppingCartRepository,
+                           ShardRouter shardRouter,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${app.inventory.reconcile-interval:5s}") Duration interval,
+                           @Value("${app.inventory.batch-size:500}") int batchSize) {
+        this.inventoryService = inventoryService;
+        this.cartItemRepository = cartItemRepository;
+        this.shoppingCartRepository = shoppingCartRepository;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.scheduler = new ThreadPoolTaskScheduler();
+        this.scheduler.setPoolSize(1);
+        this.scheduler.setThreadNamePrefix("stock-reconcile-");
+        this.scheduler.initialize();
+        this.scheduler.scheduleWithFixedDelay(this::reconcile, Instant.now().plus(interval), interval);
+    }
+
+    /**
+     * Runs one pass: expired reservations on all shards, then the counters.
+     *
+     * @return the number of cart lines whose reservation was released
+     */
+    public int reconcile() {
+        LocalDateTime now = LocalDateTime.now();
+        int released = 0;
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            released += ShardRouting.onShard(shard, () -> releaseExpiredOnCurrentShard(now));
+        }
+        inventoryService.reconcile();
+        return released;
+    }
+
+    private int releaseExpiredOnCurrentShard(LocalDateTime now) {
+        PageRequest batch = PageRequest.of(0, batchSize);
+        int released = 0;
+        while (true) {
+            // Lines released by the batch, or null once no cart holds an expired reservation
+            Integer lines = transactionTemplate.execute(status -> {
+                List<Long> cartIds = cartItemRepository.findCartIdsWithExpiredReservations(now, batch);
+                if (cartIds.isEmpty()) {
+                    return null;
+                }
+                int batchLines = 0;
+                for (Long cartId : cartIds) {
+                    shoppingCartRepository.lockById(cartId);
+                    for (CartItem item : cartItemRepository.findByShoppingCartIdAndReservedUntilBefore(cartId, now)) {
+                        inventoryService.release(item.getProduct().getId(), item.getReservedQuantity());
+                        item.setReservedQuantity(0);
+                        item.setReservedUntil(null);
+                        batchLines++;
+                    }
+                }
+                return batchLines;
+            });
+            if (lines == null) {
+                break;
+            }
+            released += lines;
+        }
+        return released;
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdown();
+    }
+}
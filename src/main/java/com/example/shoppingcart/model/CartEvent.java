@@ -0,0 +1,56 @@
+package com.example.shoppingcart.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Immutable change to a cart in event-sourced mode. Versions are consecutive per cart, starting at 1;
+ * the unique constraint rejects a second writer appending the same version.
+ */
+@Entity
+@Table(name = "cart_events", uniqueConstraints = @UniqueConstraint(columnNames = {"cart_id", "version"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CartEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "cart_id", nullable = false, updatable = false)
+    private Long cartId;
+
+    @Column(nullable = false, updatable = false)
+    private long version;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, updatable = false)
+    private Type type;
+
+    @Column(updatable = false)
+    private Long productId;
+
+    @Column(updatable = false)
+    private Integer quantity;
+
+    @Column(precision = 10, scale = 2, updatable = false)
+    private BigDecimal unitPrice;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime occurredAt;
+
+    public enum Type {
+        ITEM_ADDED,
+        ITEM_REMOVED,
+        PRICE_CHANGED,
+        CHECKED_OUT
+    }
+}
@@ -6,11 +6,14 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "cart_items")
+@Table(name = "cart_items", uniqueConstraints = @UniqueConstraint(columnNames = {"shopping_cart_id", "product_id"}),
+        indexes = @Index(name = "idx_cart_items_reserved_until", columnList = "reserved_until"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -32,11 +35,33 @@ public class CartItem {
     @Column(nullable = false)
     private int quantity;
 
+    // Product price captured when the line was added; later price changes only apply after a re-price
+    @Column(nullable = false, precision = 10, scale = 2)
+    private BigDecimal unitPrice;
+
+    // Units of a tracked product held for this line until reservedUntil; at checkout, the units sold
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private int reservedQuantity;
+
+    private LocalDateTime reservedUntil;
+
+
+    /**
+     * The snapshot price, falling back to the live product price for lines that were never persisted.
+     */
+    public BigDecimal getChargedUnitPrice() {
+        if (unitPrice != null) {
+            return unitPrice;
+        }
+        return product == null ? null : product.getPrice();
+    }
 
     public BigDecimal getItemTotalPrice() {
-        if (product == null || product.getPrice() == null) {
+        BigDecimal price = getChargedUnitPrice();
+        if (price == null) {
             return BigDecimal.ZERO;
         }
-        return product.getPrice().multiply(BigDecimal.valueOf(quantity));
+        return price.multiply(BigDecimal.valueOf(quantity));
     }
 }
@@ -0,0 +1,31 @@
+package com.example.shoppingcart.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Position a background scan over carts has reached, in (lastModifiedAt, id) order. Stored on every shard
+ * for the carts of that shard, so a restarted scan resumes after the last cart it handled.
+ */
+@Entity
+@Table(name = "cart_scan_watermarks")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CartScanWatermark {
+
+    @Id
+    private String name;
+
+    @Column(nullable = false)
+    private LocalDateTime lastModifiedAt;
+
+    @Column(nullable = false)
+    private Long cartId;
+}
@@ -0,0 +1,34 @@
+package com.example.shoppingcart.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Latest snapshot of an event-sourced cart: its CartState as JSON after applying events up to version.
+ */
+@Entity
+@Table(name = "cart_snapshots")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CartSnapshot {
+
+    @Id
+    private Long cartId;
+
+    @Column(nullable = false)
+    private long version;
+
+    @Lob
+    @Column(nullable = false)
+    private String state;
+
+    @Column(nullable = false)
+    private LocalDateTime takenAt;
+}
@@ -0,0 +1,61 @@
+package com.example.shoppingcart.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Cart contents rebuilt from cart events, as stored in snapshots.
+ */
+@Data
+@NoArgsConstructor
+public class CartState {
+
+    private long version;
+    private ShoppingCart.CartStatus status = ShoppingCart.CartStatus.ACTIVE;
+    private LocalDateTime lastModifiedAt;
+    private LocalDateTime checkedOutAt;
+    private List<Line> lines = new ArrayList<>();
+
+    public Optional<Line> line(Long productId) {
+        return lines.stream().filter(line -> line.getProductId().equals(productId)).findFirst();
+    }
+
+    public void apply(CartEvent event) {
+        switch (event.getType()) {
+            case ITEM_ADDED -> line(event.getProductId()).ifPresentOrElse(
+                    line -> line.setQuantity(line.getQuantity() + event.getQuantity()),
+                    () -> lines.add(new Line(event.getId(), event.getProductId(), event.getQuantity(), event.getUnitPrice())));
+            case ITEM_REMOVED -> line(event.getProductId()).ifPresent(line -> {
+                line.setQuantity(line.getQuantity() - event.getQuantity());
+                if (line.getQuantity() <= 0) {
+                    lines.remove(line);
+                }
+            });
+            case PRICE_CHANGED -> line(event.getProductId()).ifPresent(line -> line.setUnitPrice(event.getUnitPrice()));
+            case CHECKED_OUT -> {
+                status = ShoppingCart.CartStatus.CHECKED_OUT;
+                checkedOutAt = event.getOccurredAt();
+            }
+        }
+        version = event.getVersion();
+        lastModifiedAt = event.getOccurredAt();
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Line {
+        // Id of the event that added the line, exposed as the cart item id
+        private Long id;
+        private Long productId;
+        private int quantity;
+        private BigDecimal unitPrice;
+    }
+}
@@ -1,11 +1,13 @@
 package com.example.shoppingcart.model;
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.math.BigDecimal;
 
@@ -31,5 +33,11 @@ public class Product {
     @Column(nullable = false)
     private String type;
 
+    // Tombstone set by deleteProduct; ProductPurger removes the row once no active cart references it
+    @JsonIgnore
+    @ColumnDefault("false")
+    @Column(nullable = false)
+    private boolean deleted;
+
 
 }
@@ -0,0 +1,30 @@
+package com.example.shoppingcart.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Stock of a product whose inventory is tracked, on shard 0. available is the shared pool: units not sold,
+ * not reserved in a cart and not leased by a node. sold counts the units checked out so far, as reconciled.
+ * Products without a row are not tracked and never run out.
+ */
+@Entity
+@Table(name = "product_stock")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductStock {
+
+    @Id
+    private Long productId;
+
+    @Column(nullable = false)
+    private int available;
+
+    @Column(nullable = false)
+    private long sold;
+}
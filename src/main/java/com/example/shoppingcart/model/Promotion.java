@@ -0,0 +1,58 @@
+package com.example.shoppingcart.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * A pricing rule applied to carts by CartPricingEngine. Which fields are set depends on the kind.
+ * Promotions are stored on shard 0 only.
+ */
+@Entity
+@Table(name = "promotions")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Promotion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String name;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Kind kind;
+
+    // Product type whose lines the promotion applies to; null for CART_THRESHOLD
+    private String productType;
+
+    // PERCENT_OFF_TYPE: percentage taken off each matching line
+    @Column(precision = 5, scale = 2)
+    private BigDecimal percentOff;
+
+    // BUY_X_GET_Y: of every buyQuantity + freeQuantity units of a matching line, freeQuantity are free
+    private Integer buyQuantity;
+
+    private Integer freeQuantity;
+
+    // CART_THRESHOLD: amountOff comes off carts whose discounted line total reaches minimumSubtotal
+    @Column(precision = 10, scale = 2)
+    private BigDecimal minimumSubtotal;
+
+    @Column(precision = 10, scale = 2)
+    private BigDecimal amountOff;
+
+    public enum Kind {
+        PERCENT_OFF_TYPE,
+        BUY_X_GET_Y,
+        CART_THRESHOLD,
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.shoppingcart.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Version of the promotion rules, on shard 0. Every promotion change bumps it in the same transaction, and
+ * every node's CartPricingEngine recompiles its rules when it reads a version other than the one it compiled.
+ * The cart-pricing row is the cart pricing epoch, bumped after bulk cart or product changes to invalidate every
+ * node's priced carts.
+ */
+@Entity
+@Table(name = "promotion_rule_sets")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PromotionRuleSet {
+
+    public static final String PROMOTIONS = "promotions";
+    public static final String CART_PRICING = "cart-pricing";
+
+    @Id
+    private String name;
+
+    @Column(nullable = false)
+    private Long version;
+}
@@ -1,10 +1,15 @@
 package com.example.shoppingcart.model;
 
+import com.example.shoppingcart.sharding.ShardedIdGenerator;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -12,10 +17,13 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 
 @Entity
-@Table(name = "shopping_carts")
+// Serves the abandonment scan and the abandoned-cart report
+@Table(name = "shopping_carts", indexes = @Index(name = "idx_shopping_carts_status_modified",
+        columnList = "status, last_modified_at, id"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -23,8 +31,13 @@ import java.util.List;
 @EntityListeners(AuditingEntityListener.class)
 public class ShoppingCart {
 
+    // Carries the id of the shard the cart lives on, see ShardIds
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "cart_id")
+    @GenericGenerator(name = "cart_id", type = ShardedIdGenerator.class, parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "shopping_carts_seq"),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "1")
+    })
     private Long id;
 
     @Enumerated(EnumType.STRING)
@@ -36,6 +49,12 @@ public class ShoppingCart {
     @Builder.Default
     private List<CartItem> items = new ArrayList<>();
 
+    // Lines are looked up by product, never loaded as a whole by a change, and read page by page; see
+    // ShoppingCartService. Set at creation or once the cart outgrows app.cart.large-cart-threshold lines.
+    @ColumnDefault("false")
+    @Column(nullable = false)
+    private boolean largeCart;
+
     @CreatedDate
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -46,9 +65,17 @@ public class ShoppingCart {
 
     private LocalDateTime checkedOutAt;
 
+    // Idempotency-Key of the checkout request, so a retry can be recognised after the in-memory store forgot it
+    private String checkoutIdempotencyKey;
+
 
     public enum CartStatus {
         ACTIVE,
         CHECKED_OUT,
+        // Idle for longer than the abandonment threshold; becomes ACTIVE again when the cart is changed
+        ABANDONED;
+
+        // Statuses of carts that can still be changed
+        public static final Set<CartStatus> OPEN = Set.of(ACTIVE, ABANDONED);
     }
 }
\ No newline at end of file
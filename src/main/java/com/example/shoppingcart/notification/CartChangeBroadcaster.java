@@ -0,0 +1,253 @@
+package com.example.shoppingcart.notification;
+
+import com.example.shoppingcart.dto.ShoppingCartResponse;
+import com.example.shoppingcart.exception.TooManySubscribersException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * In-process fan-out of cart changes to Server-Sent Events subscribers.
+ * An idle subscriber is only an SseEmitter and a small queue in a map: it holds no thread, and the async
+ * request keeps the connection open. Publishing only queues; each subscriber's queue is drained by one of
+ * sender-threads at a time, so a slow client holds up its own stream and at most one sender thread, never
+ * the publisher or the other streams. A subscriber more than max-queued messages behind is dropped.
+ * Every change carries the cart's state and lastModifiedAt, and a state older than one already sent is
+ * skipped, so changes published out of commit order, or the initial state read while a change commits,
+ * never leave a client on an older cart. A heartbeat comment is queued for every subscriber at a fixed
+ * interval, which keeps proxies from closing idle streams and finds dead connections.
+ * A subscriber whose send fails is dropped; the browser's EventSource reconnects on its own.
+ */
+@Component
+public class CartChangeBroadcaster implements DisposableBean {
+
+    public static final String EVENT_NAME = "cart";
+
+    private final long timeoutMillis;
+    private final int maxSubscribers;
+    private final int maxQueued;
+    private final ThreadPoolTaskScheduler dispatcher;
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final AtomicLong eventIds = new AtomicLong();
+
+    @Autowired
+    public CartChangeBroadcaster(@Value("${app.cart-events.timeout:30m}") Duration timeout,
+                                 @Value("${app.cart-events.heartbeat:20s}") Duration heartbeat,
+                                 @Value("${app.cart-events.max-subscribers:50000}") int maxSubscribers,
+                                 @Value("${app.cart-events.sender-threads:4}") int senderThreads,
+                                 @Value("${app.cart-events.max-queued:32}") int maxQueued) {
+        this.timeoutMillis = timeout.toMillis();
+        this.maxSubscribers = maxSubscribers;
+        this.maxQueued = maxQueued;
+        this.dispatcher = new ThreadPoolTaskScheduler();
+        this.dispatcher.setPoolSize(senderThreads);
+        this.dispatcher.setThreadNamePrefix("cart-events-");
+        this.dispatcher.initialize();
+        this.dispatcher.scheduleAtFixedRate(this::sendHeartbeats, Instant.now().plus(heartbeat), heartbeat);
+    }
+
+    /**
+     * Opens a stream for the cart that starts with its current state. The state is read after the
+     * subscriber is registered, so no change committed in between is missed, and is queued like any
+     * change, so it is skipped if a newer change reached the client first.
+     *
+     * @throws TooManySubscribersException when the node already serves max-subscribers streams
+     */
+    public SseEmitter subscribe(Long cartId, Supplier<ShoppingCartResponse> currentState) {
+        Subscriber subscriber = new Subscriber(cartId, new SseEmitter(timeoutMillis));
+        add(subscriber);
+        ShoppingCartResponse current;
+        try {
+            current = currentState.get();
+        } catch (RuntimeException e) {
+            unregister(subscriber);
+            throw e;
+        }
+        subscriber.offer(new Message(eventIds.incrementAndGet(), current));
+        return subscriber.emitter;
+    }
+
+    public boolean hasSubscribers(Long cartId) {
+        return subscribers.containsKey(cartId);
+    }
+
+    public Set<Long> subscribedCarts() {
+        return subscribers.keySet();
+    }
+
+    public int subscriberCount() {
+        return subscriberCount.get();
+    }
+
+    /**
+     * Pushes the cart's new state to its subscribers once the current transaction commits; nothing is
+     * sent if it rolls back. Outside a transaction the change is pushed right away.
+     */
+    public void publish(Long cartId, ShoppingCartResponse cart) {
+        Runnable fanOut = () -> {
+            Set<Subscriber> cartSubscribers = subscribers.get(cartId);
+            if (cartSubscribers != null) {
+                Message message = new Message(eventIds.incrementAndGet(), cart);
+                cartSubscribers.forEach(subscriber -> subscriber.offer(message));
+            }
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            fanOut.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                fanOut.run();
+            }
+        });
+    }
+
+    // Package-private so tests can register emitters that record what is sent
+    SseEmitter register(Long cartId, SseEmitter emitter) {
+        add(new Subscriber(cartId, emitter));
+        return emitter;
+    }
+
+    void sendHeartbeats() {
+        subscribers.values().forEach(cartSubscribers -> cartSubscribers.forEach(subscriber -> subscriber.offer(Message.HEARTBEAT)));
+    }
+
+    private void add(Subscriber subscriber) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new TooManySubscribersException("Too many cart event subscribers, retry later");
+        }
+        subscribers.compute(subscriber.cartId, (id, cartSubscribers) -> {
+            Set<Subscriber> added = cartSubscribers != null ? cartSubscribers : ConcurrentHashMap.newKeySet();
+            added.add(subscriber);
+            return added;
+        });
+        subscriber.emitter.onCompletion(() -> unregister(subscriber));
+        subscriber.emitter.onTimeout(subscriber.emitter::complete);
+        subscriber.emitter.onError(error -> unregister(subscriber));
+    }
+
+    private void unregister(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.cartId, (id, cartSubscribers) -> {
+            if (cartSubscribers.remove(subscriber)) {
+                subscriberCount.decrementAndGet();
+            }
+            return cartSubscribers.isEmpty() ? null : cartSubscribers;
+        });
+    }
+
+    /**
+     * A cart state (with the event id it was published under), or a heartbeat when cart is null.
+     */
+    private record Message(long eventId, ShoppingCartResponse cart) {
+
+        static final Message HEARTBEAT = new Message(0, null);
+
+        LocalDateTime version() {
+            return cart != null ? cart.getLastModifiedAt() : null;
+        }
+
+        // Builders are single-use: build() appends to them
+        SseEmitter.SseEventBuilder event() {
+            return cart == null
+                    ? SseEmitter.event().comment("heartbeat")
+                    : SseEmitter.event().id(Long.toString(eventId)).name(EVENT_NAME).data(cart, MediaType.APPLICATION_JSON);
+        }
+    }
+
+    /**
+     * One stream: its emitter, the messages not yet sent, and whether a sender thread is draining them.
+     */
+    private final class Subscriber {
+
+        private final Long cartId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Message> queue = new ArrayBlockingQueue<>(maxQueued);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+        // Only read and written by the draining thread
+        private LocalDateTime sentVersion;
+
+        Subscriber(Long cartId, SseEmitter emitter) {
+            this.cartId = cartId;
+            this.emitter = emitter;
+        }
+
+        void offer(Message message) {
+            if (closed) {
+                return;
+            }
+            if (!queue.offer(message)) {
+                // Too far behind; the stream is completed by the sender once its current send returns
+                closed = true;
+                unregister(this);
+            }
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                dispatcher.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                Message message;
+                while (!closed && (message = queue.poll()) != null) {
+                    LocalDateTime version = message.version();
+                    if (version != null && sentVersion != null && version.isBefore(sentVersion)) {
+                        continue;
+                    }
+                    emitter.send(message.event());
+                    if (version != null) {
+                        sentVersion = version;
+                    }
+                }
+                if (closed) {
+                    queue.clear();
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Client went away (the container then completes the request) or the emitter already completed
+                closed = true;
+                queue.clear();
+                unregister(this);
+            } finally {
+                draining.set(false);
+            }
+            if (!closed && !queue.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        dispatcher.shutdown();
+        subscribers.values().forEach(cartSubscribers -> cartSubscribers.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+}
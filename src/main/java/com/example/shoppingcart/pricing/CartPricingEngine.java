@@ -0,0 +1,212 @@
+package com.example.shoppingcart.pricing;
+
+import com.example.shoppingcart.dto.CartItemResponse;
+import com.example.shoppingcart.dto.ShoppingCartResponse;
+import com.example.shoppingcart.model.PromotionRuleSet;
+import com.example.shoppingcart.repository.PromotionRepository;
+import com.example.shoppingcart.repository.PromotionRuleSetRepository;
+import com.example.shoppingcart.sharding.ShardRouting;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Applies promotions to cart responses. The promotions are compiled into CompiledPromotions once per rule-set
+ * version, the PromotionRuleSet row on shard 0 that every promotion change bumps. Each node reads that version
+ * at most once per rules-check-interval, and at once after a change it made itself, so other nodes pick up a
+ * change within the interval. Priced carts are cached per cart and reused while the cart's lastModifiedAt, the
+ * rule-set version and the cart pricing epoch are all unchanged; the least recently used are evicted beyond
+ * cache-size. The epoch, a second row on shard 0 read along with the version, is bumped by bulk changes to cart
+ * lines or product types that leave lastModifiedAt as it was.
+ */
+@Component
+public class CartPricingEngine {
+
+    private final PromotionRepository promotionRepository;
+    private final PromotionRuleSetRepository ruleSetRepository;
+    private final TransactionTemplate loadTransaction;
+    private final long checkIntervalNanos;
+    private final Map<Long, CachedPrice> cache;
+    private final AtomicLong localChanges = new AtomicLong();
+    private final AtomicBoolean checking = new AtomicBoolean();
+    private volatile CompiledPromotions compiled;
+    private volatile long cartEpoch;
+    private volatile long checkedChanges;
+    private volatile long nextCheckAt;
+
+    @Autowired
+    public CartPricingEngine(PromotionRepository promotionRepository,
+                             PromotionRuleSetRepository ruleSetRepository,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${app.pricing.cache-size:10000}") int cacheSize,
+                             @Value("${app.pricing.rules-check-interval:1s}") Duration checkInterval) {
+        this.promotionRepository = promotionRepository;
+        this.ruleSetRepository = ruleSetRepository;
+        this.checkIntervalNanos = checkInterval.toNanos();
+        // Own transaction on shard 0, even when pricing runs inside a cart transaction on another shard.
+        // Not read-only, so version and rules are read from the primary and never miss a committed change.
+        this.loadTransaction = new TransactionTemplate(transactionManager);
+        this.loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedPrice> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    public boolean hasPromotions() {
+        return !rules().isEmpty();
+    }
+
+    /**
+     * Fills in the line discounts and totals of the cart and returns it. Without promotions the response
+     * keeps its list prices and zero discounts; a view without lines (a large cart's) is returned as it is.
+     */
+    public ShoppingCartResponse price(ShoppingCartResponse cart) {
+        CompiledPromotions rules = rules();
+        if (rules.isEmpty() || cart.getItems() == null) {
+            return cart;
+        }
+        long epoch = cartEpoch;
+        PricedCart priced = cached(cart.getId(), cart.getLastModifiedAt(), rules.version, epoch);
+        if (priced == null) {
+            priced = rules.evaluate(cart.getItems());
+            if (cart.getLastModifiedAt() != null) {
+                cache.put(cart.getId(), new CachedPrice(cart.getLastModifiedAt(), rules.version, epoch, priced));
+            }
+        }
+        for (CartItemResponse item : cart.getItems()) {
+            PricedCart.LineDiscount discount = priced.lines().get(item.getProductId());
+            item.setDiscount(discount != null ? discount.amount() : BigDecimal.ZERO);
+            item.setPromotion(discount != null ? discount.promotion() : null);
+        }
+        cart.setSubtotalPrice(priced.subtotal());
+        cart.setDiscountTotal(priced.discountTotal());
+        cart.setTotalPrice(priced.total());
+        cart.setCartPromotion(priced.cartPromotion());
+        return cart;
+    }
+
+    /**
+     * The discounted total priced for this version of the cart under the current promotions, if cached.
+     */
+    public Optional<BigDecimal> cachedTotal(Long cartId, LocalDateTime cartVersion) {
+        long rules = rules().version;
+        return Optional.ofNullable(cached(cartId, cartVersion, rules, cartEpoch)).map(PricedCart::total);
+    }
+
+    /**
+     * Makes the next pricing read the rule-set version without waiting for the check interval, after this node
+     * committed a promotion change.
+     */
+    public void promotionsChanged() {
+        localChanges.incrementAndGet();
+    }
+
+    /**
+     * Invalidates every node's cached prices, for changes to cart lines or product types that leave lastModifiedAt
+     * as it was: once the current transaction commits, bumps the cart pricing epoch and drops this node's cache.
+     * Until then a concurrent read can only cache the state it priced under the epoch being replaced.
+     */
+    public void cartsChanged() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            bumpCartEpoch();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                bumpCartEpoch();
+            }
+        });
+    }
+
+    private void bumpCartEpoch() {
+        try {
+            ShardRouting.onShard(0, () -> loadTransaction.execute(status -> bumpVersion(PromotionRuleSet.CART_PRICING)));
+        } catch (DataIntegrityViolationException e) {
+            // Another node inserted the first row meanwhile; bump that one
+            ShardRouting.onShard(0, () -> loadTransaction.execute(status -> bumpVersion(PromotionRuleSet.CART_PRICING)));
+        }
+        localChanges.incrementAndGet();
+        cache.clear();
+    }
+
+    private Void bumpVersion(String name) {
+        if (ruleSetRepository.bumpVersion(name) == 0) {
+            ruleSetRepository.saveAndFlush(new PromotionRuleSet(name, 1L));
+        }
+        return null;
+    }
+
+    private PricedCart cached(Long cartId, LocalDateTime cartVersion, long rules, long epoch) {
+        CachedPrice entry = cache.get(cartId);
+        return entry != null && entry.ruleSetVersion() == rules && entry.cartEpoch() == epoch
+                && entry.cartVersion().equals(cartVersion) ? entry.priced() : null;
+    }
+
+    /**
+     * The compiled rules, checked against the stored version when due. One caller checks while the others keep
+     * pricing with the rules they have.
+     */
+    private CompiledPromotions rules() {
+        CompiledPromotions current = compiled;
+        if (current == null) {
+            synchronized (this) {
+                if (compiled == null) {
+                    check(null);
+                }
+                return compiled;
+            }
+        }
+        boolean due = localChanges.get() != checkedChanges || System.nanoTime() - nextCheckAt >= 0;
+        if (!due || !checking.compareAndSet(false, true)) {
+            return current;
+        }
+        try {
+            check(current);
+        } finally {
+            checking.set(false);
+        }
+        return compiled;
+    }
+
+    private void check(CompiledPromotions current) {
+        long changes = localChanges.get();
+        compiled = ShardRouting.onShard(0, () -> loadTransaction.execute(status -> {
+            long version = 0;
+            for (PromotionRuleSet row : ruleSetRepository.findAllById(List.of(PromotionRuleSet.PROMOTIONS, PromotionRuleSet.CART_PRICING))) {
+                if (row.getName().equals(PromotionRuleSet.PROMOTIONS)) {
+                    version = row.getVersion();
+                } else {
+                    cartEpoch = row.getVersion();
+                }
+            }
+            return current != null && current.version == version
+                    ? current : new CompiledPromotions(version, promotionRepository.findAll());
+        }));
+        checkedChanges = changes;
+        nextCheckAt = System.nanoTime() + checkIntervalNanos;
+    }
+
+    private record CachedPrice(LocalDateTime cartVersion, long ruleSetVersion, long cartEpoch, PricedCart priced) {
+    }
+}
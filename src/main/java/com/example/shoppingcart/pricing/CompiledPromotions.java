@@ -0,0 +1,129 @@
+package com.example.shoppingcart.pricing;
+
+import com.example.shoppingcart.dto.CartItemResponse;
+import com.example.shoppingcart.model.Promotion;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The promotions of one rule-set version, arranged for evaluation: line rules grouped by product type, with
+ * only the highest percentage kept per type, and cart thresholds sorted by minimum subtotal with the best
+ * amount off reachable at or below each one.
+ */
+final class CompiledPromotions {
+
+    private static final BigDecimal HUNDRED = new BigDecimal(100);
+
+    final long version;
+    private final Map<String, LineRules> lineRules = new HashMap<>();
+    private final BigDecimal[] thresholds;
+    private final Promotion[] bestUpToThreshold;
+
+    CompiledPromotions(long version, List<Promotion> promotions) {
+        this.version = version;
+        List<Promotion> cartRules = new ArrayList<>();
+        for (Promotion promotion : promotions) {
+            switch (promotion.getKind()) {
+                case PERCENT_OFF_TYPE -> lineRules.computeIfAbsent(promotion.getProductType(), type -> new LineRules())
+                        .offerPercent(promotion);
+                case BUY_X_GET_Y -> lineRules.computeIfAbsent(promotion.getProductType(), type -> new LineRules())
+                        .buyXGetY.add(promotion);
+                case CART_THRESHOLD -> cartRules.add(promotion);
+            }
+        }
+        cartRules.sort(Comparator.comparing(Promotion::getMinimumSubtotal));
+        thresholds = new BigDecimal[cartRules.size()];
+        bestUpToThreshold = new Promotion[cartRules.size()];
+        for (int i = 0; i < cartRules.size(); i++) {
+            Promotion rule = cartRules.get(i);
+            thresholds[i] = rule.getMinimumSubtotal();
+            bestUpToThreshold[i] = i > 0 && bestUpToThreshold[i - 1].getAmountOff().compareTo(rule.getAmountOff()) >= 0
+                    ? bestUpToThreshold[i - 1] : rule;
+        }
+    }
+
+    boolean isEmpty() {
+        return lineRules.isEmpty() && thresholds.length == 0;
+    }
+
+    /**
+     * Prices the lines in one pass. Each line gets the single line rule that takes most off it; the best
+     * cart threshold reached by the discounted subtotal then applies, never taking the total below zero.
+     */
+    PricedCart evaluate(List<CartItemResponse> items) {
+        Map<Long, PricedCart.LineDiscount> lines = new HashMap<>();
+        BigDecimal subtotal = BigDecimal.ZERO;
+        BigDecimal lineDiscounts = BigDecimal.ZERO;
+        for (CartItemResponse item : items) {
+            BigDecimal lineTotal = item.getProductPrice().multiply(BigDecimal.valueOf(item.getQuantity()));
+            subtotal = subtotal.add(lineTotal);
+            LineRules rules = item.getProductType() != null ? lineRules.get(item.getProductType()) : null;
+            if (rules != null) {
+                PricedCart.LineDiscount discount = rules.best(item, lineTotal);
+                if (discount != null) {
+                    lines.put(item.getProductId(), discount);
+                    lineDiscounts = lineDiscounts.add(discount.amount());
+                }
+            }
+        }
+
+        BigDecimal discounted = subtotal.subtract(lineDiscounts);
+        Promotion cartRule = bestThreshold(discounted);
+        BigDecimal cartDiscount = cartRule != null ? cartRule.getAmountOff().min(discounted) : BigDecimal.ZERO;
+        return new PricedCart(lines, subtotal, lineDiscounts.add(cartDiscount),
+                discounted.subtract(cartDiscount), cartRule != null ? cartRule.getName() : null);
+    }
+
+    // Binary search for the highest threshold at or below the subtotal
+    private Promotion bestThreshold(BigDecimal subtotal) {
+        int low = 0;
+        int high = thresholds.length - 1;
+        int reached = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (thresholds[mid].compareTo(subtotal) <= 0) {
+                reached = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return reached >= 0 ? bestUpToThreshold[reached] : null;
+    }
+
+    private static final class LineRules {
+
+        private Promotion percentOff;
+        private final List<Promotion> buyXGetY = new ArrayList<>();
+
+        void offerPercent(Promotion promotion) {
+            if (percentOff == null || promotion.getPercentOff().compareTo(percentOff.getPercentOff()) > 0) {
+                percentOff = promotion;
+            }
+        }
+
+        PricedCart.LineDiscount best(CartItemResponse item, BigDecimal lineTotal) {
+            BigDecimal bestAmount = BigDecimal.ZERO;
+            Promotion best = null;
+            if (percentOff != null) {
+                bestAmount = lineTotal.multiply(percentOff.getPercentOff()).divide(HUNDRED, 2, RoundingMode.HALF_UP);
+                best = percentOff;
+            }
+            for (Promotion rule : buyXGetY) {
+                int freeUnits = item.getQuantity() / (rule.getBuyQuantity() + rule.getFreeQuantity()) * rule.getFreeQuantity();
+                BigDecimal amount = item.getProductPrice().multiply(BigDecimal.valueOf(freeUnits));
+                if (amount.compareTo(bestAmount) > 0) {
+                    bestAmount = amount;
+                    best = rule;
+                }
+            }
+            return best != null && bestAmount.signum() > 0 ? new PricedCart.LineDiscount(bestAmount, best.getName()) : null;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.shoppingcart.pricing;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Result of pricing one cart: the discount on each line that has one, keyed by product id, and the totals.
+ */
+record PricedCart(Map<Long, LineDiscount> lines, BigDecimal subtotal, BigDecimal discountTotal, BigDecimal total,
+                  String cartPromotion) {
+
+    record LineDiscount(BigDecimal amount, String promotion) {
+    }
+}
@@ -0,0 +1,291 @@
+package com.example.shoppingcart.reactive;
+
+import com.example.shoppingcart.dto.CartItemRequest;
+import com.example.shoppingcart.exception.ResourceNotFoundException;
+import com.example.shoppingcart.model.CartItem;
+import com.example.shoppingcart.model.Product;
+import com.example.shoppingcart.model.ShoppingCart;
+import com.example.shoppingcart.model.ShoppingCart.CartStatus;
+import com.example.shoppingcart.repository.CartSummary;
+import com.example.shoppingcart.sharding.ShardIds;
+import io.r2dbc.spi.Readable;
+import lombok.Value;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Non-blocking counterpart of ShoppingCartService over R2DBC, for carts on shard 0 in the state
+ * persistence mode. Mutations lock the cart row first, so concurrent changes to one cart queue up
+ * in the database instead of on a thread. Stock is not reserved or sold here, so carts holding a product
+ * whose stock is tracked cannot be checked out and get 409 Conflict.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveCartService {
+
+    private static final String SELECT_HEADER =
+            "select id, status, created_at, last_modified_at, checked_out_at, checkout_idempotency_key " +
+                    "from shopping_carts where id = :cartId";
+
+    private static final String SELECT_CART =
+            "select c.id, c.status, c.created_at, c.last_modified_at, c.checked_out_at, " +
+                    "i.id item_id, i.quantity, i.unit_price, p.id product_id, p.name product_name, " +
+                    "p.price product_price, p.type product_type " +
+                    "from shopping_carts c left join cart_items i on i.shopping_cart_id = c.id " +
+                    "left join products p on p.id = i.product_id " +
+                    "where c.id = :cartId order by i.id";
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+
+    @Autowired
+    public ReactiveCartService(DatabaseClient databaseClient, TransactionalOperator transactionalOperator) {
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = transactionalOperator;
+    }
+
+    public Mono<ShoppingCart> createCart() {
+        LocalDateTime now = LocalDateTime.now();
+        return databaseClient.sql("select next value for shopping_carts_seq")
+                .map(row -> ShardIds.embed(row.get(0, Long.class), 0))
+                .one()
+                .flatMap(cartId -> databaseClient.sql("insert into shopping_carts (id, status, created_at, last_modified_at) " +
+                                "values (:cartId, :status, :now, :now)")
+                        .bind("cartId", cartId)
+                        .bind("status", CartStatus.ACTIVE.name())
+                        .bind("now", now)
+                        .then()
+                        .thenReturn(ShoppingCart.builder()
+                                .id(cartId)
+                                .createdAt(now)
+                                .lastModifiedAt(now)
+                                .build()));
+    }
+
+    public Mono<ShoppingCart> getCart(Long cartId) {
+        return databaseClient.sql(SELECT_CART)
+                .bind("cartId", cartId)
+                .map(ReactiveCartService::toLine)
+                .all()
+                .collectList()
+                .flatMap(rows -> rows.isEmpty()
+                        ? Mono.error(new ResourceNotFoundException("Shopping cart not found with ID: " + cartId))
+                        : Mono.just(toCart(rows)));
+    }
+
+    public Mono<CartSummary> getCartSummary(Long cartId) {
+        return databaseClient.sql(SELECT_HEADER)
+                .bind("cartId", cartId)
+                .map(ReactiveCartService::toHeader)
+                .one()
+                .cast(CartSummary.class)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Shopping cart not found with ID: " + cartId)));
+    }
+
+    public Mono<BigDecimal> calculateTotalPrice(Long cartId) {
+        return databaseClient.sql("select coalesce(sum(i.unit_price * i.quantity), 0) total from shopping_carts c " +
+                        "left join cart_items i on i.shopping_cart_id = c.id where c.id = :cartId group by c.id")
+                .bind("cartId", cartId)
+                .map(row -> row.get("total", BigDecimal.class))
+                .one()
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Shopping cart not found with ID: " + cartId)));
+    }
+
+    public Mono<ShoppingCart> addItemToCart(Long cartId, CartItemRequest request) {
+        return lockActive(cartId, "Cannot add items to a checked out cart.")
+                .then(databaseClient.sql("select id, name, price, type from products where id = :productId and deleted = false")
+                        .bind("productId", request.getProductId())
+                        .map(ReactiveProductService::toProduct)
+                        .one()
+                        .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Product not found with ID: " + request.getProductId()))))
+                .flatMap(product -> databaseClient.sql("update cart_items set quantity = quantity + :quantity " +
+                                "where shopping_cart_id = :cartId and product_id = :productId")
+                        .bind("quantity", request.getQuantity())
+                        .bind("cartId", cartId)
+                        .bind("productId", product.getId())
+                        .fetch()
+                        .rowsUpdated()
+                        .flatMap(updated -> updated > 0 ? Mono.empty() : databaseClient.sql(
+                                        "insert into cart_items (shopping_cart_id, product_id, quantity, unit_price) " +
+                                                "values (:cartId, :productId, :quantity, :unitPrice)")
+                                .bind("cartId", cartId)
+                                .bind("productId", product.getId())
+                                .bind("quantity", request.getQuantity())
+                                .bind("unitPrice", product.getPrice())
+                                .then()))
+                .then(touch(cartId))
+                .then(getCart(cartId))
+                .as(transactionalOperator::transactional);
+    }
+
+    public Mono<ShoppingCart> removeItemFromCart(Long cartId, Long productId, int quantityToRemove) {
+        return lockActive(cartId, "Cannot remove items from a checked out cart.")
+                .then(databaseClient.sql("select count(*) from products where id = :productId")
+                        .bind("productId", productId)
+                        .map(row -> row.get(0, Long.class))
+                        .one())
+                .flatMap(products -> products == 0
+                        ? Mono.error(new ResourceNotFoundException("Product not found with ID: " + productId))
+                        : databaseClient.sql("select id, quantity from cart_items where shopping_cart_id = :cartId and product_id = :productId")
+                        .bind("cartId", cartId)
+                        .bind("productId", productId)
+                        .map(row -> new long[]{row.get("id", Long.class), row.get("quantity", Integer.class)})
+                        .one()
+                        .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Product with ID " + productId + " not found in cart " + cartId))))
+                .flatMap(item -> item[1] <= quantityToRemove
+                        ? databaseClient.sql("delete from cart_items where id = :itemId").bind("itemId", item[0]).then()
+                        : databaseClient.sql("update cart_items set quantity = quantity - :quantity where id = :itemId")
+                        .bind("quantity", quantityToRemove)
+                        .bind("itemId", item[0])
+                        .then())
+                .then(touch(cartId))
+                .then(getCart(cartId))
+                .as(transactionalOperator::transactional);
+    }
+
+    /**
+     * Refreshes the price snapshots of every line in the cart to the current product prices.
+     */
+    public Mono<ShoppingCart> repriceCart(Long cartId) {
+        return lockActive(cartId, "Cannot reprice a checked out cart.")
+                .then(databaseClient.sql("update cart_items set unit_price = (select p.price from products p " +
+                                "where p.id = cart_items.product_id) where shopping_cart_id = :cartId")
+                        .bind("cartId", cartId)
+                        .then())
+                .then(touch(cartId))
+                .then(getCart(cartId))
+                .as(transactionalOperator::transactional);
+    }
+
+    /**
+     * Checks out the cart; repeating a checkout with the key that checked the cart out returns it unchanged.
+     */
+    public Mono<ShoppingCart> checkoutCart(Long cartId, String idempotencyKey) {
+        return lock(cartId)
+                .flatMap(header -> {
+                    if (header.getStatus() != CartStatus.CHECKED_OUT) {
+                        return refuseTrackedStock(cartId).then(markCheckedOut(cartId, idempotencyKey));
+                    }
+                    if (idempotencyKey != null && idempotencyKey.equals(header.getCheckoutIdempotencyKey())) {
+                        return Mono.empty();
+                    }
+                    return Mono.error(new IllegalStateException("Shopping cart with ID " + cartId + " is already checked out."));
+                })
+                .then(getCart(cartId))
+                .as(transactionalOperator::transactional);
+    }
+
+    private Mono<Void> refuseTrackedStock(Long cartId) {
+        return databaseClient.sql("select count(*) from cart_items i join product_stock s on s.product_id = i.product_id " +
+                        "where i.shopping_cart_id = :cartId")
+                .bind("cartId", cartId)
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .flatMap(tracked -> tracked == 0 ? Mono.<Void>empty() : Mono.error(new ResponseStatusException(HttpStatus.CONFLICT,
+                        "Shopping cart with ID " + cartId + " holds products with tracked stock, which only the servlet stack sells")));
+    }
+
+    private Mono<Void> markCheckedOut(Long cartId, String idempotencyKey) {
+        DatabaseClient.GenericExecuteSpec update = databaseClient.sql("update shopping_carts set status = :status, " +
+                        "checked_out_at = :now, last_modified_at = :now, checkout_idempotency_key = :key where id = :cartId")
+                .bind("status", CartStatus.CHECKED_OUT.name())
+                .bind("now", LocalDateTime.now())
+                .bind("cartId", cartId);
+        return (idempotencyKey != null ? update.bind("key", idempotencyKey) : update.bindNull("key", String.class)).then();
+    }
+
+    private Mono<Header> lock(Long cartId) {
+        return databaseClient.sql(SELECT_HEADER + " for update")
+                .bind("cartId", cartId)
+                .map(ReactiveCartService::toHeader)
+                .one()
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Shopping cart not found with ID: " + cartId)));
+    }
+
+    private Mono<Header> lockActive(Long cartId, String checkedOutMessage) {
+        return lock(cartId).flatMap(header -> header.getStatus() == CartStatus.CHECKED_OUT
+                ? Mono.error(new IllegalStateException(checkedOutMessage))
+                : Mono.just(header));
+    }
+
+    // Records a change to the cart, bringing it back if it was abandoned
+    private Mono<Void> touch(Long cartId) {
+        return databaseClient.sql("update shopping_carts set status = :status, last_modified_at = :now where id = :cartId")
+                .bind("status", CartStatus.ACTIVE.name())
+                .bind("now", LocalDateTime.now())
+                .bind("cartId", cartId)
+                .then();
+    }
+
+    private static Header toHeader(Readable row) {
+        return new Header(
+                row.get("id", Long.class),
+                CartStatus.valueOf(row.get("status", String.class)),
+                row.get("created_at", LocalDateTime.class),
+                row.get("last_modified_at", LocalDateTime.class),
+                row.get("checked_out_at", LocalDateTime.class),
+                row.get("checkout_idempotency_key", String.class));
+    }
+
+    // A row of SELECT_CART: the cart columns plus one line, or no line for an empty cart
+    private static CartLine toLine(Readable row) {
+        ShoppingCart cart = ShoppingCart.builder()
+                .id(row.get("id", Long.class))
+                .status(CartStatus.valueOf(row.get("status", String.class)))
+                .createdAt(row.get("created_at", LocalDateTime.class))
+                .lastModifiedAt(row.get("last_modified_at", LocalDateTime.class))
+                .checkedOutAt(row.get("checked_out_at", LocalDateTime.class))
+                .build();
+        Long itemId = row.get("item_id", Long.class);
+        if (itemId == null) {
+            return new CartLine(cart, null);
+        }
+        return new CartLine(cart, CartItem.builder()
+                .id(itemId)
+                .product(Product.builder()
+                        .id(row.get("product_id", Long.class))
+                        .name(row.get("product_name", String.class))
+                        .price(row.get("product_price", BigDecimal.class))
+                        .type(row.get("product_type", String.class))
+                        .build())
+                .quantity(row.get("quantity", Integer.class))
+                .unitPrice(row.get("unit_price", BigDecimal.class))
+                .build());
+    }
+
+    private static ShoppingCart toCart(List<CartLine> rows) {
+        ShoppingCart cart = rows.get(0).cart();
+        rows.stream()
+                .map(CartLine::item)
+                .filter(Objects::nonNull)
+                .forEach(item -> {
+                    item.setShoppingCart(cart);
+                    cart.getItems().add(item);
+                });
+        return cart;
+    }
+
+    private record CartLine(ShoppingCart cart, CartItem item) {
+    }
+
+    @Value
+    static class Header implements CartSummary {
+        Long id;
+        CartStatus status;
+        LocalDateTime createdAt;
+        LocalDateTime lastModifiedAt;
+        LocalDateTime checkedOutAt;
+        String checkoutIdempotencyKey;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.shoppingcart.reactive;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+/**
+ * Infrastructure of the "reactive" profile.
+ * Netty is declared explicitly because Tomcat is on the classpath for the servlet stack and would
+ * otherwise be chosen. The R2DBC transaction manager is kept out of the context so @Transactional on
+ * the JPA services keeps resolving to the single JPA transaction manager.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveConfig {
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean
+    public TransactionalOperator reactiveTransactionalOperator(ConnectionFactory connectionFactory) {
+        return TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.shoppingcart.reactive;
+
+import com.example.shoppingcart.dto.ProductRequest;
+import com.example.shoppingcart.model.Product;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * WebFlux variant of ProductController, same paths and payloads.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/products")
+public class ReactiveProductController {
+
+    private final ReactiveProductService productService;
+
+    @Autowired
+    public ReactiveProductController(ReactiveProductService productService) {
+        this.productService = productService;
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<Product>> createProduct(@Valid @RequestBody ProductRequest request) {
+        return productService.createProduct(request)
+                .map(product -> new ResponseEntity<>(product, HttpStatus.CREATED));
+    }
+
+    @GetMapping("/{id}")
+    public Mono<Product> getProductById(@PathVariable Long id) {
+        return productService.getProductById(id);
+    }
+
+    @GetMapping
+    public Flux<Product> getAllProducts() {
+        return productService.getAllProducts();
+    }
+
+    @PutMapping("/{id}")
+    public Mono<Product> updateProduct(@PathVariable Long id, @Valid @RequestBody ProductRequest request) {
+        return productService.updateProduct(id, request);
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deleteProduct(@PathVariable Long id) {
+        return productService.deleteProduct(id)
+                .thenReturn(ResponseEntity.noContent().build());
+    }
+}
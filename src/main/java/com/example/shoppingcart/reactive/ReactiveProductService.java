@@ -0,0 +1,98 @@
+package com.example.shoppingcart.reactive;
+
+import com.example.shoppingcart.dto.ProductRequest;
+import com.example.shoppingcart.exception.ResourceNotFoundException;
+import com.example.shoppingcart.model.Product;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+/**
+ * Non-blocking counterpart of ProductService over R2DBC. Writes go to shard 0 only.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveProductService {
+
+    private static final String SELECT_PRODUCT = "select id, name, price, type from products where deleted = false";
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+
+    @Autowired
+    public ReactiveProductService(DatabaseClient databaseClient, TransactionalOperator transactionalOperator) {
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = transactionalOperator;
+    }
+
+    public Mono<Product> createProduct(ProductRequest request) {
+        return databaseClient.sql("insert into products (name, price, type) values (:name, :price, :type)")
+                .bind("name", request.getName())
+                .bind("price", request.getPrice())
+                .bind("type", request.getType())
+                .filter(statement -> statement.returnGeneratedValues("id"))
+                .map(row -> row.get("id", Long.class))
+                .one()
+                .map(id -> Product.builder()
+                        .id(id)
+                        .name(request.getName())
+                        .price(request.getPrice())
+                        .type(request.getType())
+                        .build());
+    }
+
+    public Mono<Product> getProductById(Long id) {
+        return databaseClient.sql(SELECT_PRODUCT + " and id = :id")
+                .bind("id", id)
+                .map(ReactiveProductService::toProduct)
+                .one()
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Product not found with ID: " + id)));
+    }
+
+    public Flux<Product> getAllProducts() {
+        return databaseClient.sql(SELECT_PRODUCT + " order by id")
+                .map(ReactiveProductService::toProduct)
+                .all();
+    }
+
+    public Mono<Product> updateProduct(Long id, ProductRequest request) {
+        return databaseClient.sql("update products set name = :name, price = :price, type = :type where id = :id and deleted = false")
+                .bind("name", request.getName())
+                .bind("price", request.getPrice())
+                .bind("type", request.getType())
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated()
+                .flatMap(updated -> updated == 0
+                        ? Mono.error(new ResourceNotFoundException("Product not found with ID: " + id))
+                        : getProductById(id))
+                .as(transactionalOperator::transactional);
+    }
+
+    // Soft delete, as in ProductService; ProductPurger removes the row later
+    public Mono<Void> deleteProduct(Long id) {
+        return databaseClient.sql("update products set deleted = true where id = :id and deleted = false")
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated()
+                .flatMap(deleted -> deleted == 0
+                        ? Mono.<Void>error(new ResourceNotFoundException("Product not found with ID: " + id))
+                        : Mono.<Void>empty());
+    }
+
+    static Product toProduct(Readable row) {
+        return Product.builder()
+                .id(row.get("id", Long.class))
+                .name(row.get("name", String.class))
+                .price(row.get("price", BigDecimal.class))
+                .type(row.get("type", String.class))
+                .build();
+    }
+}
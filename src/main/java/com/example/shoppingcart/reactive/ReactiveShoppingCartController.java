@@ -0,0 +1,81 @@
+package com.example.shoppingcart.reactive;
+
+import com.example.shoppingcart.dto.CartItemRequest;
+import com.example.shoppingcart.dto.ShoppingCartResponse;
+import com.example.shoppingcart.idempotency.IdempotencyStore;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+/**
+ * WebFlux variant of the cart operations of ShoppingCartController, same paths and payloads.
+ * Reports stay on the servlet stack.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/carts")
+public class ReactiveShoppingCartController {
+
+    private final ReactiveCartService cartService;
+
+    @Autowired
+    public ReactiveShoppingCartController(ReactiveCartService cartService) {
+        this.cartService = cartService;
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<ShoppingCartResponse>> createCart() {
+        return cartService.createCart()
+                .map(cart -> new ResponseEntity<>(ShoppingCartResponse.fromEntity(cart), HttpStatus.CREATED));
+    }
+
+    @GetMapping("/{cartId}")
+    public Mono<ShoppingCartResponse> getCartById(@PathVariable Long cartId,
+                                                  @RequestParam(defaultValue = "full") String view) {
+        if ("summary".equalsIgnoreCase(view)) {
+            return cartService.getCartSummary(cartId)
+                    .zipWith(cartService.calculateTotalPrice(cartId), ShoppingCartResponse::fromSummary);
+        }
+        if (!"full".equalsIgnoreCase(view)) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported view: " + view));
+        }
+        return cartService.getCart(cartId).map(ShoppingCartResponse::fromEntity);
+    }
+
+    @PostMapping("/{cartId}/items")
+    public Mono<ShoppingCartResponse> addItemToCart(@PathVariable Long cartId,
+                                                    @Valid @RequestBody CartItemRequest request) {
+        return cartService.addItemToCart(cartId, request).map(ShoppingCartResponse::fromEntity);
+    }
+
+    @DeleteMapping("/{cartId}/items/{productId}")
+    public Mono<ShoppingCartResponse> removeItemFromCart(@PathVariable Long cartId,
+                                                         @PathVariable Long productId,
+                                                         @RequestParam(required = false, defaultValue = "2147483647") int quantity) {
+        return cartService.removeItemFromCart(cartId, productId, quantity).map(ShoppingCartResponse::fromEntity);
+    }
+
+    @GetMapping("/{cartId}/total")
+    public Mono<BigDecimal> calculateTotalPrice(@PathVariable Long cartId) {
+        return cartService.calculateTotalPrice(cartId);
+    }
+
+    @PostMapping("/{cartId}/reprice")
+    public Mono<ShoppingCartResponse> repriceCart(@PathVariable Long cartId) {
+        return cartService.repriceCart(cartId).map(ShoppingCartResponse::fromEntity);
+    }
+
+    @PostMapping("/{cartId}/checkout")
+    public Mono<ShoppingCartResponse> checkoutCart(
+            @PathVariable Long cartId,
+            @RequestHeader(name = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
+        return cartService.checkoutCart(cartId, idempotencyKey).map(ShoppingCartResponse::fromEntity);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.shoppingcart.repository;
+
+import com.example.shoppingcart.model.CartEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface CartEventRepository extends JpaRepository<CartEvent, Long> {
+
+    List<CartEvent> findByCartIdAndVersionGreaterThanOrderByVersion(Long cartId, long version);
+
+    /**
+     * The events of the carts after each cart's snapshot, or all of them for carts without one.
+     */
+    @Query("select e from CartEvent e where e.cartId in :cartIds and e.version > " +
+            "coalesce((select s.version from CartSnapshot s where s.cartId = e.cartId), 0) " +
+            "order by e.cartId, e.version")
+    List<CartEvent> findAfterSnapshotByCartIdIn(@Param("cartIds") Collection<Long> cartIds);
+}
@@ -3,9 +3,20 @@ package com.example.shoppingcart.repository;
 import com.example.shoppingcart.model.CartItem;
 import com.example.shoppingcart.model.ShoppingCart;
 import com.example.shoppingcart.model.Product;
+import jakarta.persistence.QueryHint;
+import jakarta.persistence.Tuple;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 
@@ -13,4 +24,54 @@ import java.util.Optional;
 public interface CartItemRepository extends JpaRepository<CartItem, Long> {
 
     Optional<CartItem> findByShoppingCartAndProduct(ShoppingCart shoppingCart, Product product);
+
+    /**
+     * One page of the cart's lines, in item id order, as the item columns of
+     * {@code ShoppingCartRepository.findCartRowsById}.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("select i.id as itemId, p.id as productId, p.name as productName, p.type as productType, " +
+            "i.unitPrice as productPrice, i.quantity as quantity " +
+            "from CartItem i join i.product p where i.shoppingCart.id = :cartId order by i.id")
+    List<Tuple> findLineRowsByCartId(@Param("cartId") Long cartId, Pageable pageable);
+
+    @Modifying(clearAutomatically = true)
+    @Query("update CartItem i set i.unitPrice = (select p.price from Product p where p = i.product) " +
+            "where i.shoppingCart.id = :cartId")
+    int refreshUnitPricesForCart(@Param("cartId") Long cartId);
+
+    /**
+     * Refreshes stale snapshots of every line in carts with one of the given statuses in a single UPDATE.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update CartItem i set i.unitPrice = (select p.price from Product p where p = i.product) " +
+            "where i.shoppingCart.id in (select c.id from ShoppingCart c where c.status in :statuses) " +
+            "and i.unitPrice <> (select p.price from Product p where p = i.product)")
+    int refreshStaleUnitPrices(@Param("statuses") Collection<ShoppingCart.CartStatus> statuses);
+
+    /**
+     * Carts with one of the given statuses holding lines that point at tombstoned products, in id order.
+     */
+    @Query("select distinct i.shoppingCart.id from CartItem i " +
+            "where i.product.deleted = true and i.shoppingCart.status in :statuses order by i.shoppingCart.id")
+    List<Long> findCartIdsWithDeletedProductLines(@Param("statuses") Collection<ShoppingCart.CartStatus> statuses, Pageable pageable);
+
+    /**
+     * Deletes the lines pointing at tombstoned products from those of the carts that still have one of the given
+     * statuses.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("delete from CartItem i where i.shoppingCart.id in " +
+            "(select c.id from ShoppingCart c where c.id in :cartIds and c.status in :statuses) " +
+            "and i.product.id in (select p.id from Product p where p.deleted = true)")
+    int deleteDeletedProductLines(@Param("cartIds") Collection<Long> cartIds,
+                                  @Param("statuses") Collection<ShoppingCart.CartStatus> statuses);
+
+    /**
+     * Carts holding a reservation that expired before now, in id order.
+     */
+    @Query("select distinct i.shoppingCart.id from CartItem i where i.reservedUntil < :now order by i.shoppingCart.id")
+    List<Long> findCartIdsWithExpiredReservations(@Param("now") LocalDateTime now, Pageable pageable);
+
+    List<CartItem> findByShoppingCartIdAndReservedUntilBefore(Long cartId, LocalDateTime now);
 }
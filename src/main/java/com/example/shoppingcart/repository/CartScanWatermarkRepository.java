@@ -0,0 +1,9 @@
+package com.example.shoppingcart.repository;
+
+import com.example.shoppingcart.model.CartScanWatermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CartScanWatermarkRepository extends JpaRepository<CartScanWatermark, String> {
+}
@@ -0,0 +1,9 @@
+package com.example.shoppingcart.repository;
+
+import com.example.shoppingcart.model.CartSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CartSnapshotRepository extends JpaRepository<CartSnapshot, Long> {
+}
@@ -0,0 +1,22 @@
+package com.example.shoppingcart.repository;
+
+import com.example.shoppingcart.model.ShoppingCart;
+
+import java.time.LocalDateTime;
+
+/**
+ * Closed projection over the shopping_carts columns only.
+ * Reading it never joins cart_items or products.
+ */
+public interface CartSummary {
+
+    Long getId();
+
+    ShoppingCart.CartStatus getStatus();
+
+    LocalDateTime getCreatedAt();
+
+    LocalDateTime getLastModifiedAt();
+
+    LocalDateTime getCheckedOutAt();
+}
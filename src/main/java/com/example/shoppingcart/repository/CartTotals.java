@@ -0,0 +1,13 @@
+package com.example.shoppingcart.repository;
+
+import java.math.BigDecimal;
+
+/**
+ * Line count and subtotal of a cart, aggregated in the database so the lines are never loaded.
+ */
+public interface CartTotals {
+
+    long getLineCount();
+
+    BigDecimal getSubtotal();
+}
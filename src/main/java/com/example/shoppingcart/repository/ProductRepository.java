@@ -1,9 +1,62 @@
 package com.example.shoppingcart.repository;
 
 import com.example.shoppingcart.model.Product;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
+
+    Optional<Product> findByIdAndDeletedFalse(Long id);
+
+    List<Product> findByDeletedFalse();
+
+    /**
+     * Tombstones the product in a single UPDATE; returns 0 if it does not exist or is already deleted.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update Product p set p.deleted = true where p.id = :id and p.deleted = false")
+    int markDeleted(@Param("id") Long id);
+
+    /**
+     * Tombstoned products no longer referenced by any cart line.
+     */
+    @Query("select p.id from Product p where p.deleted = true " +
+            "and not exists (select i.id from CartItem i where i.product = p)")
+    List<Long> findPurgeableIds(Pageable pageable);
+
+    @Query("select coalesce(min(p.id), 1) from Product p")
+    long findMinId();
+
+    @Query("select coalesce(max(p.id), 0) from Product p")
+    long findMaxId();
+
+    List<Product> findByIdBetween(Long fromId, Long toId);
+
+    /**
+     * Sets price = round(price * percent / 100 + amount, 2) for the products in the id range (and of the type, if
+     * given) whose new price stays at or above minPrice, in a single UPDATE.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update Product p set p.price = round(p.price * :percent / 100 + :amount, 2) " +
+            "where p.id between :fromId and :toId and (:type is null or p.type = :type) and p.deleted = false " +
+            "and round(p.price * :percent / 100 + :amount, 2) >= :minPrice")
+    int adjustPrices(@Param("fromId") Long fromId, @Param("toId") Long toId, @Param("type") String type,
+                     @Param("percent") BigDecimal percent, @Param("amount") BigDecimal amount,
+                     @Param("minPrice") BigDecimal minPrice);
+
+    @Query("select count(p) from Product p " +
+            "where p.id between :fromId and :toId and (:type is null or p.type = :type) and p.deleted = false " +
+            "and round(p.price * :percent / 100 + :amount, 2) < :minPrice")
+    int countAdjustedBelow(@Param("fromId") Long fromId, @Param("toId") Long toId, @Param("type") String type,
+                           @Param("percent") BigDecimal percent, @Param("amount") BigDecimal amount,
+                           @Param("minPrice") BigDecimal minPrice);
 }
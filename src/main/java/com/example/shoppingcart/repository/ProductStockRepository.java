@@ -0,0 +1,27 @@
+package com.example.shoppingcart.repository;
+
+import com.example.shoppingcart.model.ProductStock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ProductStockRepository extends JpaRepository<ProductStock, Long> {
+
+    @Query("select s.productId from ProductStock s")
+    List<Long> findAllProductIds();
+
+    /**
+     * Puts units back into the shared pool and adds units to the sold count.
+     *
+     * @return 1 if the product is tracked, 0 otherwise
+     */
+    @Modifying
+    @Query("update ProductStock s set s.available = s.available + :returned, s.sold = s.sold + :sold " +
+            "where s.productId = :productId")
+    int reconcile(@Param("productId") Long productId, @Param("returned") int returned, @Param("sold") long sold);
+}
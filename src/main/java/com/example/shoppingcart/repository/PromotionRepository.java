@@ -0,0 +1,15 @@
+package com.example.shoppingcart.repository;
+
+import com.example.shoppingcart.model.Promotion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PromotionRepository extends JpaRepository<Promotion, Long> {
+
+    @Modifying
+    @Query("delete from Promotion p where p.id = :id")
+    int deletePromotionById(Long id);
+}
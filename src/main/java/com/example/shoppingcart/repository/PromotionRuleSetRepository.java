@@ -0,0 +1,15 @@
+package com.example.shoppingcart.repository;
+
+import com.example.shoppingcart.model.PromotionRuleSet;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PromotionRuleSetRepository extends JpaRepository<PromotionRuleSet, String> {
+
+    @Modifying
+    @Query("update PromotionRuleSet r set r.version = r.version + 1 where r.name = :name")
+    int bumpVersion(String name);
+}
@@ -1,15 +1,133 @@
 package com.example.shoppingcart.repository;
 
 import com.example.shoppingcart.model.ShoppingCart;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import jakarta.persistence.Tuple;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ShoppingCartRepository extends JpaRepository<ShoppingCart, Long> {
 
-    List<ShoppingCart> findByStatusAndCreatedAtBeforeAndCheckedOutAtIsNull(ShoppingCart.CartStatus status, LocalDateTime date);
+    // Items and their products are fetched with the cart so responses can be mapped outside the transaction
+    @Override
+    @EntityGraph(attributePaths = {"items", "items.product"})
+    Optional<ShoppingCart> findById(Long id);
+
+    @EntityGraph(attributePaths = {"items", "items.product"})
+    List<ShoppingCart> findByStatusAndLastModifiedAtBefore(ShoppingCart.CartStatus status, LocalDateTime date);
+
+    Optional<CartSummary> findSummaryById(Long id);
+
+    // The cart row alone, locked until the transaction ends; serialises writers of the same cart
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from ShoppingCart c where c.id = :cartId")
+    Optional<ShoppingCart> findByIdForUpdate(@Param("cartId") Long cartId);
+
+    // Locks the cart row until the transaction ends without loading the cart, so a following findById reads
+    // its items as committed by the previous lock holder (a join fetched under the lock could return older lines)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c.id from ShoppingCart c where c.id = :cartId")
+    Optional<Long> lockById(@Param("cartId") Long cartId);
+
+    // lockById that also reads whether the cart is large, so a change knows whether to load the cart's lines
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c.largeCart from ShoppingCart c where c.id = :cartId")
+    Optional<Boolean> lockLargeCartFlagById(@Param("cartId") Long cartId);
+
+    // lockById for several carts, in id order so that two batches never wait on each other's locks
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c.id from ShoppingCart c where c.id in :cartIds order by c.id")
+    List<Long> lockAllById(@Param("cartIds") Collection<Long> cartIds);
+
+    @EntityGraph(attributePaths = {"items", "items.product"})
+    List<ShoppingCart> findByIdIn(Collection<Long> cartIds);
+
+    @Query("select c.id from ShoppingCart c where c.status in :statuses")
+    List<Long> findIdsByStatusIn(@Param("statuses") Collection<ShoppingCart.CartStatus> statuses);
+
+    /**
+     * Carts with the given status last changed before the cutoff, in (lastModifiedAt, id) order and strictly
+     * after the given position, so a scan can continue where its previous batch ended.
+     */
+    @Query("select c.id as id, c.status as status, c.createdAt as createdAt, " +
+            "c.lastModifiedAt as lastModifiedAt, c.checkedOutAt as checkedOutAt " +
+            "from ShoppingCart c where c.status = :status and c.lastModifiedAt < :cutoff " +
+            "and (c.lastModifiedAt > :afterModifiedAt or (c.lastModifiedAt = :afterModifiedAt and c.id > :afterId)) " +
+            "order by c.lastModifiedAt, c.id")
+    List<CartSummary> findIdleAfter(@Param("status") ShoppingCart.CartStatus status,
+                                    @Param("cutoff") LocalDateTime cutoff,
+                                    @Param("afterModifiedAt") LocalDateTime afterModifiedAt,
+                                    @Param("afterId") Long afterId,
+                                    Pageable pageable);
+
+    /**
+     * Moves the carts from one status to another unless they were changed at or after the cutoff in the
+     * meantime. Leaves lastModifiedAt as it was.
+     */
+    @Modifying
+    @Query("update ShoppingCart c set c.status = :to " +
+            "where c.id in :cartIds and c.status = :from and c.lastModifiedAt < :cutoff")
+    int updateStatusIfIdle(@Param("cartIds") Collection<Long> cartIds,
+                           @Param("from") ShoppingCart.CartStatus from,
+                           @Param("to") ShoppingCart.CartStatus to,
+                           @Param("cutoff") LocalDateTime cutoff);
+
+    /**
+     * One row per cart line (a single row with null item columns for an empty cart), read as scalars
+     * so no entities enter the persistence context. Rows are ordered by item id. A large cart yields the
+     * single row of an empty cart; its lines are read page by page with
+     * {@code CartItemRepository.findLineRowsByCartId}.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("select c.id as cartId, c.status as status, c.largeCart as largeCart, c.createdAt as createdAt, " +
+            "c.lastModifiedAt as lastModifiedAt, c.checkedOutAt as checkedOutAt, " +
+            "i.id as itemId, p.id as productId, p.name as productName, p.type as productType, " +
+            "i.unitPrice as productPrice, i.quantity as quantity " +
+            "from ShoppingCart c left join c.items i on c.largeCart = false left join i.product p " +
+            "where c.id = :cartId order by i.id")
+    List<Tuple> findCartRowsById(@Param("cartId") Long cartId);
+
+    /**
+     * Rows as in {@link #findCartRowsById} for several carts in one query, ordered by cart id, then item id.
+     * Ids without a cart yield no rows.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("select c.id as cartId, c.status as status, c.largeCart as largeCart, c.createdAt as createdAt, " +
+            "c.lastModifiedAt as lastModifiedAt, c.checkedOutAt as checkedOutAt, " +
+            "i.id as itemId, p.id as productId, p.name as productName, p.type as productType, " +
+            "i.unitPrice as productPrice, i.quantity as quantity " +
+            "from ShoppingCart c left join c.items i on c.largeCart = false left join i.product p " +
+            "where c.id in :cartIds order by c.id, i.id")
+    List<Tuple> findCartRowsByIdIn(@Param("cartIds") Collection<Long> cartIds);
+
+    /**
+     * Cart total from the line price snapshots; never joins products. Empty if the cart does not exist.
+     */
+    @Query("select coalesce(sum(i.unitPrice * i.quantity), 0) from ShoppingCart c left join c.items i " +
+            "where c.id = :cartId group by c.id")
+    Optional<BigDecimal> findTotalPriceById(@Param("cartId") Long cartId);
+
+    /**
+     * Line count and subtotal of the cart, summed in the database; empty if the cart does not exist.
+     */
+    @Query("select count(i.id) as lineCount, coalesce(sum(i.unitPrice * i.quantity), 0) as subtotal " +
+            "from ShoppingCart c left join c.items i where c.id = :cartId group by c.id")
+    Optional<CartTotals> findTotalsById(@Param("cartId") Long cartId);
 
 }
@@ -0,0 +1,116 @@
+package com.example.shoppingcart.service;
+
+import com.example.shoppingcart.model.CartScanWatermark;
+import com.example.shoppingcart.model.ShoppingCart.CartStatus;
+import com.example.shoppingcart.repository.CartScanWatermarkRepository;
+import com.example.shoppingcart.repository.CartSummary;
+import com.example.shoppingcart.repository.ShoppingCartRepository;
+import com.example.shoppingcart.sharding.ShardRouter;
+import com.example.shoppingcart.sharding.ShardRouting;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Marks carts ABANDONED once they have gone unchanged for idle-threshold, every interval, on every shard.
+ * A run continues from the watermark stored on the shard: it reads idle ACTIVE carts in (lastModifiedAt, id)
+ * order, batch-size carts per transaction, and moves the watermark past each batch, so carts an earlier run
+ * handled are never read again. A cart changed later gets a newer lastModifiedAt and is reached again once
+ * it idles. A change whose transaction commits more than idle-threshold after it was made can be missed.
+ */
+@Component
+public class AbandonedCartDetector implements DisposableBean {
+
+    static final String WATERMARK = "abandoned-carts";
+
+    // Position before any cart
+    private static final LocalDateTime START = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final ShoppingCartRepository shoppingCartRepository;
+    private final CartScanWatermarkRepository cartScanWatermarkRepository;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration idleThreshold;
+    private final int batchSize;
+    private final ThreadPoolTaskScheduler scheduler;
+
+    @Autowired
+    public AbandonedCartDetector(ShoppingCartRepository shoppingCartRepository,
+                                 CartScanWatermarkRepository cartScanWatermarkRepository,
+                                 ShardRouter shardRouter,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${app.carts.abandonment.idle-threshold:24h}") Duration idleThreshold,
+                                 @Value("${app.carts.abandonment.interval:10m}") Duration interval,
+                                 @Value("${app.carts.abandonment.batch-size:500}") int batchSize) {
+        this.shoppingCartRepository = shoppingCartRepository;
+        this.cartScanWatermarkRepository = cartScanWatermarkRepository;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.idleThreshold = idleThreshold;
+        this.batchSize = batchSize;
+        this.scheduler = new ThreadPoolTaskScheduler();
+        this.scheduler.setPoolSize(1);
+        this.scheduler.setThreadNamePrefix("abandoned-carts-");
+        this.scheduler.initialize();
+        this.scheduler.scheduleWithFixedDelay(this::detect, Instant.now().plus(interval), interval);
+    }
+
+    /**
+     * Runs one detection pass over all shards. Synchronized so a manual run never races the scheduled one
+     * for the watermark.
+     *
+     * @return the number of carts marked abandoned
+     */
+    public synchronized int detect() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(idleThreshold);
+        int abandoned = 0;
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            abandoned += ShardRouting.onShard(shard, () -> detectOnCurrentShard(cutoff));
+        }
+        return abandoned;
+    }
+
+    private int detectOnCurrentShard(LocalDateTime cutoff) {
+        PageRequest batch = PageRequest.of(0, batchSize);
+        int abandoned = 0;
+        while (true) {
+            // Carts marked by the batch, or null once no idle cart is left past the watermark
+            Integer marked = transactionTemplate.execute(status -> {
+                CartScanWatermark watermark = cartScanWatermarkRepository.findById(WATERMARK)
+                        .orElseGet(() -> CartScanWatermark.builder().name(WATERMARK).lastModifiedAt(START).cartId(0L).build());
+                List<CartSummary> carts = shoppingCartRepository.findIdleAfter(CartStatus.ACTIVE, cutoff,
+                        watermark.getLastModifiedAt(), watermark.getCartId(), batch);
+                if (carts.isEmpty()) {
+                    return null;
+                }
+                CartSummary last = carts.get(carts.size() - 1);
+                watermark.setLastModifiedAt(last.getLastModifiedAt());
+                watermark.setCartId(last.getId());
+                cartScanWatermarkRepository.save(watermark);
+                // Carts changed since they were read keep their status
+                return shoppingCartRepository.updateStatusIfIdle(carts.stream().map(CartSummary::getId).toList(),
+                        CartStatus.ACTIVE, CartStatus.ABANDONED, cutoff);
+            });
+            if (marked == null) {
+                break;
+            }
+            abandoned += marked;
+        }
+        return abandoned;
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdown();
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.shoppingcart.service;
+
+import com.example.shoppingcart.exception.CheckoutTimeoutException;
+import com.example.shoppingcart.model.ShoppingCart;
+import com.example.shoppingcart.service.ShoppingCartService.CheckoutOutcome;
+import com.example.shoppingcart.service.ShoppingCartService.CheckoutRequest;
+import com.example.shoppingcart.sharding.ShardRouter;
+import com.example.shoppingcart.sharding.ShardRouting;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Group commit for checkouts, with app.checkout.coalescing.enabled=true in the state persistence mode.
+ * Concurrent checkouts are queued per shard; one dispatcher thread per shard takes the first waiting checkout,
+ * gathers more for up to window or until max-batch-size are gathered, and checks them all out in one transaction
+ * (ShoppingCartService.checkoutCarts), then answers each caller with its own cart or failure. If the batch
+ * transaction fails, every checkout of the batch is retried in a transaction of its own, so one cart short
+ * of stock does not fail the others. Otherwise, and while disabled, each checkout is its own transaction.
+ * A caller waits at most timeout for its answer and then gets a 503; the checkout may still complete, so a retry
+ * should carry the same Idempotency-Key. Any failure, Errors included, answers the callers of the batch and
+ * leaves the dispatcher running.
+ * <p>
+ * Metrics: app.checkout.batch.size (checkouts per batch transaction), app.checkout.batch.wait (time a
+ * checkout waited for its batch to start) and app.checkout.batch.fallbacks (batches retried one by one).
+ */
+@Component
+public class CheckoutCoalescer implements DisposableBean {
+
+    private final ShoppingCartService shoppingCartService;
+    private final ShardRouter shardRouter;
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final long timeoutNanos;
+    private final DistributionSummary batchSize;
+    private final Timer batchWait;
+    private final Counter fallbacks;
+    // Queue and dispatcher thread of each shard
+    private final List<BlockingQueue<PendingCheckout>> queues = new ArrayList<>();
+    private final List<Thread> dispatchers = new ArrayList<>();
+
+    @Autowired
+    public CheckoutCoalescer(ShoppingCartService shoppingCartService,
+                             ShardRouter shardRouter,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.checkout.coalescing.enabled:false}") boolean coalescing,
+                             @Value("${app.cart.persistence-mode:state}") String persistenceMode,
+                             @Value("${app.checkout.coalescing.window:2ms}") Duration window,
+                             @Value("${app.checkout.coalescing.max-batch-size:100}") int maxBatchSize,
+                             @Value("${app.checkout.coalescing.timeout:30s}") Duration timeout) {
+        this.shoppingCartService = shoppingCartService;
+        this.shardRouter = shardRouter;
+        // Event-sourced checkouts append events per cart; there is nothing to batch
+        this.enabled = coalescing && "state".equals(persistenceMode);
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.timeoutNanos = timeout.toNanos();
+        this.batchSize = DistributionSummary.builder("app.checkout.batch.size")
+                .description("Checkouts committed together in one batch transaction")
+                .register(meterRegistry);
+        this.batchWait = Timer.builder("app.checkout.batch.wait")
+                .description("Time a checkout waited for its batch to start")
+                .register(meterRegistry);
+        this.fallbacks = Counter.builder("app.checkout.batch.fallbacks")
+                .description("Batches whose transaction failed and whose checkouts were retried one by one")
+                .register(meterRegistry);
+        if (enabled) {
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                BlockingQueue<PendingCheckout> queue = new LinkedBlockingQueue<>();
+                queues.add(queue);
+                int dispatcherShard = shard;
+                dispatchers.add(Thread.ofPlatform().daemon().name("checkout-batch-" + shard)
+                        .start(() -> dispatch(dispatcherShard, queue)));
+            }
+        }
+    }
+
+    /**
+     * Checks out the cart like ShoppingCartService.checkoutCart, in a batch with concurrent checkouts of its
+     * shard when coalescing is enabled.
+     */
+    public ShoppingCart checkout(Long cartId, String idempotencyKey) {
+        if (!enabled) {
+            return shoppingCartService.checkoutCart(cartId, idempotencyKey);
+        }
+        PendingCheckout pending = new PendingCheckout(new CheckoutRequest(cartId, idempotencyKey), System.nanoTime());
+        BlockingQueue<PendingCheckout> queue = queues.get(shardRouter.shardOf(cartId));
+        queue.add(pending);
+        try {
+            return pending.result.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException
+                    ? runtimeException : new IllegalStateException("Checkout failed.", e.getCause());
+        } catch (TimeoutException e) {
+            throw new CheckoutTimeoutException(queue.remove(pending)
+                    ? "Checkout not processed in time, retry later."
+                    : "Checkout still in progress, retry later with the same Idempotency-Key.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for checkout.", e);
+        }
+    }
+
+    private void dispatch(int shard, BlockingQueue<PendingCheckout> queue) {
+        List<PendingCheckout> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (true) {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    PendingCheckout next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                try {
+                    ShardRouting.onShard(shard, () -> {
+                        run(batch);
+                        return null;
+                    });
+                } catch (Throwable e) {
+                    failAll(batch, e);
+                } finally {
+                    batch.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            queue.drainTo(batch);
+            batch.forEach(pending -> pending.result.completeExceptionally(
+                    new IllegalStateException("Checkout not processed: the service is shutting down.")));
+        }
+    }
+
+    private void run(List<PendingCheckout> batch) {
+        long start = System.nanoTime();
+        batch.forEach(pending -> batchWait.record(start - pending.queuedAt, TimeUnit.NANOSECONDS));
+        List<CheckoutOutcome> outcomes;
+        try {
+            outcomes = shoppingCartService.checkoutCarts(batch.stream().map(PendingCheckout::request).toList());
+        } catch (RuntimeException e) {
+            fallbacks.increment();
+            batch.forEach(this::runAlone);
+            return;
+        } catch (Throwable e) {
+            failAll(batch, e);
+            return;
+        }
+        batchSize.record(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            CheckoutOutcome outcome = outcomes.get(i);
+            if (outcome.failure() != null) {
+                batch.get(i).result.completeExceptionally(outcome.failure());
+            } else {
+                batch.get(i).result.complete(outcome.cart());
+            }
+        }
+    }
+
+    private void runAlone(PendingCheckout pending) {
+        try {
+            pending.result.complete(shoppingCartService.checkoutCart(pending.request.cartId(), pending.request.idempotencyKey()));
+        } catch (Throwable e) {
+            pending.result.completeExceptionally(e);
+        }
+    }
+
+    // Completing an already answered checkout has no effect
+    private static void failAll(List<PendingCheckout> batch, Throwable failure) {
+        batch.forEach(pending -> pending.result.completeExceptionally(failure));
+    }
+
+    @Override
+    public void destroy() {
+        dispatchers.forEach(Thread::interrupt);
+    }
+
+    private record PendingCheckout(CheckoutRequest request, long queuedAt, CompletableFuture<ShoppingCart> result) {
+
+        PendingCheckout(CheckoutRequest request, long queuedAt) {
+            this(request, queuedAt, new CompletableFuture<>());
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.example.shoppingcart.service;
+
+import com.example.shoppingcart.dto.CartItemRequest;
+import com.example.shoppingcart.exception.ResourceNotFoundException;
+import com.example.shoppingcart.inventory.InventoryService;
+import com.example.shoppingcart.model.CartEvent;
+import com.example.shoppingcart.model.CartItem;
+import com.example.shoppingcart.model.CartSnapshot;
+import com.example.shoppingcart.model.CartState;
+import com.example.shoppingcart.model.Product;
+import com.example.shoppingcart.model.ShoppingCart;
+import com.example.shoppingcart.model.ShoppingCart.CartStatus;
+import com.example.shoppingcart.repository.CartEventRepository;
+import com.example.shoppingcart.repository.CartSnapshotRepository;
+import com.example.shoppingcart.repository.CartSummary;
+import com.example.shoppingcart.repository.ProductRepository;
+import com.example.shoppingcart.repository.ShoppingCartRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Cart persistence for app.cart.persistence-mode=event-sourced.
+ * Adding, removing, repricing and checking out append events instead of rewriting cart_items rows; the
+ * current state is rebuilt from the latest snapshot plus the events after it, and a snapshot is stored
+ * every snapshot-interval events. The shopping_carts row still holds the cart's creation time, status and
+ * last change, so status-based queries and abandonment detection keep working.
+ * Callers provide the transaction (ShoppingCartService runs it on the cart's shard).
+ */
+@Service
+@ConditionalOnProperty(name = "app.cart.persistence-mode", havingValue = "event-sourced")
+public class EventSourcedCartService {
+
+    private final ShoppingCartRepository shoppingCartRepository;
+    private final ProductRepository productRepository;
+    private final CartEventRepository cartEventRepository;
+    private final CartSnapshotRepository cartSnapshotRepository;
+    private final ObjectMapper objectMapper;
+    private final InventoryService inventory;
+    private final int snapshotInterval;
+
+    @Autowired
+    public EventSourcedCartService(ShoppingCartRepository shoppingCartRepository,
+                                   ProductRepository productRepository,
+                                   CartEventRepository cartEventRepository,
+                                   CartSnapshotRepository cartSnapshotRepository,
+                                   ObjectMapper objectMapper,
+                                   InventoryService inventory,
+                                   @Value("${app.cart.snapshot-interval:50}") int snapshotInterval) {
+        this.shoppingCartRepository = shoppingCartRepository;
+        this.productRepository = productRepository;
+        this.cartEventRepository = cartEventRepository;
+        this.cartSnapshotRepository = cartSnapshotRepository;
+        this.objectMapper = objectMapper;
+        this.inventory = inventory;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    public ShoppingCart getCart(Long cartId) {
+        CartSummary header = shoppingCartRepository.findSummaryById(cartId)
+                .orElseThrow(() -> new ResourceNotFoundException("Shopping cart not found with ID: " + cartId));
+        return project(header, load(cartId));
+    }
+
+    public CartSummary getSummary(Long cartId) {
+        return summaryOf(getCart(cartId));
+    }
+
+    public ShoppingCart addItem(Long cartId, CartItemRequest request) {
+        ShoppingCart header = lockActive(cartId, "Cannot add items to a checked out cart.");
+        Product product = productRepository.findByIdAndDeletedFalse(request.getProductId())
+                .orElseThrow(() -> new ResourceNotFoundException("Product not found with ID: " + request.getProductId()));
+
+        CartState state = load(cartId);
+        append(state, CartEvent.builder()
+                .cartId(cartId)
+                .type(CartEvent.Type.ITEM_ADDED)
+                .productId(product.getId())
+                .quantity(request.getQuantity())
+                .unitPrice(product.getPrice()));
+        return project(summaryOf(header), state);
+    }
+
+    public ShoppingCart removeItem(Long cartId, Long productId, int quantityToRemove) {
+        ShoppingCart header = lockActive(cartId, "Cannot remove items from a checked out cart.");
+        if (!productRepository.existsById(productId)) {
+            throw new ResourceNotFoundException("Product not found with ID: " + productId);
+        }
+
+        CartState state = load(cartId);
+        CartState.Line line = state.line(productId)
+                .orElseThrow(() -> new ResourceNotFoundException("Product with ID " + productId + " not found in cart " + cartId));
+        append(state, CartEvent.builder()
+                .cartId(cartId)
+                .type(CartEvent.Type.ITEM_REMOVED)
+                .productId(productId)
+                .quantity(Math.min(quantityToRemove, line.getQuantity())));
+        return project(summaryOf(header), state);
+    }
+
+    public ShoppingCart reprice(Long cartId) {
+        ShoppingCart header = lockActive(cartId, "Cannot reprice a checked out cart.");
+        CartState state = load(cartId);
+        repriceLines(cartId, state);
+        return project(summaryOf(header), state);
+    }
+
+    /**
+     * Reprices every active or abandoned cart on the current shard.
+     *
+     * @return the number of cart lines whose price changed
+     */
+    public int repriceActiveCarts() {
+        int changed = 0;
+        for (Long cartId : shoppingCartRepository.findIdsByStatusIn(CartStatus.OPEN)) {
+            Optional<ShoppingCart> header = shoppingCartRepository.findByIdForUpdate(cartId);
+            if (header.isPresent() && header.get().getStatus() != CartStatus.CHECKED_OUT) {
+                changed += repriceLines(cartId, load(cartId));
+            }
+        }
+        return changed;
+    }
+
+    public ShoppingCart checkout(Long cartId, String idempotencyKey) {
+        ShoppingCart header = shoppingCartRepository.findByIdForUpdate(cartId)
+                .orElseThrow(() -> new ResourceNotFoundException("Shopping cart not found with ID: " + cartId));
+        CartState state = load(cartId);
+        if (header.getStatus() == CartStatus.CHECKED_OUT) {
+            if (idempotencyKey != null && idempotencyKey.equals(header.getCheckoutIdempotencyKey())) {
+                return project(summaryOf(header), state);
+            }
+            throw new IllegalStateException("Shopping cart with ID " + cartId + " is already checked out.");
+        }
+        // Events hold no reservations, so tracked stock is only taken here
+        for (CartState.Line line : state.getLines()) {
+            inventory.sell(line.getProductId(), inventory.reserve(line.getProductId(), line.getQuantity()));
+        }
+        append(state, CartEvent.builder().cartId(cartId).type(CartEvent.Type.CHECKED_OUT));
+
+        header.setStatus(CartStatus.CHECKED_OUT);
+        header.setCheckedOutAt(state.getCheckedOutAt());
+        header.setCheckoutIdempotencyKey(idempotencyKey);
+        return project(summaryOf(shoppingCartRepository.save(header)), state);
+    }
+
+    /**
+     * Replaces the (empty) items of cart rows loaded for a report with their event-sourced contents.
+     */
+    public List<ShoppingCart> project(List<ShoppingCart> headers) {
+        if (headers.isEmpty()) {
+            return headers;
+        }
+        List<Long> cartIds = headers.stream().map(ShoppingCart::getId).toList();
+        Map<Long, CartSnapshot> snapshots = cartSnapshotRepository.findAllById(cartIds).stream()
+                .collect(Collectors.toMap(CartSnapshot::getCartId, Function.identity()));
+        Map<Long, List<CartEvent>> events = cartEventRepository.findAfterSnapshotByCartIdIn(cartIds).stream()
+                .collect(Collectors.groupingBy(CartEvent::getCartId));
+
+        List<CartState> states = new ArrayList<>(headers.size());
+        for (ShoppingCart header : headers) {
+            CartState state = restore(snapshots.get(header.getId()));
+            List<CartEvent> cartEvents = events.getOrDefault(header.getId(), List.of());
+            if (!cartEvents.isEmpty() && cartEvents.get(0).getVersion() > state.getVersion() + 1) {
+                states.add(load(header.getId())); // Snapshot taken between the two reads
+                continue;
+            }
+            cartEvents.stream()
+                    .filter(event -> event.getVersion() > state.getVersion())
+                    .forEach(state::apply);
+            states.add(state);
+        }
+        Map<Long, Product> products = products(states.stream().flatMap(state -> state.getLines().stream()));
+
+        List<ShoppingCart> carts = new ArrayList<>(headers.size());
+        for (int i = 0; i < headers.size(); i++) {
+            carts.add(project(summaryOf(headers.get(i)), states.get(i), products));
+        }
+        return carts;
+    }
+
+    private ShoppingCart lockActive(Long cartId, String checkedOutMessage) {
+        ShoppingCart header = shoppingCartRepository.findByIdForUpdate(cartId)
+                .orElseThrow(() -> new ResourceNotFoundException("Shopping cart not found with ID: " + cartId));
+        if (header.getStatus() == CartStatus.CHECKED_OUT) {
+            throw new IllegalStateException(checkedOutMessage);
+        }
+        // Every caller changes the cart: record it on the header row and bring an abandoned cart back
+        header.setStatus(CartStatus.ACTIVE);
+        header.setLastModifiedAt(LocalDateTime.now());
+        return header;
+    }
+
+    private CartState load(Long cartId) {
+        CartState state = restore(cartSnapshotRepository.findById(cartId).orElse(null));
+        cartEventRepository.findByCartIdAndVersionGreaterThanOrderByVersion(cartId, state.getVersion())
+                .forEach(state::apply);
+        return state;
+    }
+
+    private int repriceLines(Long cartId, CartState state) {
+        Map<Long, Product> products = products(state.getLines().stream());
+        int changed = 0;
+        for (CartState.Line line : List.copyOf(state.getLines())) {
+            Product product = products.get(line.getProductId());
+            if (product != null && product.getPrice().compareTo(line.getUnitPrice()) != 0) {
+                append(state, CartEvent.builder()
+                        .cartId(cartId)
+                        .type(CartEvent.Type.PRICE_CHANGED)
+                        .productId(line.getProductId())
+                        .unitPrice(product.getPrice()));
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    private void append(CartState state, CartEvent.CartEventBuilder event) {
+        CartEvent saved = cartEventRepository.save(event
+                .version(state.getVersion() + 1)
+                .occurredAt(LocalDateTime.now())
+                .build());
+        state.apply(saved);
+        if (saved.getVersion() % snapshotInterval == 0) {
+            cartSnapshotRepository.save(CartSnapshot.builder()
+                    .cartId(saved.getCartId())
+                    .version(saved.getVersion())
+                    .state(write(state))
+                    .takenAt(saved.getOccurredAt())
+                    .build());
+        }
+    }
+
+    private CartState restore(CartSnapshot snapshot) {
+        if (snapshot == null) {
+            return new CartState();
+        }
+        try {
+            return objectMapper.readValue(snapshot.getState(), CartState.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable snapshot for cart " + snapshot.getCartId(), e);
+        }
+    }
+
+    private String write(CartState state) {
+        try {
+            return objectMapper.writeValueAsString(state);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot write cart snapshot", e);
+        }
+    }
+
+    private Map<Long, Product> products(Stream<CartState.Line> lines) {
+        return productRepository.findAllById(lines.map(CartState.Line::getProductId).distinct().toList()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+    }
+
+    private ShoppingCart project(CartSummary header, CartState state) {
+        return project(header, state, products(state.getLines().stream()));
+    }
+
+    // Detached cart in the shape ShoppingCartResponse.fromEntity expects; never attached to the persistence context
+    private static ShoppingCart project(CartSummary header, CartState state, Map<Long, Product> products) {
+        ShoppingCart cart = ShoppingCart.builder()
+                .id(header.getId())
+                .status(header.getStatus()) // The event fold knows nothing of ABANDONED, set on the row by the detector
+                .createdAt(header.getCreatedAt())
+                .lastModifiedAt(state.getLastModifiedAt() != null ? state.getLastModifiedAt() : header.getLastModifiedAt())
+                .checkedOutAt(state.getCheckedOutAt() != null ? state.getCheckedOutAt() : header.getCheckedOutAt())
+                .build();
+        state.getLines().forEach(line -> cart.getItems().add(CartItem.builder()
+                .id(line.getId())
+                .shoppingCart(cart)
+                .product(products.getOrDefault(line.getProductId(), Product.builder().id(line.getProductId()).build()))
+                .quantity(line.getQuantity())
+                .unitPrice(line.getUnitPrice())
+                .build()));
+        return cart;
+    }
+
+    private static CartSummary summaryOf(ShoppingCart cart) {
+        return new CartSummary() {
+            @Override
+            public Long getId() {
+                return cart.getId();
+            }
+
+            @Override
+            public CartStatus getStatus() {
+                return cart.getStatus();
+            }
+
+            @Override
+            public LocalDateTime getCreatedAt() {
+                return cart.getCreatedAt();
+            }
+
+            @Override
+            public LocalDateTime getLastModifiedAt() {
+                return cart.getLastModifiedAt();
+            }
+
+            @Override
+            public LocalDateTime getCheckedOutAt() {
+                return cart.getCheckedOutAt();
+            }
+        };
+    }
+}
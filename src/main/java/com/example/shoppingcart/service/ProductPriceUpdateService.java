@@ -0,0 +1,89 @@
+package com.example.shoppingcart.service;
+
+import com.example.shoppingcart.dto.ProductPriceUpdateRequest;
+import com.example.shoppingcart.dto.ProductPriceUpdateResponse;
+import com.example.shoppingcart.model.Product;
+import com.example.shoppingcart.repository.ProductRepository;
+import com.example.shoppingcart.sharding.ProductReplicator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Reprices whole groups of products with set-based UPDATEs instead of loading and saving each product.
+ * The id range is walked in chunks of chunk-size ids, each updated in its own short transaction, so a large
+ * catalog change never holds locks on all of its rows at once. Changes are not atomic across chunks.
+ */
+@Service
+public class ProductPriceUpdateService {
+
+    // Smallest price a product may have, as enforced on ProductRequest
+    static final BigDecimal MIN_PRICE = new BigDecimal("0.01");
+
+    private static final BigDecimal HUNDRED = new BigDecimal(100);
+
+    private final ProductRepository productRepository;
+    private final ProductReplicator productReplicator;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    @Autowired
+    public ProductPriceUpdateService(ProductRepository productRepository,
+                                     ProductReplicator productReplicator,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${app.products.price-update.chunk-size:500}") int chunkSize) {
+        this.productRepository = productRepository;
+        this.productReplicator = productReplicator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Applies the change to every matching product, rounding new prices half-up to the scale of Product.price.
+     * Products whose new price would drop below 0.01 keep their price and are counted as skipped.
+     */
+    public ProductPriceUpdateResponse updatePrices(ProductPriceUpdateRequest request) {
+        // Kept as a percentage: the bound parameter takes the scale of Product.price, too coarse for a factor
+        BigDecimal percent = request.getPercentChange() != null ? HUNDRED.add(request.getPercentChange()) : HUNDRED;
+        BigDecimal amount = request.getAmountChange() != null ? request.getAmountChange() : BigDecimal.ZERO;
+        String type = request.getType();
+
+        long fromId = Math.max(productRepository.findMinId(), request.getMinId() != null ? request.getMinId() : 0);
+        long toId = Math.min(productRepository.findMaxId(), request.getMaxId() != null ? request.getMaxId() : Long.MAX_VALUE);
+
+        int updated = 0;
+        int skipped = 0;
+        int chunks = 0;
+        for (long start = fromId; start <= toId; start += chunkSize) {
+            long chunkStart = start;
+            long chunkEnd = Math.min(toId, start + chunkSize - 1);
+            int[] counts = transactionTemplate.execute(status -> updateChunk(chunkStart, chunkEnd, type, percent, amount));
+            updated += counts[0];
+            skipped += counts[1];
+            chunks++;
+        }
+        return ProductPriceUpdateResponse.builder()
+                .updatedProducts(updated)
+                .skippedProducts(skipped)
+                .chunks(chunks)
+                .build();
+    }
+
+    // Returns {updated, skipped}; the chunk's new prices are copied to the other shards in one batch after commit
+    private int[] updateChunk(long fromId, long toId, String type, BigDecimal percent, BigDecimal amount) {
+        int skipped = productRepository.countAdjustedBelow(fromId, toId, type, percent, amount, MIN_PRICE);
+        int updated = productRepository.adjustPrices(fromId, toId, type, percent, amount, MIN_PRICE);
+        if (updated > 0) {
+            List<Product> changed = productRepository.findByIdBetween(fromId, toId).stream()
+                    .filter(product -> type == null || type.equals(product.getType()))
+                    .toList();
+            productReplicator.replicateAll(changed);
+        }
+        return new int[]{updated, skipped};
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.shoppingcart.service;
+
+import com.example.shoppingcart.admission.CartAdmissionInterceptor;
+import com.example.shoppingcart.model.ShoppingCart.CartStatus;
+import com.example.shoppingcart.pricing.CartPricingEngine;
+import com.example.shoppingcart.repository.CartItemRepository;
+import com.example.shoppingcart.repository.ProductRepository;
+import com.example.shoppingcart.repository.ShoppingCartRepository;
+import com.example.shoppingcart.sharding.ShardRouter;
+import com.example.shoppingcart.sharding.ShardRouting;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Removes soft-deleted products in the background, every interval, on every shard.
+ * Lines of active and abandoned carts that point at a deleted product are deleted first, with their carts locked
+ * like any cart change and their status checked again under the lock, so a concurrent checkout keeps its lines;
+ * a product is removed once no cart line references it, so checked-out carts keep their lines and hold on to the
+ * tombstoned product. Work is done in transactions of at most batch-size carts or products, and a run stops as
+ * soon as more than max-in-flight cart mutations are being processed, to resume at the next interval.
+ */
+@Component
+public class ProductPurger implements DisposableBean {
+
+    private final ProductRepository productRepository;
+    private final CartItemRepository cartItemRepository;
+    private final ShoppingCartRepository shoppingCartRepository;
+    private final ShardRouter shardRouter;
+    private final CartAdmissionInterceptor cartAdmissionInterceptor;
+    private final CartPricingEngine cartPricingEngine;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxInFlight;
+    private final ThreadPoolTaskScheduler scheduler;
+
+    @Autowired
+    public ProductPurger(ProductRepository productRepository,
+                         CartItemRepository cartItemRepository,
+                         ShoppingCartRepository shoppingCartRepository,
+                         ShardRouter shardRouter,
+                         CartAdmissionInterceptor cartAdmissionInterceptor,
+                         CartPricingEngine cartPricingEngine,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${app.products.purge.interval:5m}") Duration interval,
+                         @Value("${app.products.purge.batch-size:500}") int batchSize,
+                         @Value("${app.products.purge.max-in-flight:10}") int maxInFlight) {
+        this.productRepository = productRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.shoppingCartRepository = shoppingCartRepository;
+        this.shardRouter = shardRouter;
+        this.cartAdmissionInterceptor = cartAdmissionInterceptor;
+        this.cartPricingEngine = cartPricingEngine;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+        this.scheduler = new ThreadPoolTaskScheduler();
+        this.scheduler.setPoolSize(1);
+        this.scheduler.setThreadNamePrefix("product-purge-");
+        this.scheduler.initialize();
+        this.scheduler.scheduleWithFixedDelay(this::purge, Instant.now().plus(interval), interval);
+    }
+
+    /**
+     * Runs one purge pass over all shards.
+     *
+     * @return the number of products removed, counting each shard's copy
+     */
+    public int purge() {
+        int purged = 0;
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            purged += ShardRouting.onShard(shard, this::purgeCurrentShard);
+        }
+        return purged;
+    }
+
+    private int purgeCurrentShard() {
+        PageRequest batch = PageRequest.of(0, batchSize);
+        int purged = 0;
+        while (!busy()) {
+            // Products removed by the batch, or null once the shard has nothing left to purge
+            Integer products = transactionTemplate.execute(status -> {
+                List<Long> cartIds = cartItemRepository.findCartIdsWithDeletedProductLines(CartStatus.OPEN, batch);
+                if (!cartIds.isEmpty()) {
+                    shoppingCartRepository.lockAllById(cartIds);
+                    cartItemRepository.deleteDeletedProductLines(cartIds, CartStatus.OPEN);
+                    cartPricingEngine.cartsChanged();
+                    return 0;
+                }
+                List<Long> productIds = productRepository.findPurgeableIds(batch);
+                productRepository.deleteAllByIdInBatch(productIds);
+                return productIds.isEmpty() ? null : productIds.size();
+            });
+            if (products == null) {
+                break;
+            }
+            purged += products;
+        }
+        return purged;
+    }
+
+    private boolean busy() {
+        return cartAdmissionInterceptor.inFlight() > maxInFlight;
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdown();
+    }
+}
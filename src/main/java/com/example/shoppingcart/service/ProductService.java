@@ -3,7 +3,10 @@ package com.example.shoppingcart.service;
 import com.example.shoppingcart.dto.ProductRequest;
 import com.example.shoppingcart.exception.ResourceNotFoundException;
 import com.example.shoppingcart.model.Product;
+import com.example.shoppingcart.pricing.CartPricingEngine;
 import com.example.shoppingcart.repository.ProductRepository;
+import com.example.shoppingcart.sharding.ProductReplicator;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -14,10 +17,18 @@ import java.util.List;
 public class ProductService {
 
     private final ProductRepository productRepository;
+    private final ProductReplicator productReplicator;
+    private final CartPricingEngine cartPricingEngine;
+    // Concurrent reads of the same product share one load
+    private final SingleFlight<Long, Product> productReads;
 
     @Autowired
-    public ProductService(ProductRepository productRepository) {
+    public ProductService(ProductRepository productRepository, ProductReplicator productReplicator,
+                          CartPricingEngine cartPricingEngine, MeterRegistry meterRegistry) {
         this.productRepository = productRepository;
+        this.productReplicator = productReplicator;
+        this.cartPricingEngine = cartPricingEngine;
+        this.productReads = new SingleFlight<>("product", meterRegistry);
     }
 
     @Transactional
@@ -27,33 +38,52 @@ public class ProductService {
                 .price(request.getPrice())
                 .type(request.getType())
                 .build();
-        return productRepository.save(product);
+        Product savedProduct = productRepository.save(product);
+        productReplicator.replicate(savedProduct);
+        return savedProduct;
     }
 
+    /**
+     * Concurrent calls for the same product share one load and the product it returns, unless called inside a
+     * read-write transaction, which loads a managed product of its own.
+     */
+    @Transactional(readOnly = true)
     public Product getProductById(Long id) {
-        return productRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Product not found with ID: " + id));
+        return productReads.load(id, () -> productRepository.findByIdAndDeletedFalse(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Product not found with ID: " + id)));
     }
 
+    @Transactional(readOnly = true)
     public List<Product> getAllProducts() {
-        return productRepository.findAll();
+        return productRepository.findByDeletedFalse();
     }
 
     @Transactional
     public Product updateProduct(Long id, ProductRequest request) {
         Product existingProduct = getProductById(id); // Throws if not found
+        if (!existingProduct.getType().equals(request.getType())) {
+            cartPricingEngine.cartsChanged(); // Type promotions may now apply differently to carts holding it
+        }
         existingProduct.setName(request.getName());
         existingProduct.setPrice(request.getPrice());
         existingProduct.setType(request.getType());
-        return productRepository.save(existingProduct);
+        Product savedProduct = productRepository.save(existingProduct);
+        productReplicator.replicate(savedProduct);
+        productReads.forgetAfterCommit(id);
+        return savedProduct;
     }
 
+    /**
+     * Soft-deletes the product with a single UPDATE. It disappears from product reads and can no longer be
+     * added to carts; ProductPurger removes it, and its lines in active carts, in the background.
+     */
     @Transactional
     public void deleteProduct(Long id) {
-        if (!productRepository.existsById(id)) {
+        if (productRepository.markDeleted(id) == 0) {
             throw new ResourceNotFoundException("Product not found with ID: " + id);
         }
-        productRepository.deleteById(id);
+        productReplicator.markDeleted(id);
+        productReads.forgetAfterCommit(id);
     }
 
 }
@@ -0,0 +1,82 @@
+package com.example.shoppingcart.service;
+
+import com.example.shoppingcart.dto.PromotionRequest;
+import com.example.shoppingcart.exception.ResourceNotFoundException;
+import com.example.shoppingcart.model.Promotion;
+import com.example.shoppingcart.model.PromotionRuleSet;
+import com.example.shoppingcart.pricing.CartPricingEngine;
+import com.example.shoppingcart.repository.PromotionRepository;
+import com.example.shoppingcart.repository.PromotionRuleSetRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * Manages promotions on shard 0. Every change bumps the stored rule-set version in its own transaction, which
+ * makes every node's CartPricingEngine recompile; this node's at once after commit.
+ */
+@Service
+public class PromotionService {
+
+    private final PromotionRepository promotionRepository;
+    private final PromotionRuleSetRepository ruleSetRepository;
+    private final CartPricingEngine cartPricingEngine;
+
+    @Autowired
+    public PromotionService(PromotionRepository promotionRepository, PromotionRuleSetRepository ruleSetRepository,
+                            CartPricingEngine cartPricingEngine) {
+        this.promotionRepository = promotionRepository;
+        this.ruleSetRepository = ruleSetRepository;
+        this.cartPricingEngine = cartPricingEngine;
+    }
+
+    @Transactional
+    public Promotion createPromotion(PromotionRequest request) {
+        Promotion promotion = promotionRepository.save(Promotion.builder()
+                .name(request.getName())
+                .kind(request.getKind())
+                .productType(request.getKind() != Promotion.Kind.CART_THRESHOLD ? request.getProductType() : null)
+                .percentOff(request.getKind() == Promotion.Kind.PERCENT_OFF_TYPE ? request.getPercentOff() : null)
+                .buyQuantity(request.getKind() == Promotion.Kind.BUY_X_GET_Y ? request.getBuyQuantity() : null)
+                .freeQuantity(request.getKind() == Promotion.Kind.BUY_X_GET_Y ? request.getFreeQuantity() : null)
+                .minimumSubtotal(request.getKind() == Promotion.Kind.CART_THRESHOLD ? request.getMinimumSubtotal() : null)
+                .amountOff(request.getKind() == Promotion.Kind.CART_THRESHOLD ? request.getAmountOff() : null)
+                .build());
+        promotionsChanged();
+        return promotion;
+    }
+
+    @Transactional(readOnly = true)
+    public List<Promotion> getAllPromotions() {
+        return promotionRepository.findAll();
+    }
+
+    @Transactional
+    public void deletePromotion(Long id) {
+        if (promotionRepository.deletePromotionById(id) == 0) {
+            throw new ResourceNotFoundException("Promotion not found with ID: " + id);
+        }
+        promotionsChanged();
+    }
+
+    // The first change ever inserts the row; the bump's row lock orders concurrent changes after that
+    private void promotionsChanged() {
+        if (ruleSetRepository.bumpVersion(PromotionRuleSet.PROMOTIONS) == 0) {
+            ruleSetRepository.save(new PromotionRuleSet(PromotionRuleSet.PROMOTIONS, 1L));
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cartPricingEngine.promotionsChanged();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cartPricingEngine.promotionsChanged();
+            }
+        });
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.shoppingcart.service;
+
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * State of one abandoned-cart report job. Updated by the worker thread, read by pollers.
+ */
+@Getter
+public class ReportJob {
+
+    private final String id;
+    private final LocalDate date;
+    private final LocalDateTime createdAt;
+    private volatile Status status = Status.QUEUED;
+    private volatile LocalDateTime completedAt;
+    private volatile Path resultFile;
+    private volatile String error;
+
+    public ReportJob(String id, LocalDate date, LocalDateTime createdAt) {
+        this.id = id;
+        this.date = date;
+        this.createdAt = createdAt;
+    }
+
+    void running() {
+        status = Status.RUNNING;
+    }
+
+    void completed(Path file, LocalDateTime at) {
+        resultFile = file;
+        completedAt = at;
+        status = Status.COMPLETED;
+    }
+
+    void failed(String message, LocalDateTime at) {
+        error = message;
+        completedAt = at;
+        status = Status.FAILED;
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED,
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.shoppingcart.service;
+
+import com.example.shoppingcart.admission.ReportBulkhead;
+import com.example.shoppingcart.dto.ShoppingCartResponse;
+import com.example.shoppingcart.exception.ResourceNotFoundException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Abandoned-cart reports as background jobs.
+ * A job runs in the report bulkhead and writes its result as a JSON file; callers poll the job and
+ * download the file when it completes. Requests for a date whose report is still running share that job;
+ * a finished report is never reused, since carts keep being marked abandoned and reactivated after its date.
+ */
+@Service
+public class ReportJobService {
+
+    private final ShoppingCartService shoppingCartService;
+    private final ReportBulkhead reportBulkhead;
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final Duration jobTimeout;
+    private final int maxJobs;
+    private final Clock clock;
+
+    private final Map<String, ReportJob> jobs = new ConcurrentHashMap<>();
+    private final Map<LocalDate, ReportJob> runningJobs = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ReportJobService(ShoppingCartService shoppingCartService,
+                            ReportBulkhead reportBulkhead,
+                            ObjectMapper objectMapper,
+                            @Value("${app.reports.directory:${java.io.tmpdir}/shopping-cart-reports}") Path directory,
+                            @Value("${app.reports.job-timeout:10m}") Duration jobTimeout,
+                            @Value("${app.reports.max-jobs:1000}") int maxJobs) {
+        this(shoppingCartService, reportBulkhead, objectMapper, directory, jobTimeout, maxJobs, Clock.systemDefaultZone());
+    }
+
+    ReportJobService(ShoppingCartService shoppingCartService, ReportBulkhead reportBulkhead, ObjectMapper objectMapper,
+                     Path directory, Duration jobTimeout, int maxJobs, Clock clock) {
+        this.shoppingCartService = shoppingCartService;
+        this.reportBulkhead = reportBulkhead;
+        this.objectMapper = objectMapper;
+        this.directory = directory;
+        this.jobTimeout = jobTimeout;
+        this.maxJobs = maxJobs;
+        this.clock = clock;
+    }
+
+    /**
+     * Starts a report job for the date, or returns the job already running for it.
+     */
+    public ReportJob submit(LocalDate date) {
+        ReportJob[] created = new ReportJob[1];
+        ReportJob job = runningJobs.compute(date, (d, existing) -> {
+            if (existing != null && !existing.isFinished()) {
+                return existing;
+            }
+            created[0] = newJob(d);
+            return created[0];
+        });
+        return created[0] != null ? start(created[0]) : job;
+    }
+
+    public ReportJob getJob(String jobId) {
+        ReportJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new ResourceNotFoundException("Report job not found with ID: " + jobId);
+        }
+        return job;
+    }
+
+    private ReportJob newJob(LocalDate date) {
+        return new ReportJob(UUID.randomUUID().toString(), date, LocalDateTime.now(clock));
+    }
+
+    private ReportJob start(ReportJob job) {
+        jobs.put(job.getId(), job);
+        evictOldJobs();
+        reportBulkhead.submit(() -> writeReport(job), jobTimeout).whenComplete((file, error) -> {
+            if (error == null) {
+                job.completed(file, LocalDateTime.now(clock));
+            } else {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                job.failed(cause.getClass().getSimpleName() + ": " + cause.getMessage(), LocalDateTime.now(clock));
+            }
+            runningJobs.remove(job.getDate(), job);
+        });
+        return job;
+    }
+
+    private Path writeReport(ReportJob job) {
+        job.running();
+        List<ShoppingCartResponse> report = shoppingCartService.getAbandonedCartsForReport(job.getDate()).stream()
+                .map(ShoppingCartResponse::fromEntity)
+                .collect(Collectors.toList());
+        try {
+            Files.createDirectories(directory);
+            Path file = directory.resolve("abandoned-carts-" + job.getDate() + "-" + job.getId() + ".json");
+            objectMapper.writeValue(file.toFile(), report);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Keeps the job table bounded: drops the oldest finished jobs
+    private void evictOldJobs() {
+        if (jobs.size() <= maxJobs) {
+            return;
+        }
+        jobs.values().stream()
+                .filter(ReportJob::isFinished)
+                .sorted(Comparator.comparing(ReportJob::getCreatedAt))
+                .limit(jobs.size() - maxJobs)
+                .forEach(job -> {
+                    jobs.remove(job.getId());
+                    deleteQuietly(job.getResultFile());
+                });
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // Leftover files are harmless; the directory is scratch space
+        }
+    }
+}
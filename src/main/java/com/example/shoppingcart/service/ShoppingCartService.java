@@ -1,15 +1,36 @@
 package com.example.shoppingcart.service;
 
+import com.example.shoppingcart.datasource.DataSourceRouting;
+import com.example.shoppingcart.datasource.ReplicaLagTracker;
+import com.example.shoppingcart.dto.CartBatchResponse;
+import com.example.shoppingcart.dto.CartItemPageResponse;
 import com.example.shoppingcart.dto.CartItemRequest;
+import com.example.shoppingcart.dto.CartItemResponse;
+import com.example.shoppingcart.dto.CartRowsJson;
+import com.example.shoppingcart.dto.ShoppingCartResponse;
 import com.example.shoppingcart.exception.ResourceNotFoundException;
+import com.example.shoppingcart.inventory.InventoryService;
 import com.example.shoppingcart.model.CartItem;
 import com.example.shoppingcart.model.Product;
 import com.example.shoppingcart.model.ShoppingCart;
 import com.example.shoppingcart.model.ShoppingCart.CartStatus;
+import com.example.shoppingcart.notification.CartChangeBroadcaster;
+import com.example.shoppingcart.pricing.CartPricingEngine;
 import com.example.shoppingcart.repository.CartItemRepository;
+import com.example.shoppingcart.repository.CartSummary;
+import com.example.shoppingcart.repository.CartTotals;
 import com.example.shoppingcart.repository.ProductRepository;
 import com.example.shoppingcart.repository.ShoppingCartRepository;
+import com.example.shoppingcart.sharding.CartShard;
+import com.example.shoppingcart.sharding.ShardIds;
+import com.example.shoppingcart.sharding.ShardRouter;
+import com.example.shoppingcart.sharding.ShardRouting;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.Tuple;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -17,8 +38,14 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 
 @Service
@@ -27,61 +54,252 @@ public class ShoppingCartService {
     private final ShoppingCartRepository shoppingCartRepository;
     private final ProductRepository productRepository;
     private final CartItemRepository cartItemRepository;
+    private final ReplicaLagTracker replicaLagTracker;
+    private final ShardRouter shardRouter;
+    private final CartChangeBroadcaster cartChanges;
+    private final CartPricingEngine cartPricing;
+    private final InventoryService inventory;
+    private final int largeCartThreshold;
+    // Concurrent reads of the same cart document share one load
+    private final SingleFlight<Long, Object> cartDocumentReads;
+    // Present only with app.cart.persistence-mode=event-sourced
+    private final EventSourcedCartService eventSourcedCarts;
 
     @Autowired
     public ShoppingCartService(ShoppingCartRepository shoppingCartRepository,
                                ProductRepository productRepository,
-                               CartItemRepository cartItemRepository) {
+                               CartItemRepository cartItemRepository,
+                               ReplicaLagTracker replicaLagTracker,
+                               ShardRouter shardRouter,
+                               CartChangeBroadcaster cartChanges,
+                               CartPricingEngine cartPricing,
+                               InventoryService inventory,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.cart.large-cart-threshold:500}") int largeCartThreshold,
+                               Optional<EventSourcedCartService> eventSourcedCarts) {
         this.shoppingCartRepository = shoppingCartRepository;
         this.productRepository = productRepository;
         this.cartItemRepository = cartItemRepository;
+        this.replicaLagTracker = replicaLagTracker;
+        this.shardRouter = shardRouter;
+        this.cartChanges = cartChanges;
+        this.cartPricing = cartPricing;
+        this.inventory = inventory;
+        this.largeCartThreshold = largeCartThreshold;
+        this.cartDocumentReads = new SingleFlight<>("cart_document", meterRegistry);
+        this.eventSourcedCarts = eventSourcedCarts.orElse(null);
     }
 
+    @CartShard(newCart = true)
     @Transactional
     public ShoppingCart createCart() {
+        return createCart(false);
+    }
+
+    /**
+     * Creates a cart, large from the start if asked: its lines are then never loaded as a whole to change one,
+     * and its views leave them out, to be read page by page with getCartItems.
+     */
+    @CartShard(newCart = true)
+    @Transactional
+    public ShoppingCart createCart(boolean largeCart) {
         ShoppingCart cart = new ShoppingCart();
-        return shoppingCartRepository.save(cart);
+        cart.setLargeCart(largeCart);
+        ShoppingCart savedCart = shoppingCartRepository.save(cart);
+        replicaLagTracker.recordWrite(savedCart.getId());
+        return savedCart;
     }
 
+    @CartShard
     public ShoppingCart getCartById(Long cartId) {
+        if (eventSourcedCarts != null) {
+            return eventSourcedCarts.getCart(cartId);
+        }
         return shoppingCartRepository.findById(cartId)
                 .orElseThrow(() -> new ResourceNotFoundException("Shopping cart not found with ID: " + cartId));
     }
 
+    /**
+     * Read path for GET requests: builds the response straight from scalar rows
+     * instead of loading and dirty-checking managed entities, then applies promotions.
+     */
+    @CartShard
+    @Transactional(readOnly = true)
+    public ShoppingCartResponse getCartResponse(Long cartId) {
+        if (eventSourcedCarts != null) {
+            return cartPricing.price(ShoppingCartResponse.fromEntity(replicaLagTracker.read(cartId, () -> eventSourcedCarts.getCart(cartId))));
+        }
+        List<Tuple> rows = replicaLagTracker.read(cartId, () -> shoppingCartRepository.findCartRowsById(cartId));
+        if (rows.isEmpty()) {
+            throw new ResourceNotFoundException("Shopping cart not found with ID: " + cartId);
+        }
+        ShoppingCartResponse cart = ShoppingCartResponse.fromRows(rows);
+        return cart.getLargeCart() ? withLargeCartTotals(cart) : cartPricing.price(cart);
+    }
+
+    /**
+     * Full view for the GET endpoint. In the state persistence mode, while no promotion is defined, this is
+     * a CartRowsJson that streams the same document ShoppingCartResponse would produce without building it;
+     * otherwise, and for a large cart, it is the priced ShoppingCartResponse. Concurrent calls for the same
+     * cart share one read and the document it returns.
+     */
+    @CartShard
+    @Transactional(readOnly = true)
+    public Object getCartDocument(Long cartId) {
+        return cartDocumentReads.load(cartId, () -> {
+            if (eventSourcedCarts != null || cartPricing.hasPromotions()) {
+                return getCartResponse(cartId);
+            }
+            List<Tuple> rows = replicaLagTracker.read(cartId, () -> shoppingCartRepository.findCartRowsById(cartId));
+            if (rows.isEmpty()) {
+                throw new ResourceNotFoundException("Shopping cart not found with ID: " + cartId);
+            }
+            if (Boolean.TRUE.equals(rows.get(0).get("largeCart"))) {
+                return withLargeCartTotals(ShoppingCartResponse.fromRows(rows));
+            }
+            return new CartRowsJson(rows);
+        });
+    }
+
+    /**
+     * One page of the cart's lines in item id order, with the cart's line count; the way to read the lines of
+     * a large cart, whose views leave them out.
+     */
+    @CartShard
+    @Transactional(readOnly = true)
+    public CartItemPageResponse getCartItems(Long cartId, int page, int size) {
+        List<CartItemResponse> items;
+        long itemCount;
+        if (eventSourcedCarts != null) {
+            List<CartItemResponse> lines = ShoppingCartResponse.fromEntity(
+                    replicaLagTracker.read(cartId, () -> eventSourcedCarts.getCart(cartId))).getItems();
+            items = lines.stream().skip((long) page * size).limit(size).toList();
+            itemCount = lines.size();
+        } else {
+            itemCount = replicaLagTracker.read(cartId, () -> shoppingCartRepository.findTotalsById(cartId))
+                    .orElseThrow(() -> new ResourceNotFoundException("Shopping cart not found with ID: " + cartId))
+                    .getLineCount();
+            items = readLines(cartId, PageRequest.of(page, size));
+        }
+        return CartItemPageResponse.builder()
+                .cartId(cartId)
+                .page(page)
+                .size(size)
+                .itemCount(itemCount)
+                .items(items)
+                .build();
+    }
+
+    @CartShard
+    @Transactional(readOnly = true)
+    public CartSummary getCartSummary(Long cartId) {
+        if (eventSourcedCarts != null) {
+            return replicaLagTracker.read(cartId, () -> eventSourcedCarts.getSummary(cartId));
+        }
+        return replicaLagTracker.read(cartId, () -> shoppingCartRepository.findSummaryById(cartId))
+                .orElseThrow(() -> new ResourceNotFoundException("Shopping cart not found with ID: " + cartId));
+    }
+
+    /**
+     * Full views of several carts with one query per shard that holds any of them, whatever the
+     * number of carts. Carts come back in request order with duplicates dropped; ids without a cart
+     * are listed as missing. Reads go to the primary if any of the carts was written too recently.
+     */
+    public CartBatchResponse getCartResponses(List<Long> cartIds) {
+        List<Long> requestedIds = cartIds.stream().filter(Objects::nonNull).distinct().toList();
+        Supplier<List<List<ShoppingCartResponse>>> read = () -> shardRouter.onEveryShard(true, () -> {
+            int shard = ShardRouting.currentShard();
+            List<Long> shardIds = requestedIds.stream().filter(cartId -> ShardIds.shardOf(cartId) == shard).toList();
+            if (shardIds.isEmpty()) {
+                return List.of();
+            }
+            if (eventSourcedCarts != null) {
+                return eventSourcedCarts.project(shoppingCartRepository.findAllById(shardIds)).stream()
+                        .map(ShoppingCartResponse::fromEntity)
+                        .toList();
+            }
+            return ShoppingCartResponse.fromRowsOfCarts(shoppingCartRepository.findCartRowsByIdIn(shardIds)).stream()
+                    .map(cart -> cart.getLargeCart() ? withLargeCartTotals(cart) : cart)
+                    .toList();
+        });
+        boolean recentlyWritten = requestedIds.stream().anyMatch(replicaLagTracker::requiresPrimary);
+
+        Map<Long, ShoppingCartResponse> found = (recentlyWritten ? DataSourceRouting.onPrimary(read) : read.get()).stream()
+                .flatMap(List::stream)
+                .map(cartPricing::price)
+                .collect(Collectors.toMap(ShoppingCartResponse::getId, Function.identity()));
+        return CartBatchResponse.builder()
+                .carts(requestedIds.stream().map(found::get).filter(Objects::nonNull).toList())
+                .missingIds(requestedIds.stream().filter(cartId -> !found.containsKey(cartId)).toList())
+                .build();
+    }
+
+    @CartShard
     @Transactional
     public ShoppingCart addItemToCart(Long cartId, CartItemRequest request) {
-        ShoppingCart cart = getCartById(cartId);
+        if (eventSourcedCarts != null) {
+            ShoppingCart cart = eventSourcedCarts.addItem(cartId, request);
+            recordWrite(cartId);
+            publishChange(cart);
+            return cart;
+        }
+        ShoppingCart cart = lockCart(cartId);
         if (cart.getStatus() == CartStatus.CHECKED_OUT) {
             throw new IllegalStateException("Cannot add items to a checked out cart.");
         }
+        touch(cart);
 
-        Product product = productRepository.findById(request.getProductId())
+        Product product = productRepository.findByIdAndDeletedFalse(request.getProductId())
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found with ID: " + request.getProductId()));
 
         Optional<CartItem> existingCartItem = cartItemRepository.findByShoppingCartAndProduct(cart, product);
 
+        CartItem item;
         if (existingCartItem.isPresent()) {
-            CartItem item = existingCartItem.get();
+            item = existingCartItem.get();
             item.setQuantity(item.getQuantity() + request.getQuantity());
-            cartItemRepository.save(item);
         } else {
-            CartItem newItem = CartItem.builder()
+            item = CartItem.builder()
                     .shoppingCart(cart)
                     .product(product)
                     .quantity(request.getQuantity())
+                    .unitPrice(product.getPrice())
                     .build();
-            cart.getItems().add(newItem);
-            cartItemRepository.save(newItem);
+            if (!cart.isLargeCart()) {
+                cart.getItems().add(item);
+            }
         }
-        return shoppingCartRepository.save(cart);
+        if (inventory.reservesOnAdd()) {
+            int reserved = inventory.reserve(product.getId(), request.getQuantity());
+            if (reserved > 0) {
+                item.setReservedQuantity(item.getReservedQuantity() + reserved);
+                item.setReservedUntil(LocalDateTime.now().plus(inventory.reservationTtl()));
+            }
+        }
+        cartItemRepository.save(item);
+        if (!cart.isLargeCart() && cart.getItems().size() > largeCartThreshold) {
+            cart.setLargeCart(true); // From now on its lines stay unloaded
+        }
+        recordWrite(cartId);
+        ShoppingCart savedCart = shoppingCartRepository.save(cart);
+        publishChange(savedCart);
+        return savedCart;
     }
 
+    @CartShard
     @Transactional
     public ShoppingCart removeItemFromCart(Long cartId, Long productId, int quantityToRemove) {
-        ShoppingCart cart = getCartById(cartId);
+        if (eventSourcedCarts != null) {
+            ShoppingCart cart = eventSourcedCarts.removeItem(cartId, productId, quantityToRemove);
+            recordWrite(cartId);
+            publishChange(cart);
+            return cart;
+        }
+        ShoppingCart cart = lockCart(cartId);
         if (cart.getStatus() == CartStatus.CHECKED_OUT) {
             throw new IllegalStateException("Cannot remove items from a checked out cart.");
         }
+        touch(cart);
 
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found with ID: " + productId));
@@ -89,40 +307,275 @@ public class ShoppingCartService {
         CartItem cartItem = cartItemRepository.findByShoppingCartAndProduct(cart, product)
                 .orElseThrow(() -> new ResourceNotFoundException("Product with ID " + productId + " not found in cart " + cartId));
 
-        if (cartItem.getQuantity() <= quantityToRemove) {
-            cart.getItems().remove(cartItem); // Remove from cart's items list
+        int remaining = Math.max(0, cartItem.getQuantity() - quantityToRemove);
+        if (cartItem.getReservedQuantity() > remaining) {
+            inventory.release(productId, cartItem.getReservedQuantity() - remaining);
+            cartItem.setReservedQuantity(remaining);
+        }
+        if (remaining == 0) {
+            if (!cart.isLargeCart()) {
+                cart.getItems().remove(cartItem); // Remove from cart's items list
+            }
             cartItemRepository.delete(cartItem); // Delete from database
         } else {
-            cartItem.setQuantity(cartItem.getQuantity() - quantityToRemove);
+            cartItem.setQuantity(remaining);
             cartItemRepository.save(cartItem);
         }
-        return shoppingCartRepository.save(cart); // Save cart to update lastModifiedAt
+        recordWrite(cartId);
+        ShoppingCart savedCart = shoppingCartRepository.save(cart);
+        publishChange(savedCart);
+        return savedCart;
     }
 
+    /**
+     * Total after promotions. Without promotions it is summed in the database; with them it is taken from
+     * the pricing cache when this version of the cart was priced before, and the cart is loaded otherwise.
+     */
+    @CartShard
+    @Transactional(readOnly = true)
     public BigDecimal calculateTotalPrice(Long cartId) {
-        ShoppingCart cart = getCartById(cartId);
-        return cart.getItems().stream()
-                .map(CartItem::getItemTotalPrice)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        if (cartPricing.hasPromotions()) {
+            CartSummary summary = getCartSummary(cartId);
+            return cartPricing.cachedTotal(cartId, summary.getLastModifiedAt())
+                    .orElseGet(() -> getCartResponse(cartId).getTotalPrice());
+        }
+        if (eventSourcedCarts != null) {
+            return replicaLagTracker.read(cartId, () -> eventSourcedCarts.getCart(cartId)).getItems().stream()
+                    .map(CartItem::getItemTotalPrice)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+        }
+        return replicaLagTracker.read(cartId, () -> shoppingCartRepository.findTotalPriceById(cartId))
+                .orElseThrow(() -> new ResourceNotFoundException("Shopping cart not found with ID: " + cartId));
+    }
+
+    /**
+     * Refreshes the price snapshots of every line in the cart to the current product prices.
+     */
+    @CartShard
+    @Transactional
+    public ShoppingCart repriceCart(Long cartId) {
+        if (eventSourcedCarts != null) {
+            ShoppingCart cart = eventSourcedCarts.reprice(cartId);
+            recordWrite(cartId);
+            publishChange(cart);
+            return cart;
+        }
+        ShoppingCart cart = lockCart(cartId);
+        if (cart.getStatus() == CartStatus.CHECKED_OUT) {
+            throw new IllegalStateException("Cannot reprice a checked out cart.");
+        }
+        touch(cart);
+        shoppingCartRepository.saveAndFlush(cart); // The bulk update below clears the persistence context
+        cartItemRepository.refreshUnitPricesForCart(cartId);
+        recordWrite(cartId);
+        // Reload: the bulk update cleared the persistence context
+        ShoppingCart repricedCart = cart.isLargeCart() ? shoppingCartRepository.getReferenceById(cartId) : getCartById(cartId);
+        publishChange(repricedCart);
+        return repricedCart;
     }
 
+    /**
+     * Refreshes stale price snapshots across all active and abandoned carts, in one statement per shard.
+     *
+     * @return the number of cart lines whose price changed
+     */
+    public int repriceActiveCarts() {
+        return shardRouter.onEveryShard(false, () -> {
+                    int changed = eventSourcedCarts != null
+                            ? eventSourcedCarts.repriceActiveCarts()
+                            : cartItemRepository.refreshStaleUnitPrices(CartStatus.OPEN);
+                    if (changed > 0) {
+                        cartPricing.cartsChanged(); // The bulk update leaves lastModifiedAt as it was
+                        publishSubscribedCartsOnCurrentShard();
+                    }
+                    return changed;
+                })
+                .stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+    }
+
+    @CartShard
     @Transactional
     public ShoppingCart checkoutCart(Long cartId) {
-        ShoppingCart cart = getCartById(cartId);
+        return checkoutCart(cartId, null);
+    }
+
+    /**
+     * Checks out the cart, remembering the idempotency key on it. Repeating a checkout with the key
+     * that checked the cart out returns the cart unchanged instead of failing. Lines of tracked products sell
+     * their reserved stock; a line short of stock fails the checkout with InsufficientStockException.
+     */
+    @CartShard
+    @Transactional
+    public ShoppingCart checkoutCart(Long cartId, String idempotencyKey) {
+        if (eventSourcedCarts != null) {
+            ShoppingCart cart = eventSourcedCarts.checkout(cartId, idempotencyKey);
+            recordWrite(cartId);
+            publishChange(cart);
+            return cart;
+        }
+        return checkOut(lockCart(cartId), idempotencyKey);
+    }
+
+    /**
+     * Checks out carts of the current shard in one transaction, for CheckoutCoalescer. The carts are locked in id
+     * order and loaded with two statements, then checked out in request order like checkoutCart; the updates
+     * reach the database in JDBC batches. A cart that does not exist or is already checked out gets its
+     * exception as its outcome without affecting the others. Any other failure, such as a line short of stock,
+     * rolls back the whole batch.
+     *
+     * @return the outcome of each request, in request order
+     */
+    @Transactional
+    public List<CheckoutOutcome> checkoutCarts(List<CheckoutRequest> requests) {
+        List<Long> cartIds = requests.stream().map(CheckoutRequest::cartId).distinct().toList();
+        shoppingCartRepository.lockAllById(cartIds);
+        Map<Long, ShoppingCart> carts = shoppingCartRepository.findByIdIn(cartIds).stream()
+                .collect(Collectors.toMap(ShoppingCart::getId, Function.identity()));
+
+        List<CheckoutOutcome> outcomes = new ArrayList<>(requests.size());
+        for (CheckoutRequest request : requests) {
+            ShoppingCart cart = carts.get(request.cartId());
+            if (cart == null) {
+                outcomes.add(new CheckoutOutcome(null,
+                        new ResourceNotFoundException("Shopping cart not found with ID: " + request.cartId())));
+                continue;
+            }
+            try {
+                outcomes.add(new CheckoutOutcome(checkOut(cart, request.idempotencyKey()), null));
+            } catch (IllegalStateException e) {
+                outcomes.add(new CheckoutOutcome(null, e)); // Already checked out: thrown before any change
+            }
+        }
+        return outcomes;
+    }
+
+    public record CheckoutRequest(Long cartId, String idempotencyKey) {
+    }
+
+    // Either the checked out cart or the failure of its checkout
+    public record CheckoutOutcome(ShoppingCart cart, RuntimeException failure) {
+    }
+
+    // Checks out a locked cart
+    private ShoppingCart checkOut(ShoppingCart cart, String idempotencyKey) {
+        Long cartId = cart.getId();
         if (cart.getStatus() == CartStatus.CHECKED_OUT) {
+            if (idempotencyKey != null && idempotencyKey.equals(cart.getCheckoutIdempotencyKey())) {
+                return cart;
+            }
             throw new IllegalStateException("Shopping cart with ID " + cartId + " is already checked out.");
         }
+        // Reserve what the lines do not hold yet (expired, or never reserved), then sell all of it
+        for (CartItem item : cart.getItems()) {
+            Long productId = item.getProduct().getId();
+            int reserved = item.getReservedQuantity()
+                    + inventory.reserve(productId, item.getQuantity() - item.getReservedQuantity());
+            inventory.sell(productId, reserved);
+            item.setReservedQuantity(reserved);
+            item.setReservedUntil(null);
+        }
         cart.setStatus(CartStatus.CHECKED_OUT);
         cart.setCheckedOutAt(LocalDateTime.now());
+        cart.setCheckoutIdempotencyKey(idempotencyKey);
 
-        return shoppingCartRepository.save(cart);
+        recordWrite(cartId);
+        ShoppingCart savedCart = shoppingCartRepository.save(cart);
+        publishChange(savedCart);
+        return savedCart;
+    }
+
+    // Loads the cart with its row locked until the transaction ends, so writers of the same cart take turns
+    // instead of overwriting each other's quantities or changing it after checkout. A large cart is loaded
+    // without its lines; changes look up the line they touch by product, and checkout reads them all.
+    private ShoppingCart lockCart(Long cartId) {
+        boolean largeCart = shoppingCartRepository.lockLargeCartFlagById(cartId)
+                .orElseThrow(() -> new ResourceNotFoundException("Shopping cart not found with ID: " + cartId));
+        return largeCart ? shoppingCartRepository.getReferenceById(cartId) : getCartById(cartId);
+    }
+
+    // A large cart's view leaves its lines out and takes the line count and totals from the database. Promotions
+    // need every line, so with promotions the lines are read to price the cart, though still left out of the view.
+    private ShoppingCartResponse withLargeCartTotals(ShoppingCartResponse cart) {
+        Long cartId = cart.getId();
+        CartTotals totals = replicaLagTracker.read(cartId, () -> shoppingCartRepository.findTotalsById(cartId))
+                .orElseThrow(() -> new ResourceNotFoundException("Shopping cart not found with ID: " + cartId));
+        cart.setItemCount((int) totals.getLineCount());
+        cart.setSubtotalPrice(totals.getSubtotal());
+        cart.setDiscountTotal(BigDecimal.ZERO);
+        cart.setTotalPrice(totals.getSubtotal());
+        if (cartPricing.hasPromotions()) {
+            ShoppingCartResponse priced = cartPricing.price(ShoppingCartResponse.builder()
+                    .id(cartId)
+                    .lastModifiedAt(cart.getLastModifiedAt())
+                    .items(readLines(cartId, Pageable.unpaged()))
+                    .build());
+            cart.setSubtotalPrice(priced.getSubtotalPrice());
+            cart.setDiscountTotal(priced.getDiscountTotal());
+            cart.setTotalPrice(priced.getTotalPrice());
+            cart.setCartPromotion(priced.getCartPromotion());
+        }
+        return cart;
+    }
+
+    private List<CartItemResponse> readLines(Long cartId, Pageable pageable) {
+        return replicaLagTracker.read(cartId, () -> cartItemRepository.findLineRowsByCartId(cartId, pageable)).stream()
+                .map(CartItemResponse::fromRow)
+                .toList();
+    }
+
+    // Keeps reads of the cart on the primary for a while, and once the change commits, stops new reads of the
+    // cart from sharing a load that began before it
+    private void recordWrite(Long cartId) {
+        replicaLagTracker.recordWrite(cartId);
+        cartDocumentReads.forgetAfterCommit(cartId);
+    }
+
+    // Item changes alone leave the cart row clean, so auditing would not move lastModifiedAt; also brings
+    // an abandoned cart back
+    private void touch(ShoppingCart cart) {
+        cart.setStatus(CartStatus.ACTIVE);
+        cart.setLastModifiedAt(LocalDateTime.now());
+    }
+
+    // Pushes the cart's new state to its event stream subscribers, if it has any
+    private void publishChange(ShoppingCart cart) {
+        if (cartChanges.hasSubscribers(cart.getId())) {
+            cartChanges.publish(cart.getId(), cart.isLargeCart()
+                    ? getCartResponse(cart.getId())
+                    : cartPricing.price(ShoppingCartResponse.fromEntity(cart)));
+        }
+    }
+
+    // A bulk update does not say which carts changed, so every subscribed cart gets its current state
+    private void publishSubscribedCartsOnCurrentShard() {
+        int shard = ShardRouting.currentShard();
+        for (Long cartId : cartChanges.subscribedCarts()) {
+            if (ShardIds.shardOf(cartId) == shard) {
+                Optional<ShoppingCart> cart = eventSourcedCarts != null
+                        ? Optional.of(eventSourcedCarts.getCart(cartId))
+                        : shoppingCartRepository.findById(cartId);
+                cart.ifPresent(this::publishChange);
+            }
+        }
     }
 
+    /**
+     * Gathers the carts of every shard, in shard order, that AbandonedCartDetector has marked abandoned and
+     * that were last changed by the end of the date.
+     */
     public List<ShoppingCart> getAbandonedCartsForReport(LocalDate date) {
         LocalDateTime endOfDay = date.atTime(LocalTime.MAX);
 
-        return shoppingCartRepository.findByStatusAndCreatedAtBeforeAndCheckedOutAtIsNull(
-                CartStatus.ACTIVE, endOfDay);
+        return shardRouter.onEveryShard(true, () -> {
+                    List<ShoppingCart> carts = shoppingCartRepository.findByStatusAndLastModifiedAtBefore(
+                            CartStatus.ABANDONED, endOfDay);
+                    return eventSourcedCarts != null ? eventSourcedCarts.project(carts) : carts;
+                })
+                .stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
     }
 
     public void printReport(LocalDate date) {
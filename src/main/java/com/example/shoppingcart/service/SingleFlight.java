@@ -0,0 +1,87 @@
+package com.example.shoppingcart.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent loads of the same key into one database call: the first caller runs the load, and callers
+ * arriving while it runs wait for it and share its result or exception. Nothing is kept once the load finishes,
+ * so this is not a cache. Shared results are read by several requests at once and must not be modified.
+ * <p>
+ * Callers inside a read-write transaction load on their own, since they may change what they load and need it
+ * managed by their own persistence context. Read-only transactions share loads; under a lazily connecting data
+ * source a waiting caller's transaction holds no connection.
+ * <p>
+ * Metrics, tagged with the read's name: app.reads.loads (loads run) and app.reads.coalesced (calls that shared
+ * another caller's load).
+ */
+class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter loads;
+    private final Counter coalesced;
+
+    SingleFlight(String name, MeterRegistry meterRegistry) {
+        this.loads = Counter.builder("app.reads.loads")
+                .description("Reads that went to the database")
+                .tag("read", name)
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("app.reads.coalesced")
+                .description("Reads answered by a concurrent read of the same key")
+                .tag("read", name)
+                .register(meterRegistry);
+    }
+
+    V load(K key, Supplier<V> loader) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return loader.get();
+        }
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            coalesced.increment();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+            }
+        }
+        loads.increment();
+        try {
+            V value = loader.get();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Makes loads of the key started from now on not join a load that began before the current transaction
+     * commits, so a caller reads its own committed write. Without a transaction, applies at once.
+     */
+    void forgetAfterCommit(K key) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            inFlight.remove(key);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                inFlight.remove(key);
+            }
+        });
+    }
+}
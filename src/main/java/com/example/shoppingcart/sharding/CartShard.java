@@ -0,0 +1,20 @@
+package com.example.shoppingcart.sharding;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs the annotated method on the shard of the cart its first argument (the cart id) refers to,
+ * or, with newCart, on the shard chosen for a new cart. The shard is pinned outside the transaction,
+ * so the method's whole transaction is local to that shard.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CartShard {
+
+    boolean newCart() default false;
+}
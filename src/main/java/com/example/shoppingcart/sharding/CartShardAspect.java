@@ -0,0 +1,38 @@
+package com.example.shoppingcart.sharding;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies {@link CartShard}. Ordered ahead of the transaction interceptor (lowest precedence by default)
+ * so the shard is pinned before the transaction obtains its connection.
+ */
+@Aspect
+@Component
+@Order(0)
+public class CartShardAspect {
+
+    private final ShardRouter shardRouter;
+
+    @Autowired
+    public CartShardAspect(ShardRouter shardRouter) {
+        this.shardRouter = shardRouter;
+    }
+
+    @Around("@annotation(cartShard)")
+    public Object onCartShard(ProceedingJoinPoint joinPoint, CartShard cartShard) throws Throwable {
+        int shard = cartShard.newCart()
+                ? shardRouter.shardForNewCart()
+                : shardRouter.shardOf((Long) joinPoint.getArgs()[0]);
+        Integer previous = ShardRouting.pin(shard);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ShardRouting.pin(previous);
+        }
+    }
+}
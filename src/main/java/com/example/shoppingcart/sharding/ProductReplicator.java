@@ -0,0 +1,219 @@
+package com.example.shoppingcart.sharding;
+
+import com.example.shoppingcart.model.Product;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps a copy of the product catalog on every additional shard, so cart items can reference products
+ * within their own shard. Shard 0 owns the catalog; changes are copied once its transaction commits.
+ * Copies are upserts by id and can be safely repeated.
+ * <p>
+ * A copy that fails is not retried on its own: every reconcile-interval, the catalog is read from shard 0 in
+ * batches of reconcile-batch-size products and missing or differing copies are rewritten, and copies of products
+ * purged from shard 0 are tombstoned. Failed copies are counted in app.products.replication.failures.
+ */
+@Component
+public class ProductReplicator implements DisposableBean {
+
+    private static final RowMapper<Row> ROW = (rs, rowNum) -> new Row(rs.getLong("id"), rs.getString("name"),
+            rs.getBigDecimal("price"), rs.getString("type"), rs.getBoolean("deleted"));
+
+    private final JdbcTemplate catalog;
+    private final List<JdbcTemplate> additionalShards;
+    private final int reconcileBatchSize;
+    private final Counter failures;
+    private final ThreadPoolTaskScheduler scheduler;
+
+    @Autowired
+    public ProductReplicator(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                             ShardDataSources shardDataSources,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.products.replication.reconcile-interval:10m}") Duration reconcileInterval,
+                             @Value("${app.products.replication.reconcile-batch-size:500}") int reconcileBatchSize) {
+        this.catalog = new JdbcTemplate(primaryDataSource);
+        this.additionalShards = shardDataSources.additionalShards().stream().map(JdbcTemplate::new).toList();
+        this.reconcileBatchSize = reconcileBatchSize;
+        this.failures = Counter.builder("app.products.replication.failures")
+                .description("Product copies to a shard that failed, left to the next reconcile")
+                .register(meterRegistry);
+        this.scheduler = new ThreadPoolTaskScheduler();
+        this.scheduler.setPoolSize(1);
+        this.scheduler.setThreadNamePrefix("product-reconcile-");
+        this.scheduler.initialize();
+        if (!additionalShards.isEmpty()) {
+            this.scheduler.scheduleWithFixedDelay(this::reconcile, Instant.now().plus(reconcileInterval), reconcileInterval);
+        }
+    }
+
+    public void replicate(Product product) {
+        replicateAll(List.of(product));
+    }
+
+    /**
+     * Copies the products with one batched update per shard, followed by a batched insert of those not there yet.
+     */
+    public void replicateAll(List<Product> products) {
+        List<Row> rows = products.stream()
+                .map(product -> new Row(product.getId(), product.getName(), product.getPrice(), product.getType(), product.isDeleted()))
+                .toList();
+        afterCommit(shard -> copy(shard, rows));
+    }
+
+    /**
+     * Tombstones the copies; each shard's copy is purged by ProductPurger like the original.
+     */
+    public void markDeleted(Long productId) {
+        afterCommit(shard -> shard.update("update products set deleted = true where id = ?", productId));
+    }
+
+    /**
+     * Runs one reconcile pass over all additional shards.
+     *
+     * @return the number of copies rewritten, counting each shard's copy
+     */
+    public int reconcile() {
+        int repaired = 0;
+        long after = 0;
+        while (true) {
+            List<Row> rows = catalog.query("select id, name, price, type, deleted from products where id > ? order by id limit ?",
+                    ROW, after, reconcileBatchSize);
+            // The last batch also covers copies beyond the highest id left on shard 0
+            long upTo = rows.size() < reconcileBatchSize ? Long.MAX_VALUE : rows.get(rows.size() - 1).id();
+            for (JdbcTemplate shard : additionalShards) {
+                try {
+                    repaired += reconcile(shard, rows, after, upTo);
+                } catch (RuntimeException e) {
+                    failures.increment();
+                }
+            }
+            if (upTo == Long.MAX_VALUE) {
+                return repaired;
+            }
+            after = upTo;
+        }
+    }
+
+    private int reconcile(JdbcTemplate shard, List<Row> rows, long after, long upTo) {
+        Map<Long, Row> copies = readRange(shard, after, upTo);
+        List<Row> stale = new ArrayList<>();
+        for (Row row : rows) {
+            Row copy = copies.remove(row.id());
+            // A deleted product may already be purged on this shard, which is as good as its tombstone
+            if (copy == null ? !row.deleted() : !copy.equals(row)) {
+                stale.add(row);
+            }
+        }
+        // Left over are copies of products purged on shard 0 whose tombstone never reached this shard
+        copies.values().stream().filter(copy -> !copy.deleted()).map(Row::tombstone).forEach(stale::add);
+        int repaired = stale.size();
+        while (!stale.isEmpty()) {
+            copy(shard, stale);
+            // A change committed on shard 0 after the batch was read may have been copied before this write; since
+            // any later change is copied after this check, repeating until nothing differs leaves the latest state
+            stale = changedSince(stale, after, upTo);
+        }
+        return repaired;
+    }
+
+    private List<Row> changedSince(List<Row> written, long after, long upTo) {
+        Map<Long, Row> current = readRange(catalog, after, upTo);
+        List<Row> changed = new ArrayList<>();
+        for (Row row : written) {
+            Row now = current.get(row.id());
+            if (now == null ? !row.deleted() : !now.equals(row)) {
+                changed.add(now == null ? row.tombstone() : now);
+            }
+        }
+        return changed;
+    }
+
+    private static Map<Long, Row> readRange(JdbcTemplate database, long after, long upTo) {
+        return database.query("select id, name, price, type, deleted from products where id > ? and id <= ?", ROW, after, upTo)
+                .stream()
+                .collect(Collectors.toMap(Row::id, Function.identity(), (first, second) -> first, HashMap::new));
+    }
+
+    private static void copy(JdbcTemplate shard, List<Row> rows) {
+        int[] updated = shard.batchUpdate("update products set name = ?, price = ?, type = ?, deleted = ? where id = ?",
+                rows.stream().map(row -> new Object[]{row.name(), row.price(), row.type(), row.deleted(), row.id()}).toList());
+        List<Object[]> missing = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                Row row = rows.get(i);
+                missing.add(new Object[]{row.id(), row.name(), row.price(), row.type(), row.deleted()});
+            }
+        }
+        if (!missing.isEmpty()) {
+            shard.batchUpdate("insert into products (id, name, price, type, deleted) values (?, ?, ?, ?, ?)", missing);
+        }
+    }
+
+    private void afterCommit(Consumer<JdbcTemplate> copy) {
+        if (additionalShards.isEmpty()) {
+            return;
+        }
+        Runnable copyToAll = () -> additionalShards.forEach(shard -> {
+            try {
+                copy.accept(shard);
+            } catch (RuntimeException e) {
+                failures.increment();
+            }
+        });
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            copyToAll.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                copyToAll.run();
+            }
+        });
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdown();
+    }
+
+    private record Row(Long id, String name, BigDecimal price, String type, boolean deleted) {
+
+        Row tombstone() {
+            return new Row(id, name, price, type, true);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Row row && id.equals(row.id) && name.equals(row.name) && price.compareTo(row.price) == 0
+                    && type.equals(row.type) && deleted == row.deleted;
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.shoppingcart.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.List;
+
+/**
+ * Connection pools of the shards beyond shard 0, in shard order (the first is shard 1).
+ */
+public class ShardDataSources implements DisposableBean {
+
+    private final List<HikariDataSource> additionalShards;
+
+    public ShardDataSources(List<HikariDataSource> additionalShards) {
+        if (additionalShards.size() + 1 > ShardIds.MAX_SHARDS) {
+            throw new IllegalStateException("At most " + ShardIds.MAX_SHARDS + " shards are supported");
+        }
+        this.additionalShards = List.copyOf(additionalShards);
+    }
+
+    public int shardCount() {
+        return additionalShards.size() + 1;
+    }
+
+    public List<HikariDataSource> additionalShards() {
+        return additionalShards;
+    }
+
+    @Override
+    public void destroy() {
+        additionalShards.forEach(HikariDataSource::close);
+    }
+}
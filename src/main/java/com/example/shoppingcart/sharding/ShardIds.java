@@ -0,0 +1,22 @@
+package com.example.shoppingcart.sharding;
+
+/**
+ * Layout of sharded cart ids: the low bits hold the shard, the rest a sequence value local to that shard.
+ * A cart's shard can therefore be read off its id without any lookup.
+ */
+public final class ShardIds {
+
+    public static final int SHARD_BITS = 8;
+    public static final int MAX_SHARDS = 1 << SHARD_BITS;
+
+    private ShardIds() {
+    }
+
+    public static long embed(long localId, int shard) {
+        return (localId << SHARD_BITS) | shard;
+    }
+
+    public static int shardOf(long id) {
+        return (int) (id & (MAX_SHARDS - 1));
+    }
+}
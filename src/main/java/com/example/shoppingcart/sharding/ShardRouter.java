@@ -0,0 +1,106 @@
+package com.example.shoppingcart.sharding;
+
+import com.example.shoppingcart.datasource.DataSourceRole;
+import com.example.shoppingcart.datasource.DataSourceRouting;
+import com.example.shoppingcart.exception.ResourceNotFoundException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Shard placement for carts and scatter-gather across shards.
+ * New carts are spread round-robin; existing carts are found through the shard embedded in their id.
+ */
+@Component
+public class ShardRouter implements DisposableBean {
+
+    private final int shardCount;
+    private final PlatformTransactionManager transactionManager;
+    private final ThreadPoolTaskExecutor executor;
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    @Autowired
+    public ShardRouter(ShardDataSources shardDataSources, PlatformTransactionManager transactionManager) {
+        this(shardDataSources.shardCount(), transactionManager);
+    }
+
+    public ShardRouter(int shardCount, PlatformTransactionManager transactionManager) {
+        this.shardCount = shardCount;
+        this.transactionManager = transactionManager;
+        if (shardCount > 1) {
+            this.executor = new ThreadPoolTaskExecutor();
+            this.executor.setCorePoolSize(shardCount);
+            this.executor.setMaxPoolSize(shardCount);
+            this.executor.setThreadNamePrefix("shard-");
+            this.executor.initialize();
+        } else {
+            this.executor = null;
+        }
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    public int shardForNewCart() {
+        return Math.floorMod(nextShard.getAndIncrement(), shardCount);
+    }
+
+    /**
+     * Shard holding the cart. Ids that point to a shard that does not exist cannot belong to any cart.
+     */
+    public int shardOf(Long cartId) {
+        if (cartId == null) {
+            return 0;
+        }
+        int shard = ShardIds.shardOf(cartId);
+        if (shard >= shardCount) {
+            throw new ResourceNotFoundException("Shopping cart not found with ID: " + cartId);
+        }
+        return shard;
+    }
+
+    /**
+     * Runs the action on every shard, each in its own transaction local to that shard, and returns the
+     * results in shard order. Shards are queried in parallel; the pool pinned by the caller (e.g. the
+     * reporting pool) carries over to shard 0. Writes are not atomic across shards.
+     */
+    public <T> List<T> onEveryShard(boolean readOnly, Supplier<T> action) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(readOnly);
+        DataSourceRole role = DataSourceRouting.pinnedRole();
+        if (executor == null) {
+            return Collections.singletonList(runOnShard(0, transaction, role, action));
+        }
+        List<CompletableFuture<T>> results = IntStream.range(0, shardCount)
+                .mapToObj(shard -> CompletableFuture.supplyAsync(() -> runOnShard(shard, transaction, role, action), executor))
+                .toList();
+        try {
+            return results.stream().map(CompletableFuture::join).toList();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+        }
+    }
+
+    private static <T> T runOnShard(int shard, TransactionTemplate transaction, DataSourceRole role, Supplier<T> action) {
+        return ShardRouting.onShard(shard, () -> DataSourceRouting.onRole(role, () -> transaction.execute(status -> action.get())));
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
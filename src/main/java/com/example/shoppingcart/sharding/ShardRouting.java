@@ -0,0 +1,44 @@
+package com.example.shoppingcart.sharding;
+
+import java.util.function.Supplier;
+
+/**
+ * Thread-bound shard selection for ShardRoutingDataSource. Without a pinned shard, work goes to shard 0.
+ * Like DataSourceRouting, a pinned shard only takes effect if set before the transaction executes
+ * its first statement.
+ */
+public final class ShardRouting {
+
+    private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+
+    private ShardRouting() {
+    }
+
+    public static int currentShard() {
+        Integer shard = CURRENT_SHARD.get();
+        return shard != null ? shard : 0;
+    }
+
+    /**
+     * Runs the action on the given shard, restoring the previous setting afterwards.
+     */
+    public static <T> T onShard(int shard, Supplier<T> action) {
+        Integer previous = pin(shard);
+        try {
+            return action.get();
+        } finally {
+            pin(previous);
+        }
+    }
+
+    // Sets the pinned shard (null clears it) and returns the one it replaces
+    static Integer pin(Integer shard) {
+        Integer previous = CURRENT_SHARD.get();
+        if (shard == null) {
+            CURRENT_SHARD.remove();
+        } else {
+            CURRENT_SHARD.set(shard);
+        }
+        return previous;
+    }
+}
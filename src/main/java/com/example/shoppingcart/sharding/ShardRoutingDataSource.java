@@ -0,0 +1,32 @@
+package com.example.shoppingcart.sharding;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routes connections to the shard pinned through ShardRouting. Shard 0 is the read/write routed
+ * primary with its replicas; additional shards are single pools serving both reads and writes.
+ * Must sit behind a LazyConnectionDataSourceProxy, for the same reason as ReadWriteRoutingDataSource.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    public ShardRoutingDataSource(DataSource shardZero, List<? extends DataSource> additionalShards) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(0, shardZero);
+        for (int i = 0; i < additionalShards.size(); i++) {
+            targets.put(i + 1, additionalShards.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shardZero);
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardRouting.currentShard();
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.shoppingcart.sharding;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.relational.SchemaManager;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the mapped tables and sequences on every additional shard at startup, when
+ * app.sharding.initialize-schema is set. Meant for local and test databases; real shards are migrated
+ * like any other database.
+ */
+@Component
+public class ShardSchemaInitializer implements SmartInitializingSingleton {
+
+    private final ShardDataSources shardDataSources;
+    private final ShardingProperties shardingProperties;
+    private final EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    public ShardSchemaInitializer(ShardDataSources shardDataSources, ShardingProperties shardingProperties,
+                                  EntityManagerFactory entityManagerFactory) {
+        this.shardDataSources = shardDataSources;
+        this.shardingProperties = shardingProperties;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!shardingProperties.isInitializeSchema()) {
+            return;
+        }
+        SchemaManager schemaManager = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getSchemaManager();
+        for (int shard = 1; shard < shardDataSources.shardCount(); shard++) {
+            ShardRouting.onShard(shard, () -> {
+                schemaManager.exportMappedObjects(false);
+                return null;
+            });
+        }
+    }
+}
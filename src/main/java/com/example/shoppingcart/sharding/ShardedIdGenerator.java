@@ -0,0 +1,18 @@
+package com.example.shoppingcart.sharding;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+/**
+ * Sequence generator for sharded ids: takes the next value of the sequence on the shard the
+ * session is writing to and embeds that shard into it. Must be used with an increment size of 1,
+ * since values cached in memory could have come from another shard's sequence.
+ */
+public class ShardedIdGenerator extends SequenceStyleGenerator {
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        long localId = ((Number) super.generate(session, object)).longValue();
+        return ShardIds.embed(localId, ShardRouting.currentShard());
+    }
+}
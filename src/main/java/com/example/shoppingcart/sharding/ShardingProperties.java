@@ -0,0 +1,23 @@
+package com.example.shoppingcart.sharding;
+
+import com.zaxxer.hikari.HikariConfig;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shards beyond shard 0 (which is spring.datasource.* with its replicas), configured as
+ * app.sharding.additional-shards[i].* with Hikari property names, e.g. jdbc-url.
+ * The order is part of the data layout: cart ids embed their shard's position in this list.
+ */
+@Data
+@ConfigurationProperties("app.sharding")
+public class ShardingProperties {
+
+    private List<HikariConfig> additionalShards = new ArrayList<>();
+
+    // Create the mapped tables on additional shards at startup, as Hibernate does for shard 0 with embedded databases
+    private boolean initializeSchema = false;
+}
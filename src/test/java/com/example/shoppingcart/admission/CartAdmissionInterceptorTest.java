@@ -0,0 +1,170 @@
+package com.example.shoppingcart.admission;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for CartAdmissionInterceptor using mock servlet requests.
+ */
+class CartAdmissionInterceptorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private HikariPoolMXBean poolBean;
+    private CartAdmissionInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        poolBean = mock(HikariPoolMXBean.class);
+        HikariDataSource pool = mock(HikariDataSource.class);
+        when(pool.getHikariPoolMXBean()).thenReturn(poolBean);
+        interceptor = new CartAdmissionInterceptor(2, 0.5, 1000, 3, 5, () -> pool, meterRegistry);
+    }
+
+    @Test
+    void preHandle_shouldRateLimitPerClientAndCart_withRetryAfter() throws Exception {
+        assertTrue(admit(request("POST", "10.0.0.1", "100")));
+        assertTrue(admit(request("POST", "10.0.0.1", "100")));
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(request("POST", "10.0.0.1", "100"), response, null));
+        assertEquals(429, response.getStatus());
+        assertEquals("2", response.getHeader("Retry-After"));
+
+        assertTrue(admit(request("POST", "10.0.0.1", "101"))); // Other cart, own bucket
+        assertTrue(admit(request("POST", "10.0.0.2", "100"))); // Other client, own bucket
+        assertEquals(1.0, meterRegistry.get("app.admission.shed").tag("reason", "rate_limited").counter().count());
+    }
+
+    @Test
+    void preHandle_shouldKeyOnAddressOrPrincipal_notOnHeaders() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            MockHttpServletRequest request = request("POST", "10.0.0.1", "100");
+            request.addHeader("X-Client-Id", "client-" + i);
+            assertTrue(admit(request));
+        }
+        MockHttpServletRequest fresh = request("POST", "10.0.0.1", "100");
+        fresh.addHeader("X-Client-Id", "client-2");
+        assertFalse(admit(fresh)); // A new header value does not get a new bucket
+
+        MockHttpServletRequest signedIn = request("POST", "10.0.0.1", "100");
+        signedIn.setUserPrincipal(() -> "alice");
+        assertTrue(admit(signedIn)); // Authenticated callers have their own bucket, wherever they come from
+    }
+
+    @Test
+    void preHandle_shouldEvictLeastRecentlyUsedBuckets_beyondMaxBuckets() throws Exception {
+        CartAdmissionInterceptor bounded = new CartAdmissionInterceptor(2, 0.001, 8, 1000, 5, () -> null, meterRegistry);
+        for (int cart = 0; cart < 100; cart++) {
+            MockHttpServletRequest request = request("POST", "10.0.0.1", Integer.toString(cart));
+            bounded.preHandle(request, new MockHttpServletResponse(), null);
+            bounded.preHandle(request, new MockHttpServletResponse(), null); // Empties the bucket
+            assertTrue(bounded.bucketCount() <= 8);
+        }
+        assertFalse(bounded.preHandle(request("POST", "10.0.0.1", "99"), new MockHttpServletResponse(), null));
+        assertEquals(1.0, meterRegistry.get("app.admission.shed").tag("reason", "rate_limited").counter().count());
+    }
+
+    @Test
+    void preHandle_shouldNeverLimitReads() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(admit(request("GET", "10.0.0.1", "100")));
+        }
+    }
+
+    @Test
+    void preHandle_shouldShed_whenInFlightLimitReached_untilRequestsComplete() throws Exception {
+        MockHttpServletRequest first = request("POST", "10.0.0.1", "1");
+        assertTrue(interceptor.preHandle(first, new MockHttpServletResponse(), null));
+        assertTrue(interceptor.preHandle(request("POST", "10.0.0.1", "2"), new MockHttpServletResponse(), null));
+        assertTrue(interceptor.preHandle(request("POST", "10.0.0.1", "3"), new MockHttpServletResponse(), null));
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(request("POST", "10.0.0.1", "4"), response, null));
+        assertEquals(429, response.getStatus());
+        assertEquals(1.0, meterRegistry.get("app.admission.shed").tag("reason", "in_flight").counter().count());
+
+        interceptor.afterCompletion(first, new MockHttpServletResponse(), null, null);
+        assertTrue(admit(request("POST", "10.0.0.1", "4")));
+    }
+
+    @Test
+    void preHandle_shouldNeverAdmitBeyondInFlightLimit_underConcurrentRequests() throws Exception {
+        int threads = 16;
+        CyclicBarrier start = new CyclicBarrier(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                String cartId = String.valueOf(i);
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return interceptor.preHandle(request("POST", "10.0.0.1", cartId), new MockHttpServletResponse(), null);
+                }));
+            }
+            int admitted = 0;
+            for (Future<Boolean> result : results) {
+                admitted += result.get(5, TimeUnit.SECONDS) ? 1 : 0;
+            }
+            assertEquals(3, admitted);
+            assertEquals(3, interceptor.inFlight());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void preHandle_shouldReleaseSlot_whenRejectedAfterReservingIt() throws Exception {
+        when(poolBean.getThreadsAwaitingConnection()).thenReturn(6);
+        assertFalse(interceptor.preHandle(request("POST", "10.0.0.1", "1"), new MockHttpServletResponse(), null));
+        when(poolBean.getThreadsAwaitingConnection()).thenReturn(0);
+        assertTrue(admit(request("POST", "10.0.0.1", "1")));
+        assertTrue(admit(request("POST", "10.0.0.1", "1")));
+        assertFalse(interceptor.preHandle(request("POST", "10.0.0.1", "1"), new MockHttpServletResponse(), null)); // Rate limited
+
+        assertEquals(0, interceptor.inFlight());
+    }
+
+    @Test
+    void preHandle_shouldShed_whenThreadsAreQueuedForConnections() throws Exception {
+        when(poolBean.getThreadsAwaitingConnection()).thenReturn(6);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(request("DELETE", "10.0.0.1", "100"), response, null));
+        assertEquals(429, response.getStatus());
+        assertEquals(1.0, meterRegistry.get("app.admission.shed").tag("reason", "pool_saturated").counter().count());
+    }
+
+    // Runs a complete request, so it does not count towards the in-flight limit afterwards
+    private boolean admit(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        boolean admitted = interceptor.preHandle(request, response, null);
+        interceptor.afterCompletion(request, response, null, null);
+        return admitted;
+    }
+
+    private static MockHttpServletRequest request(String method, String remoteAddress, String cartId) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/api/carts/" + cartId + "/items");
+        request.setRemoteAddr(remoteAddress);
+        request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Map.of("cartId", cartId));
+        return request;
+    }
+}
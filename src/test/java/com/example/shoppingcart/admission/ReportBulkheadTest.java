@@ -0,0 +1,78 @@
+package com.example.shoppingcart.admission;
+
+import com.example.shoppingcart.datasource.DataSourceRole;
+import com.example.shoppingcart.datasource.DataSourceRouting;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ReportBulkhead with a single worker and a single queue slot.
+ */
+class ReportBulkheadTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch interrupted = new CountDownLatch(1);
+    private final ReportBulkhead bulkhead = new ReportBulkhead(1, 1, Duration.ofSeconds(5));
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        bulkhead.destroy();
+    }
+
+    @Test
+    void submit_shouldPinReportsToReportingPool() throws Exception {
+        assertEquals(DataSourceRole.REPORTING, bulkhead.submit(DataSourceRouting::pinnedRole).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void submit_shouldQueueThenReject_whenBulkheadFull() throws Exception {
+        CompletableFuture<String> running = bulkhead.submit(this::blockUntilReleased);
+        CompletableFuture<String> queued = bulkhead.submit(() -> "queued");
+        CompletableFuture<String> rejected = bulkhead.submit(() -> "rejected");
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, failure.getCause());
+
+        release.countDown();
+        assertEquals("done", running.get(5, TimeUnit.SECONDS));
+        assertEquals("queued", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void submit_shouldTimeOut_andInterruptSlowReports() throws Exception {
+        ReportBulkhead impatient = new ReportBulkhead(1, 1, Duration.ofMillis(50));
+        try {
+            CompletableFuture<String> slow = impatient.submit(this::blockUntilReleased);
+
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> slow.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(TimeoutException.class, failure.getCause());
+            assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+            // The worker is free again although the slow report was never released
+            assertEquals("next", impatient.submit(() -> "next").get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            impatient.destroy();
+        }
+    }
+
+    private String blockUntilReleased() {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            interrupted.countDown();
+            Thread.currentThread().interrupt();
+        }
+        return "done";
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.shoppingcart.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for TokenBucket with explicit timestamps.
+ */
+class TokenBucketTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void tryConsume_shouldAllowBurstUpToCapacity_thenReportWait() {
+        TokenBucket bucket = new TokenBucket(3, 1.0, 0);
+
+        assertEquals(0, bucket.tryConsume(0));
+        assertEquals(0, bucket.tryConsume(0));
+        assertEquals(0, bucket.tryConsume(0));
+        assertEquals(SECOND, bucket.tryConsume(0));
+        assertEquals(SECOND / 2, bucket.tryConsume(SECOND / 2));
+    }
+
+    @Test
+    void tryConsume_shouldRefillOverTime_upToCapacity() {
+        TokenBucket bucket = new TokenBucket(2, 2.0, 0);
+        bucket.tryConsume(0);
+        bucket.tryConsume(0);
+
+        assertFalse(bucket.isFull(SECOND / 2));
+        assertEquals(0, bucket.tryConsume(SECOND / 2));
+        assertTrue(bucket.isFull(10 * SECOND));
+        assertEquals(0, bucket.tryConsume(10 * SECOND));
+        assertEquals(0, bucket.tryConsume(10 * SECOND));
+        assertTrue(bucket.tryConsume(10 * SECOND) > 0); // Capacity caps the refill
+    }
+
+    @Test
+    void tryConsume_shouldNeverGrantMoreThanCapacity_underContention() throws Exception {
+        TokenBucket bucket = new TokenBucket(100, 0.0001, 0);
+        AtomicInteger granted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 100; j++) {
+                        if (bucket.tryConsume(0) == 0) {
+                            granted.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(100, granted.get());
+    }
+}
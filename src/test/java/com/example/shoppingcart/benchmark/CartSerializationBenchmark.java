@@ -0,0 +1,105 @@
+package com.example.shoppingcart.benchmark;
+
+import com.example.shoppingcart.dto.CartItemResponse;
+import com.example.shoppingcart.dto.ShoppingCartResponse;
+import com.example.shoppingcart.model.ShoppingCart;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares bytes-on-wire and serialization cost of ShoppingCartResponse in JSON, CBOR and Smile.
+ * Run with: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+class CartSerializationBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int MEASURED_ITERATIONS = 50_000;
+
+    @Test
+    void compareEncodings() throws IOException {
+        ShoppingCartResponse cart = sampleCart(20);
+
+        System.out.println("\n--- Cart serialization benchmark (20 lines) ---");
+        System.out.printf("%-8s %10s %12s %12s%n", "format", "bytes", "gzip bytes", "ns/op");
+        long jsonBytes = report("json", mapper(new JsonFactory()), cart);
+        long cborBytes = report("cbor", mapper(new CBORFactory()), cart);
+        long smileBytes = report("smile", mapper(new SmileFactory()), cart);
+        System.out.println("--- End of benchmark ---");
+
+        assertTrue(cborBytes < jsonBytes);
+        assertTrue(smileBytes < jsonBytes);
+    }
+
+    private long report(String format, ObjectMapper mapper, ShoppingCartResponse cart) throws IOException {
+        byte[] encoded = mapper.writeValueAsBytes(cart);
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            mapper.writeValueAsBytes(cart);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            mapper.writeValueAsBytes(cart);
+        }
+        long nsPerOp = (System.nanoTime() - start) / MEASURED_ITERATIONS;
+        System.out.printf("%-8s %10d %12d %12d%n", format, encoded.length, gzip(encoded).length, nsPerOp);
+        return encoded.length;
+    }
+
+    private static ObjectMapper mapper(JsonFactory factory) {
+        ObjectMapper mapper = new ObjectMapper(factory);
+        mapper.registerModule(new JavaTimeModule());
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        return mapper;
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static ShoppingCartResponse sampleCart(int lines) {
+        List<CartItemResponse> items = new ArrayList<>();
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 1; i <= lines; i++) {
+            BigDecimal price = new BigDecimal(i * 7 + ".99");
+            BigDecimal itemTotal = price.multiply(BigDecimal.valueOf(i));
+            items.add(CartItemResponse.builder()
+                    .id((long) i)
+                    .productId(1000L + i)
+                    .productName("Product " + i)
+                    .productPrice(price)
+                    .quantity(i)
+                    .itemTotalPrice(itemTotal)
+                    .build());
+            total = total.add(itemTotal);
+        }
+        LocalDateTime now = LocalDateTime.of(2023, 10, 26, 10, 15, 30);
+        return ShoppingCartResponse.builder()
+                .id(100L)
+                .status(ShoppingCart.CartStatus.ACTIVE)
+                .items(items)
+                .totalPrice(total)
+                .createdAt(now.minusHours(2))
+                .lastModifiedAt(now)
+                .build();
+    }
+}
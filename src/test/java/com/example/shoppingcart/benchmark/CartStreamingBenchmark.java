@@ -0,0 +1,99 @@
+package com.example.shoppingcart.benchmark;
+
+import com.example.shoppingcart.dto.CartRowsJson;
+import com.example.shoppingcart.dto.MapTuple;
+import com.example.shoppingcart.dto.ShoppingCartResponse;
+import com.example.shoppingcart.model.ShoppingCart;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.Tuple;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares writing the full cart view from its rows through ShoppingCartResponse with streaming it through
+ * CartRowsJson, for large carts. Both write into a reused buffer, as the response stream would.
+ * Run with: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+class CartStreamingBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 2_000;
+    private static final int MEASURED_ITERATIONS = 5_000;
+
+    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void compareDtoAndStreaming() throws IOException {
+        System.out.println("\n--- Cart streaming benchmark ---");
+        System.out.printf("%-6s %-10s %12s %14s%n", "lines", "path", "ns/op", "bytes alloc/op");
+        for (int lines : new int[]{500, 2_000}) {
+            List<Tuple> rows = sampleRows(lines);
+            assertArrayEquals(mapper.writeValueAsBytes(ShoppingCartResponse.fromRows(rows)),
+                    mapper.writeValueAsBytes(new CartRowsJson(rows)));
+
+            long[] dto = measure(lines, "dto", out -> mapper.writeValue(out, ShoppingCartResponse.fromRows(rows)));
+            long[] streaming = measure(lines, "streaming", out -> mapper.writeValue(out, new CartRowsJson(rows)));
+            assertTrue(streaming[1] < dto[1]);
+        }
+        System.out.println("--- End of benchmark ---");
+    }
+
+    private long[] measure(int lines, String path, Write write) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 20);
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            out.reset();
+            write.to(out);
+        }
+        long thread = Thread.currentThread().threadId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            out.reset();
+            write.to(out);
+        }
+        long nsPerOp = (System.nanoTime() - start) / MEASURED_ITERATIONS;
+        long bytesPerOp = (threads.getThreadAllocatedBytes(thread) - allocatedBefore) / MEASURED_ITERATIONS;
+        System.out.printf("%-6d %-10s %12d %14d%n", lines, path, nsPerOp, bytesPerOp);
+        return new long[]{nsPerOp, bytesPerOp};
+    }
+
+    private static List<Tuple> sampleRows(int lines) {
+        LocalDateTime now = LocalDateTime.of(2023, 10, 26, 10, 15, 30);
+        List<Tuple> rows = new ArrayList<>(lines);
+        for (int i = 1; i <= lines; i++) {
+            rows.add(new MapTuple()
+                    .with("cartId", 100L)
+                    .with("status", ShoppingCart.CartStatus.ACTIVE)
+                    .with("largeCart", false)
+                    .with("createdAt", now.minusHours(2))
+                    .with("lastModifiedAt", now)
+                    .with("checkedOutAt", null)
+                    .with("itemId", (long) i)
+                    .with("productId", 1000L + i)
+                    .with("productName", "Product " + i)
+                    .with("productType", "TYPE" + i % 10)
+                    .with("productPrice", new BigDecimal(i * 7 + ".99"))
+                    .with("quantity", i % 5 + 1));
+        }
+        return rows;
+    }
+
+    @FunctionalInterface
+    private interface Write {
+        void to(ByteArrayOutputStream out) throws IOException;
+    }
+}
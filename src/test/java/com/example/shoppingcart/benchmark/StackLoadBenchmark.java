@@ -0,0 +1,222 @@
+package com.example.shoppingcart.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Load harness comparing the servlet stack (Tomcat + JPA) with the "reactive" profile (Netty + R2DBC).
+ * Each stack runs from the packaged jar and gets the same closed-loop workload: load.concurrency clients
+ * (default 1000) issue cart reads and item adds (4:1) against load.carts carts for load.seconds seconds.
+ * Admission control is relaxed on the servlet stack so both answer every request.
+ * Run with: mvn package -DskipTests && mvn test -Pbenchmark -Dtest=StackLoadBenchmark
+ */
+@Tag("benchmark")
+class StackLoadBenchmark {
+
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 1000);
+    private static final int CARTS = Integer.getInteger("load.carts", 200);
+    private static final Duration WARMUP = Duration.ofSeconds(10);
+    private static final Duration MEASURED = Duration.ofSeconds(Integer.getInteger("load.seconds", 30));
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(90);
+    private static final Path TARGET = Paths.get("target");
+    private static final String JAVA = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    private static final Pattern ID = Pattern.compile("\"id\":(\\d+)");
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    @Test
+    void compareServletAndReactiveStacks() throws Exception {
+        Path jar = findJar();
+        assertNotNull(jar, "No packaged jar under target/; run mvn package -DskipTests first");
+
+        System.out.println("\n--- Stack load benchmark (" + CONCURRENCY + " clients, " + MEASURED.toSeconds() + "s) ---");
+        System.out.printf("%-9s %10s %10s %10s %10s %8s %9s %9s%n",
+                "stack", "req/s", "p50 (ms)", "p99 (ms)", "max (ms)", "errors", "threads", "RSS (MB)");
+        run("servlet", jar, List.of(
+                "--app.admission.rate-limit.capacity=1000000000",
+                "--app.admission.rate-limit.refill-per-second=1000000000",
+                "--app.admission.max-in-flight=1000000",
+                "--app.admission.max-pending-connections=1000000"));
+        run("reactive", jar, List.of("--spring.profiles.active=reactive"));
+        System.out.println("--- End of benchmark ---");
+    }
+
+    private void run(String stack, Path jar, List<String> arguments) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>(List.of(JAVA, "-jar", jar.toAbsolutePath().toString(),
+                "--server.port=" + port, "--spring.jpa.show-sql=false", "--logging.level.root=WARN"));
+        command.addAll(arguments);
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            String base = "http://localhost:" + port + "/api";
+            awaitStartup(process, base);
+            long productId = id(send(post(base + "/products",
+                    "{\"name\":\"Load\",\"price\":2.50,\"type\":\"BENCH\"}")));
+            long[] cartIds = new long[CARTS];
+            for (int i = 0; i < CARTS; i++) {
+                cartIds[i] = id(send(post(base + "/carts", "")));
+            }
+
+            drive(base, cartIds, productId, WARMUP);
+            Result result = drive(base, cartIds, productId, MEASURED);
+            System.out.printf("%-9s %10.0f %10.1f %10.1f %10.1f %8d %9d %9d%n", stack,
+                    result.requests() / (double) MEASURED.toSeconds(),
+                    result.percentile(0.50), result.percentile(0.99), result.percentile(1.0),
+                    result.errors(), procStatus(process.pid(), "Threads:"), procStatus(process.pid(), "VmRSS:") / 1024);
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    // Closed loop: every client sends its next request as soon as the previous one is answered
+    private Result drive(String base, long[] cartIds, long productId, Duration duration) throws Exception {
+        long deadline = System.nanoTime() + duration.toNanos();
+        AtomicLong errors = new AtomicLong();
+        List<Future<long[]>> clients = new ArrayList<>(CONCURRENCY);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < CONCURRENCY; c++) {
+                clients.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long[] latencies = new long[1024];
+                    int count = 0;
+                    while (System.nanoTime() < deadline) {
+                        long cartId = cartIds[random.nextInt(cartIds.length)];
+                        HttpRequest request = random.nextInt(5) == 0
+                                ? post(base + "/carts/" + cartId + "/items", "{\"productId\":" + productId + ",\"quantity\":1}")
+                                : HttpRequest.newBuilder(URI.create(base + "/carts/" + cartId)).build();
+                        long start = System.nanoTime();
+                        try {
+                            if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() != 200) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        }
+                        if (count == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, count * 2);
+                        }
+                        latencies[count++] = System.nanoTime() - start;
+                    }
+                    return Arrays.copyOf(latencies, count);
+                }));
+            }
+        }
+        List<long[]> latencies = new ArrayList<>(clients.size());
+        for (Future<long[]> client : clients) {
+            latencies.add(client.get());
+        }
+        return Result.of(latencies, errors.get());
+    }
+
+    private void awaitStartup(Process process, String base) throws Exception {
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(base + "/products")).build();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Application exited with " + process.exitValue());
+            }
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException notListeningYet) {
+                // Server socket not open yet
+            }
+            Thread.sleep(100);
+        }
+        throw new IllegalStateException("Application did not answer within " + STARTUP_TIMEOUT);
+    }
+
+    private String send(HttpRequest request) throws Exception {
+        return client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    private static HttpRequest post(String uri, String json) {
+        return HttpRequest.newBuilder(URI.create(uri))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private static long id(String json) {
+        Matcher matcher = ID.matcher(json);
+        if (!matcher.find()) {
+            throw new IllegalStateException("No id in " + json);
+        }
+        return Long.parseLong(matcher.group(1));
+    }
+
+    private static Path findJar() throws IOException {
+        try (var files = Files.list(TARGET)) {
+            return files.filter(file -> file.getFileName().toString().endsWith("-SNAPSHOT.jar")).findFirst().orElse(null);
+        }
+    }
+
+    private static long procStatus(long pid, String field) throws IOException {
+        for (String line : Files.readAllLines(Paths.get("/proc", Long.toString(pid), "status"))) {
+            if (line.startsWith(field)) {
+                return Long.parseLong(line.replaceAll("\\D", ""));
+            }
+        }
+        return -1;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private record Result(long[] sortedNanos, long errors) {
+
+        static Result of(List<long[]> perClient, long errors) {
+            long[] all = perClient.stream()
+                    .flatMapToLong(Arrays::stream)
+                    .sorted()
+                    .toArray();
+            return new Result(all, errors);
+        }
+
+        long requests() {
+            return sortedNanos.length;
+        }
+
+        double percentile(double p) {
+            if (sortedNanos.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(sortedNanos.length - 1, Math.ceil(p * sortedNanos.length) - 1);
+            return sortedNanos[Math.max(0, index)] / 1_000_000.0;
+        }
+    }
+}
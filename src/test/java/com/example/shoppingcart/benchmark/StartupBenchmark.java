@@ -0,0 +1,154 @@
+package com.example.shoppingcart.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Time to first successful request and resident memory right after it, for each startup mode whose
+ * artifacts exist under target/:
+ * jvm (mvn package), aot and aot+cds (mvn package -Paot), native (mvn -Pnative native:compile).
+ * Run with: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+class StartupBenchmark {
+
+    private static final int RUNS = 3;
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(60);
+    private static final Path TARGET = Paths.get("target");
+    private static final Path STARTUP_DIR = TARGET.resolve("startup");
+    private static final String JAVA = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(200)).build();
+
+    @Test
+    void compareStartupModes() throws Exception {
+        List<Mode> modes = availableModes();
+        assertFalse(modes.isEmpty(), "No startup artifacts under target/; run mvn package (optionally -Paot) first");
+
+        System.out.println("\n--- Startup benchmark (median of " + RUNS + " runs) ---");
+        System.out.printf("%-10s %22s %10s%n", "mode", "first request (ms)", "RSS (MB)");
+        for (Mode mode : modes) {
+            List<Long> millis = new ArrayList<>();
+            List<Long> rssKb = new ArrayList<>();
+            for (int run = 0; run < RUNS; run++) {
+                long[] result = measure(mode);
+                millis.add(result[0]);
+                rssKb.add(result[1]);
+            }
+            System.out.printf("%-10s %22d %10d%n", mode.name(), median(millis), median(rssKb) / 1024);
+        }
+        System.out.println("--- End of benchmark ---");
+    }
+
+    private static List<Mode> availableModes() throws IOException {
+        List<Mode> modes = new ArrayList<>();
+        Path fatJar = findJar(TARGET, "-SNAPSHOT.jar");
+        if (fatJar != null) {
+            modes.add(new Mode("jvm", TARGET, List.of(JAVA, "-jar", fatJar.getFileName().toString())));
+        }
+        Path startupJar = findJar(STARTUP_DIR, "-startup.jar");
+        if (startupJar != null) {
+            // The CDS archive is only used when the jar is given by the same path as in the training run
+            String jar = startupJar.getFileName().toString();
+            modes.add(new Mode("aot", STARTUP_DIR, List.of(JAVA, "-Dspring.aot.enabled=true", "-jar", jar)));
+            if (Files.exists(STARTUP_DIR.resolve("shopping_cart.jsa"))) {
+                modes.add(new Mode("aot+cds", STARTUP_DIR, List.of(JAVA, "-XX:SharedArchiveFile=shopping_cart.jsa",
+                        "-Xlog:cds=off,cds+dynamic=off", "-Dspring.aot.enabled=true", "-jar", jar)));
+            }
+        }
+        Path nativeImage = TARGET.resolve("shopping_cart");
+        if (Files.isExecutable(nativeImage)) {
+            modes.add(new Mode("native", TARGET, List.of(nativeImage.toAbsolutePath().toString())));
+        }
+        return modes;
+    }
+
+    private static Path findJar(Path directory, String suffix) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return null;
+        }
+        try (var files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(suffix)).findFirst().orElse(null);
+        }
+    }
+
+    // Returns {milliseconds to first successful request, RSS in KB after it}
+    private long[] measure(Mode mode) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>(mode.command());
+        command.add("--server.port=" + port);
+        command.add("--spring.jpa.show-sql=false");
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/products")).build();
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .directory(mode.directory().toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            long deadline = start + STARTUP_TIMEOUT.toNanos();
+            while (System.nanoTime() < deadline) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException(mode.name() + " exited with " + process.exitValue());
+                }
+                try {
+                    if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return new long[]{(System.nanoTime() - start) / 1_000_000, residentKb(process.pid())};
+                    }
+                } catch (IOException notListeningYet) {
+                    // Server socket not open yet
+                }
+                Thread.sleep(5);
+            }
+            throw new IllegalStateException(mode.name() + " did not answer within " + STARTUP_TIMEOUT);
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    private static long residentKb(long pid) throws IOException {
+        Path status = Paths.get("/proc", Long.toString(pid), "status");
+        if (Files.exists(status)) {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("\\D", ""));
+                }
+            }
+        }
+        Process ps = new ProcessBuilder("ps", "-o", "rss=", "-p", Long.toString(pid)).start();
+        return Long.parseLong(new String(ps.getInputStream().readAllBytes()).trim());
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static long median(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+
+    private record Mode(String name, Path directory, List<String> command) {
+    }
+}
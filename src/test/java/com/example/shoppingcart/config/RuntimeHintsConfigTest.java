@@ -0,0 +1,41 @@
+package com.example.shoppingcart.config;
+
+import com.example.shoppingcart.dto.CartItemResponse;
+import com.example.shoppingcart.dto.CartRowsJson;
+import com.example.shoppingcart.dto.ReportJobResponse;
+import com.example.shoppingcart.dto.ShoppingCartResponse;
+import com.example.shoppingcart.model.CartState;
+import com.example.shoppingcart.service.ReportJob;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RuntimeHintsConfigTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    @Test
+    void registerHints_shouldCoverResponseDtosAndNestedTypes() {
+        new RuntimeHintsConfig.ShoppingCartRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(ShoppingCartResponse.class, "getItems").test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(CartItemResponse.class, "getItemTotalPrice").test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(ReportJobResponse.class, "getStatus").test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(ReportJob.Status.class).test(hints));
+    }
+
+    @Test
+    void registerHints_shouldCoverBodiesHiddenFromSignatures_andTheirSerializers() {
+        new RuntimeHintsConfig.ShoppingCartRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        assertTrue(RuntimeHintsPredicates.reflection().onType(CartRowsJson.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(TypeReference.of(CartRowsJson.class.getName() + "$Serializer"))
+                .withMemberCategory(MemberCategory.INVOKE_DECLARED_CONSTRUCTORS).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(CartState.class, "getLines").test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(CartState.Line.class, "getUnitPrice").test(hints));
+    }
+}
@@ -1,10 +1,17 @@
 package com.example.shoppingcart.controller;
 
+import com.example.shoppingcart.dto.ProductPriceUpdateRequest;
+import com.example.shoppingcart.dto.ProductPriceUpdateResponse;
 import com.example.shoppingcart.dto.ProductRequest;
+import com.example.shoppingcart.dto.StockRequest;
+import com.example.shoppingcart.dto.StockResponse;
 import com.example.shoppingcart.exception.ResourceNotFoundException;
+import com.example.shoppingcart.inventory.InventoryService;
 import com.example.shoppingcart.model.Product;
+import com.example.shoppingcart.service.ProductPriceUpdateService;
 import com.example.shoppingcart.service.ProductService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,6 +27,7 @@ import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -43,6 +51,12 @@ class ProductControllerTest {
     @MockBean
     private ProductService productService;
 
+    @MockBean
+    private ProductPriceUpdateService productPriceUpdateService;
+
+    @MockBean
+    private InventoryService inventoryService;
+
     private Product laptop;
     private ProductRequest laptopRequest;
 
@@ -105,6 +119,21 @@ class ProductControllerTest {
         verify(productService, times(1)).getProductById(1L);
     }
 
+    @Test
+    void getProductById_shouldReturnCbor_whenRequested() throws Exception {
+        when(productService.getProductById(1L)).thenReturn(laptop);
+
+        byte[] body = mockMvc.perform(get("/api/products/{id}", 1L)
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        Product decoded = new ObjectMapper(new CBORFactory()).readValue(body, Product.class);
+        assertEquals("Laptop X", decoded.getName());
+        assertEquals(0, new BigDecimal("1200.00").compareTo(decoded.getPrice()));
+    }
+
     @Test
     void getProductById_shouldReturnNotFound_whenProductDoesNotExist() throws Exception {
         when(productService.getProductById(99L)).thenThrow(new ResourceNotFoundException("Product not found"));
@@ -186,4 +215,61 @@ class ProductControllerTest {
 
         verify(productService, times(1)).deleteProduct(99L);
     }
-}
\ No newline at end of file
+
+    @Test
+    void updatePrices_shouldReturnCounts_andStatus200() throws Exception {
+        ProductPriceUpdateRequest request = ProductPriceUpdateRequest.builder()
+                .type("LAPTOP").percentChange(new BigDecimal("-10")).build();
+        when(productPriceUpdateService.updatePrices(any(ProductPriceUpdateRequest.class)))
+                .thenReturn(ProductPriceUpdateResponse.builder().updatedProducts(12).skippedProducts(1).chunks(3).build());
+
+        mockMvc.perform(post("/api/products/price-updates")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updatedProducts").value(12))
+                .andExpect(jsonPath("$.skippedProducts").value(1))
+                .andExpect(jsonPath("$.chunks").value(3));
+    }
+
+    @Test
+    void updatePrices_shouldReturnBadRequest_whenChangeOrFilterIsMissingOrAmbiguous() throws Exception {
+        List<ProductPriceUpdateRequest> invalidRequests = List.of(
+                ProductPriceUpdateRequest.builder().type("LAPTOP").build(),
+                ProductPriceUpdateRequest.builder().type("LAPTOP")
+                        .percentChange(BigDecimal.TEN).amountChange(BigDecimal.ONE).build(),
+                ProductPriceUpdateRequest.builder().percentChange(BigDecimal.TEN).build(),
+                ProductPriceUpdateRequest.builder().type("LAPTOP").amountChange(new BigDecimal("0.001")).build());
+
+        for (ProductPriceUpdateRequest request : invalidRequests) {
+            mockMvc.perform(post("/api/products/price-updates")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(request)))
+                    .andExpect(status().isBadRequest());
+        }
+        verifyNoInteractions(productPriceUpdateService);
+    }
+
+    @Test
+    void addStock_shouldReturnStock_andStatus200() throws Exception {
+        when(inventoryService.addStock(1L, 50)).thenReturn(StockResponse.builder().productId(1L).available(50).sold(0).build());
+        mockMvc.perform(post("/api/products/{id}/stock", 1L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(StockRequest.builder().quantity(50).build())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.productId").value(1L))
+                .andExpect(jsonPath("$.available").value(50));
+
+        verify(inventoryService, times(1)).addStock(1L, 50);
+    }
+
+    @Test
+    void addStock_shouldReturnBadRequest_whenQuantityNotPositive() throws Exception {
+        mockMvc.perform(post("/api/products/{id}/stock", 1L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(StockRequest.builder().quantity(0).build())))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(inventoryService);
+    }
+}
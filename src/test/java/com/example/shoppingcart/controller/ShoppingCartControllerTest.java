@@ -1,30 +1,53 @@
 package com.example.shoppingcart.controller;
 
+import com.example.shoppingcart.admission.ReportBulkhead;
+import com.example.shoppingcart.dto.CartBatchResponse;
+import com.example.shoppingcart.dto.CartItemPageResponse;
 import com.example.shoppingcart.dto.CartItemRequest;
 import com.example.shoppingcart.dto.ShoppingCartResponse;
 import com.example.shoppingcart.exception.ResourceNotFoundException;
+import com.example.shoppingcart.idempotency.IdempotencyStore;
 import com.example.shoppingcart.model.Product;
 import com.example.shoppingcart.model.ShoppingCart;
+import com.example.shoppingcart.notification.CartChangeBroadcaster;
+import com.example.shoppingcart.pricing.CartPricingEngine;
+import com.example.shoppingcart.repository.CartSummary;
+import com.example.shoppingcart.service.CheckoutCoalescer;
+import com.example.shoppingcart.service.ReportJob;
+import com.example.shoppingcart.service.ReportJobService;
 import com.example.shoppingcart.service.ShoppingCartService;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
 import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
 import org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
@@ -38,6 +61,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
                 HibernateJpaAutoConfiguration.class,
                 JpaRepositoriesAutoConfiguration.class
         })
+@Import({ReportBulkhead.class, IdempotencyStore.class, CartChangeBroadcaster.class})
 class ShoppingCartControllerTest {
 
     @Autowired
@@ -45,15 +69,28 @@ class ShoppingCartControllerTest {
 
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private CartChangeBroadcaster cartChangeBroadcaster;
+
     @MockBean
     private ShoppingCartService shoppingCartService;
 
+    @MockBean
+    private ReportJobService reportJobService;
+
+    @MockBean
+    private CartPricingEngine cartPricingEngine;
+
+    @MockBean
+    private CheckoutCoalescer checkoutCoalescer;
+
     private Product product1;
     private ShoppingCart activeCart;
     private ShoppingCartResponse activeCartResponse;
 
     @BeforeEach
     void setUp() {
+        when(cartPricingEngine.price(any())).thenAnswer(invocation -> invocation.getArgument(0)); // No promotions
         objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule());
         objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS); // Ensure dates are formatted as ISO strings
@@ -80,34 +117,160 @@ class ShoppingCartControllerTest {
                 .createdAt(LocalDateTime.now())
                 .lastModifiedAt(LocalDateTime.now())
                 .build();
-        when(shoppingCartService.createCart()).thenReturn(newCart);
+        when(shoppingCartService.createCart(false)).thenReturn(newCart);
         mockMvc.perform(post("/api/carts"))
                 .andExpect(status().isCreated())
                 .andExpect(jsonPath("$.id").value(1L))
                 .andExpect(jsonPath("$.status").value("ACTIVE"));
 
-        verify(shoppingCartService, times(1)).createCart();
+        verify(shoppingCartService, times(1)).createCart(false);
+    }
+
+    @Test
+    void streamCartEvents_shouldSendCurrentCart_thenCommittedChanges() throws Exception {
+        when(shoppingCartService.getCartResponse(100L)).thenReturn(activeCartResponse);
+        MvcResult result = mockMvc.perform(get("/api/carts/{cartId}/events", 100L))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        awaitContent(result, "\"totalPrice\":1000.00");
+        assertTrue(result.getResponse().getContentType().startsWith(MediaType.TEXT_EVENT_STREAM_VALUE));
+        assertTrue(result.getResponse().getContentAsString().contains("event:cart"));
+
+        activeCart.getItems().get(0).setQuantity(3);
+        cartChangeBroadcaster.publish(100L, ShoppingCartResponse.fromEntity(activeCart));
+        awaitContent(result, "\"totalPrice\":3000.00");
+    }
+
+    @Test
+    void streamCartEvents_shouldReturn404_whenCartDoesNotExist() throws Exception {
+        when(shoppingCartService.getCartResponse(999L)).thenThrow(new ResourceNotFoundException("Shopping cart not found with ID: 999"));
+        mockMvc.perform(get("/api/carts/{cartId}/events", 999L))
+                .andExpect(status().isNotFound());
+        assertFalse(cartChangeBroadcaster.hasSubscribers(999L));
+    }
+
+    @Test
+    void getCartsByIds_shouldReturnCartsAndMissingIds() throws Exception {
+        when(shoppingCartService.getCartResponses(Arrays.asList(100L, 7L)))
+                .thenReturn(CartBatchResponse.builder().carts(List.of(activeCartResponse)).missingIds(List.of(7L)).build());
+
+        mockMvc.perform(get("/api/carts").param("ids", "100,7"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.carts[0].id").value(100L))
+                .andExpect(jsonPath("$.carts[0].totalPrice").value(1000.00))
+                .andExpect(jsonPath("$.missingIds[0]").value(7L));
+    }
+
+    @Test
+    void getCartsByIds_shouldReturnStatus400_whenTooManyOrNoIds() throws Exception {
+        String tooMany = LongStream.rangeClosed(1, ShoppingCartController.MAX_BATCH_IDS + 1)
+                .mapToObj(Long::toString)
+                .collect(Collectors.joining(","));
+        mockMvc.perform(get("/api/carts").param("ids", tooMany))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/carts"))
+                .andExpect(status().isBadRequest());
+
+        verify(shoppingCartService, never()).getCartResponses(any());
+    }
+
+    @Test
+    void getCartItems_shouldReturnPage_andRejectOversizedPages() throws Exception {
+        when(shoppingCartService.getCartItems(100L, 2, 50)).thenReturn(CartItemPageResponse.builder()
+                .cartId(100L).page(2).size(50).itemCount(101L)
+                .items(activeCartResponse.getItems()).build());
+
+        mockMvc.perform(get("/api/carts/{cartId}/items", 100L).param("page", "2").param("size", "50"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.itemCount").value(101))
+                .andExpect(jsonPath("$.items[0].productId").value(1L));
+        mockMvc.perform(get("/api/carts/{cartId}/items", 100L)
+                        .param("size", Integer.toString(ShoppingCartController.MAX_ITEM_PAGE_SIZE + 1)))
+                .andExpect(status().isBadRequest());
+
+        verify(shoppingCartService, times(1)).getCartItems(anyLong(), anyInt(), anyInt());
     }
 
     @Test
     void getCartById_shouldReturnCart_andStatus200() throws Exception {
-        when(shoppingCartService.getCartById(100L)).thenReturn(activeCart);
+        when(shoppingCartService.getCartDocument(100L)).thenReturn(activeCartResponse);
         mockMvc.perform(get("/api/carts/{cartId}", 100L))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id").value(100L))
                 .andExpect(jsonPath("$.status").value("ACTIVE"))
                 .andExpect(jsonPath("$.totalPrice").value(1000.00)); // Price from product1 in activeCart
 
-        verify(shoppingCartService, times(1)).getCartById(100L);
+        verify(shoppingCartService, times(1)).getCartDocument(100L);
+    }
+
+    @Test
+    void getCartById_shouldReturnCbor_whenRequested() throws Exception {
+        when(shoppingCartService.getCartDocument(100L)).thenReturn(activeCartResponse);
+        byte[] json = mockMvc.perform(get("/api/carts/{cartId}", 100L))
+                .andReturn().getResponse().getContentAsByteArray();
+        byte[] cbor = mockMvc.perform(get("/api/carts/{cartId}", 100L)
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        ObjectMapper cborMapper = new ObjectMapper(new CBORFactory()).registerModule(new JavaTimeModule());
+        ShoppingCartResponse decoded = cborMapper.readValue(cbor, ShoppingCartResponse.class);
+        assertEquals(100L, decoded.getId());
+        assertEquals(activeCart.getCreatedAt(), decoded.getCreatedAt());
+        assertEquals(0, new BigDecimal("1000.00").compareTo(decoded.getTotalPrice()));
+        assertTrue(cbor.length < json.length);
+    }
+
+    @Test
+    void getCartById_shouldWriteCborDates_likeJson() throws Exception {
+        when(shoppingCartService.getCartDocument(100L)).thenReturn(activeCartResponse);
+        byte[] json = mockMvc.perform(get("/api/carts/{cartId}", 100L))
+                .andReturn().getResponse().getContentAsByteArray();
+        byte[] cbor = mockMvc.perform(get("/api/carts/{cartId}", 100L)
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode jsonCreatedAt = new ObjectMapper().readTree(json).get("createdAt");
+        JsonNode cborCreatedAt = new ObjectMapper(new CBORFactory()).readTree(cbor).get("createdAt");
+        assertTrue(jsonCreatedAt.isTextual());
+        assertEquals(jsonCreatedAt, cborCreatedAt);
+    }
+
+    @Test
+    void getCartById_shouldReturnSummaryWithoutItems_whenSummaryViewRequested() throws Exception {
+        CartSummary summary = mock(CartSummary.class);
+        when(summary.getId()).thenReturn(100L);
+        when(summary.getStatus()).thenReturn(ShoppingCart.CartStatus.ACTIVE);
+        when(shoppingCartService.getCartSummary(100L)).thenReturn(summary);
+        when(shoppingCartService.calculateTotalPrice(100L)).thenReturn(new BigDecimal("1000.00"));
+        mockMvc.perform(get("/api/carts/{cartId}", 100L).param("view", "summary"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(100L))
+                .andExpect(jsonPath("$.status").value("ACTIVE"))
+                .andExpect(jsonPath("$.totalPrice").value(1000.00))
+                .andExpect(jsonPath("$.items").doesNotExist());
+
+        verify(shoppingCartService, times(1)).getCartSummary(100L);
+        verify(shoppingCartService, never()).getCartDocument(anyLong());
+    }
+
+    @Test
+    void getCartById_shouldReturnBadRequest_whenViewUnknown() throws Exception {
+        mockMvc.perform(get("/api/carts/{cartId}", 100L).param("view", "compact"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(shoppingCartService);
     }
 
     @Test
     void getCartById_shouldReturnNotFound_whenCartDoesNotExist() throws Exception {
-        when(shoppingCartService.getCartById(999L)).thenThrow(new ResourceNotFoundException("Cart not found"));
+        when(shoppingCartService.getCartDocument(999L)).thenThrow(new ResourceNotFoundException("Cart not found"));
         mockMvc.perform(get("/api/carts/{cartId}", 999L))
                 .andExpect(status().isNotFound());
 
-        verify(shoppingCartService, times(1)).getCartById(999L);
+        verify(shoppingCartService, times(1)).getCartDocument(999L);
     }
 
     @Test
@@ -137,6 +300,40 @@ class ShoppingCartControllerTest {
         verify(shoppingCartService, times(1)).addItemToCart(eq(100L), any(CartItemRequest.class));
     }
 
+    @Test
+    void addItemToCart_shouldReplayResponse_whenRetriedWithSameIdempotencyKey() throws Exception {
+        CartItemRequest request = CartItemRequest.builder().productId(1L).quantity(1).build();
+        when(shoppingCartService.addItemToCart(eq(100L), any(CartItemRequest.class))).thenReturn(activeCart);
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            mockMvc.perform(post("/api/carts/{cartId}/items", 100L)
+                            .header(IdempotencyStore.HEADER, "add-key-1")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(request)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items[0].quantity").value(1));
+        }
+
+        verify(shoppingCartService, times(1)).addItemToCart(eq(100L), any(CartItemRequest.class));
+    }
+
+    @Test
+    void addItemToCart_shouldReturnStatus422_whenIdempotencyKeyReusedForDifferentRequest() throws Exception {
+        when(shoppingCartService.addItemToCart(eq(100L), any(CartItemRequest.class))).thenReturn(activeCart);
+        mockMvc.perform(post("/api/carts/{cartId}/items", 100L)
+                        .header(IdempotencyStore.HEADER, "add-key-2")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(CartItemRequest.builder().productId(1L).quantity(1).build())))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/carts/{cartId}/items", 100L)
+                        .header(IdempotencyStore.HEADER, "add-key-2")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(CartItemRequest.builder().productId(1L).quantity(3).build())))
+                .andExpect(status().isUnprocessableEntity());
+        verify(shoppingCartService, times(1)).addItemToCart(eq(100L), any(CartItemRequest.class));
+    }
+
     @Test
     void addItemToCart_shouldReturnBadRequest_whenInvalidRequest() throws Exception {
         CartItemRequest invalidRequest = CartItemRequest.builder().productId(1L).quantity(0).build();
@@ -175,6 +372,25 @@ class ShoppingCartControllerTest {
         verify(shoppingCartService, times(1)).calculateTotalPrice(100L);
     }
 
+    @Test
+    void repriceCart_shouldReturnRepricedCart_andStatus200() throws Exception {
+        when(shoppingCartService.repriceCart(100L)).thenReturn(activeCart);
+        mockMvc.perform(post("/api/carts/{cartId}/reprice", 100L))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(100L))
+                .andExpect(jsonPath("$.items[0].productPrice").value(1000.00));
+        verify(shoppingCartService, times(1)).repriceCart(100L);
+    }
+
+    @Test
+    void repriceActiveCarts_shouldReturnRepricedItemCount_andStatus200() throws Exception {
+        when(shoppingCartService.repriceActiveCarts()).thenReturn(3);
+        mockMvc.perform(post("/api/carts/reprice"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("3"));
+        verify(shoppingCartService, times(1)).repriceActiveCarts();
+    }
+
     @Test
     void checkoutCart_shouldReturnCheckedOutCart_andStatus200() throws Exception {
         ShoppingCart checkedOutCartEntity = ShoppingCart.builder()
@@ -186,13 +402,13 @@ class ShoppingCartControllerTest {
                 .build();
         checkedOutCartEntity.getItems().add(com.example.shoppingcart.model.CartItem.builder()
                 .id(1L).shoppingCart(checkedOutCartEntity).product(product1).quantity(1).build());
-        when(shoppingCartService.checkoutCart(100L)).thenReturn(checkedOutCartEntity);
+        when(checkoutCoalescer.checkout(100L, null)).thenReturn(checkedOutCartEntity);
         mockMvc.perform(post("/api/carts/{cartId}/checkout", 100L))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id").value(100L))
                 .andExpect(jsonPath("$.status").value("CHECKED_OUT"))
                 .andExpect(jsonPath("$.checkedOutAt").exists());
-        verify(shoppingCartService, times(1)).checkoutCart(100L);
+        verify(checkoutCoalescer, times(1)).checkout(100L, null);
     }
 
     @Test
@@ -204,8 +420,11 @@ class ShoppingCartControllerTest {
                 .createdAt(LocalDateTime.of(2023, 1, 1, 8, 0)).build();
         when(shoppingCartService.getAbandonedCartsForReport(reportDate))
                 .thenReturn(Arrays.asList(abandonedCart1, abandonedCart2));
-        mockMvc.perform(get("/api/carts/report/abandoned")
+        MvcResult asyncResult = mockMvc.perform(get("/api/carts/report/abandoned")
                         .param("date", "2023-01-01"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(asyncResult))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.length()").value(2))
                 .andExpect(jsonPath("$[0].id").value(201L))
@@ -217,10 +436,63 @@ class ShoppingCartControllerTest {
     void printAbandonedCartsReportToConsole_shouldReturnOk_andStatus200() throws Exception {
         LocalDate reportDate = LocalDate.of(2023, 1, 1);
         doNothing().when(shoppingCartService).printReport(reportDate);
-        mockMvc.perform(get("/api/carts/report/abandoned/print")
+        MvcResult asyncResult = mockMvc.perform(get("/api/carts/report/abandoned/print")
                         .param("date", "2023-01-01"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(asyncResult))
                 .andExpect(status().isOk())
                 .andExpect(content().string("Report printed to console for 2023-01-01"));
         verify(shoppingCartService, times(1)).printReport(reportDate);
     }
+
+    @Test
+    void submitAbandonedCartsReportJob_shouldReturnJob_andStatus202() throws Exception {
+        ReportJob job = new ReportJob("job-1", LocalDate.of(2023, 1, 1), LocalDateTime.now());
+        when(reportJobService.submit(LocalDate.of(2023, 1, 1))).thenReturn(job);
+
+        mockMvc.perform(post("/api/carts/report/abandoned/jobs").param("date", "2023-01-01"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/carts/report/abandoned/jobs/job-1"))
+                .andExpect(jsonPath("$.id").value("job-1"))
+                .andExpect(jsonPath("$.status").value("QUEUED"));
+    }
+
+    @Test
+    void getAbandonedCartsReportJob_shouldReturnStatus404_whenJobNotFound() throws Exception {
+        when(reportJobService.getJob("missing")).thenThrow(new ResourceNotFoundException("Report job not found with ID: missing"));
+
+        mockMvc.perform(get("/api/carts/report/abandoned/jobs/{jobId}", "missing"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getAbandonedCartsReportJobResult_shouldReturnStatus409_whenJobNotCompleted() throws Exception {
+        when(reportJobService.getJob("job-1")).thenReturn(new ReportJob("job-1", LocalDate.of(2023, 1, 1), LocalDateTime.now()));
+
+        mockMvc.perform(get("/api/carts/report/abandoned/jobs/{jobId}/result", "job-1"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void getAbandonedCartsReportJobResult_shouldReturnFile_whenJobCompleted(@TempDir Path tempDir) throws Exception {
+        Path file = Files.writeString(tempDir.resolve("report.json"), "[{\"id\":201}]");
+        ReportJob job = mock(ReportJob.class);
+        when(job.getStatus()).thenReturn(ReportJob.Status.COMPLETED);
+        when(job.getResultFile()).thenReturn(file);
+        when(reportJobService.getJob("job-1")).thenReturn(job);
+
+        mockMvc.perform(get("/api/carts/report/abandoned/jobs/{jobId}/result", "job-1"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$[0].id").value(201));
+    }
+
+    private static void awaitContent(MvcResult result, String expected) throws Exception {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!result.getResponse().getContentAsString().contains(expected)) {
+            assertTrue(System.nanoTime() < deadline, "No event containing " + expected);
+            Thread.sleep(10);
+        }
+    }
 }
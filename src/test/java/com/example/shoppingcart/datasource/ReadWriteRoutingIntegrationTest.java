@@ -0,0 +1,95 @@
+package com.example.shoppingcart.datasource;
+
+import com.example.shoppingcart.dto.ProductRequest;
+import com.example.shoppingcart.dto.ShoppingCartResponse;
+import com.example.shoppingcart.model.Product;
+import com.example.shoppingcart.model.ShoppingCart;
+import com.example.shoppingcart.service.ProductService;
+import com.example.shoppingcart.service.ShoppingCartService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the routing data source against two separate H2 databases, the second standing in for a replica
+ * that never receives the primary's writes. Which database answered shows where a read was routed.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+        "app.datasource.replica.jdbc-url=jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1",
+        "app.datasource.replica.max-lag=1m"
+})
+class ReadWriteRoutingIntegrationTest {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ShoppingCartService shoppingCartService;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replicaDataSource;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private JdbcTemplate replica;
+
+    @BeforeEach
+    void setUp() {
+        replica = new JdbcTemplate(replicaDataSource);
+        replica.execute("create table if not exists products (id bigint primary key, name varchar(255) not null, " +
+                "price numeric(10,2) not null, type varchar(255) not null, deleted boolean default false not null)");
+        replica.update("merge into products (id, name, price, type) key (id) values (1000, 'Replica Only', 1.00, 'TEST')");
+    }
+
+    @Test
+    void readOnlyProductLookup_shouldBeServedByReplica() {
+        assertEquals("Replica Only", productService.getProductById(1000L).getName());
+        assertEquals(1, productService.getAllProducts().size());
+    }
+
+    @Test
+    void reportingReads_shouldUseReportingPool() {
+        double before = routedTo(DataSourceRole.REPORTING);
+
+        Product product = DataSourceRouting.onReporting(() -> productService.getProductById(1000L));
+
+        assertEquals("Replica Only", product.getName());
+        assertEquals(before + 1, routedTo(DataSourceRole.REPORTING));
+    }
+
+    @Test
+    void writes_shouldGoToPrimary() {
+        Product created = productService.createProduct(ProductRequest.builder()
+                .name("Primary Only").price(new BigDecimal("2.00")).type("TEST").build());
+
+        assertNotNull(created.getId());
+        assertEquals(0, replica.queryForObject("select count(*) from products where name = 'Primary Only'", Integer.class));
+    }
+
+    @Test
+    void cartRead_shouldStayOnPrimary_rightAfterWrite() {
+        ShoppingCart cart = shoppingCartService.createCart();
+
+        // The replica has no shopping_carts table at all, so this only succeeds if routed to the primary
+        ShoppingCartResponse response = shoppingCartService.getCartResponse(cart.getId());
+
+        assertEquals(cart.getId(), response.getId());
+        assertEquals(ShoppingCart.CartStatus.ACTIVE, shoppingCartService.getCartSummary(cart.getId()).getStatus());
+    }
+
+    private double routedTo(DataSourceRole role) {
+        return meterRegistry.get("app.datasource.connections.routed").tag("pool", role.poolName()).counter().count();
+    }
+}
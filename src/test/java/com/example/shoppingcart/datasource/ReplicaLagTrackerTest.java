@@ -0,0 +1,67 @@
+package com.example.shoppingcart.datasource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ReplicaLagTracker using a controllable clock.
+ */
+class ReplicaLagTrackerTest {
+
+    private final AtomicReference<Instant> now = new AtomicReference<>(Instant.parse("2023-10-26T10:00:00Z"));
+    private ReplicaLagTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        Clock clock = new Clock() {
+            @Override
+            public ZoneOffset getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(java.time.ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return now.get();
+            }
+        };
+        tracker = new ReplicaLagTracker(Duration.ofSeconds(2), clock);
+    }
+
+    @Test
+    void requiresPrimary_shouldBeFalse_forCartNeverWritten() {
+        assertFalse(tracker.requiresPrimary(100L));
+    }
+
+    @Test
+    void requiresPrimary_shouldBeTrue_withinLagWindow_andFalseAfterwards() {
+        tracker.recordWrite(100L);
+        now.set(now.get().plusMillis(1500));
+        assertTrue(tracker.requiresPrimary(100L));
+        assertFalse(tracker.requiresPrimary(101L));
+
+        now.set(now.get().plusMillis(600));
+        assertFalse(tracker.requiresPrimary(100L));
+    }
+
+    @Test
+    void read_shouldPinToPrimary_onlyForRecentlyWrittenCart() {
+        tracker.recordWrite(100L);
+
+        assertEquals(DataSourceRole.PRIMARY, tracker.read(100L, DataSourceRouting::pinnedRole));
+        assertNull(tracker.read(101L, DataSourceRouting::pinnedRole));
+        assertNull(DataSourceRouting.pinnedRole()); // Restored after the read
+    }
+}
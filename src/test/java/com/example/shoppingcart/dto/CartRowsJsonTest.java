@@ -0,0 +1,61 @@
+package com.example.shoppingcart.dto;
+
+import com.example.shoppingcart.model.ShoppingCart;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import jakarta.persistence.Tuple;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class CartRowsJsonTest {
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2024, 5, 1, 12, 0, 0, 123_456_000);
+
+    @Test
+    void serialize_shouldMatchFullView_inEveryFormat() throws Exception {
+        List<Tuple> rows = List.of(
+                row(1L, ShoppingCart.CartStatus.CHECKED_OUT, CREATED.plusHours(1))
+                        .with("itemId", 10L).with("productId", 100L).with("productName", "Book \"1\"")
+                        .with("productType", "BOOK").with("productPrice", new BigDecimal("19.99")).with("quantity", 3),
+                row(1L, ShoppingCart.CartStatus.CHECKED_OUT, CREATED.plusHours(1))
+                        .with("itemId", 11L).with("productId", 101L).with("productName", "Pen")
+                        .with("productType", "PEN").with("productPrice", new BigDecimal("1.50")).with("quantity", 1));
+
+        assertSameDocument(rows);
+    }
+
+    @Test
+    void serialize_shouldMatchFullView_forEmptyOpenCart() throws Exception {
+        List<Tuple> rows = List.of(row(2L, ShoppingCart.CartStatus.ACTIVE, null)
+                .with("itemId", null).with("productId", null).with("productName", null)
+                .with("productType", null).with("productPrice", null).with("quantity", null));
+
+        assertSameDocument(rows);
+    }
+
+    private static void assertSameDocument(List<Tuple> rows) throws Exception {
+        for (JsonFactory factory : List.of(new JsonFactory(), new CBORFactory(), new SmileFactory())) {
+            ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().factory(factory).build();
+            assertArrayEquals(mapper.writeValueAsBytes(ShoppingCartResponse.fromRows(rows)),
+                    mapper.writeValueAsBytes(new CartRowsJson(rows)), factory.getFormatName());
+        }
+    }
+
+    private static MapTuple row(Long cartId, ShoppingCart.CartStatus status, LocalDateTime checkedOutAt) {
+        return new MapTuple()
+                .with("cartId", cartId)
+                .with("status", status)
+                .with("largeCart", false)
+                .with("createdAt", CREATED)
+                .with("lastModifiedAt", CREATED.plusMinutes(5))
+                .with("checkedOutAt", checkedOutAt);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.shoppingcart.dto;
+
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TupleElement;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tuple over named values, standing in for the rows of the repository's projection queries.
+ */
+public class MapTuple implements Tuple {
+
+    private final Map<String, Object> values = new LinkedHashMap<>();
+
+    public MapTuple with(String alias, Object value) {
+        values.put(alias, value);
+        return this;
+    }
+
+    @Override
+    public <X> X get(TupleElement<X> tupleElement) {
+        return tupleElement.getJavaType().cast(values.get(tupleElement.getAlias()));
+    }
+
+    @Override
+    public <X> X get(String alias, Class<X> type) {
+        return type.cast(get(alias));
+    }
+
+    @Override
+    public Object get(String alias) {
+        if (!values.containsKey(alias)) {
+            throw new IllegalArgumentException("Unknown alias: " + alias);
+        }
+        return values.get(alias);
+    }
+
+    @Override
+    public <X> X get(int i, Class<X> type) {
+        return type.cast(get(i));
+    }
+
+    @Override
+    public Object get(int i) {
+        return toArray()[i];
+    }
+
+    @Override
+    public Object[] toArray() {
+        return values.values().toArray();
+    }
+
+    @Override
+    public List<TupleElement<?>> getElements() {
+        return new ArrayList<>();
+    }
+}
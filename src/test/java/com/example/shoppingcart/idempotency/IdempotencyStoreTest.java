@@ -0,0 +1,114 @@
+package com.example.shoppingcart.idempotency;
+
+import com.example.shoppingcart.exception.IdempotencyKeyReusedException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyStoreTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final IdempotencyStore store = new IdempotencyStore(Duration.ofSeconds(10), 2, now::get);
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @Test
+    void execute_shouldRunOnce_forSameKey() {
+        assertEquals(1, store.execute("k", "req", executions::incrementAndGet));
+        assertEquals(1, store.execute("k", "req", executions::incrementAndGet));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void execute_shouldAlwaysRun_withoutKey() {
+        store.execute(null, "req", executions::incrementAndGet);
+        store.execute(" ", "req", executions::incrementAndGet);
+        assertEquals(2, executions.get());
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void execute_shouldRejectKey_reusedForDifferentRequest() {
+        store.execute("k", "req-1", executions::incrementAndGet);
+        assertThrows(IdempotencyKeyReusedException.class, () -> store.execute("k", "req-2", executions::incrementAndGet));
+    }
+
+    @Test
+    void execute_shouldRunAgain_afterTtl() {
+        store.execute("k", "req", executions::incrementAndGet);
+        now.addAndGet(Duration.ofSeconds(11).toNanos());
+        assertEquals(2, store.execute("k", "req", executions::incrementAndGet));
+    }
+
+    @Test
+    void execute_shouldNotRemember_failedAttempts() {
+        assertThrows(IllegalStateException.class, () -> store.execute("k", "req", () -> {
+            throw new IllegalStateException("boom");
+        }));
+        assertEquals(1, store.execute("k", "req", executions::incrementAndGet));
+    }
+
+    @Test
+    void execute_shouldEvictOldest_beyondMaxEntries() {
+        store.execute("a", "req", executions::incrementAndGet);
+        store.execute("b", "req", executions::incrementAndGet);
+        store.execute("c", "req", executions::incrementAndGet);
+
+        assertEquals(2, store.size());
+        assertEquals(4, store.execute("a", "req", executions::incrementAndGet));
+    }
+
+    @Test
+    void execute_shouldKeepInFlightAttempts_whenEvictingOrExpiring() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Integer> first = CompletableFuture.supplyAsync(() -> store.execute("slow", "req", () -> {
+            started.countDown();
+            await(release);
+            return executions.incrementAndGet();
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        store.execute("a", "req", () -> 0);
+        store.execute("b", "req", () -> 0); // Evicts a, the oldest finished entry
+        now.addAndGet(Duration.ofSeconds(11).toNanos());
+        store.execute("c", "req", () -> 0); // Expires b
+        assertEquals(2, store.size());
+
+        now.addAndGet(-Duration.ofSeconds(11).toNanos());
+        release.countDown();
+        assertEquals(1, first.get(5, TimeUnit.SECONDS));
+        assertEquals(1, store.execute("slow", "req", executions::incrementAndGet));
+    }
+
+    @Test
+    void execute_shouldWaitForInFlightAttempt() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Integer> first = CompletableFuture.supplyAsync(() -> store.execute("k", "req", () -> {
+            started.countDown();
+            await(release);
+            return executions.incrementAndGet();
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Integer> retry = CompletableFuture.supplyAsync(() -> store.execute("k", "req", executions::incrementAndGet));
+
+        release.countDown();
+        assertEquals(1, first.get(5, TimeUnit.SECONDS));
+        assertEquals(1, retry.get(5, TimeUnit.SECONDS));
+        assertEquals(1, executions.get());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.shoppingcart.inventory;
+
+import com.example.shoppingcart.dto.CartItemRequest;
+import com.example.shoppingcart.dto.ProductRequest;
+import com.example.shoppingcart.exception.InsufficientStockException;
+import com.example.shoppingcart.model.Product;
+import com.example.shoppingcart.service.ProductService;
+import com.example.shoppingcart.service.ShoppingCartService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs reservations against the database with a lease of three units, so that reservations regularly lease
+ * from the table. Reconciliation runs only when a test calls it. The primary pool is smaller than the number
+ * of concurrent cart transactions, which all lease while holding a primary connection.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:inventory;DB_CLOSE_DELAY=-1",
+        "spring.datasource.hikari.maximum-pool-size=4",
+        "spring.datasource.hikari.connection-timeout=2000",
+        "app.datasource.replica.jdbc-url=jdbc:h2:mem:inventory;DB_CLOSE_DELAY=-1",
+        "app.datasource.reporting.jdbc-url=jdbc:h2:mem:inventory;DB_CLOSE_DELAY=-1",
+        "app.inventory.lease-size=3",
+        "app.inventory.reconcile-interval=1h"
+})
+class InventoryIntegrationTest {
+
+    @Autowired
+    private ShoppingCartService shoppingCartService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private StockReconciler stockReconciler;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void addRemoveAndCheckout_shouldReserveReleaseAndSell() {
+        Product product = createProduct("Lamp");
+        inventoryService.addStock(product.getId(), 10);
+        Long cartId = shoppingCartService.createCart().getId();
+
+        shoppingCartService.addItemToCart(cartId, item(product, 4));
+        assertEquals(6, inventoryService.getStock(product.getId()).getAvailable());
+        shoppingCartService.removeItemFromCart(cartId, product.getId(), 1);
+        assertEquals(7, inventoryService.getStock(product.getId()).getAvailable());
+
+        shoppingCartService.checkoutCart(cartId);
+        stockReconciler.reconcile();
+
+        assertEquals(7, count("select available from product_stock where product_id = ?", product.getId()));
+        assertEquals(3, count("select sold from product_stock where product_id = ?", product.getId()));
+        assertEquals(3, count("select reserved_quantity from cart_items where shopping_cart_id = ?", cartId));
+    }
+
+    @Test
+    void addItemToCart_shouldFailWithoutChangingCart_whenStockRunsOut() {
+        Product product = createProduct("Vase");
+        inventoryService.addStock(product.getId(), 2);
+        Long cartId = shoppingCartService.createCart().getId();
+        shoppingCartService.addItemToCart(cartId, item(product, 2));
+
+        assertThrows(InsufficientStockException.class, () -> shoppingCartService.addItemToCart(cartId, item(product, 1)));
+        assertEquals(2, shoppingCartService.getCartResponse(cartId).getItems().get(0).getQuantity());
+        assertEquals(0, inventoryService.getStock(product.getId()).getAvailable());
+    }
+
+    @Test
+    void untrackedProducts_shouldNeverRunOut() {
+        Product product = createProduct("Pencil");
+        Long cartId = shoppingCartService.createCart().getId();
+
+        shoppingCartService.addItemToCart(cartId, item(product, 1_000));
+        shoppingCartService.checkoutCart(cartId);
+
+        assertEquals(0, count("select reserved_quantity from cart_items where shopping_cart_id = ?", cartId));
+    }
+
+    @Test
+    void reconcile_shouldReleaseExpiredReservations_andCheckoutTakesStockAgain() {
+        Product product = createProduct("Rug");
+        inventoryService.addStock(product.getId(), 5);
+        Long cartId = shoppingCartService.createCart().getId();
+        shoppingCartService.addItemToCart(cartId, item(product, 5));
+        jdbcTemplate.update("update cart_items set reserved_until = dateadd('MINUTE', -1, current_timestamp) where shopping_cart_id = ?", cartId);
+
+        assertEquals(1, stockReconciler.reconcile());
+        assertEquals(5, count("select available from product_stock where product_id = ?", product.getId()));
+
+        Long otherCartId = shoppingCartService.createCart().getId();
+        shoppingCartService.addItemToCart(otherCartId, item(product, 1));
+        assertThrows(InsufficientStockException.class, () -> shoppingCartService.checkoutCart(cartId));
+        shoppingCartService.removeItemFromCart(otherCartId, product.getId(), 1);
+        shoppingCartService.checkoutCart(cartId);
+        stockReconciler.reconcile();
+
+        assertEquals(0, count("select available from product_stock where product_id = ?", product.getId()));
+        assertEquals(5, count("select sold from product_stock where product_id = ?", product.getId()));
+    }
+
+    @Test
+    void concurrentReservations_shouldNeverOversell() throws Exception {
+        Product product = createProduct("Ticket");
+        inventoryService.addStock(product.getId(), 50);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 80; i++) {
+                Long cartId = shoppingCartService.createCart().getId();
+                results.add(executor.submit(() -> {
+                    try {
+                        shoppingCartService.addItemToCart(cartId, item(product, 1));
+                        shoppingCartService.checkoutCart(cartId);
+                        return true;
+                    } catch (InsufficientStockException e) {
+                        return false;
+                    }
+                }));
+            }
+            int sold = 0;
+            for (Future<Boolean> result : results) {
+                sold += result.get() ? 1 : 0;
+            }
+            assertEquals(50, sold);
+        } finally {
+            executor.shutdown();
+        }
+        stockReconciler.reconcile();
+        assertEquals(0, count("select available from product_stock where product_id = ?", product.getId()));
+        assertEquals(50, count("select sold from product_stock where product_id = ?", product.getId()));
+    }
+
+    private Product createProduct(String name) {
+        return productService.createProduct(ProductRequest.builder()
+                .name(name).price(new BigDecimal("9.99")).type("HOME").build());
+    }
+
+    private static CartItemRequest item(Product product, int quantity) {
+        return CartItemRequest.builder().productId(product.getId()).quantity(quantity).build();
+    }
+
+    private long count(String sql, Long id) {
+        return jdbcTemplate.queryForObject(sql, Long.class, id);
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.shoppingcart.notification;
+
+import com.example.shoppingcart.dto.ShoppingCartResponse;
+import com.example.shoppingcart.exception.TooManySubscribersException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CartChangeBroadcasterTest {
+
+    private final CartChangeBroadcaster broadcaster = new CartChangeBroadcaster(Duration.ofMinutes(1), Duration.ofHours(1), 2, 2, 4);
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.destroy();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void publish_shouldReachOnlySubscribersOfTheCart() {
+        RecordingEmitter cart1 = new RecordingEmitter();
+        RecordingEmitter cart2 = new RecordingEmitter();
+        broadcaster.register(1L, cart1);
+        broadcaster.register(2L, cart2);
+
+        broadcaster.publish(1L, cart(1L, "5.00"));
+
+        cart1.await(1);
+        assertTrue(cart1.sent.get(0).contains("event:cart"));
+        assertTrue(cart1.sent.get(0).contains("5.00"));
+        assertTrue(cart2.sent.isEmpty());
+    }
+
+    @Test
+    void publish_shouldWaitForCommit_andSkipRolledBackChanges() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        broadcaster.register(1L, emitter);
+
+        TransactionSynchronizationManager.initSynchronization();
+        broadcaster.publish(1L, cart(1L, "1.00"));
+        broadcaster.publish(1L, cart(1L, "2.00"));
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        assertTrue(emitter.sent.isEmpty());
+
+        synchronizations.get(0).afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        synchronizations.get(1).afterCommit();
+        emitter.await(1);
+        assertEquals(1, emitter.sent.size());
+        assertTrue(emitter.sent.get(0).contains("2.00"));
+    }
+
+    @Test
+    void sendHeartbeats_shouldDropSubscribersThatCannotBeReached() {
+        RecordingEmitter alive = new RecordingEmitter();
+        RecordingEmitter gone = new RecordingEmitter();
+        gone.failing = true;
+        broadcaster.register(1L, alive);
+        broadcaster.register(1L, gone);
+
+        broadcaster.sendHeartbeats();
+
+        alive.await(1);
+        assertTrue(alive.sent.get(0).contains(":heartbeat"));
+        awaitSubscribers(1);
+        assertTrue(broadcaster.hasSubscribers(1L));
+    }
+
+    @Test
+    void publish_shouldNotWaitForSlowSubscribers_andDropThemOnceTooFarBehind() {
+        RecordingEmitter slow = new RecordingEmitter();
+        RecordingEmitter fast = new RecordingEmitter();
+        slow.blocked = new CountDownLatch(1);
+        broadcaster.register(1L, slow);
+        broadcaster.register(2L, fast);
+
+        broadcaster.publish(1L, cart(1L, "1.00"));
+        slow.sending.join(); // Stuck in its first send
+        for (int i = 1; i <= 6; i++) {
+            broadcaster.publish(1L, cart(1L, i + ".00"));
+            broadcaster.publish(2L, cart(2L, i + ".00"));
+            fast.await(i);
+        }
+
+        awaitSubscribers(1); // The fifth change overflowed the slow client's queue of four
+        assertFalse(broadcaster.hasSubscribers(1L));
+        slow.blocked.countDown();
+        slow.awaitCompleted();
+        assertEquals(1, slow.sent.size());
+    }
+
+    @Test
+    void publish_shouldSkipStatesOlderThanOneAlreadySent() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        broadcaster.register(1L, emitter);
+        LocalDateTime now = LocalDateTime.now();
+
+        broadcaster.publish(1L, cart(1L, "2.00", now));
+        emitter.await(1);
+        broadcaster.publish(1L, cart(1L, "1.00", now.minusSeconds(1))); // Read before the change that was sent
+        broadcaster.publish(1L, cart(1L, "3.00", now)); // Same version, such as a bulk reprice: still sent
+
+        emitter.await(2);
+        broadcaster.sendHeartbeats();
+        emitter.await(3);
+        assertTrue(emitter.sent.get(1).contains("3.00"));
+        assertTrue(emitter.sent.get(2).contains(":heartbeat"));
+    }
+
+    @Test
+    void register_shouldRejectSubscribersBeyondTheLimit() {
+        broadcaster.register(1L, new RecordingEmitter());
+        broadcaster.register(2L, new RecordingEmitter());
+
+        assertThrows(TooManySubscribersException.class, () -> broadcaster.register(3L, new RecordingEmitter()));
+        assertEquals(2, broadcaster.subscriberCount());
+        assertFalse(broadcaster.hasSubscribers(3L));
+    }
+
+    private void awaitSubscribers(int count) {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (broadcaster.subscriberCount() != count) {
+            assertTrue(System.nanoTime() < deadline, "Expected " + count + " subscribers");
+            Thread.onSpinWait();
+        }
+    }
+
+    private static ShoppingCartResponse cart(Long id, String total) {
+        return cart(id, total, null);
+    }
+
+    private static ShoppingCartResponse cart(Long id, String total, LocalDateTime lastModifiedAt) {
+        return ShoppingCartResponse.builder().id(id).items(List.of()).totalPrice(new BigDecimal(total))
+                .lastModifiedAt(lastModifiedAt).build();
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<String> sent = new CopyOnWriteArrayList<>();
+        private volatile boolean failing;
+        private volatile CountDownLatch blocked;
+        private volatile boolean completed;
+        private final CompletableFuture<Void> sending = new CompletableFuture<>();
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (failing) {
+                throw new IOException("Broken pipe");
+            }
+            sending.complete(null);
+            if (blocked != null) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            StringBuilder text = new StringBuilder();
+            builder.build().forEach(part -> text.append(part.getData()));
+            sent.add(text.toString());
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+
+        void awaitCompleted() {
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            while (!completed) {
+                assertTrue(System.nanoTime() < deadline, "Expected the stream to be completed");
+                Thread.onSpinWait();
+            }
+        }
+
+        void await(int events) {
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            while (sent.size() < events) {
+                assertTrue(System.nanoTime() < deadline, "Expected " + events + " events");
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
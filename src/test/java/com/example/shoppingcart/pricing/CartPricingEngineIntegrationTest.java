@@ -0,0 +1,126 @@
+package com.example.shoppingcart.pricing;
+
+import com.example.shoppingcart.dto.CartItemResponse;
+import com.example.shoppingcart.dto.PromotionRequest;
+import com.example.shoppingcart.dto.ShoppingCartResponse;
+import com.example.shoppingcart.exception.ResourceNotFoundException;
+import com.example.shoppingcart.model.Promotion;
+import com.example.shoppingcart.repository.PromotionRepository;
+import com.example.shoppingcart.repository.PromotionRuleSetRepository;
+import com.example.shoppingcart.service.PromotionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two engines on one database standing in for two nodes: promotion changes made through this node's
+ * PromotionService reach the other engine through the stored rule-set version.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:pricing-nodes;DB_CLOSE_DELAY=-1",
+        "app.datasource.replica.jdbc-url=jdbc:h2:mem:pricing-nodes;DB_CLOSE_DELAY=-1",
+        "app.datasource.reporting.jdbc-url=jdbc:h2:mem:pricing-nodes;DB_CLOSE_DELAY=-1",
+        "app.inventory.reconcile-interval=1h"
+})
+class CartPricingEngineIntegrationTest {
+
+    private static final LocalDateTime VERSION = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    @Autowired
+    private PromotionService promotionService;
+
+    @Autowired
+    private PromotionRepository promotionRepository;
+
+    @Autowired
+    private PromotionRuleSetRepository ruleSetRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void promotionChange_shouldReachEveryNode_withinTheCheckInterval() throws InterruptedException {
+        CartPricingEngine node1 = new CartPricingEngine(promotionRepository, ruleSetRepository, transactionManager,
+                100, Duration.ofMillis(100));
+        CartPricingEngine node2 = new CartPricingEngine(promotionRepository, ruleSetRepository, transactionManager,
+                100, Duration.ofMillis(100));
+        assertTotal("20.00", node1);
+        assertTotal("20.00", node2);
+
+        Promotion promotion = promotionService.createPromotion(PromotionRequest.builder()
+                .name("Games 25%").kind(Promotion.Kind.PERCENT_OFF_TYPE)
+                .productType("GAME").percentOff(new BigDecimal("25")).build());
+        awaitTotal("15.00", node1);
+        awaitTotal("15.00", node2);
+
+        promotionService.deletePromotion(promotion.getId());
+        awaitTotal("20.00", node1);
+        awaitTotal("20.00", node2);
+        assertThrows(ResourceNotFoundException.class, () -> promotionService.deletePromotion(promotion.getId()));
+    }
+
+    @Test
+    void cartsChanged_shouldDropEveryNodesPricedCarts_withinTheCheckInterval() throws InterruptedException {
+        CartPricingEngine node1 = new CartPricingEngine(promotionRepository, ruleSetRepository, transactionManager,
+                100, Duration.ofMillis(100));
+        CartPricingEngine node2 = new CartPricingEngine(promotionRepository, ruleSetRepository, transactionManager,
+                100, Duration.ofMillis(100));
+        Promotion promotion = promotionService.createPromotion(PromotionRequest.builder()
+                .name("Games 10%").kind(Promotion.Kind.PERCENT_OFF_TYPE)
+                .productType("GAME").percentOff(new BigDecimal("10")).build());
+        try {
+            awaitTotal("18.00", node1);
+            assertTrue(node1.cachedTotal(1L, VERSION).isPresent());
+
+            node2.cartsChanged();
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (node1.cachedTotal(1L, VERSION).isPresent() && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertTrue(node1.cachedTotal(1L, VERSION).isEmpty());
+        } finally {
+            promotionService.deletePromotion(promotion.getId());
+        }
+    }
+
+    private static void awaitTotal(String expected, CartPricingEngine engine) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (new BigDecimal(expected).compareTo(price(engine)) != 0 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTotal(expected, engine);
+    }
+
+    private static void assertTotal(String expected, CartPricingEngine engine) {
+        assertEquals(0, new BigDecimal(expected).compareTo(price(engine)));
+    }
+
+    private static BigDecimal price(CartPricingEngine engine) {
+        CartItemResponse item = CartItemResponse.builder()
+                .productId(1L)
+                .productType("GAME")
+                .productPrice(new BigDecimal("20.00"))
+                .quantity(1)
+                .itemTotalPrice(new BigDecimal("20.00"))
+                .discount(BigDecimal.ZERO)
+                .build();
+        return engine.price(ShoppingCartResponse.builder()
+                .id(1L)
+                .items(new ArrayList<>(List.of(item)))
+                .subtotalPrice(new BigDecimal("20.00"))
+                .discountTotal(BigDecimal.ZERO)
+                .totalPrice(new BigDecimal("20.00"))
+                .lastModifiedAt(VERSION)
+                .build()).getTotalPrice();
+    }
+}
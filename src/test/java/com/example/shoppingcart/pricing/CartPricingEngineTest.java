@@ -0,0 +1,147 @@
+package com.example.shoppingcart.pricing;
+
+import com.example.shoppingcart.dto.CartItemResponse;
+import com.example.shoppingcart.dto.ShoppingCartResponse;
+import com.example.shoppingcart.model.Promotion;
+import com.example.shoppingcart.model.PromotionRuleSet;
+import com.example.shoppingcart.repository.PromotionRepository;
+import com.example.shoppingcart.repository.PromotionRuleSetRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CartPricingEngineTest {
+
+    private static final LocalDateTime VERSION = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    private final PromotionRepository promotionRepository = mock(PromotionRepository.class);
+    private final PromotionRuleSetRepository ruleSetRepository = mock(PromotionRuleSetRepository.class);
+    private CartPricingEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new CartPricingEngine(promotionRepository, ruleSetRepository, mock(PlatformTransactionManager.class),
+                100, Duration.ofHours(1));
+    }
+
+    @Test
+    void price_shouldGiveEachLineItsBestRule_thenApplyBestThresholdReached() {
+        when(promotionRepository.findAll()).thenReturn(List.of(
+                percentOff("Books 10%", "BOOK", "10"),
+                percentOff("Books 15%", "BOOK", "15"),
+                buyXGetY("Pens 2+1", "PEN", 2, 1),
+                percentOff("Pens 5%", "PEN", "5"),
+                threshold("5 off 50", "50.00", "5.00"),
+                threshold("2 off 20", "20.00", "2.00"),
+                threshold("1 off 100", "100.00", "1.00")));
+
+        ShoppingCartResponse cart = engine.price(cart(1L, VERSION,
+                item(10L, "BOOK", "20.00", 2),
+                item(11L, "PEN", "3.00", 7),
+                item(12L, "FOOD", "9.99", 1)));
+
+        CartItemResponse book = cart.getItems().get(0);
+        CartItemResponse pen = cart.getItems().get(1);
+        CartItemResponse food = cart.getItems().get(2);
+        assertEquals(new BigDecimal("6.00"), book.getDiscount()); // 15% of 40.00
+        assertEquals("Books 15%", book.getPromotion());
+        assertEquals(0, new BigDecimal("6.00").compareTo(pen.getDiscount())); // 2 free of 7 beats 5% of 21.00
+        assertEquals("Pens 2+1", pen.getPromotion());
+        assertEquals(BigDecimal.ZERO, food.getDiscount());
+        assertNull(food.getPromotion());
+
+        assertEquals(0, new BigDecimal("70.99").compareTo(cart.getSubtotalPrice()));
+        // 58.99 after line discounts reaches the 50.00 threshold, whose 5.00 beats the lower threshold's 2.00
+        assertEquals("5 off 50", cart.getCartPromotion());
+        assertEquals(0, new BigDecimal("17.00").compareTo(cart.getDiscountTotal()));
+        assertEquals(0, new BigDecimal("53.99").compareTo(cart.getTotalPrice()));
+    }
+
+    @Test
+    void price_shouldReuseCachedResult_untilCartOrRulesChange() {
+        when(promotionRepository.findAll()).thenReturn(List.of(percentOff("Books 10%", "BOOK", "10")));
+
+        assertEquals(0, new BigDecimal("18.00").compareTo(engine.price(cart(1L, VERSION, item(10L, "BOOK", "20.00", 1))).getTotalPrice()));
+        assertEquals(0, new BigDecimal("18.00").compareTo(engine.cachedTotal(1L, VERSION).orElseThrow()));
+        assertTrue(engine.cachedTotal(1L, VERSION.plusSeconds(1)).isEmpty());
+        verify(promotionRepository, times(1)).findAll(); // Compiled once for the rule-set version
+
+        when(promotionRepository.findAll()).thenReturn(List.of(percentOff("Books 50%", "BOOK", "50")));
+        engine.promotionsChanged(); // Same stored version: checked, but nothing to recompile
+        engine.hasPromotions();
+        verify(promotionRepository, times(1)).findAll();
+
+        when(ruleSetRepository.findAllById(any()))
+                .thenReturn(List.of(new PromotionRuleSet(PromotionRuleSet.PROMOTIONS, 1L)));
+        engine.promotionsChanged();
+
+        assertTrue(engine.cachedTotal(1L, VERSION).isEmpty());
+        assertEquals(0, new BigDecimal("10.00").compareTo(engine.price(cart(1L, VERSION, item(10L, "BOOK", "20.00", 1))).getTotalPrice()));
+        verify(promotionRepository, times(2)).findAll();
+
+        engine.cartsChanged();
+        assertTrue(engine.cachedTotal(1L, VERSION).isEmpty());
+        verify(ruleSetRepository).bumpVersion(PromotionRuleSet.CART_PRICING);
+    }
+
+    @Test
+    void price_shouldLeaveListPrices_withoutPromotions() {
+        when(promotionRepository.findAll()).thenReturn(List.of());
+
+        ShoppingCartResponse cart = engine.price(cart(1L, VERSION, item(10L, "BOOK", "20.00", 2)));
+
+        assertFalse(engine.hasPromotions());
+        assertEquals(0, new BigDecimal("40.00").compareTo(cart.getTotalPrice()));
+        assertEquals(BigDecimal.ZERO, cart.getDiscountTotal());
+    }
+
+    private static ShoppingCartResponse cart(Long id, LocalDateTime lastModifiedAt, CartItemResponse... items) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (CartItemResponse item : items) {
+            total = total.add(item.getItemTotalPrice());
+        }
+        return ShoppingCartResponse.builder()
+                .id(id)
+                .items(new ArrayList<>(List.of(items)))
+                .subtotalPrice(total)
+                .discountTotal(BigDecimal.ZERO)
+                .totalPrice(total)
+                .lastModifiedAt(lastModifiedAt)
+                .build();
+    }
+
+    private static CartItemResponse item(Long productId, String type, String price, int quantity) {
+        return CartItemResponse.builder()
+                .productId(productId)
+                .productType(type)
+                .productPrice(new BigDecimal(price))
+                .quantity(quantity)
+                .itemTotalPrice(new BigDecimal(price).multiply(BigDecimal.valueOf(quantity)))
+                .discount(BigDecimal.ZERO)
+                .build();
+    }
+
+    private static Promotion percentOff(String name, String type, String percent) {
+        return Promotion.builder().name(name).kind(Promotion.Kind.PERCENT_OFF_TYPE)
+                .productType(type).percentOff(new BigDecimal(percent)).build();
+    }
+
+    private static Promotion buyXGetY(String name, String type, int buy, int free) {
+        return Promotion.builder().name(name).kind(Promotion.Kind.BUY_X_GET_Y)
+                .productType(type).buyQuantity(buy).freeQuantity(free).build();
+    }
+
+    private static Promotion threshold(String name, String minimum, String amount) {
+        return Promotion.builder().name(name).kind(Promotion.Kind.CART_THRESHOLD)
+                .minimumSubtotal(new BigDecimal(minimum)).amountOff(new BigDecimal(amount)).build();
+    }
+}
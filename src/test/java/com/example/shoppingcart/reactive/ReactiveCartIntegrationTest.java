@@ -0,0 +1,128 @@
+package com.example.shoppingcart.reactive;
+
+import com.example.shoppingcart.dto.CartItemRequest;
+import com.example.shoppingcart.dto.ProductRequest;
+import com.example.shoppingcart.dto.ShoppingCartResponse;
+import com.example.shoppingcart.inventory.InventoryService;
+import com.example.shoppingcart.model.Product;
+import com.example.shoppingcart.model.ShoppingCart;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the "reactive" profile on Netty and exercises the cart API over HTTP.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:reactive;DB_CLOSE_DELAY=-1",
+        "app.datasource.replica.jdbc-url=jdbc:h2:mem:reactive;DB_CLOSE_DELAY=-1",
+        "app.datasource.reporting.jdbc-url=jdbc:h2:mem:reactive;DB_CLOSE_DELAY=-1",
+        "spring.r2dbc.url=r2dbc:h2:mem:///reactive;DB_CLOSE_DELAY=-1"
+})
+@ActiveProfiles("reactive")
+class ReactiveCartIntegrationTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Test
+    void cartLifecycle_shouldMatchTheServletApi() {
+        Product product = webTestClient.post().uri("/api/products")
+                .bodyValue(ProductRequest.builder().name("Apple").price(new BigDecimal("1.50")).type("FRUIT").build())
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Product.class).returnResult().getResponseBody();
+        ShoppingCartResponse cart = webTestClient.post().uri("/api/carts")
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(ShoppingCartResponse.class).returnResult().getResponseBody();
+
+        addItem(cart.getId(), product.getId(), 2);
+        ShoppingCartResponse afterAdd = addItem(cart.getId(), product.getId(), 3);
+        assertEquals(1, afterAdd.getItems().size());
+        assertEquals(5, afterAdd.getItems().get(0).getQuantity());
+        assertEquals(0, new BigDecimal("7.50").compareTo(afterAdd.getTotalPrice()));
+
+        ShoppingCartResponse afterRemove = webTestClient.delete().uri("/api/carts/{cartId}/items/{productId}?quantity=1", cart.getId(), product.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(ShoppingCartResponse.class).returnResult().getResponseBody();
+        assertEquals(4, afterRemove.getItems().get(0).getQuantity());
+        webTestClient.get().uri("/api/carts/{cartId}/total", cart.getId())
+                .exchange()
+                .expectBody(BigDecimal.class).value(total -> assertEquals(0, new BigDecimal("6.00").compareTo(total)));
+
+        ShoppingCartResponse checkedOut = webTestClient.post().uri("/api/carts/{cartId}/checkout", cart.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(ShoppingCartResponse.class).returnResult().getResponseBody();
+        assertEquals(ShoppingCart.CartStatus.CHECKED_OUT, checkedOut.getStatus());
+        webTestClient.get().uri("/api/carts/{cartId}?view=summary", cart.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("CHECKED_OUT")
+                .jsonPath("$.totalPrice").isEqualTo(6.00)
+                .jsonPath("$.items").doesNotExist();
+    }
+
+    @Test
+    void checkout_shouldBeRefused_forCartsHoldingTrackedStock() {
+        Product product = webTestClient.post().uri("/api/products")
+                .bodyValue(ProductRequest.builder().name("Melon").price(new BigDecimal("3.00")).type("FRUIT").build())
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Product.class).returnResult().getResponseBody();
+        inventoryService.addStock(product.getId(), 5);
+        ShoppingCartResponse cart = webTestClient.post().uri("/api/carts")
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(ShoppingCartResponse.class).returnResult().getResponseBody();
+        addItem(cart.getId(), product.getId(), 1);
+
+        webTestClient.post().uri("/api/carts/{cartId}/checkout", cart.getId())
+                .exchange()
+                .expectStatus().isEqualTo(409);
+        webTestClient.get().uri("/api/carts/{cartId}?view=summary", cart.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("ACTIVE");
+        assertEquals(5, inventoryService.getStock(product.getId()).getAvailable());
+    }
+
+    @Test
+    void invalidRequests_shouldBeRejectedLikeTheServletApi() {
+        webTestClient.post().uri("/api/products")
+                .bodyValue(ProductRequest.builder().name("").price(BigDecimal.ZERO).type("FRUIT").build())
+                .exchange()
+                .expectStatus().isBadRequest();
+        webTestClient.post().uri("/api/carts/{cartId}/items", 999)
+                .bodyValue(CartItemRequest.builder().productId(1L).quantity(0).build())
+                .exchange()
+                .expectStatus().isBadRequest();
+        webTestClient.get().uri("/api/carts/{cartId}", 999)
+                .exchange()
+                .expectStatus().isNotFound();
+        webTestClient.get().uri("/api/carts/{cartId}?view=other", 999)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    private ShoppingCartResponse addItem(Long cartId, Long productId, int quantity) {
+        return webTestClient.post().uri("/api/carts/{cartId}/items", cartId)
+                .bodyValue(CartItemRequest.builder().productId(productId).quantity(quantity).build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(ShoppingCartResponse.class).returnResult().getResponseBody();
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.shoppingcart.repository;
+
+import com.example.shoppingcart.JpaConfig;
+import com.example.shoppingcart.dto.ShoppingCartResponse;
+import com.example.shoppingcart.model.CartItem;
+import com.example.shoppingcart.model.Product;
+import com.example.shoppingcart.model.ShoppingCart;
+import jakarta.persistence.Tuple;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Repository tests against the embedded H2 database.
+ * Covers the custom queries that mocks in the service tests cannot verify.
+ */
+@DataJpaTest
+@Import(JpaConfig.class)
+class ShoppingCartRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ShoppingCartRepository shoppingCartRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Test
+    void findCartRowsById_shouldBuildFullResponse() {
+        Product laptop = entityManager.persist(Product.builder().name("Laptop").price(new BigDecimal("1000.00")).type("ELECTRONICS").build());
+        Product mouse = entityManager.persist(Product.builder().name("Mouse").price(new BigDecimal("25.00")).type("ELECTRONICS").build());
+        ShoppingCart cart = entityManager.persist(new ShoppingCart());
+        entityManager.persist(CartItem.builder().shoppingCart(cart).product(laptop).quantity(1).unitPrice(laptop.getPrice()).build());
+        entityManager.persist(CartItem.builder().shoppingCart(cart).product(mouse).quantity(2).unitPrice(mouse.getPrice()).build());
+        entityManager.flush();
+        entityManager.clear();
+
+        List<Tuple> rows = shoppingCartRepository.findCartRowsById(cart.getId());
+        ShoppingCartResponse response = ShoppingCartResponse.fromRows(rows);
+
+        assertEquals(cart.getId(), response.getId());
+        assertEquals(ShoppingCart.CartStatus.ACTIVE, response.getStatus());
+        assertNotNull(response.getCreatedAt());
+        assertEquals(2, response.getItems().size());
+        assertEquals("Mouse", response.getItems().get(1).getProductName());
+        assertEquals(new BigDecimal("50.00"), response.getItems().get(1).getItemTotalPrice());
+        assertEquals(new BigDecimal("1050.00"), response.getTotalPrice());
+    }
+
+    @Test
+    void findCartRowsById_shouldReturnSingleRow_forEmptyCart() {
+        ShoppingCart cart = entityManager.persistAndFlush(new ShoppingCart());
+        entityManager.clear();
+
+        ShoppingCartResponse response = ShoppingCartResponse.fromRows(shoppingCartRepository.findCartRowsById(cart.getId()));
+
+        assertTrue(response.getItems().isEmpty());
+        assertEquals(BigDecimal.ZERO, response.getTotalPrice());
+    }
+
+    @Test
+    void findCartRowsById_shouldReturnNoRows_whenCartDoesNotExist() {
+        assertTrue(shoppingCartRepository.findCartRowsById(999L).isEmpty());
+    }
+
+    @Test
+    void findCartRowsByIdIn_shouldBuildOneResponsePerExistingCart() {
+        Product laptop = entityManager.persist(Product.builder().name("Laptop").price(new BigDecimal("1000.00")).type("ELECTRONICS").build());
+        ShoppingCart empty = entityManager.persist(new ShoppingCart());
+        ShoppingCart full = entityManager.persist(new ShoppingCart());
+        entityManager.persist(CartItem.builder().shoppingCart(full).product(laptop).quantity(2).unitPrice(laptop.getPrice()).build());
+        entityManager.flush();
+        entityManager.clear();
+
+        List<ShoppingCartResponse> responses = ShoppingCartResponse.fromRowsOfCarts(
+                shoppingCartRepository.findCartRowsByIdIn(List.of(full.getId(), 999L, empty.getId())));
+
+        assertEquals(List.of(empty.getId(), full.getId()), responses.stream().map(ShoppingCartResponse::getId).toList());
+        assertTrue(responses.get(0).getItems().isEmpty());
+        assertEquals(new BigDecimal("2000.00"), responses.get(1).getTotalPrice());
+    }
+
+    @Test
+    void findSummaryById_shouldReturnHeaderColumns() {
+        ShoppingCart cart = entityManager.persistAndFlush(new ShoppingCart());
+        entityManager.clear();
+
+        CartSummary summary = shoppingCartRepository.findSummaryById(cart.getId()).orElseThrow();
+
+        assertEquals(cart.getId(), summary.getId());
+        assertEquals(ShoppingCart.CartStatus.ACTIVE, summary.getStatus());
+        assertNull(summary.getCheckedOutAt());
+    }
+
+    @Test
+    void findTotalPriceById_shouldUseSnapshots_untilRepriced() {
+        Product laptop = entityManager.persist(Product.builder().name("Laptop").price(new BigDecimal("1000.00")).type("ELECTRONICS").build());
+        ShoppingCart cart = entityManager.persist(new ShoppingCart());
+        entityManager.persist(CartItem.builder().shoppingCart(cart).product(laptop).quantity(2).unitPrice(laptop.getPrice()).build());
+        laptop.setPrice(new BigDecimal("900.00"));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals(0, new BigDecimal("2000.00").compareTo(shoppingCartRepository.findTotalPriceById(cart.getId()).orElseThrow()));
+
+        assertEquals(1, cartItemRepository.refreshStaleUnitPrices(ShoppingCart.CartStatus.OPEN));
+        assertEquals(0, cartItemRepository.refreshStaleUnitPrices(ShoppingCart.CartStatus.OPEN)); // Nothing stale left
+        assertEquals(0, new BigDecimal("1800.00").compareTo(shoppingCartRepository.findTotalPriceById(cart.getId()).orElseThrow()));
+    }
+
+    @Test
+    void findTotalPriceById_shouldReturnZero_forEmptyCart_andEmpty_forMissingCart() {
+        ShoppingCart cart = entityManager.persistAndFlush(new ShoppingCart());
+
+        assertEquals(0, BigDecimal.ZERO.compareTo(shoppingCartRepository.findTotalPriceById(cart.getId()).orElseThrow()));
+        assertTrue(shoppingCartRepository.findTotalPriceById(999L).isEmpty());
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.shoppingcart.service;
+
+import com.example.shoppingcart.dto.CartItemRequest;
+import com.example.shoppingcart.dto.ProductRequest;
+import com.example.shoppingcart.model.Product;
+import com.example.shoppingcart.model.ShoppingCart;
+import com.example.shoppingcart.model.ShoppingCart.CartStatus;
+import com.example.shoppingcart.sharding.ShardDataSources;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Abandonment detection against H2 with one additional shard, no idle time and one cart per transaction.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:abandoned-carts;DB_CLOSE_DELAY=-1",
+        "app.datasource.replica.jdbc-url=jdbc:h2:mem:abandoned-carts;DB_CLOSE_DELAY=-1",
+        "app.datasource.reporting.jdbc-url=jdbc:h2:mem:abandoned-carts;DB_CLOSE_DELAY=-1",
+        "app.sharding.additional-shards[0].jdbc-url=jdbc:h2:mem:abandoned-carts-shard1;DB_CLOSE_DELAY=-1",
+        "app.sharding.additional-shards[0].username=sa",
+        "app.sharding.initialize-schema=true",
+        "app.carts.abandonment.idle-threshold=0s",
+        "app.carts.abandonment.batch-size=1"
+})
+class AbandonedCartDetectorTest {
+
+    @Autowired
+    private AbandonedCartDetector abandonedCartDetector;
+
+    @Autowired
+    private ShoppingCartService shoppingCartService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ShardDataSources shardDataSources;
+
+    @Test
+    void detect_shouldMarkIdleCartsOnce_andReachThemAgainAfterAChange() {
+        Product product = productService.createProduct(ProductRequest.builder()
+                .name("Idle").price(new BigDecimal("1.50")).type("ABANDON").build());
+        List<Long> idle = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            idle.add(shoppingCartService.createCart().getId());
+        }
+        Long checkedOut = shoppingCartService.createCart().getId();
+        shoppingCartService.checkoutCart(checkedOut);
+
+        assertTrue(abandonedCartDetector.detect() >= idle.size());
+        idle.forEach(cartId -> assertEquals(CartStatus.ABANDONED, status(cartId)));
+        assertEquals(CartStatus.CHECKED_OUT, status(checkedOut));
+        assertEquals(1, countWatermarks(0));
+        assertEquals(1, countWatermarks(1));
+        // Nothing changed since, and the watermark keeps the next run from reading the same carts again
+        assertEquals(0, abandonedCartDetector.detect());
+
+        Long returning = idle.get(0);
+        shoppingCartService.addItemToCart(returning, CartItemRequest.builder().productId(product.getId()).quantity(1).build());
+        assertEquals(CartStatus.ACTIVE, status(returning));
+        assertFalse(reported().contains(returning));
+
+        assertEquals(1, abandonedCartDetector.detect());
+        assertEquals(CartStatus.ABANDONED, status(returning));
+        assertTrue(reported().containsAll(idle));
+        assertFalse(reported().contains(checkedOut));
+    }
+
+    private CartStatus status(Long cartId) {
+        return shoppingCartService.getCartSummary(cartId).getStatus();
+    }
+
+    private List<Long> reported() {
+        return shoppingCartService.getAbandonedCartsForReport(LocalDate.now()).stream().map(ShoppingCart::getId).toList();
+    }
+
+    private int countWatermarks(int shard) {
+        JdbcTemplate jdbc = shard == 0 ? jdbcTemplate : new JdbcTemplate(shardDataSources.additionalShards().get(shard - 1));
+        return jdbc.queryForObject("select count(*) from cart_scan_watermarks where name = ?", Integer.class,
+                AbandonedCartDetector.WATERMARK);
+    }
+}
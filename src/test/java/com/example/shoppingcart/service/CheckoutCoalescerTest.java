@@ -0,0 +1,191 @@
+package com.example.shoppingcart.service;
+
+import com.example.shoppingcart.dto.CartItemRequest;
+import com.example.shoppingcart.dto.ProductRequest;
+import com.example.shoppingcart.exception.CheckoutTimeoutException;
+import com.example.shoppingcart.exception.InsufficientStockException;
+import com.example.shoppingcart.exception.ResourceNotFoundException;
+import com.example.shoppingcart.inventory.InventoryService;
+import com.example.shoppingcart.model.Product;
+import com.example.shoppingcart.model.ShoppingCart;
+import com.example.shoppingcart.model.ShoppingCart.CartStatus;
+import com.example.shoppingcart.service.ShoppingCartService.CheckoutOutcome;
+import com.example.shoppingcart.sharding.ShardRouter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checkouts through the coalescer against H2, with a window long enough for concurrent checkouts to share
+ * a batch.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:checkout-batch;DB_CLOSE_DELAY=-1",
+        "app.datasource.replica.jdbc-url=jdbc:h2:mem:checkout-batch;DB_CLOSE_DELAY=-1",
+        "app.datasource.reporting.jdbc-url=jdbc:h2:mem:checkout-batch;DB_CLOSE_DELAY=-1",
+        "app.checkout.coalescing.enabled=true",
+        "app.checkout.coalescing.window=200ms",
+        "app.checkout.coalescing.max-batch-size=50",
+        "app.inventory.reconcile-interval=1h"
+})
+class CheckoutCoalescerTest {
+
+    @Autowired
+    private CheckoutCoalescer checkoutCoalescer;
+
+    @Autowired
+    private ShoppingCartService shoppingCartService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void checkout_shouldCommitConcurrentCheckoutsTogether_andFailOnlyTheirOwnCarts() throws Exception {
+        Product product = createProduct("Mug");
+        List<Long> cartIds = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            cartIds.add(cartWith(product, 1));
+        }
+        Long checkedOutCartId = cartWith(product, 1);
+        shoppingCartService.checkoutCart(checkedOutCartId, "first");
+        long batchesBefore = meterRegistry.get("app.checkout.batch.size").summary().count();
+
+        List<Future<?>> results = checkOutConcurrently(cartIds, checkedOutCartId, 1_024_000L); // The last id is on shard 0 but has no cart
+
+        for (int i = 0; i < cartIds.size(); i++) {
+            assertEquals(cartIds.get(i), ((ShoppingCart) results.get(i).get()).getId());
+            assertEquals(CartStatus.CHECKED_OUT.name(), status(cartIds.get(i)));
+        }
+        assertInstanceOf(IllegalStateException.class, results.get(10).get());
+        assertInstanceOf(ResourceNotFoundException.class, results.get(11).get());
+        long batches = meterRegistry.get("app.checkout.batch.size").summary().count() - batchesBefore;
+        assertTrue(batches < 12, "12 checkouts committed in " + batches + " batches");
+    }
+
+    @Test
+    void checkout_shouldRetryEachCheckoutAlone_whenTheBatchFails() throws Exception {
+        Product plentiful = createProduct("Plate");
+        Product scarce = createProduct("Bowl");
+        List<Long> cartIds = List.of(cartWith(plentiful, 1), cartWith(plentiful, 2), cartWith(plentiful, 3));
+        Long shortCartId = cartWith(scarce, 2); // Added before the stock was tracked, so nothing is reserved
+        inventoryService.addStock(scarce.getId(), 1);
+        double fallbacksBefore = meterRegistry.get("app.checkout.batch.fallbacks").counter().count();
+
+        List<Future<?>> results = checkOutConcurrently(cartIds, shortCartId);
+
+        for (int i = 0; i < cartIds.size(); i++) {
+            assertInstanceOf(ShoppingCart.class, results.get(i).get());
+            assertEquals(CartStatus.CHECKED_OUT.name(), status(cartIds.get(i)));
+        }
+        assertInstanceOf(InsufficientStockException.class, results.get(3).get());
+        assertEquals(CartStatus.ACTIVE.name(), status(shortCartId));
+        assertTrue(meterRegistry.get("app.checkout.batch.fallbacks").counter().count() > fallbacksBefore);
+    }
+
+    @Test
+    void checkout_shouldAnswerTheBatch_andKeepDispatching_whenCheckingOutThrowsAnError() {
+        ShoppingCartService service = mock(ShoppingCartService.class);
+        ShoppingCart cart = ShoppingCart.builder().id(1L).build();
+        when(service.checkoutCarts(anyList()))
+                .thenThrow(new AssertionError("Batch failed"))
+                .thenReturn(List.of(new CheckoutOutcome(cart, null)));
+        CheckoutCoalescer coalescer = standalone(service, Duration.ofSeconds(5));
+        try {
+            IllegalStateException failure = assertThrows(IllegalStateException.class, () -> coalescer.checkout(1L, null));
+            assertInstanceOf(AssertionError.class, failure.getCause());
+            assertSame(cart, coalescer.checkout(1L, null));
+        } finally {
+            coalescer.destroy();
+        }
+    }
+
+    @Test
+    void checkout_shouldGiveUpWaiting_afterTheTimeout() {
+        ShoppingCartService service = mock(ShoppingCartService.class);
+        CountDownLatch release = new CountDownLatch(1);
+        when(service.checkoutCarts(anyList())).thenAnswer(invocation -> {
+            release.await();
+            return List.of(new CheckoutOutcome(ShoppingCart.builder().id(1L).build(), null));
+        });
+        CheckoutCoalescer coalescer = standalone(service, Duration.ofMillis(100));
+        try {
+            CheckoutTimeoutException timeout = assertThrows(CheckoutTimeoutException.class, () -> coalescer.checkout(1L, null));
+            assertTrue(timeout.getMessage().contains("Idempotency-Key"), timeout.getMessage()); // Taken, so may still complete
+        } finally {
+            release.countDown();
+            coalescer.destroy();
+        }
+    }
+
+    private static CheckoutCoalescer standalone(ShoppingCartService service, Duration timeout) {
+        ShardRouter shardRouter = mock(ShardRouter.class);
+        when(shardRouter.shardCount()).thenReturn(1);
+        return new CheckoutCoalescer(service, shardRouter, new SimpleMeterRegistry(), true, "state",
+                Duration.ZERO, 10, timeout);
+    }
+
+    // Checks the carts out from one thread each, started together; each result is the cart or the exception
+    private List<Future<?>> checkOutConcurrently(List<Long> cartIds, Long... moreCartIds) throws InterruptedException {
+        List<Long> all = new ArrayList<>(cartIds);
+        all.addAll(List.of(moreCartIds));
+        ExecutorService executor = Executors.newFixedThreadPool(all.size());
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (Long cartId : all) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        return checkoutCoalescer.checkout(cartId, null);
+                    } catch (RuntimeException e) {
+                        return e;
+                    }
+                }));
+            }
+            start.countDown();
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private Long cartWith(Product product, int quantity) {
+        Long cartId = shoppingCartService.createCart().getId();
+        shoppingCartService.addItemToCart(cartId, CartItemRequest.builder().productId(product.getId()).quantity(quantity).build());
+        return cartId;
+    }
+
+    private Product createProduct(String name) {
+        return productService.createProduct(ProductRequest.builder()
+                .name(name).price(new BigDecimal("4.00")).type("KITCHEN").build());
+    }
+
+    private String status(Long cartId) {
+        return jdbcTemplate.queryForObject("select status from shopping_carts where id = ?", String.class, cartId);
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.shoppingcart.service;
+
+import com.example.shoppingcart.dto.CartItemRequest;
+import com.example.shoppingcart.dto.ProductRequest;
+import com.example.shoppingcart.dto.ShoppingCartResponse;
+import com.example.shoppingcart.exception.ResourceNotFoundException;
+import com.example.shoppingcart.model.Product;
+import com.example.shoppingcart.model.ShoppingCart;
+import com.example.shoppingcart.repository.CartSummary;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the cart service with app.cart.persistence-mode=event-sourced and a snapshot every two events.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:event-sourced;DB_CLOSE_DELAY=-1",
+        "app.datasource.replica.jdbc-url=jdbc:h2:mem:event-sourced;DB_CLOSE_DELAY=-1",
+        "app.datasource.reporting.jdbc-url=jdbc:h2:mem:event-sourced;DB_CLOSE_DELAY=-1",
+        "app.cart.persistence-mode=event-sourced",
+        "app.cart.snapshot-interval=2",
+        "app.carts.abandonment.idle-threshold=0s"
+})
+class EventSourcedCartIntegrationTest {
+
+    @Autowired
+    private ShoppingCartService shoppingCartService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private AbandonedCartDetector abandonedCartDetector;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void cartOperations_shouldAppendEvents_andProjectTheSameResponse() {
+        Product apple = createProduct("Apple", "1.50");
+        Product pear = createProduct("Pear", "2.00");
+        Long cartId = shoppingCartService.createCart().getId();
+
+        shoppingCartService.addItemToCart(cartId, item(apple, 2));
+        shoppingCartService.addItemToCart(cartId, item(pear, 1));
+        shoppingCartService.addItemToCart(cartId, item(apple, 3));
+        ShoppingCart afterRemove = shoppingCartService.removeItemFromCart(cartId, pear.getId(), 5);
+
+        assertEquals(1, afterRemove.getItems().size());
+        ShoppingCartResponse response = shoppingCartService.getCartResponse(cartId);
+        assertEquals(1, response.getItems().size());
+        assertEquals("Apple", response.getItems().get(0).getProductName());
+        assertEquals(5, response.getItems().get(0).getQuantity());
+        assertEquals(0, new BigDecimal("7.50").compareTo(response.getTotalPrice()));
+        assertEquals(0, new BigDecimal("7.50").compareTo(shoppingCartService.calculateTotalPrice(cartId)));
+
+        assertEquals(4, count("select count(*) from cart_events where cart_id = ?", cartId));
+        assertEquals(4, count("select version from cart_snapshots where cart_id = ?", cartId));
+        assertEquals(0, count("select count(*) from cart_items where shopping_cart_id = ?", cartId));
+    }
+
+    @Test
+    void repriceAndCheckout_shouldBeRecordedAsEvents() {
+        Product product = createProduct("Plum", "1.00");
+        Long cartId = shoppingCartService.createCart().getId();
+        shoppingCartService.addItemToCart(cartId, item(product, 2));
+
+        productService.updateProduct(product.getId(), ProductRequest.builder()
+                .name("Plum").price(new BigDecimal("1.25")).type("FRUIT").build());
+        assertEquals(0, new BigDecimal("2.00").compareTo(shoppingCartService.calculateTotalPrice(cartId)));
+        shoppingCartService.repriceCart(cartId);
+        assertEquals(0, new BigDecimal("2.50").compareTo(shoppingCartService.calculateTotalPrice(cartId)));
+
+        shoppingCartService.checkoutCart(cartId, "key-1");
+        assertSame(ShoppingCart.CartStatus.CHECKED_OUT, shoppingCartService.checkoutCart(cartId, "key-1").getStatus());
+        assertThrows(IllegalStateException.class, () -> shoppingCartService.checkoutCart(cartId, "key-2"));
+        assertThrows(IllegalStateException.class, () -> shoppingCartService.addItemToCart(cartId, item(product, 1)));
+
+        CartSummary summary = shoppingCartService.getCartSummary(cartId);
+        assertEquals(ShoppingCart.CartStatus.CHECKED_OUT, summary.getStatus());
+        assertNotNull(summary.getCheckedOutAt());
+        assertEquals(List.of("ITEM_ADDED", "PRICE_CHANGED", "CHECKED_OUT"), jdbcTemplate.queryForList(
+                "select type from cart_events where cart_id = ? order by version", String.class, cartId));
+    }
+
+    @Test
+    void abandonedCartsReport_shouldContainProjectedItems() {
+        Product product = createProduct("Fig", "3.00");
+        Product other = createProduct("Date", "4.00");
+        Long cartId = shoppingCartService.createCart().getId();
+        shoppingCartService.addItemToCart(cartId, item(product, 1));
+        Long snapshottedCartId = shoppingCartService.createCart().getId();
+        shoppingCartService.addItemToCart(snapshottedCartId, item(product, 1));
+        shoppingCartService.addItemToCart(snapshottedCartId, item(product, 2)); // Snapshot at version 2
+        shoppingCartService.addItemToCart(snapshottedCartId, item(other, 1));
+        abandonedCartDetector.detect();
+
+        List<ShoppingCart> report = shoppingCartService.getAbandonedCartsForReport(LocalDate.now());
+        ShoppingCart reported = reported(report, cartId);
+        assertEquals(ShoppingCart.CartStatus.ABANDONED, reported.getStatus());
+        assertEquals(ShoppingCart.CartStatus.ABANDONED, shoppingCartService.getCartResponse(cartId).getStatus());
+        assertEquals(1, reported.getItems().size());
+        assertEquals("Fig", reported.getItems().get(0).getProduct().getName());
+        ShoppingCart snapshotted = reported(report, snapshottedCartId);
+        assertEquals(2, snapshotted.getItems().size());
+        assertEquals(3, snapshotted.getItems().get(0).getQuantity());
+        assertEquals("Date", snapshotted.getItems().get(1).getProduct().getName());
+
+        shoppingCartService.addItemToCart(cartId, item(other, 1));
+        assertEquals(ShoppingCart.CartStatus.ACTIVE, shoppingCartService.getCartResponse(cartId).getStatus());
+    }
+
+    @Test
+    void removeItem_shouldFail_whenProductIsNotInCart() {
+        Product product = createProduct("Kiwi", "0.80");
+        Long cartId = shoppingCartService.createCart().getId();
+
+        assertThrows(ResourceNotFoundException.class, () -> shoppingCartService.removeItemFromCart(cartId, product.getId(), 1));
+        assertEquals(0, count("select count(*) from cart_events where cart_id = ?", cartId));
+    }
+
+    private static ShoppingCart reported(List<ShoppingCart> report, Long cartId) {
+        return report.stream().filter(cart -> cart.getId().equals(cartId)).findFirst().orElseThrow();
+    }
+
+    private Product createProduct(String name, String price) {
+        return productService.createProduct(ProductRequest.builder()
+                .name(name).price(new BigDecimal(price)).type("FRUIT").build());
+    }
+
+    private static CartItemRequest item(Product product, int quantity) {
+        return CartItemRequest.builder().productId(product.getId()).quantity(quantity).build();
+    }
+
+    private int count(String sql, Long cartId) {
+        return jdbcTemplate.queryForObject(sql, Integer.class, cartId);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.shoppingcart.service;
+
+import com.example.shoppingcart.dto.CartItemPageResponse;
+import com.example.shoppingcart.dto.CartItemRequest;
+import com.example.shoppingcart.dto.CartItemResponse;
+import com.example.shoppingcart.dto.ProductRequest;
+import com.example.shoppingcart.dto.ShoppingCartResponse;
+import com.example.shoppingcart.model.Product;
+import com.example.shoppingcart.model.ShoppingCart;
+import com.example.shoppingcart.model.ShoppingCart.CartStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Large carts against H2, with a threshold of three lines so that carts become large after a few adds.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:large-carts;DB_CLOSE_DELAY=-1",
+        "app.datasource.replica.jdbc-url=jdbc:h2:mem:large-carts;DB_CLOSE_DELAY=-1",
+        "app.datasource.reporting.jdbc-url=jdbc:h2:mem:large-carts;DB_CLOSE_DELAY=-1",
+        "app.cart.large-cart-threshold=3",
+        "app.inventory.reconcile-interval=1h"
+})
+class LargeCartIntegrationTest {
+
+    @Autowired
+    private ShoppingCartService shoppingCartService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Test
+    void largeCart_shouldChangeLinesByProduct_andLeaveThemOutOfItsViews() {
+        List<Product> products = createProducts(5);
+        Long cartId = shoppingCartService.createCart(true).getId();
+        for (Product product : products) {
+            shoppingCartService.addItemToCart(cartId, item(product, 2));
+        }
+        shoppingCartService.addItemToCart(cartId, item(products.get(0), 1));
+        shoppingCartService.removeItemFromCart(cartId, products.get(4).getId(), 2);
+
+        ShoppingCartResponse cart = shoppingCartService.getCartResponse(cartId);
+        assertTrue(cart.getLargeCart());
+        assertNull(cart.getItems());
+        assertEquals(4, cart.getItemCount());
+        assertEquals(0, new BigDecimal("90.00").compareTo(cart.getTotalPrice())); // 3 x 10 + 2 x 10 + 2 x 10 + 2 x 10
+        assertEquals(cart, shoppingCartService.getCartDocument(cartId));
+        assertEquals(cart, shoppingCartService.getCartResponses(List.of(cartId)).getCarts().get(0));
+
+        CartItemPageResponse firstPage = shoppingCartService.getCartItems(cartId, 0, 3);
+        CartItemPageResponse lastPage = shoppingCartService.getCartItems(cartId, 1, 3);
+        assertEquals(4, firstPage.getItemCount());
+        assertEquals(List.of(products.get(0).getId(), products.get(1).getId(), products.get(2).getId()),
+                firstPage.getItems().stream().map(CartItemResponse::getProductId).toList());
+        assertEquals(3, firstPage.getItems().get(0).getQuantity());
+        assertEquals(products.get(3).getId(), lastPage.getItems().get(0).getProductId());
+        assertEquals(1, lastPage.getItems().size());
+
+        ShoppingCart checkedOut = shoppingCartService.checkoutCart(cartId);
+        assertEquals(CartStatus.CHECKED_OUT, checkedOut.getStatus());
+        assertEquals(CartStatus.CHECKED_OUT, shoppingCartService.getCartResponse(cartId).getStatus());
+    }
+
+    @Test
+    void cart_shouldBecomeLarge_onceItOutgrowsTheThreshold() {
+        List<Product> products = createProducts(4);
+        Long cartId = shoppingCartService.createCart().getId();
+        for (Product product : products.subList(0, 3)) {
+            shoppingCartService.addItemToCart(cartId, item(product, 1));
+        }
+        assertFalse(shoppingCartService.getCartResponse(cartId).getLargeCart());
+        assertEquals(3, shoppingCartService.getCartResponse(cartId).getItems().size());
+
+        ShoppingCart cart = shoppingCartService.addItemToCart(cartId, item(products.get(3), 1));
+
+        assertTrue(cart.isLargeCart());
+        ShoppingCartResponse view = shoppingCartService.getCartResponse(cartId);
+        assertNull(view.getItems());
+        assertEquals(4, view.getItemCount());
+        assertEquals(4, shoppingCartService.getCartItems(cartId, 0, 10).getItems().size());
+        assertEquals(0, new BigDecimal("40.00").compareTo(shoppingCartService.calculateTotalPrice(cartId)));
+    }
+
+    private List<Product> createProducts(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> productService.createProduct(ProductRequest.builder()
+                        .name("Part " + i).price(new BigDecimal("10.00")).type("PARTS").build()))
+                .toList();
+    }
+
+    private static CartItemRequest item(Product product, int quantity) {
+        return CartItemRequest.builder().productId(product.getId()).quantity(quantity).build();
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.shoppingcart.service;
+
+import com.example.shoppingcart.dto.ProductPriceUpdateRequest;
+import com.example.shoppingcart.dto.ProductPriceUpdateResponse;
+import com.example.shoppingcart.dto.ProductRequest;
+import com.example.shoppingcart.model.Product;
+import com.example.shoppingcart.sharding.ShardDataSources;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs bulk repricing against H2 with two ids per chunk and one additional shard holding a product copy.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:price-update;DB_CLOSE_DELAY=-1",
+        "app.datasource.replica.jdbc-url=jdbc:h2:mem:price-update;DB_CLOSE_DELAY=-1",
+        "app.datasource.reporting.jdbc-url=jdbc:h2:mem:price-update;DB_CLOSE_DELAY=-1",
+        "app.sharding.additional-shards[0].jdbc-url=jdbc:h2:mem:price-update-shard1;DB_CLOSE_DELAY=-1",
+        "app.sharding.additional-shards[0].username=sa",
+        "app.sharding.initialize-schema=true",
+        "app.products.price-update.chunk-size=2"
+})
+class ProductPriceUpdateServiceTest {
+
+    @Autowired
+    private ProductPriceUpdateService productPriceUpdateService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ShardDataSources shardDataSources;
+
+    @Test
+    void updatePrices_shouldApplyPercentToMatchingType_inChunks_andCopyToShards() {
+        String type = "PCT-" + System.nanoTime();
+        List<Product> matching = new ArrayList<>();
+        for (String price : List.of("10.00", "19.99", "0.05")) {
+            matching.add(create(type, price));
+        }
+        Product otherType = create("OTHER", "10.00");
+
+        ProductPriceUpdateResponse response = productPriceUpdateService.updatePrices(ProductPriceUpdateRequest.builder()
+                .type(type).percentChange(new BigDecimal("-12.5")).build());
+
+        assertEquals(3, response.getUpdatedProducts());
+        assertEquals(0, response.getSkippedProducts());
+        assertTrue(response.getChunks() >= 2);
+        assertPrice("8.75", matching.get(0));
+        assertPrice("17.49", matching.get(1)); // 17.49125 rounded half-up
+        assertPrice("0.04", matching.get(2)); // 0.04375
+        assertPrice("10.00", otherType);
+        assertEquals(0, new BigDecimal("17.49").compareTo(shardOnePrice(matching.get(1).getId())));
+    }
+
+    @Test
+    void updatePrices_shouldApplyAmountWithinIdRange_andSkipPricesBelowMinimum() {
+        String type = "AMT-" + System.nanoTime();
+        Product cheap = create(type, "0.50");
+        Product regular = create(type, "5.00");
+        Product outOfRange = create(type, "5.00");
+
+        ProductPriceUpdateResponse response = productPriceUpdateService.updatePrices(ProductPriceUpdateRequest.builder()
+                .minId(cheap.getId()).maxId(regular.getId()).amountChange(new BigDecimal("-1.00")).build());
+
+        assertEquals(1, response.getUpdatedProducts());
+        assertEquals(1, response.getSkippedProducts());
+        assertPrice("0.50", cheap);
+        assertPrice("4.00", regular);
+        assertPrice("5.00", outOfRange);
+    }
+
+    private Product create(String type, String price) {
+        return productService.createProduct(ProductRequest.builder()
+                .name("Bulk " + price).price(new BigDecimal(price)).type(type).build());
+    }
+
+    private void assertPrice(String expected, Product product) {
+        assertEquals(new BigDecimal(expected), productService.getProductById(product.getId()).getPrice());
+    }
+
+    private BigDecimal shardOnePrice(Long productId) {
+        return new JdbcTemplate(shardDataSources.additionalShards().get(0))
+                .queryForObject("select price from products where id = ?", BigDecimal.class, productId);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.shoppingcart.service;
+
+import com.example.shoppingcart.dto.CartItemRequest;
+import com.example.shoppingcart.dto.ProductRequest;
+import com.example.shoppingcart.exception.ResourceNotFoundException;
+import com.example.shoppingcart.model.Product;
+import com.example.shoppingcart.sharding.ShardDataSources;
+import com.example.shoppingcart.sharding.ShardIds;
+import com.example.shoppingcart.sharding.ShardRouting;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Soft deletion and purging against H2 with one additional shard and one row per purge transaction.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:product-purge;DB_CLOSE_DELAY=-1",
+        "app.datasource.replica.jdbc-url=jdbc:h2:mem:product-purge;DB_CLOSE_DELAY=-1",
+        "app.datasource.reporting.jdbc-url=jdbc:h2:mem:product-purge;DB_CLOSE_DELAY=-1",
+        "app.sharding.additional-shards[0].jdbc-url=jdbc:h2:mem:product-purge-shard1;DB_CLOSE_DELAY=-1",
+        "app.sharding.additional-shards[0].username=sa",
+        "app.sharding.initialize-schema=true",
+        "app.products.purge.batch-size=1"
+})
+class ProductPurgerTest {
+
+    @Autowired
+    private ProductPurger productPurger;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ShoppingCartService shoppingCartService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ShardDataSources shardDataSources;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void deleteProduct_shouldHideProduct_untilPurgeRemovesItAndItsActiveCartLines() {
+        Product inCarts = create("In carts");
+        Product unreferenced = create("Unreferenced");
+        Long activeCartId = shoppingCartService.createCart().getId();
+        Long checkedOutCartId = shoppingCartService.createCart().getId();
+        shoppingCartService.addItemToCart(activeCartId, CartItemRequest.builder().productId(inCarts.getId()).quantity(1).build());
+        shoppingCartService.addItemToCart(checkedOutCartId, CartItemRequest.builder().productId(inCarts.getId()).quantity(2).build());
+        shoppingCartService.checkoutCart(checkedOutCartId);
+
+        productService.deleteProduct(inCarts.getId());
+        productService.deleteProduct(unreferenced.getId());
+
+        assertThrows(ResourceNotFoundException.class, () -> productService.getProductById(inCarts.getId()));
+        assertThrows(ResourceNotFoundException.class, () -> productService.deleteProduct(inCarts.getId()));
+        assertTrue(productService.getAllProducts().stream().noneMatch(product -> product.getId().equals(unreferenced.getId())));
+        assertThrows(ResourceNotFoundException.class, () -> shoppingCartService.addItemToCart(activeCartId,
+                CartItemRequest.builder().productId(inCarts.getId()).quantity(1).build()));
+        assertEquals(1, shoppingCartService.getCartResponse(activeCartId).getItems().size());
+
+        assertTrue(productPurger.purge() >= 2);
+
+        assertTrue(shoppingCartService.getCartResponse(activeCartId).getItems().isEmpty());
+        assertEquals(1, shoppingCartService.getCartResponse(checkedOutCartId).getItems().size());
+        // Each shard purges its own copy, so only the shard of the checked-out cart keeps the product
+        assertEquals(1, countProducts(ShardIds.shardOf(checkedOutCartId), inCarts.getId()));
+        assertEquals(0, countProducts(0, unreferenced.getId()));
+        assertEquals(0, countProducts(1, unreferenced.getId()));
+    }
+
+    @Test
+    void purge_shouldWaitForTheCartLock_andKeepLinesOfACartCheckedOutMeanwhile() throws Exception {
+        Product product = create("Checked out meanwhile");
+        Long cartId = shoppingCartService.createCart().getId();
+        shoppingCartService.addItemToCart(cartId, CartItemRequest.builder().productId(product.getId()).quantity(1).build());
+        productService.deleteProduct(product.getId());
+
+        CompletableFuture<Integer> purge = new CompletableFuture<>();
+        ShardRouting.onShard(ShardIds.shardOf(cartId), () -> new TransactionTemplate(transactionManager).execute(status -> {
+            // Stands in for a checkout holding the cart's lock while the purge finds its line
+            jdbcTemplate.queryForObject("select id from shopping_carts where id = ? for update", Long.class, cartId);
+            CompletableFuture.runAsync(() -> purge.complete(productPurger.purge()));
+            sleep(300);
+            jdbcTemplate.update("update shopping_carts set status = 'CHECKED_OUT' where id = ?", cartId);
+            return null;
+        }));
+        purge.get();
+
+        assertEquals(1, ShardRouting.onShard(ShardIds.shardOf(cartId), () -> jdbcTemplate.queryForObject(
+                "select count(*) from cart_items where shopping_cart_id = ?", Integer.class, cartId)));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Product create(String name) {
+        return productService.createProduct(ProductRequest.builder()
+                .name(name).price(new BigDecimal("3.00")).type("PURGE").build());
+    }
+
+    private int countProducts(int shard, Long productId) {
+        JdbcTemplate jdbc = shard == 0 ? jdbcTemplate : new JdbcTemplate(shardDataSources.additionalShards().get(shard - 1));
+        return jdbc.queryForObject("select count(*) from products where id = ?", Integer.class, productId);
+    }
+}
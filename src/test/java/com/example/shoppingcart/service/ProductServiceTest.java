@@ -3,12 +3,17 @@ package com.example.shoppingcart.service;
 import com.example.shoppingcart.dto.ProductRequest;
 import com.example.shoppingcart.exception.ResourceNotFoundException;
 import com.example.shoppingcart.model.Product;
+import com.example.shoppingcart.pricing.CartPricingEngine;
 import com.example.shoppingcart.repository.ProductRepository;
+import com.example.shoppingcart.sharding.ProductReplicator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
@@ -29,6 +34,15 @@ class ProductServiceTest {
     @Mock // Mocks the ProductRepository
     private ProductRepository productRepository;
 
+    @Mock
+    private ProductReplicator productReplicator;
+
+    @Mock
+    private CartPricingEngine cartPricingEngine;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks // Injects the mocked repository into ProductService
     private ProductService productService;
 
@@ -66,12 +80,13 @@ class ProductServiceTest {
         assertEquals(laptop.getPrice(), createdProduct.getPrice());
         assertEquals(laptop.getType(), createdProduct.getType());
         verify(productRepository, times(1)).save(any(Product.class));
+        verify(productReplicator, times(1)).replicate(laptop);
     }
 
     @Test
     void getProductById_shouldReturnProduct_whenFound() {
         // Given: a product ID and a mocked repository findById method
-        when(productRepository.findById(1L)).thenReturn(Optional.of(laptop));
+        when(productRepository.findByIdAndDeletedFalse(1L)).thenReturn(Optional.of(laptop));
 
         // When: getProductById method is called
         Product foundProduct = productService.getProductById(1L);
@@ -79,17 +94,17 @@ class ProductServiceTest {
         // Then: verify the correct product is returned
         assertNotNull(foundProduct);
         assertEquals(laptop.getId(), foundProduct.getId());
-        verify(productRepository, times(1)).findById(1L);
+        verify(productRepository, times(1)).findByIdAndDeletedFalse(1L);
     }
 
     @Test
     void getProductById_shouldThrowResourceNotFoundException_whenNotFound() {
         // Given: a product ID and a mocked repository findById method returning empty
-        when(productRepository.findById(2L)).thenReturn(Optional.empty());
+        when(productRepository.findByIdAndDeletedFalse(2L)).thenReturn(Optional.empty());
 
         // When/Then: verify that ResourceNotFoundException is thrown
         assertThrows(ResourceNotFoundException.class, () -> productService.getProductById(2L));
-        verify(productRepository, times(1)).findById(2L);
+        verify(productRepository, times(1)).findByIdAndDeletedFalse(2L);
     }
 
     @Test
@@ -97,7 +112,7 @@ class ProductServiceTest {
         // Given: a list of products and a mocked repository findAll method
         Product phone = Product.builder().id(2L).name("Phone Y").price(new BigDecimal("800.00")).type("PHONE").build();
         List<Product> products = Arrays.asList(laptop, phone);
-        when(productRepository.findAll()).thenReturn(products);
+        when(productRepository.findByDeletedFalse()).thenReturn(products);
 
         // When: getAllProducts method is called
         List<Product> foundProducts = productService.getAllProducts();
@@ -107,7 +122,7 @@ class ProductServiceTest {
         assertEquals(2, foundProducts.size());
         assertTrue(foundProducts.contains(laptop));
         assertTrue(foundProducts.contains(phone));
-        verify(productRepository, times(1)).findAll();
+        verify(productRepository, times(1)).findByDeletedFalse();
     }
 
     @Test
@@ -125,7 +140,7 @@ class ProductServiceTest {
                 .type("LAPTOP")
                 .build();
 
-        when(productRepository.findById(1L)).thenReturn(Optional.of(laptop));
+        when(productRepository.findByIdAndDeletedFalse(1L)).thenReturn(Optional.of(laptop));
         when(productRepository.save(any(Product.class))).thenReturn(updatedProduct);
 
         // When: updateProduct method is called
@@ -135,43 +150,43 @@ class ProductServiceTest {
         assertNotNull(result);
         assertEquals(updatedRequest.getName(), result.getName());
         assertEquals(updatedRequest.getPrice(), result.getPrice());
-        verify(productRepository, times(1)).findById(1L);
+        verify(productRepository, times(1)).findByIdAndDeletedFalse(1L);
         verify(productRepository, times(1)).save(laptop); // Verify save was called on the modified 'laptop' object
     }
 
     @Test
     void updateProduct_shouldThrowResourceNotFoundException_whenNotFound() {
         // Given: a non-existent product ID
-        when(productRepository.findById(2L)).thenReturn(Optional.empty());
+        when(productRepository.findByIdAndDeletedFalse(2L)).thenReturn(Optional.empty());
 
         // When/Then: verify that ResourceNotFoundException is thrown
         assertThrows(ResourceNotFoundException.class, () -> productService.updateProduct(2L, laptopRequest));
-        verify(productRepository, times(1)).findById(2L);
+        verify(productRepository, times(1)).findByIdAndDeletedFalse(2L);
         verify(productRepository, never()).save(any(Product.class));
     }
 
     @Test
-    void deleteProduct_shouldDeleteProduct_whenFound() {
-        // Given: a product ID and a mocked repository existsById method
-        when(productRepository.existsById(1L)).thenReturn(true);
-        doNothing().when(productRepository).deleteById(1L);
+    void deleteProduct_shouldMarkProductDeleted_whenFound() {
+        // Given: a product ID that the tombstone UPDATE matches
+        when(productRepository.markDeleted(1L)).thenReturn(1);
 
         // When: deleteProduct method is called
         productService.deleteProduct(1L);
 
-        // Then: verify deleteById was called
-        verify(productRepository, times(1)).existsById(1L);
-        verify(productRepository, times(1)).deleteById(1L);
+        // Then: verify the product was soft-deleted, not removed
+        verify(productRepository, times(1)).markDeleted(1L);
+        verify(productRepository, never()).deleteById(anyLong());
+        verify(productReplicator, times(1)).markDeleted(1L);
     }
 
     @Test
     void deleteProduct_shouldThrowResourceNotFoundException_whenNotFound() {
-        // Given: a non-existent product ID
-        when(productRepository.existsById(2L)).thenReturn(false);
+        // Given: a non-existent or already deleted product ID
+        when(productRepository.markDeleted(2L)).thenReturn(0);
 
         // When/Then: verify that ResourceNotFoundException is thrown
         assertThrows(ResourceNotFoundException.class, () -> productService.deleteProduct(2L));
-        verify(productRepository, times(1)).existsById(2L);
-        verify(productRepository, never()).deleteById(anyLong());
+        verify(productRepository, times(1)).markDeleted(2L);
+        verify(productReplicator, never()).markDeleted(anyLong());
     }
-}
\ No newline at end of file
+}
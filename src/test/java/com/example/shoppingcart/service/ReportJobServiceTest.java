@@ -0,0 +1,175 @@
+package com.example.shoppingcart.service;
+
+import com.example.shoppingcart.admission.ReportBulkhead;
+import com.example.shoppingcart.exception.ResourceNotFoundException;
+import com.example.shoppingcart.model.ShoppingCart;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for ReportJobService, running jobs on a real bulkhead and writing into a temporary directory.
+ */
+@ExtendWith(MockitoExtension.class)
+class ReportJobServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 3, 15);
+
+    @Mock
+    private ShoppingCartService shoppingCartService;
+
+    @TempDir
+    private Path directory;
+
+    private ReportBulkhead reportBulkhead;
+    private ReportJobService reportJobService;
+
+    @BeforeEach
+    void setUp() {
+        reportBulkhead = new ReportBulkhead(1, 10, Duration.ofSeconds(5));
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        Clock clock = new TickingClock(TODAY.atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant());
+        reportJobService = new ReportJobService(shoppingCartService, reportBulkhead, objectMapper, directory,
+                Duration.ofSeconds(5), 2, clock);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reportBulkhead.destroy();
+    }
+
+    @Test
+    void submit_shouldWriteReportFile_whenJobCompletes() throws Exception {
+        LocalDate date = TODAY.minusDays(1);
+        ShoppingCart cart = ShoppingCart.builder().id(201L).status(ShoppingCart.CartStatus.ACTIVE)
+                .createdAt(LocalDateTime.of(2024, 3, 13, 10, 0)).build();
+        when(shoppingCartService.getAbandonedCartsForReport(date)).thenReturn(List.of(cart));
+
+        ReportJob job = awaitFinished(reportJobService.submit(date));
+
+        assertEquals(ReportJob.Status.COMPLETED, job.getStatus());
+        assertTrue(Files.readString(job.getResultFile()).contains("\"id\":201"));
+        assertSame(job, reportJobService.getJob(job.getId()));
+    }
+
+    @Test
+    void submit_shouldShareRunningJob_forSameDate() throws Exception {
+        LocalDate date = TODAY.minusDays(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(shoppingCartService.getAbandonedCartsForReport(date)).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return List.of();
+        });
+
+        ReportJob first = reportJobService.submit(date);
+        ReportJob second = reportJobService.submit(date);
+        release.countDown();
+
+        assertSame(first, second);
+        awaitFinished(first);
+        verify(shoppingCartService, times(1)).getAbandonedCartsForReport(date);
+    }
+
+    @Test
+    void submit_shouldStartNewJob_forPastDateOnceFinished() throws Exception {
+        LocalDate date = TODAY.minusDays(1);
+        when(shoppingCartService.getAbandonedCartsForReport(date)).thenReturn(List.of());
+
+        ReportJob first = awaitFinished(reportJobService.submit(date));
+        ReportJob second = awaitFinished(reportJobService.submit(date));
+
+        assertNotSame(first, second);
+        verify(shoppingCartService, times(2)).getAbandonedCartsForReport(date);
+    }
+
+    @Test
+    void submit_shouldRetryPastDate_whenPreviousJobFailed() throws Exception {
+        LocalDate date = TODAY.minusDays(1);
+        when(shoppingCartService.getAbandonedCartsForReport(date))
+                .thenThrow(new IllegalStateException("replica down"))
+                .thenReturn(List.of());
+
+        ReportJob failed = awaitFinished(reportJobService.submit(date));
+        ReportJob retried = awaitFinished(reportJobService.submit(date));
+
+        assertEquals(ReportJob.Status.FAILED, failed.getStatus());
+        assertTrue(failed.getError().contains("replica down"));
+        assertEquals(ReportJob.Status.COMPLETED, retried.getStatus());
+    }
+
+    @Test
+    void submit_shouldEvictOldestFinishedJobs_whenOverMaxJobs() throws Exception {
+        when(shoppingCartService.getAbandonedCartsForReport(TODAY)).thenReturn(List.of());
+
+        ReportJob oldest = awaitFinished(reportJobService.submit(TODAY));
+        awaitFinished(reportJobService.submit(TODAY));
+        awaitFinished(reportJobService.submit(TODAY));
+
+        assertThrows(ResourceNotFoundException.class, () -> reportJobService.getJob(oldest.getId()));
+        assertFalse(Files.exists(oldest.getResultFile()));
+    }
+
+    @Test
+    void getJob_shouldThrowResourceNotFoundException_whenJobUnknown() {
+        assertThrows(ResourceNotFoundException.class, () -> reportJobService.getJob("missing"));
+    }
+
+    private static ReportJob awaitFinished(ReportJob job) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!job.isFinished() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(job.isFinished(), "job did not finish in time");
+        return job;
+    }
+
+    // Advances a millisecond per read, so jobs created one after another have distinct, ordered timestamps
+    private static final class TickingClock extends Clock {
+
+        private final Instant start;
+        private final AtomicLong ticks = new AtomicLong();
+
+        TickingClock(Instant start) {
+            this.start = start;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.systemDefault();
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return start.plusMillis(ticks.incrementAndGet());
+        }
+    }
+}
@@ -1,22 +1,36 @@
 package com.example.shoppingcart.service;
 
+import com.example.shoppingcart.datasource.ReplicaLagTracker;
 import com.example.shoppingcart.dto.CartItemRequest;
+import com.example.shoppingcart.dto.CartRowsJson;
+import com.example.shoppingcart.dto.ShoppingCartResponse;
 import com.example.shoppingcart.exception.ResourceNotFoundException;
+import com.example.shoppingcart.inventory.InventoryService;
 import com.example.shoppingcart.model.CartItem;
 import com.example.shoppingcart.model.Product;
 import com.example.shoppingcart.model.ShoppingCart;
 import com.example.shoppingcart.model.ShoppingCart.CartStatus;
+import com.example.shoppingcart.notification.CartChangeBroadcaster;
+import com.example.shoppingcart.pricing.CartPricingEngine;
 import com.example.shoppingcart.repository.CartItemRepository;
+import com.example.shoppingcart.repository.CartSummary;
+import com.example.shoppingcart.repository.CartTotals;
 import com.example.shoppingcart.repository.ProductRepository;
 import com.example.shoppingcart.repository.ShoppingCartRepository;
+import com.example.shoppingcart.sharding.ShardRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.Tuple;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
@@ -26,6 +40,7 @@ import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 /**
@@ -35,14 +50,25 @@ import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class ShoppingCartServiceTest {
 
+    private static final int LARGE_CART_THRESHOLD = 3;
+
     @Mock
     private ShoppingCartRepository shoppingCartRepository;
     @Mock
     private ProductRepository productRepository;
     @Mock
     private CartItemRepository cartItemRepository;
+    @Spy
+    private ReplicaLagTracker replicaLagTracker = new ReplicaLagTracker(Duration.ofSeconds(2));
+    @Mock
+    private CartChangeBroadcaster cartChanges;
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter(1, mock(PlatformTransactionManager.class));
+    @Mock
+    private CartPricingEngine cartPricing;
+    @Mock
+    private InventoryService inventory;
 
-    @InjectMocks
     private ShoppingCartService shoppingCartService;
 
     private Product product1;
@@ -52,6 +78,10 @@ class ShoppingCartServiceTest {
 
     @BeforeEach
     void setUp() {
+        shoppingCartService = new ShoppingCartService(shoppingCartRepository, productRepository, cartItemRepository,
+                replicaLagTracker, shardRouter, cartChanges, cartPricing, inventory, new SimpleMeterRegistry(),
+                LARGE_CART_THRESHOLD, Optional.empty());
+        lenient().when(cartPricing.price(any())).thenAnswer(invocation -> invocation.getArgument(0)); // No promotions
         product1 = Product.builder().id(1L).name("Laptop").price(new BigDecimal("1000.00")).type("ELECTRONICS").build();
         product2 = Product.builder().id(2L).name("Mouse").price(new BigDecimal("25.00")).type("ELECTRONICS").build();
 
@@ -112,12 +142,69 @@ class ShoppingCartServiceTest {
         verify(shoppingCartRepository, times(1)).findById(999L);
     }
 
+    @Test
+    void getCartResponse_shouldThrowResourceNotFoundException_whenNoRows() {
+        // Given
+        when(shoppingCartRepository.findCartRowsById(999L)).thenReturn(new ArrayList<>());
+
+        // When / Then
+        assertThrows(ResourceNotFoundException.class, () -> shoppingCartService.getCartResponse(999L));
+        verify(shoppingCartRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void getCartDocument_shouldStreamRows_whenNoPromotions() {
+        // Given
+        List<Tuple> rows = List.of(mock(Tuple.class));
+        when(shoppingCartRepository.findCartRowsById(100L)).thenReturn(rows);
+
+        // When
+        Object document = shoppingCartService.getCartDocument(100L);
+
+        // Then
+        assertEquals(new CartRowsJson(rows), document);
+    }
+
+    @Test
+    void getCartDocument_shouldThrowResourceNotFoundException_whenNoRows() {
+        // Given
+        when(shoppingCartRepository.findCartRowsById(999L)).thenReturn(new ArrayList<>());
+
+        // When / Then
+        assertThrows(ResourceNotFoundException.class, () -> shoppingCartService.getCartDocument(999L));
+    }
+
+    @Test
+    void getCartSummary_shouldReturnProjection_withoutLoadingItems() {
+        // Given
+        CartSummary summary = mock(CartSummary.class);
+        when(shoppingCartRepository.findSummaryById(100L)).thenReturn(Optional.of(summary));
+
+        // When
+        CartSummary result = shoppingCartService.getCartSummary(100L);
+
+        // Then
+        assertSame(summary, result);
+        verify(shoppingCartRepository, never()).findById(anyLong());
+        verifyNoInteractions(cartItemRepository, productRepository);
+    }
+
+    @Test
+    void getCartSummary_shouldThrowResourceNotFoundException_whenNotFound() {
+        // Given
+        when(shoppingCartRepository.findSummaryById(999L)).thenReturn(Optional.empty());
+
+        // When / Then
+        assertThrows(ResourceNotFoundException.class, () -> shoppingCartService.getCartSummary(999L));
+    }
+
     @Test
     void addItemToCart_shouldAddNewItem_whenProductNotInCart() {
         // Given
         CartItemRequest request = CartItemRequest.builder().productId(2L).quantity(2).build();
+        when(shoppingCartRepository.lockLargeCartFlagById(100L)).thenReturn(Optional.of(false));
         when(shoppingCartRepository.findById(100L)).thenReturn(Optional.of(activeCart));
-        when(productRepository.findById(2L)).thenReturn(Optional.of(product2));
+        when(productRepository.findByIdAndDeletedFalse(2L)).thenReturn(Optional.of(product2));
         when(cartItemRepository.findByShoppingCartAndProduct(activeCart, product2)).thenReturn(Optional.empty());
         when(cartItemRepository.save(any(CartItem.class))).thenAnswer(invocation -> invocation.getArgument(0)); // Return the saved item
         when(shoppingCartRepository.save(any(ShoppingCart.class))).thenReturn(activeCart);
@@ -129,16 +216,37 @@ class ShoppingCartServiceTest {
         assertNotNull(updatedCart);
         assertEquals(2, updatedCart.getItems().size()); // Original item + new item
         assertTrue(updatedCart.getItems().stream().anyMatch(item -> item.getProduct().equals(product2) && item.getQuantity() == 2));
+        assertEquals(new BigDecimal("25.00"), updatedCart.getItems().get(1).getUnitPrice()); // Price snapshot taken at add time
         verify(cartItemRepository, times(1)).save(any(CartItem.class));
         verify(shoppingCartRepository, times(1)).save(activeCart);
+        verify(cartChanges, never()).publish(anyLong(), any());
+    }
+
+    @Test
+    void addItemToCart_shouldPublishNewState_whenCartHasSubscribers() {
+        CartItemRequest request = CartItemRequest.builder().productId(1L).quantity(2).build();
+        when(shoppingCartRepository.lockLargeCartFlagById(100L)).thenReturn(Optional.of(false));
+        when(shoppingCartRepository.findById(100L)).thenReturn(Optional.of(activeCart));
+        when(productRepository.findByIdAndDeletedFalse(1L)).thenReturn(Optional.of(product1));
+        when(cartItemRepository.findByShoppingCartAndProduct(activeCart, product1)).thenReturn(Optional.of(cartItem1));
+        when(shoppingCartRepository.save(any(ShoppingCart.class))).thenReturn(activeCart);
+        when(cartChanges.hasSubscribers(100L)).thenReturn(true);
+
+        shoppingCartService.addItemToCart(100L, request);
+
+        ArgumentCaptor<ShoppingCartResponse> published = ArgumentCaptor.forClass(ShoppingCartResponse.class);
+        verify(cartChanges).publish(eq(100L), published.capture());
+        assertEquals(3, published.getValue().getItems().get(0).getQuantity());
+        assertEquals(0, new BigDecimal("3000.00").compareTo(published.getValue().getTotalPrice()));
     }
 
     @Test
     void addItemToCart_shouldUpdateExistingItemQuantity_whenProductAlreadyInCart() {
         // Given
         CartItemRequest request = CartItemRequest.builder().productId(1L).quantity(2).build(); // Add more of product1
+        when(shoppingCartRepository.lockLargeCartFlagById(100L)).thenReturn(Optional.of(false));
         when(shoppingCartRepository.findById(100L)).thenReturn(Optional.of(activeCart));
-        when(productRepository.findById(1L)).thenReturn(Optional.of(product1));
+        when(productRepository.findByIdAndDeletedFalse(1L)).thenReturn(Optional.of(product1));
         when(cartItemRepository.findByShoppingCartAndProduct(activeCart, product1)).thenReturn(Optional.of(cartItem1));
         when(cartItemRepository.save(any(CartItem.class))).thenAnswer(invocation -> invocation.getArgument(0)); // Return the saved item
         when(shoppingCartRepository.save(any(ShoppingCart.class))).thenReturn(activeCart);
@@ -155,22 +263,44 @@ class ShoppingCartServiceTest {
         verify(shoppingCartRepository, times(1)).save(activeCart);
     }
 
+    @Test
+    void addItemToCart_shouldReactivateAbandonedCart_andMoveLastModifiedAt() {
+        // Given
+        activeCart.setStatus(CartStatus.ABANDONED);
+        LocalDateTime idleSince = activeCart.getLastModifiedAt();
+        CartItemRequest request = CartItemRequest.builder().productId(1L).quantity(2).build();
+        when(shoppingCartRepository.lockLargeCartFlagById(100L)).thenReturn(Optional.of(false));
+        when(shoppingCartRepository.findById(100L)).thenReturn(Optional.of(activeCart));
+        when(productRepository.findByIdAndDeletedFalse(1L)).thenReturn(Optional.of(product1));
+        when(cartItemRepository.findByShoppingCartAndProduct(activeCart, product1)).thenReturn(Optional.of(cartItem1));
+        when(shoppingCartRepository.save(any(ShoppingCart.class))).thenReturn(activeCart);
+
+        // When
+        ShoppingCart updatedCart = shoppingCartService.addItemToCart(100L, request);
+
+        // Then
+        assertEquals(CartStatus.ACTIVE, updatedCart.getStatus());
+        assertTrue(updatedCart.getLastModifiedAt().isAfter(idleSince));
+    }
+
     @Test
     void addItemToCart_shouldThrowIllegalStateException_whenCartCheckedOut() {
         // Given
         activeCart.setStatus(CartStatus.CHECKED_OUT);
         CartItemRequest request = CartItemRequest.builder().productId(1L).quantity(1).build();
+        when(shoppingCartRepository.lockLargeCartFlagById(100L)).thenReturn(Optional.of(false));
         when(shoppingCartRepository.findById(100L)).thenReturn(Optional.of(activeCart));
 
         // When / Then
         assertThrows(IllegalStateException.class, () -> shoppingCartService.addItemToCart(100L, request));
-        verify(productRepository, never()).findById(anyLong());
+        verify(productRepository, never()).findByIdAndDeletedFalse(anyLong());
         verify(cartItemRepository, never()).save(any(CartItem.class));
     }
 
     @Test
     void removeItemFromCart_shouldReduceQuantity_whenQuantityToRemoveIsLess() {
         // Given
+        when(shoppingCartRepository.lockLargeCartFlagById(100L)).thenReturn(Optional.of(false));
         when(shoppingCartRepository.findById(100L)).thenReturn(Optional.of(activeCart));
         when(productRepository.findById(1L)).thenReturn(Optional.of(product1));
         when(cartItemRepository.findByShoppingCartAndProduct(activeCart, product1)).thenReturn(Optional.of(cartItem1));
@@ -193,6 +323,7 @@ class ShoppingCartServiceTest {
     @Test
     void removeItemFromCart_shouldRemoveItemCompletely_whenQuantityToRemoveIsEqualOrMore() {
         // Given
+        when(shoppingCartRepository.lockLargeCartFlagById(100L)).thenReturn(Optional.of(false));
         when(shoppingCartRepository.findById(100L)).thenReturn(Optional.of(activeCart));
         when(productRepository.findById(1L)).thenReturn(Optional.of(product1));
         when(cartItemRepository.findByShoppingCartAndProduct(activeCart, product1)).thenReturn(Optional.of(cartItem1));
@@ -213,6 +344,7 @@ class ShoppingCartServiceTest {
     @Test
     void removeItemFromCart_shouldThrowResourceNotFoundException_whenItemNotInCart() {
         // Given
+        when(shoppingCartRepository.lockLargeCartFlagById(100L)).thenReturn(Optional.of(false));
         when(shoppingCartRepository.findById(100L)).thenReturn(Optional.of(activeCart));
         when(productRepository.findById(99L)).thenReturn(Optional.of(product2)); // Mock product exists
         when(cartItemRepository.findByShoppingCartAndProduct(activeCart, product2)).thenReturn(Optional.empty()); // But not in cart
@@ -227,6 +359,7 @@ class ShoppingCartServiceTest {
     void removeItemFromCart_shouldThrowIllegalStateException_whenCartCheckedOut() {
         // Given
         activeCart.setStatus(CartStatus.CHECKED_OUT);
+        when(shoppingCartRepository.lockLargeCartFlagById(100L)).thenReturn(Optional.of(false));
         when(shoppingCartRepository.findById(100L)).thenReturn(Optional.of(activeCart));
 
         // When / Then
@@ -236,45 +369,147 @@ class ShoppingCartServiceTest {
     }
 
     @Test
-    void calculateTotalPrice_shouldReturnCorrectTotal() {
+    @SuppressWarnings("unchecked")
+    void addAndRemove_shouldChangeOnlyTheKeyedLine_whenCartIsLarge() {
         // Given
-        Product p3 = Product.builder().id(3L).name("Keyboard").price(new BigDecimal("75.50")).type("ACCESSORY").build();
-        CartItem ci2 = CartItem.builder().shoppingCart(activeCart).product(p3).quantity(2).build();
-        activeCart.getItems().add(ci2); // Add another item
+        List<CartItem> lines = mock(List.class);
+        activeCart.setItems(lines);
+        activeCart.setLargeCart(true);
+        when(shoppingCartRepository.lockLargeCartFlagById(100L)).thenReturn(Optional.of(true));
+        when(shoppingCartRepository.getReferenceById(100L)).thenReturn(activeCart);
+        when(productRepository.findByIdAndDeletedFalse(2L)).thenReturn(Optional.of(product2));
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product1));
+        when(cartItemRepository.findByShoppingCartAndProduct(activeCart, product2)).thenReturn(Optional.empty());
+        when(cartItemRepository.findByShoppingCartAndProduct(activeCart, product1)).thenReturn(Optional.of(cartItem1));
+        when(shoppingCartRepository.save(activeCart)).thenReturn(activeCart);
 
+        // When
+        shoppingCartService.addItemToCart(100L, CartItemRequest.builder().productId(2L).quantity(1).build());
+        shoppingCartService.removeItemFromCart(100L, 1L, 1);
+
+        // Then
+        verify(cartItemRepository).save(argThat(item -> item.getProduct().equals(product2)));
+        verify(cartItemRepository).delete(cartItem1);
+        verify(shoppingCartRepository, never()).findById(anyLong());
+        verifyNoInteractions(lines);
+    }
+
+    @Test
+    void addItemToCart_shouldMakeCartLarge_whenItOutgrowsTheThreshold() {
+        // Given: one line short of the threshold, then two more
+        activeCart.getItems().add(CartItem.builder().id(2L).shoppingCart(activeCart).product(product2).quantity(1).build());
+        Product product3 = Product.builder().id(3L).name("Keyboard").price(new BigDecimal("50.00")).type("ELECTRONICS").build();
+        Product product4 = Product.builder().id(4L).name("Monitor").price(new BigDecimal("200.00")).type("ELECTRONICS").build();
+        when(shoppingCartRepository.lockLargeCartFlagById(100L)).thenReturn(Optional.of(false));
         when(shoppingCartRepository.findById(100L)).thenReturn(Optional.of(activeCart));
+        when(productRepository.findByIdAndDeletedFalse(3L)).thenReturn(Optional.of(product3));
+        when(productRepository.findByIdAndDeletedFalse(4L)).thenReturn(Optional.of(product4));
+        when(shoppingCartRepository.save(activeCart)).thenReturn(activeCart);
+
+        // When / Then
+        shoppingCartService.addItemToCart(100L, CartItemRequest.builder().productId(3L).quantity(1).build());
+        assertFalse(activeCart.isLargeCart());
+        shoppingCartService.addItemToCart(100L, CartItemRequest.builder().productId(4L).quantity(1).build());
+        assertTrue(activeCart.isLargeCart());
+    }
+
+    @Test
+    void getCartResponse_shouldLeaveLinesOut_andSumTotalsInDatabase_whenCartIsLarge() {
+        // Given
+        Tuple header = mock(Tuple.class);
+        when(header.get("largeCart")).thenReturn(true);
+        when(header.get("cartId", Long.class)).thenReturn(100L);
+        when(shoppingCartRepository.findCartRowsById(100L)).thenReturn(List.of(header));
+        CartTotals totals = mock(CartTotals.class);
+        when(totals.getLineCount()).thenReturn(2_000L);
+        when(totals.getSubtotal()).thenReturn(new BigDecimal("51000.00"));
+        when(shoppingCartRepository.findTotalsById(100L)).thenReturn(Optional.of(totals));
+
+        // When
+        ShoppingCartResponse cart = shoppingCartService.getCartResponse(100L);
+
+        // Then
+        assertTrue(cart.getLargeCart());
+        assertNull(cart.getItems());
+        assertEquals(2_000, cart.getItemCount());
+        assertEquals(new BigDecimal("51000.00"), cart.getTotalPrice());
+        verify(cartItemRepository, never()).findLineRowsByCartId(anyLong(), any());
+    }
+
+    @Test
+    void calculateTotalPrice_shouldReturnSnapshotTotal_withoutLoadingCart() {
+        // Given
+        when(shoppingCartRepository.findTotalPriceById(100L)).thenReturn(Optional.of(new BigDecimal("1151.00")));
 
         // When
         BigDecimal totalPrice = shoppingCartService.calculateTotalPrice(100L);
 
         // Then
-        // (1 * 1000.00) + (2 * 75.50) = 1000.00 + 151.00 = 1151.00
         assertEquals(new BigDecimal("1151.00"), totalPrice);
-        verify(shoppingCartRepository, times(1)).findById(100L);
+        verify(shoppingCartRepository, never()).findById(anyLong());
+        verifyNoInteractions(productRepository);
     }
 
     @Test
-    void calculateTotalPrice_shouldReturnZero_whenCartEmpty() {
+    void calculateTotalPrice_shouldReturnCachedPromotionTotal_withoutLoadingLines() {
         // Given
-        ShoppingCart emptyCart = ShoppingCart.builder()
-                .id(101L)
-                .status(CartStatus.ACTIVE)
-                .createdAt(LocalDateTime.now())
-                .lastModifiedAt(LocalDateTime.now())
-                .items(new ArrayList<>())
-                .build();
-        when(shoppingCartRepository.findById(101L)).thenReturn(Optional.of(emptyCart));
+        CartSummary summary = mock(CartSummary.class);
+        when(summary.getLastModifiedAt()).thenReturn(activeCart.getLastModifiedAt());
+        when(cartPricing.hasPromotions()).thenReturn(true);
+        when(shoppingCartRepository.findSummaryById(100L)).thenReturn(Optional.of(summary));
+        when(cartPricing.cachedTotal(100L, activeCart.getLastModifiedAt())).thenReturn(Optional.of(new BigDecimal("900.00")));
+
+        // When
+        BigDecimal totalPrice = shoppingCartService.calculateTotalPrice(100L);
+
+        // Then
+        assertEquals(new BigDecimal("900.00"), totalPrice);
+        verify(shoppingCartRepository, never()).findCartRowsById(anyLong());
+        verify(shoppingCartRepository, never()).findTotalPriceById(anyLong());
+    }
+
+    @Test
+    void calculateTotalPrice_shouldThrowResourceNotFoundException_whenCartMissing() {
+        // Given
+        when(shoppingCartRepository.findTotalPriceById(999L)).thenReturn(Optional.empty());
+
+        // When / Then
+        assertThrows(ResourceNotFoundException.class, () -> shoppingCartService.calculateTotalPrice(999L));
+    }
+
+    @Test
+    void repriceCart_shouldRefreshSnapshots_andReloadCart() {
+        // Given
+        when(shoppingCartRepository.lockLargeCartFlagById(100L)).thenReturn(Optional.of(false));
+        when(shoppingCartRepository.findById(100L)).thenReturn(Optional.of(activeCart));
+        when(cartItemRepository.refreshUnitPricesForCart(100L)).thenReturn(1);
 
         // When
-        BigDecimal totalPrice = shoppingCartService.calculateTotalPrice(101L);
+        ShoppingCart repricedCart = shoppingCartService.repriceCart(100L);
 
         // Then
-        assertEquals(BigDecimal.ZERO, totalPrice);
+        assertSame(activeCart, repricedCart);
+        verify(cartItemRepository, times(1)).refreshUnitPricesForCart(100L);
+        verify(shoppingCartRepository, times(1)).lockLargeCartFlagById(100L);
+        verify(shoppingCartRepository, times(2)).findById(100L);
+    }
+
+    @Test
+    void repriceCart_shouldThrowIllegalStateException_whenCartCheckedOut() {
+        // Given
+        activeCart.setStatus(CartStatus.CHECKED_OUT);
+        when(shoppingCartRepository.lockLargeCartFlagById(100L)).thenReturn(Optional.of(false));
+        when(shoppingCartRepository.findById(100L)).thenReturn(Optional.of(activeCart));
+
+        // When / Then
+        assertThrows(IllegalStateException.class, () -> shoppingCartService.repriceCart(100L));
+        verify(cartItemRepository, never()).refreshUnitPricesForCart(anyLong());
     }
 
     @Test
     void checkoutCart_shouldChangeStatusAndSetTimestamp() {
         // Given
+        when(shoppingCartRepository.lockLargeCartFlagById(100L)).thenReturn(Optional.of(false));
         when(shoppingCartRepository.findById(100L)).thenReturn(Optional.of(activeCart));
         when(shoppingCartRepository.save(any(ShoppingCart.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
@@ -289,10 +524,51 @@ class ShoppingCartServiceTest {
         verify(shoppingCartRepository, times(1)).save(activeCart);
     }
 
+    @Test
+    void checkoutCart_shouldReserveWhatLinesLack_andSellEverythingReserved() {
+        // Given
+        cartItem1.setQuantity(5);
+        cartItem1.setReservedQuantity(2);
+        cartItem1.setReservedUntil(LocalDateTime.now().plusMinutes(5));
+        when(shoppingCartRepository.lockLargeCartFlagById(100L)).thenReturn(Optional.of(false));
+        when(shoppingCartRepository.findById(100L)).thenReturn(Optional.of(activeCart));
+        when(inventory.reserve(1L, 3)).thenReturn(3);
+        when(shoppingCartRepository.save(any(ShoppingCart.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        shoppingCartService.checkoutCart(100L);
+
+        // Then
+        verify(inventory).sell(1L, 5);
+        assertEquals(5, cartItem1.getReservedQuantity());
+        assertNull(cartItem1.getReservedUntil());
+    }
+
+    @Test
+    void removeItemFromCart_shouldReleaseReservationBeyondRemainingQuantity() {
+        // Given
+        cartItem1.setQuantity(4);
+        cartItem1.setReservedQuantity(4);
+        when(shoppingCartRepository.lockLargeCartFlagById(100L)).thenReturn(Optional.of(false));
+        when(shoppingCartRepository.findById(100L)).thenReturn(Optional.of(activeCart));
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product1));
+        when(cartItemRepository.findByShoppingCartAndProduct(activeCart, product1)).thenReturn(Optional.of(cartItem1));
+        when(shoppingCartRepository.save(any(ShoppingCart.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        shoppingCartService.removeItemFromCart(100L, 1L, 3);
+
+        // Then
+        verify(inventory).release(1L, 3);
+        assertEquals(1, cartItem1.getQuantity());
+        assertEquals(1, cartItem1.getReservedQuantity());
+    }
+
     @Test
     void checkoutCart_shouldThrowIllegalStateException_whenAlreadyCheckedOut() {
         // Given
         activeCart.setStatus(CartStatus.CHECKED_OUT);
+        when(shoppingCartRepository.lockLargeCartFlagById(100L)).thenReturn(Optional.of(false));
         when(shoppingCartRepository.findById(100L)).thenReturn(Optional.of(activeCart));
 
         // When / Then
@@ -300,6 +576,20 @@ class ShoppingCartServiceTest {
         verify(shoppingCartRepository, never()).save(any(ShoppingCart.class));
     }
 
+    @Test
+    void checkoutCart_shouldReturnCart_whenRepeatedWithSameIdempotencyKey() {
+        // Given
+        activeCart.setStatus(CartStatus.CHECKED_OUT);
+        activeCart.setCheckoutIdempotencyKey("key-1");
+        when(shoppingCartRepository.lockLargeCartFlagById(100L)).thenReturn(Optional.of(false));
+        when(shoppingCartRepository.findById(100L)).thenReturn(Optional.of(activeCart));
+
+        // When / Then
+        assertSame(activeCart, shoppingCartService.checkoutCart(100L, "key-1"));
+        assertThrows(IllegalStateException.class, () -> shoppingCartService.checkoutCart(100L, "key-2"));
+        verify(shoppingCartRepository, never()).save(any(ShoppingCart.class));
+    }
+
     @Test
     void getAbandonedCartsForReport_shouldReturnCorrectCarts() {
         // Given
@@ -307,7 +597,7 @@ class ShoppingCartServiceTest {
         LocalDateTime endOfDay = reportDate.atTime(LocalTime.MAX);
 
         ShoppingCart abandonedCart1 = ShoppingCart.builder()
-                .id(201L).status(CartStatus.ACTIVE)
+                .id(201L).status(CartStatus.ABANDONED)
                 .createdAt(LocalDateTime.of(2023, 10, 25, 10, 0))
                 .lastModifiedAt(LocalDateTime.of(2023, 10, 25, 10, 0))
                 .items(new ArrayList<>())
@@ -315,7 +605,7 @@ class ShoppingCartServiceTest {
         abandonedCart1.getItems().add(CartItem.builder().shoppingCart(abandonedCart1).product(product1).quantity(1).build());
 
         ShoppingCart abandonedCart2 = ShoppingCart.builder()
-                .id(202L).status(CartStatus.ACTIVE)
+                .id(202L).status(CartStatus.ABANDONED)
                 .createdAt(LocalDateTime.of(2023, 10, 26, 8, 0))
                 .lastModifiedAt(LocalDateTime.of(2023, 10, 26, 8, 0))
                 .items(new ArrayList<>())
@@ -331,8 +621,8 @@ class ShoppingCartServiceTest {
                 .build();
 
         // Mock the repository call
-        when(shoppingCartRepository.findByStatusAndCreatedAtBeforeAndCheckedOutAtIsNull(
-                CartStatus.ACTIVE, endOfDay))
+        when(shoppingCartRepository.findByStatusAndLastModifiedAtBefore(
+                CartStatus.ABANDONED, endOfDay))
                 .thenReturn(Arrays.asList(abandonedCart1, abandonedCart2));
 
         // When
@@ -344,8 +634,8 @@ class ShoppingCartServiceTest {
         assertTrue(result.contains(abandonedCart1));
         assertTrue(result.contains(abandonedCart2));
         assertFalse(result.contains(checkedOutCart)); // Checked out cart should not be in abandoned report
-        verify(shoppingCartRepository, times(1)).findByStatusAndCreatedAtBeforeAndCheckedOutAtIsNull(
-                CartStatus.ACTIVE, endOfDay);
+        verify(shoppingCartRepository, times(1)).findByStatusAndLastModifiedAtBefore(
+                CartStatus.ABANDONED, endOfDay);
     }
 
     @Test
@@ -353,15 +643,15 @@ class ShoppingCartServiceTest {
         // Given
         LocalDate reportDate = LocalDate.of(2023, 10, 26);
         ShoppingCart abandonedCart = ShoppingCart.builder()
-                .id(201L).status(CartStatus.ACTIVE)
+                .id(201L).status(CartStatus.ABANDONED)
                 .createdAt(LocalDateTime.of(2023, 10, 25, 10, 0))
                 .lastModifiedAt(LocalDateTime.of(2023, 10, 25, 10, 0))
                 .items(new ArrayList<>())
                 .build();
         abandonedCart.getItems().add(CartItem.builder().shoppingCart(abandonedCart).product(product1).quantity(1).build());
 
-        when(shoppingCartRepository.findByStatusAndCreatedAtBeforeAndCheckedOutAtIsNull(
-                eq(CartStatus.ACTIVE), any(LocalDateTime.class)))
+        when(shoppingCartRepository.findByStatusAndLastModifiedAtBefore(
+                eq(CartStatus.ABANDONED), any(LocalDateTime.class)))
                 .thenReturn(Arrays.asList(abandonedCart));
 
         // When
@@ -386,8 +676,8 @@ class ShoppingCartServiceTest {
     void printReport_shouldPrintNoCartsFound_whenEmpty() {
         // Given
         LocalDate reportDate = LocalDate.of(2023, 10, 26);
-        when(shoppingCartRepository.findByStatusAndCreatedAtBeforeAndCheckedOutAtIsNull(
-                eq(CartStatus.ACTIVE), any(LocalDateTime.class)))
+        when(shoppingCartRepository.findByStatusAndLastModifiedAtBefore(
+                eq(CartStatus.ABANDONED), any(LocalDateTime.class)))
                 .thenReturn(new ArrayList<>());
 
         // When
@@ -0,0 +1,124 @@
+package com.example.shoppingcart.service;
+
+import com.example.shoppingcart.exception.ResourceNotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight<Long, String> reads = new SingleFlight<>("test", meterRegistry);
+
+    @Test
+    void load_shouldShareOneLoad_betweenConcurrentCallers() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(executor.submit(() -> reads.load(1L, () -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                await(release);
+                return "cart 1";
+            })));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 7; i++) {
+                results.add(executor.submit(() -> reads.load(1L, () -> "loaded again")));
+            }
+            while (coalesced() < 7) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("cart 1", result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+            assertEquals(1, meterRegistry.get("app.reads.loads").tag("read", "test").counter().count());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void load_shouldShareFailures_andLoadAgainAfterwards() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> leader = executor.submit(() -> reads.load(7L, () -> {
+                loading.countDown();
+                await(release);
+                throw new ResourceNotFoundException("Shopping cart not found with ID: 7");
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            Future<?> follower = executor.submit(() -> reads.load(7L, () -> "found"));
+            while (coalesced() < 1) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            assertInstanceOf(ResourceNotFoundException.class, assertThrows(Exception.class, leader::get).getCause());
+            assertInstanceOf(ResourceNotFoundException.class, assertThrows(Exception.class, follower::get).getCause());
+            assertEquals("found", reads.load(7L, () -> "found"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void load_shouldLoadOnItsOwn_insideAReadWriteTransaction() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> outside = executor.submit(() -> reads.load(1L, () -> {
+                loading.countDown();
+                await(release);
+                return "shared";
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+            TransactionSynchronizationManager.setActualTransactionActive(true);
+            try {
+                assertEquals("own", reads.load(1L, () -> "own"));
+            } finally {
+                TransactionSynchronizationManager.setActualTransactionActive(false);
+            }
+            reads.forgetAfterCommit(1L); // No transaction: forgets the running load at once
+            assertEquals("fresh", reads.load(1L, () -> "fresh"));
+            release.countDown();
+            assertEquals("shared", outside.get(5, TimeUnit.SECONDS));
+            assertEquals(0, coalesced());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private double coalesced() {
+        return meterRegistry.get("app.reads.coalesced").tag("read", "test").counter().count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.shoppingcart.sharding;
+
+import com.example.shoppingcart.dto.CartBatchResponse;
+import com.example.shoppingcart.dto.CartItemRequest;
+import com.example.shoppingcart.dto.ProductRequest;
+import com.example.shoppingcart.dto.ShoppingCartResponse;
+import com.example.shoppingcart.exception.ResourceNotFoundException;
+import com.example.shoppingcart.model.Product;
+import com.example.shoppingcart.model.ShoppingCart;
+import com.example.shoppingcart.service.AbandonedCartDetector;
+import com.example.shoppingcart.service.ProductService;
+import com.example.shoppingcart.service.ShoppingCartService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the service against three separate H2 databases acting as shards 0, 1 and 2.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:sharding-shard0;DB_CLOSE_DELAY=-1",
+        "app.datasource.replica.jdbc-url=jdbc:h2:mem:sharding-shard0;DB_CLOSE_DELAY=-1",
+        "app.sharding.additional-shards[0].jdbc-url=jdbc:h2:mem:sharding-shard1;DB_CLOSE_DELAY=-1",
+        "app.sharding.additional-shards[0].username=sa",
+        "app.sharding.additional-shards[1].jdbc-url=jdbc:h2:mem:sharding-shard2;DB_CLOSE_DELAY=-1",
+        "app.sharding.additional-shards[1].username=sa",
+        "app.sharding.initialize-schema=true",
+        "app.carts.abandonment.idle-threshold=0s"
+})
+class ShardingIntegrationTest {
+
+    @Autowired
+    private ShoppingCartService shoppingCartService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private AbandonedCartDetector abandonedCartDetector;
+
+    @Autowired
+    private ProductReplicator productReplicator;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource shardZero;
+
+    @Autowired
+    private ShardDataSources shardDataSources;
+
+    @Test
+    void createCart_shouldSpreadCartsOverShards_andStoreEachOnItsShardOnly() {
+        Set<Integer> shards = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            ShoppingCart cart = shoppingCartService.createCart();
+            int shard = ShardIds.shardOf(cart.getId());
+            shards.add(shard);
+            for (int other = 0; other < 3; other++) {
+                assertEquals(other == shard ? 1 : 0, countCarts(other, cart.getId()), "cart " + cart.getId() + " on shard " + other);
+            }
+        }
+        assertEquals(Set.of(0, 1, 2), shards);
+    }
+
+    @Test
+    void cartOperations_shouldRunOnTheCartsShard_withReplicatedProducts() {
+        Product product = productService.createProduct(ProductRequest.builder()
+                .name("Sharded").price(new BigDecimal("4.50")).type("TEST").build());
+        for (int shard = 0; shard < 3; shard++) {
+            assertEquals(1, shard(shard).queryForObject("select count(*) from products where id = ?", Integer.class, product.getId()));
+        }
+
+        for (int i = 0; i < 3; i++) {
+            Long cartId = shoppingCartService.createCart().getId();
+            shoppingCartService.addItemToCart(cartId, CartItemRequest.builder().productId(product.getId()).quantity(2).build());
+
+            ShoppingCartResponse response = shoppingCartService.getCartResponse(cartId);
+            assertEquals(1, response.getItems().size());
+            assertEquals(0, new BigDecimal("9.00").compareTo(shoppingCartService.calculateTotalPrice(cartId)));
+            assertEquals(ShoppingCart.CartStatus.CHECKED_OUT, shoppingCartService.checkoutCart(cartId).getStatus());
+        }
+    }
+
+    @Test
+    void reconcile_shouldRepairCopiesThatMissedAChange() {
+        Product product = productService.createProduct(ProductRequest.builder()
+                .name("Reconciled").price(new BigDecimal("3.00")).type("TEST").build());
+        shard(1).update("update products set price = 1.00 where id = ?", product.getId());
+        shard(2).update("delete from products where id = ?", product.getId());
+        long purgedOnShardZero = product.getId() + 1000;
+        shard(1).update("insert into products (id, name, price, type, deleted) values (?, 'Purged', 1.00, 'TEST', false)", purgedOnShardZero);
+
+        assertEquals(3, productReplicator.reconcile());
+
+        for (int shard = 1; shard < 3; shard++) {
+            assertEquals(0, new BigDecimal("3.00").compareTo(shard(shard).queryForObject(
+                    "select price from products where id = ?", BigDecimal.class, product.getId())));
+        }
+        assertTrue(shard(1).queryForObject("select deleted from products where id = ?", Boolean.class, purgedOnShardZero));
+        assertEquals(0, productReplicator.reconcile());
+    }
+
+    @Test
+    void getAbandonedCartsForReport_shouldGatherEveryShard() {
+        List<Long> created = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            created.add(shoppingCartService.createCart().getId());
+        }
+        abandonedCartDetector.detect();
+
+        List<Long> reported = shoppingCartService.getAbandonedCartsForReport(LocalDate.now()).stream()
+                .map(ShoppingCart::getId)
+                .toList();
+
+        assertTrue(reported.containsAll(created));
+    }
+
+    @Test
+    void getCartResponses_shouldReadEveryShard_inRequestOrder() {
+        Product product = productService.createProduct(ProductRequest.builder()
+                .name("Batch").price(new BigDecimal("2.00")).type("TEST").build());
+        List<Long> created = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Long cartId = shoppingCartService.createCart().getId();
+            shoppingCartService.addItemToCart(cartId, CartItemRequest.builder().productId(product.getId()).quantity(i + 1).build());
+            created.add(cartId);
+        }
+        long missingShard = ShardIds.embed(1, 7);
+
+        CartBatchResponse batch = shoppingCartService.getCartResponses(
+                List.of(created.get(2), missingShard, created.get(0), created.get(1), created.get(2)));
+
+        assertEquals(List.of(created.get(2), created.get(0), created.get(1)),
+                batch.getCarts().stream().map(ShoppingCartResponse::getId).toList());
+        assertEquals(3, batch.getCarts().get(0).getItems().get(0).getQuantity());
+        assertEquals(List.of(missingShard), batch.getMissingIds());
+    }
+
+    @Test
+    void getCartById_shouldThrowResourceNotFoundException_whenIdPointsToMissingShard() {
+        long cartId = ShardIds.embed(1, 7);
+        assertThrows(ResourceNotFoundException.class, () -> shoppingCartService.getCartResponse(cartId));
+    }
+
+    private int countCarts(int shard, Long cartId) {
+        return shard(shard).queryForObject("select count(*) from shopping_carts where id = ?", Integer.class, cartId);
+    }
+
+    private JdbcTemplate shard(int shard) {
+        return new JdbcTemplate(shard == 0 ? shardZero : shardDataSources.additionalShards().get(shard - 1));
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.shoppingcart.stress;
+
+import com.example.shoppingcart.dto.CartItemRequest;
+import com.example.shoppingcart.dto.CartItemResponse;
+import com.example.shoppingcart.dto.ProductRequest;
+import com.example.shoppingcart.dto.ShoppingCartResponse;
+import com.example.shoppingcart.model.CartItem;
+import com.example.shoppingcart.model.ShoppingCart;
+import com.example.shoppingcart.model.ShoppingCart.CartStatus;
+import com.example.shoppingcart.service.ProductService;
+import com.example.shoppingcart.service.ShoppingCartService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Concurrent cart mutations against a real H2 database, checking that no update is lost, no cart gets two
+ * lines for one product and no change lands after checkout. Prints throughput and conflict rates per scenario.
+ * stress.threads (default 16) workers run stress.operations (default 400) operations per scenario.
+ * Run with: mvn test -Pstress
+ */
+@Tag("stress")
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stress;DB_CLOSE_DELAY=-1",
+        "app.datasource.replica.jdbc-url=jdbc:h2:mem:stress;DB_CLOSE_DELAY=-1",
+        "app.datasource.reporting.jdbc-url=jdbc:h2:mem:stress;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false"
+})
+class CartConcurrencyStressTest {
+
+    private static final int THREADS = Integer.getInteger("stress.threads", 16);
+    private static final int OPERATIONS = Integer.getInteger("stress.operations", 400);
+    // Starting quantity of every line, high enough that no remove empties it
+    private static final int SEED_QUANTITY = 10_000;
+
+    private static final List<String> REPORT = Collections.synchronizedList(new ArrayList<>());
+
+    @Autowired
+    private ShoppingCartService shoppingCartService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private List<Long> productIds;
+
+    @BeforeEach
+    void setUp() {
+        productIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            productIds.add(productService.createProduct(ProductRequest.builder()
+                    .name("Stress " + i).price(new BigDecimal("1.00")).type("STRESS").build()).getId());
+        }
+    }
+
+    @AfterAll
+    static void printReport() {
+        System.out.println("\n--- Cart concurrency stress (" + THREADS + " threads, " + OPERATIONS + " operations) ---");
+        System.out.printf("%-26s %8s %8s %10s %10s %9s%n", "scenario", "ops", "ops/s", "conflicts", "rejected", "errors");
+        REPORT.forEach(System.out::println);
+        System.out.println("--- End of stress run ---");
+    }
+
+    @Test
+    void sameCart_concurrentAddsAndRemoves_shouldKeepEveryQuantityExact() throws Exception {
+        Long cartId = seededCart();
+        Map<Long, AtomicInteger> deltas = new ConcurrentHashMap<>();
+
+        Tally tally = run("same cart add/remove", OPERATIONS, i -> () -> randomAddOrRemove(cartId, deltas));
+
+        tally.assertNoErrors();
+        assertQuantities(cartId, deltas);
+        assertNoDuplicateLines();
+    }
+
+    @Test
+    void differentCarts_concurrentAddsAndRemoves_shouldKeepEveryQuantityExact() throws Exception {
+        List<Long> cartIds = new ArrayList<>();
+        List<Map<Long, AtomicInteger>> deltas = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            cartIds.add(seededCart());
+            deltas.add(new ConcurrentHashMap<>());
+        }
+
+        Tally tally = run("different carts add/remove", OPERATIONS,
+                i -> () -> randomAddOrRemove(cartIds.get(i % cartIds.size()), deltas.get(i % cartIds.size())));
+
+        tally.assertNoErrors();
+        for (int i = 0; i < cartIds.size(); i++) {
+            assertQuantities(cartIds.get(i), deltas.get(i));
+        }
+        assertNoDuplicateLines();
+    }
+
+    @Test
+    void checkout_racingWithAdds_shouldRejectEveryChangeAfterIt() throws Exception {
+        int carts = Math.max(1, OPERATIONS / 20);
+        List<Long> cartIds = new ArrayList<>();
+        List<Map<Long, AtomicInteger>> deltas = new ArrayList<>();
+        Map<Long, Map<Long, Integer>> atCheckout = new ConcurrentHashMap<>();
+        List<Runnable> operations = new ArrayList<>();
+        for (int c = 0; c < carts; c++) {
+            Long cartId = seededCart();
+            Map<Long, AtomicInteger> cartDeltas = new ConcurrentHashMap<>();
+            cartIds.add(cartId);
+            deltas.add(cartDeltas);
+            for (int i = 0; i < 19; i++) {
+                operations.add(() -> add(cartId, randomProduct(), ThreadLocalRandom.current().nextInt(1, 4), cartDeltas));
+            }
+            operations.add(() -> atCheckout.put(cartId, checkoutAndReadQuantities(cartId)));
+        }
+        Collections.shuffle(operations);
+
+        Tally race = run("checkout racing adds", operations.size(), operations::get);
+        race.assertNoErrors();
+
+        for (int c = 0; c < carts; c++) {
+            Long cartId = cartIds.get(c);
+            ShoppingCartResponse cart = shoppingCartService.getCartResponse(cartId);
+            assertEquals(CartStatus.CHECKED_OUT, cart.getStatus());
+            assertEquals(atCheckout.get(cartId), quantities(cart), "cart " + cartId + " changed after checkout");
+            assertQuantities(cartId, deltas.get(c));
+        }
+
+        Tally afterCheckout = run("mutations after checkout", OPERATIONS,
+                i -> () -> randomAddOrRemove(cartIds.get(i % carts), new ConcurrentHashMap<>()));
+        afterCheckout.assertNoErrors();
+        assertEquals(OPERATIONS, afterCheckout.rejected.get(), "every change to a checked out cart must be rejected");
+        for (Long cartId : cartIds) {
+            assertEquals(atCheckout.get(cartId), quantities(shoppingCartService.getCartResponse(cartId)));
+        }
+        assertNoDuplicateLines();
+    }
+
+    private Long seededCart() {
+        Long cartId = shoppingCartService.createCart().getId();
+        for (Long productId : productIds) {
+            shoppingCartService.addItemToCart(cartId, CartItemRequest.builder().productId(productId).quantity(SEED_QUANTITY).build());
+        }
+        return cartId;
+    }
+
+    private void randomAddOrRemove(Long cartId, Map<Long, AtomicInteger> deltas) {
+        int quantity = ThreadLocalRandom.current().nextInt(1, 4);
+        Long productId = randomProduct();
+        if (ThreadLocalRandom.current().nextBoolean()) {
+            add(cartId, productId, quantity, deltas);
+        } else {
+            shoppingCartService.removeItemFromCart(cartId, productId, quantity);
+            deltas.computeIfAbsent(productId, id -> new AtomicInteger()).addAndGet(-quantity);
+        }
+    }
+
+    private void add(Long cartId, Long productId, int quantity, Map<Long, AtomicInteger> deltas) {
+        shoppingCartService.addItemToCart(cartId, CartItemRequest.builder().productId(productId).quantity(quantity).build());
+        deltas.computeIfAbsent(productId, id -> new AtomicInteger()).addAndGet(quantity);
+    }
+
+    // Reads the lines in the checkout's own transaction, i.e. exactly what was checked out
+    private Map<Long, Integer> checkoutAndReadQuantities(Long cartId) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            ShoppingCart cart = shoppingCartService.checkoutCart(cartId);
+            return cart.getItems().stream()
+                    .collect(Collectors.toMap(item -> item.getProduct().getId(), CartItem::getQuantity));
+        });
+    }
+
+    private Long randomProduct() {
+        return productIds.get(ThreadLocalRandom.current().nextInt(productIds.size()));
+    }
+
+    private void assertQuantities(Long cartId, Map<Long, AtomicInteger> deltas) {
+        Map<Long, Integer> expected = productIds.stream().collect(Collectors.toMap(id -> id,
+                id -> SEED_QUANTITY + deltas.getOrDefault(id, new AtomicInteger()).get()));
+        assertEquals(expected, quantities(shoppingCartService.getCartResponse(cartId)), "lost update in cart " + cartId);
+    }
+
+    private static Map<Long, Integer> quantities(ShoppingCartResponse cart) {
+        return cart.getItems().stream().collect(Collectors.toMap(CartItemResponse::getProductId, CartItemResponse::getQuantity));
+    }
+
+    private void assertNoDuplicateLines() {
+        Integer duplicates = jdbcTemplate.queryForObject("select count(*) from (select shopping_cart_id, product_id " +
+                "from cart_items group by shopping_cart_id, product_id having count(*) > 1)", Integer.class);
+        assertEquals(0, duplicates, "carts with two lines for one product");
+    }
+
+    // Runs the operations on THREADS workers released together and classifies every failure
+    private Tally run(String scenario, int operations, IntFunction<Runnable> operation) throws Exception {
+        Tally tally = new Tally();
+        ExecutorService workers = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < operations; i++) {
+            Runnable task = operation.apply(i);
+            workers.execute(() -> {
+                try {
+                    start.await();
+                    task.run();
+                    tally.succeeded.incrementAndGet();
+                } catch (IllegalStateException e) {
+                    tally.rejected.incrementAndGet();
+                } catch (ConcurrencyFailureException e) {
+                    tally.conflicts.incrementAndGet();
+                } catch (Exception e) {
+                    tally.errors.add(e);
+                }
+            });
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        workers.shutdown();
+        assertTrue(workers.awaitTermination(5, TimeUnit.MINUTES), scenario + " did not finish");
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        REPORT.add(String.format("%-26s %8d %8.0f %9.1f%% %9.1f%% %9d", scenario, operations, operations / seconds,
+                100.0 * tally.conflicts.get() / operations, 100.0 * tally.rejected.get() / operations, tally.errors.size()));
+        return tally;
+    }
+
+    private static class Tally {
+        final AtomicInteger succeeded = new AtomicInteger();
+        // Lock timeouts and deadlocks reported by the database; the operation was rolled back
+        final AtomicInteger conflicts = new AtomicInteger();
+        // Refused by the service, e.g. a change to a checked out cart
+        final AtomicInteger rejected = new AtomicInteger();
+        final ConcurrentLinkedQueue<Exception> errors = new ConcurrentLinkedQueue<>();
+
+        void assertNoErrors() {
+            Exception first = errors.peek();
+            if (first != null) {
+                fail(errors.size() + " operations failed unexpectedly, first: " + first, first);
+            }
+        }
+    }
+}